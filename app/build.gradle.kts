@@ -111,6 +111,12 @@ android {
         viewBinding = true
         buildConfig = true
     }
+    androidResources {
+        // The dependency bundles are xz already, so aapt's deflate gains nothing on them - and a
+        // stored asset can be opened as a file descriptor, which is what lets
+        // FileUtils.decodeTarXzAsset decode a multi-block bundle in parallel.
+        noCompress += "xz"
+    }
     externalNativeBuild {
         cmake {
             path = file("src/main/cpp/CMakeLists.txt")
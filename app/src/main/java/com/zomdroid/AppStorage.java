@@ -79,6 +79,12 @@ public class AppStorage {
         return CACHE_DIR_PATH;
     }
 
+    // Game files shared between instances, see GameFileStore. Under home so that its objects and
+    // the instances linking them are on one filesystem - a hard link cannot cross into another.
+    public String getGameStorePath() {
+        return HOME_DIR_PATH + "/store";
+    }
+
     public String getLibraryPath() {
         return LIBRARY_DIR_PATH;
     }
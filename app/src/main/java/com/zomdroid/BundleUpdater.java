@@ -0,0 +1,297 @@
+package com.zomdroid;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+// Brings an installed dependency tree (a JRE, libs, jars) up to date with the bundle in the APK,
+// rewriting only the files that changed.
+//
+// A release that touched one .so in libs.tar.xz used to delete the whole directory and extract
+// every file again - a minute of writes to flash for one changed library. Now the new tree is
+// built next to the installed one: a file whose bytes match the installed copy is hard-linked in,
+// only new and changed files are written, and files the bundle no longer carries are simply not
+// brought along. The finished tree then replaces the installed one with two renames.
+//
+// Every install leaves a manifest (path, size, CRC32 per file) in the tree. A file whose size
+// differs from the manifest is known changed and written straight away; for the rest the bundle
+// bytes are compared with the installed file as they are decoded - reading flash is cheap next
+// to writing it, and a file altered on disk since the install can never be carried over by
+// mistake. The bundles themselves are built outside this repo and carry no manifest.
+//
+// An update that fails leaves the installed tree exactly as it was, rather than half deleted.
+final class BundleUpdater {
+    private static final String LOG_TAG = BundleUpdater.class.getName();
+    static final String MANIFEST_NAME = ".zomdroid-bundle-manifest.json";
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final class Manifest {
+        HashMap<String, FileRecord> files = new HashMap<>();
+    }
+
+    private static final class FileRecord {
+        long size;
+        long crc32;
+
+        FileRecord(long size, long crc32) {
+            this.size = size;
+            this.crc32 = crc32;
+        }
+    }
+
+    private final File installDir;
+    private final File stagingDir;
+    private final byte[] bundleBuffer = new byte[BUFFER_SIZE];
+    private final byte[] installedBuffer = new byte[BUFFER_SIZE];
+    private final Set<String> knownDirs = new HashSet<>();
+    private int linkedFiles;
+    private int writtenFiles;
+    private long writtenBytes;
+
+    private BundleUpdater(File installDir) {
+        this.installDir = installDir;
+        this.stagingDir = new File(installDir.getParentFile(), installDir.getName() + ".staging");
+    }
+
+    // Makes installDir hold exactly what the tar stream holds. tarSize is the uncompressed size
+    // for progress, or 0 when unknown.
+    static void update(@NonNull InputStream tarInStream, long tarSize, @NonNull File installDir,
+                       TaskProgressListener taskProgressListener) throws IOException {
+        new BundleUpdater(installDir).run(tarInStream, tarSize, taskProgressListener);
+    }
+
+    private void run(InputStream tarInStream, long tarSize, TaskProgressListener taskProgressListener) throws IOException {
+        File retiredDir = new File(installDir.getParentFile(), installDir.getName() + ".old");
+        // Leftovers of an update that was killed halfway.
+        if (stagingDir.exists()) FileUtils.deleteDirectory(stagingDir);
+        if (retiredDir.exists()) FileUtils.deleteDirectory(retiredDir);
+        if (!stagingDir.mkdirs()) throw new IOException("Failed to create directory " + stagingDir);
+
+        long startMs = System.currentTimeMillis();
+        Manifest installed = readManifest(installDir);
+        Manifest updated = new Manifest();
+        if (tarSize > 0) {
+            // Files the installed bundle already has are linked, not written. Counting them all as
+            // reused makes this a lower bound - a changed one is written in full - so an update
+            // is only refused when it cannot fit whatever changed.
+            long reusable = 0;
+            if (installed != null) {
+                for (FileRecord record : installed.files.values()) reusable += record.size;
+            }
+            try {
+                DiskSpace.require(stagingDir, tarSize - reusable);
+            } catch (IOException e) {
+                FileUtils.deleteDirectory(stagingDir);
+                throw e;
+            }
+        }
+        try {
+            TarArchiveInputStream tarArchiveInStream =
+                    new TarArchiveInputStream(new BufferedInputStream(tarInStream, 1024 * 1024));
+            ArchiveEntry entry;
+            while ((entry = tarArchiveInStream.getNextEntry()) != null) {
+                if (!tarArchiveInStream.canReadEntryData(entry)) {
+                    throw new RuntimeException("Failed to read archive entry");
+                }
+                String name = entry.getName();
+                File staged = new File(stagingDir, name);
+                if (entry.isDirectory()) {
+                    ensureDirectory(staged);
+                    continue;
+                }
+                ensureDirectory(staged.getParentFile());
+
+                FileRecord previous = installed != null ? installed.files.get(name) : null;
+                File current = new File(installDir, name);
+                FileRecord record;
+                if (previous != null && previous.size == entry.getSize() && current.length() == previous.size
+                        && current.isFile()) {
+                    record = reuseOrWrite(tarArchiveInStream, current, staged, name, entry.getSize());
+                } else {
+                    record = write(tarArchiveInStream, staged, name, entry.getSize());
+                }
+                updated.files.put(name, record);
+
+                if (taskProgressListener != null) {
+                    int progress = -1;
+                    if (tarSize > 0)
+                        progress = (int) ((tarArchiveInStream.getBytesRead() / (float) tarSize) * 100);
+                    taskProgressListener.onProgressUpdate(null, progress, 100);
+                }
+            }
+            writeManifest(stagingDir, updated);
+        } catch (IOException | RuntimeException e) {
+            FileUtils.deleteDirectory(stagingDir);
+            throw e;
+        }
+
+        if (installDir.exists() && !installDir.renameTo(retiredDir)) {
+            FileUtils.deleteDirectory(stagingDir);
+            throw new IOException("Failed to move " + installDir + " aside");
+        }
+        if (!stagingDir.renameTo(installDir)) {
+            //noinspection ResultOfMethodCallIgnored
+            retiredDir.renameTo(installDir);
+            throw new IOException("Failed to move " + stagingDir + " into place");
+        }
+        FileUtils.deleteDirectory(retiredDir);
+
+        Log.i(LOG_TAG, installDir.getName() + ": " + linkedFiles + " files unchanged, " + writtenFiles
+                + " written (" + (writtenBytes / 1024) + " KB), "
+                + (installed != null ? "against a manifest of " + installed.files.size() : "no previous manifest")
+                + ", in " + (System.currentTimeMillis() - startMs) + " ms");
+    }
+
+    // Reads the entry and the installed file side by side. While they agree nothing is written;
+    // if they still agree at the end, the installed file is linked into the new tree. At the first
+    // difference the part that matched is copied over from the installed file and the rest of the
+    // entry written after it.
+    private FileRecord reuseOrWrite(InputStream entryInStream, File current, File staged, String name,
+                                    long size) throws IOException {
+        CRC32 crc32 = new CRC32();
+        long matched = 0;
+        try (InputStream installedInStream = new FileInputStream(current)) {
+            while (true) {
+                int n = fill(entryInStream, bundleBuffer, bundleBuffer.length);
+                if (n == 0) break;
+                int m = fill(installedInStream, installedBuffer, n);
+                if (m != n || !sameBytes(bundleBuffer, installedBuffer, n)) {
+                    return writeDiverged(entryInStream, current, staged, name, size, crc32, matched, n);
+                }
+                crc32.update(bundleBuffer, 0, n);
+                matched += n;
+                if (n < bundleBuffer.length) break;
+            }
+        }
+        FileUtils.checkEntryComplete(current, name, matched, size);
+        try {
+            Files.createLink(staged.toPath(), current.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            // Linking only fails on storage we do not expect to install to; a copy is still
+            // cheaper than decoding the file again.
+            Files.copy(current.toPath(), staged.toPath());
+        }
+        linkedFiles++;
+        return new FileRecord(matched, crc32.getValue());
+    }
+
+    private FileRecord writeDiverged(InputStream entryInStream, File current, File staged, String name,
+                                     long size, CRC32 crc32, long matched, int pending) throws IOException {
+        long written;
+        try (FileOutputStream fileOutStream = new FileOutputStream(staged)) {
+            if (matched > 0) {
+                try (FileChannel from = FileChannel.open(current.toPath())) {
+                    FileChannel to = fileOutStream.getChannel();
+                    long copied = 0;
+                    while (copied < matched) {
+                        long n = from.transferTo(copied, matched - copied, to);
+                        if (n <= 0) throw new IOException("Failed to copy unchanged start of " + current);
+                        copied += n;
+                    }
+                }
+            }
+            fileOutStream.write(bundleBuffer, 0, pending);
+            crc32.update(bundleBuffer, 0, pending);
+            written = matched + pending + (pending < bundleBuffer.length ? 0 : copy(entryInStream, fileOutStream, crc32));
+        }
+        FileUtils.checkEntryComplete(staged, name, written, size);
+        writtenFiles++;
+        writtenBytes += written;
+        return new FileRecord(written, crc32.getValue());
+    }
+
+    private FileRecord write(InputStream entryInStream, File staged, String name, long size) throws IOException {
+        CRC32 crc32 = new CRC32();
+        long written;
+        try (FileOutputStream fileOutStream = new FileOutputStream(staged)) {
+            DiskSpace.preallocate(fileOutStream.getFD(), staged, size);
+            written = copy(entryInStream, fileOutStream, crc32);
+        }
+        FileUtils.checkEntryComplete(staged, name, written, size);
+        writtenFiles++;
+        writtenBytes += written;
+        return new FileRecord(written, crc32.getValue());
+    }
+
+    private long copy(InputStream in, OutputStream out, CRC32 crc32) throws IOException {
+        long written = 0;
+        int n;
+        while ((n = in.read(bundleBuffer)) != -1) {
+            out.write(bundleBuffer, 0, n);
+            crc32.update(bundleBuffer, 0, n);
+            written += n;
+        }
+        return written;
+    }
+
+    private void ensureDirectory(File dir) throws IOException {
+        if (knownDirs.contains(dir.getPath())) return;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory " + dir);
+        }
+        knownDirs.add(dir.getPath());
+    }
+
+    // Reads until buffer holds length bytes or the stream ends.
+    private static int fill(InputStream in, byte[] buffer, int length) throws IOException {
+        int filled = 0;
+        int n;
+        while (filled < length && (n = in.read(buffer, filled, length - filled)) != -1) {
+            filled += n;
+        }
+        return filled;
+    }
+
+    private static boolean sameBytes(byte[] a, byte[] b, int length) {
+        // Arrays.equals with ranges only arrived in API 33.
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        return true;
+    }
+
+    // Null when there is no manifest or it cannot be read: every file is then written.
+    @Nullable
+    private static Manifest readManifest(File dir) {
+        File file = new File(dir, MANIFEST_NAME);
+        if (!file.isFile()) return null;
+        try (Reader reader = new FileReader(file)) {
+            Manifest manifest = new Gson().fromJson(reader, Manifest.class);
+            return manifest != null && manifest.files != null ? manifest : null;
+        } catch (IOException | JsonParseException e) {
+            Log.w(LOG_TAG, "Ignoring unreadable " + file + ": " + e);
+            return null;
+        }
+    }
+
+    private static void writeManifest(File dir, Manifest manifest) throws IOException {
+        try (Writer writer = new FileWriter(new File(dir, MANIFEST_NAME))) {
+            new Gson().toJson(manifest, writer);
+        }
+    }
+}
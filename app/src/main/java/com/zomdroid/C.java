@@ -25,6 +25,8 @@ public class C {
         public static final String LIBS_FMOD_20309 = LIBS_ANDROID_ARM64_v8a + "/fmod-2.03.09";
         public static final String JARS_SQLITE_JDBC_34800 = JARS + "/sqlite-jdbc-3.48.0.0.jar";
         public static final String JARS_ZOMDROID_AGENT = JARS + "/zomdroid-agent.jar";
+        // Built from this repo's class-file rules by tools/patch-agent/build_and_pack.sh.
+        public static final String JARS_PATCH_AGENT = JARS + "/zomdroid-patch-agent.jar";
 
         // ZombieBuddy and ZBBetterFPS jars are stored per-instance in game/ folder.
         // Use gameInstance.getGamePath() + "/" + filename to get the full path.
@@ -54,6 +56,9 @@ public class C {
             public static final String GAME_INSTANCES = "gameInstances";
             public static final String LAUNCHER_PREFS = "launcherPrefs";
             public static final String INSTALLED_BUNDLES = "installedBundles";
+            // APK versionCode, lastUpdateTime and bundle sizes as of the last dependency install;
+            // while it matches, the bundles are known unchanged without hashing them.
+            public static final String INSTALLED_BUNDLES_FINGERPRINT = "installedBundlesFingerprint";
             public static final String ARE_DEPENDENCIES_INSTALLED = "areDependenciesInstalled";
             public static final String IS_LEGAL_NOTICE_ACCEPTED = "isLegalNoticeAccepted";
             // versionName the release notes were last shown for (or recorded silently on a fresh
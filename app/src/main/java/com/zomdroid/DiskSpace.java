@@ -0,0 +1,94 @@
+package com.zomdroid;
+
+import android.os.StatFs;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.Locale;
+
+// Free-space checks made before an install writes anything.
+//
+// A game install is 5+ GB and a texture pack can be several more. When storage filled up halfway
+// the player waited minutes for an extraction that was doomed from the start, then got a
+// "Truncated extraction" error naming some random file (see FileUtils.checkEntryComplete) and a
+// half-written instance to clean up. Every extraction now adds up what it is about to write - the
+// zip central directory and the xz index say so before a byte is inflated - and refuses to start
+// when the storage cannot hold it, saying how much it needs and how much there is.
+//
+// Large files are also preallocated with fallocate: the space is claimed when the file is opened,
+// so one that cannot fit fails there rather than after most of it was inflated, and the filesystem
+// gets to lay it out in one piece instead of growing it 256 KB at a time.
+final class DiskSpace {
+    private static final String LOG_TAG = DiskSpace.class.getName();
+    // Kept free beyond what an install writes: the game writes its config, logs and first save
+    // on launch, and Android itself starts misbehaving on a nearly full disk.
+    private static final long MIN_MARGIN = 512L * 1024 * 1024;
+    // Smaller files are not worth a syscall each: a game install has tens of thousands of them.
+    static final long PREALLOCATE_MIN = 4L * 1024 * 1024;
+
+    // Thrown before anything was written. toString() is just the message, since the installer
+    // shows exceptions to the player as they are.
+    static final class NotEnoughSpaceException extends IOException {
+        final long neededBytes;
+        final long availableBytes;
+
+        NotEnoughSpaceException(long neededBytes, long availableBytes) {
+            super("Not enough free space: need " + formatGb(neededBytes) + ", have " + formatGb(availableBytes));
+            this.neededBytes = neededBytes;
+            this.availableBytes = availableBytes;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return getMessage();
+        }
+    }
+
+    private DiskSpace() {}
+
+    // Throws when the filesystem dir lives on (dir itself need not exist yet) cannot take bytes
+    // more with the margin to spare.
+    static void require(@NonNull File dir, long bytes) throws NotEnoughSpaceException {
+        if (bytes <= 0) return;
+        File existing = dir.getAbsoluteFile();
+        while (existing != null && !existing.exists()) existing = existing.getParentFile();
+        if (existing == null) return;
+        long available;
+        try {
+            available = new StatFs(existing.getPath()).getAvailableBytes();
+        } catch (IllegalArgumentException e) {
+            // statvfs() failed; the extraction finds out the hard way, as it always did.
+            Log.w(LOG_TAG, "Failed to stat " + existing + ": " + e);
+            return;
+        }
+        long needed = bytes + Math.max(MIN_MARGIN, bytes / 20);
+        Log.i(LOG_TAG, "Writing " + formatGb(bytes) + " under " + dir + ", " + formatGb(available) + " free");
+        if (available < needed) throw new NotEnoughSpaceException(needed, available);
+    }
+
+    // Claims size bytes for the file just opened on fd. Filesystems without fallocate (FUSE on
+    // external storage, for one) are skipped silently; running out of space is not.
+    static void preallocate(@NonNull FileDescriptor fd, @NonNull File file, long size) throws IOException {
+        if (size < PREALLOCATE_MIN) return;
+        try {
+            Os.posix_fallocate(fd, 0, size);
+        } catch (ErrnoException e) {
+            if (e.errno == OsConstants.ENOSPC) {
+                throw new IOException("No space left for " + file + " (" + formatGb(size) + ")", e);
+            }
+        }
+    }
+
+    @NonNull
+    static String formatGb(long bytes) {
+        return String.format(Locale.ROOT, "%.1f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+}
@@ -1,113 +1,314 @@
 package com.zomdroid;
 
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
 import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
 
-// Minimal reader for the JNI entry points an ELF64 shared library exports.
+// What an ELF64 shared library exports, imports and needs, read once and remembered.
+//
+// Used to decide which build of a game library runs - the ones Project Zomboid ships in
+// android/arm64-v8a/ against its own Linux x86_64 builds (NativeLibraryWorkarounds) - and to
+// describe them in a bug report. Both used to re-read the same headers every launch and every
+// report, a handful of seeks and small reads per field. Now each file is memory-mapped once and
+// everything is taken from the mapping in one pass: the ELF and section headers, .dynsym
+// (defined symbols are exports, undefined ones imports), the DT_NEEDED entries of .dynamic, and
+// whether every section actually lies inside the file - a library truncated during install parses
+// fine up to the point where it does not, and that is worth saying rather than guessing around.
 //
-// Used to check whether the Android build of a game library — the ones Project Zomboid ships in
-// android/arm64-v8a/ — really provides everything its own Linux x86_64 build does. Only the ELF
-// header, the section header table and .dynsym/.dynstr are read, so a 10 MB library costs a few
-// hundred KB of I/O rather than its full size.
+// Results are kept per file, in memory and in the app's cache directory, and are trusted while
+// the file's size, mtime and inode are unchanged. When only the mtime or inode moved - the game
+// re-extracted over itself, or the file store relinked it - the content's CRC32 decides, which
+// still costs no parsing. The CRC is only taken when there is such an entry of the same size to
+// compare with, and kept from then on; a library seen for the first time is parsed, not also
+// checksummed end to end. All exports are counted but only the JNI ones ("Java_") are kept by
+// name: those are all any caller compares.
 public final class ElfSymbols {
     private static final String LOG_TAG = "ElfSymbols";
+    private static final String CACHE_FILE_NAME = "elf-analysis.json";
 
     private static final int EI_NIDENT = 16;
     private static final int ELFCLASS64 = 2;
     private static final int ELFDATA2LSB = 1;
+    private static final int EHDR_SIZE = 64;      // sizeof(Elf64_Ehdr)
     private static final int SHT_DYNSYM = 11;
+    private static final int SHT_DYNAMIC = 6;
+    private static final int SHT_NOBITS = 8;
     private static final int SHDR_SIZE = 64;      // sizeof(Elf64_Shdr)
     private static final int SYM_ENTRY_SIZE = 24; // sizeof(Elf64_Sym)
-    private static final long MAX_SECTION_BYTES = 64L * 1024 * 1024;
+    private static final int DYN_ENTRY_SIZE = 16; // sizeof(Elf64_Dyn)
+    private static final long DT_NULL = 0;
+    private static final long DT_NEEDED = 1;
+    static final int EM_X86_64 = 62;
+    static final int EM_AARCH64 = 183;
+
+    /** One library, as far as choosing and reporting on it goes. */
+    public static final class Analysis {
+        /** e_machine: {@link #EM_AARCH64}, {@link #EM_X86_64}, or whatever else the file says. */
+        public int machine;
+        /** Defined dynamic symbols, JNI or not. */
+        public int exportCount;
+        public Set<String> jniExports = new TreeSet<>();
+        public Set<String> imports = new TreeSet<>();
+        public List<String> needed = new ArrayList<>();
+        /** Null for a sound file; otherwise what is wrong with it, e.g. a section past the end. */
+        @Nullable
+        public String problem;
+
+        public String machineName() {
+            return machine == EM_AARCH64 ? "arm64" : machine == EM_X86_64 ? "x86_64" : "machine " + machine;
+        }
+    }
+
+    // The cache as stored: path -> what the file was when it was analysed, and the result.
+    private static final class Entry {
+        long size;
+        long mtimeNs;
+        long ino;
+        long crc32 = NO_CRC;
+        Analysis analysis;
+    }
+
+    // Entry.crc32 before anyone needed it. A CRC32 is never negative.
+    private static final long NO_CRC = -1;
+
+    private static Map<String, Entry> cache;
 
     private ElfSymbols() {}
 
     // Names of *defined* symbols starting with "Java_". Returns null when the file is not a
     // little-endian ELF64 or cannot be parsed — callers must treat null as "unknown" and leave the
     // library alone, never as "exports nothing".
+    @Nullable
     public static Set<String> readExportedJniSymbols(File file) {
-        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-            byte[] ident = new byte[EI_NIDENT];
-            raf.readFully(ident);
-            if (ident[0] != 0x7f || ident[1] != 'E' || ident[2] != 'L' || ident[3] != 'F') return null;
-            // Both the x86_64 Linux libs and the arm64 Android ones are ELF64 little-endian, so a
-            // single layout covers the comparison; anything else is not ours to judge.
-            if (ident[4] != ELFCLASS64 || ident[5] != ELFDATA2LSB) return null;
-
-            long shoff = readLong(raf, 0x28);      // e_shoff
-            int shentsize = readUShort(raf, 0x3A); // e_shentsize
-            int shnum = readUShort(raf, 0x3C);     // e_shnum
-            if (shoff <= 0 || shnum <= 0 || shentsize < SHDR_SIZE) return null;
-
-            byte[] shdrs = readAt(raf, shoff, (long) shnum * shentsize);
-            if (shdrs == null) return null;
-            ByteBuffer sh = ByteBuffer.wrap(shdrs).order(ByteOrder.LITTLE_ENDIAN);
-
-            for (int i = 0; i < shnum; i++) {
-                int shdr = i * shentsize;
-                if (sh.getInt(shdr + 4) != SHT_DYNSYM) continue; // sh_type
-
-                int strIdx = sh.getInt(shdr + 40); // sh_link -> the matching .dynstr
-                if (strIdx <= 0 || strIdx >= shnum) return null;
-                int strHdr = strIdx * shentsize;
-
-                byte[] symtab = readAt(raf, sh.getLong(shdr + 24), sh.getLong(shdr + 32));
-                byte[] strtab = readAt(raf, sh.getLong(strHdr + 24), sh.getLong(strHdr + 32));
-                if (symtab == null || strtab == null) return null;
-                return collectJniNames(symtab, strtab);
-            }
-            return null; // no .dynsym
+        Analysis analysis = analyze(file);
+        return analysis == null || analysis.problem != null ? null : analysis.jniExports;
+    }
+
+    /**
+     * The analysis of file, from the cache when the file is unchanged. Null when it does not
+     * exist, is not a little-endian ELF64 or cannot be read at all.
+     */
+    @Nullable
+    public static synchronized Analysis analyze(File file) {
+        StructStat stat;
+        try {
+            stat = Os.stat(file.getPath());
+        } catch (ErrnoException e) {
+            return null;
+        }
+        String key = file.getAbsolutePath();
+        long mtimeNs = stat.st_mtim.tv_sec * 1_000_000_000L + stat.st_mtim.tv_nsec;
+        Map<String, Entry> entries = cache();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.size == stat.st_size && entry.mtimeNs == mtimeNs && entry.ino == stat.st_ino) {
+            return entry.analysis;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) return null;
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            // Only a stale entry of the same size can be vouched for by the CRC.
+            boolean sameSize = entry != null && entry.size == size;
+            long crc32 = sameSize ? crc32(map) : NO_CRC;
+            Analysis analysis = sameSize && entry.crc32 != NO_CRC && entry.crc32 == crc32
+                    ? entry.analysis : parse(map);
+            if (analysis == null) return null;
+
+            Entry fresh = new Entry();
+            fresh.size = size;
+            fresh.mtimeNs = mtimeNs;
+            fresh.ino = stat.st_ino;
+            fresh.crc32 = crc32;
+            fresh.analysis = analysis;
+            entries.put(key, fresh);
+            writeCache(entries);
+            return analysis;
         } catch (IOException | RuntimeException e) {
             Log.w(LOG_TAG, "Cannot read symbols from " + file.getName() + ": " + e);
             return null;
         }
     }
 
-    private static Set<String> collectJniNames(byte[] symtab, byte[] strtab) {
-        ByteBuffer sym = ByteBuffer.wrap(symtab).order(ByteOrder.LITTLE_ENDIAN);
-        Set<String> names = new HashSet<>();
-        for (int off = 0; off + SYM_ENTRY_SIZE <= symtab.length; off += SYM_ENTRY_SIZE) {
-            if (sym.getShort(off + 6) == 0) continue; // st_shndx == SHN_UNDEF: imported, not exported
-            String name = stringAt(strtab, sym.getInt(off)); // st_name
-            if (name != null && name.startsWith("Java_")) names.add(name);
+    // -------------------- PARSING --------------------
+
+    @Nullable
+    private static Analysis parse(MappedByteBuffer elf) {
+        int length = elf.capacity();
+        if (length < EHDR_SIZE) return null;
+        if (elf.get(0) != 0x7f || elf.get(1) != 'E' || elf.get(2) != 'L' || elf.get(3) != 'F') return null;
+        // Both the x86_64 Linux libs and the arm64 Android ones are ELF64 little-endian, so a
+        // single layout covers the comparison; anything else is not ours to judge.
+        if (elf.get(4) != ELFCLASS64 || elf.get(5) != ELFDATA2LSB) return null;
+
+        Analysis analysis = new Analysis();
+        analysis.machine = elf.getShort(0x12) & 0xFFFF; // e_machine
+        long shoff = elf.getLong(0x28);                 // e_shoff
+        int shentsize = elf.getShort(0x3A) & 0xFFFF;    // e_shentsize
+        int shnum = elf.getShort(0x3C) & 0xFFFF;        // e_shnum
+        if (shoff <= 0 || shnum <= 0 || shentsize < SHDR_SIZE) {
+            analysis.problem = "no section headers";
+            return analysis;
         }
-        return names;
+        if (shoff + (long) shnum * shentsize > length) {
+            analysis.problem = "section headers past the end of the file (" + length + " bytes)";
+            return analysis;
+        }
+
+        int dynsym = -1;
+        int dynamic = -1;
+        for (int i = 0; i < shnum; i++) {
+            int shdr = (int) (shoff + (long) i * shentsize);
+            int type = elf.getInt(shdr + 4);        // sh_type
+            long offset = elf.getLong(shdr + 24);   // sh_offset
+            long size = elf.getLong(shdr + 32);     // sh_size
+            if (type != SHT_NOBITS && (offset < 0 || size < 0 || offset + size > length)) {
+                analysis.problem = "section " + i + " ends at " + (offset + size) + ", past the end of the file ("
+                        + length + " bytes) - truncated?";
+                return analysis;
+            }
+            if (type == SHT_DYNSYM && dynsym < 0) dynsym = shdr;
+            if (type == SHT_DYNAMIC && dynamic < 0) dynamic = shdr;
+        }
+        if (dynsym < 0) {
+            analysis.problem = "no .dynsym";
+            return analysis;
+        }
+
+        int[] strtab = linkedSection(elf, shoff, shentsize, shnum, dynsym);
+        if (strtab == null) {
+            analysis.problem = "bad .dynstr link";
+            return analysis;
+        }
+        int symOffset = (int) elf.getLong(dynsym + 24);
+        int symEnd = symOffset + (int) elf.getLong(dynsym + 32);
+        for (int off = symOffset; off + SYM_ENTRY_SIZE <= symEnd; off += SYM_ENTRY_SIZE) {
+            String name = stringAt(elf, strtab, elf.getInt(off)); // st_name
+            if (name == null || name.isEmpty()) continue;
+            if (elf.getShort(off + 6) == 0) {       // st_shndx == SHN_UNDEF: imported, not exported
+                analysis.imports.add(name);
+            } else {
+                analysis.exportCount++;
+                if (name.startsWith("Java_")) analysis.jniExports.add(name);
+            }
+        }
+
+        if (dynamic >= 0) {
+            int[] dynstr = linkedSection(elf, shoff, shentsize, shnum, dynamic);
+            int dynOffset = (int) elf.getLong(dynamic + 24);
+            int dynEnd = dynOffset + (int) elf.getLong(dynamic + 32);
+            for (int off = dynOffset; dynstr != null && off + DYN_ENTRY_SIZE <= dynEnd; off += DYN_ENTRY_SIZE) {
+                long tag = elf.getLong(off);
+                if (tag == DT_NULL) break;
+                if (tag != DT_NEEDED) continue;
+                String name = stringAt(elf, dynstr, (int) elf.getLong(off + 8));
+                if (name != null) analysis.needed.add(name);
+            }
+        }
+        return analysis;
+    }
+
+    // {offset, end} of the string table a section's sh_link names; already bounds-checked.
+    @Nullable
+    private static int[] linkedSection(MappedByteBuffer elf, long shoff, int shentsize, int shnum, int shdr) {
+        int link = elf.getInt(shdr + 40); // sh_link
+        if (link <= 0 || link >= shnum) return null;
+        int linked = (int) (shoff + (long) link * shentsize);
+        int offset = (int) elf.getLong(linked + 24);
+        return new int[] { offset, offset + (int) elf.getLong(linked + 32) };
+    }
+
+    @Nullable
+    private static String stringAt(MappedByteBuffer elf, int[] strtab, int offset) {
+        if (offset < 0 || strtab[0] + (long) offset >= strtab[1]) return null;
+        int start = strtab[0] + offset;
+        int end = start;
+        while (end < strtab[1] && elf.get(end) != 0) end++;
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = elf.get(start + i);
+        return new String(bytes, StandardCharsets.US_ASCII);
     }
 
-    private static String stringAt(byte[] strtab, int offset) {
-        if (offset < 0 || offset >= strtab.length) return null;
-        int end = offset;
-        while (end < strtab.length && strtab[end] != 0) end++;
-        return new String(strtab, offset, end - offset, StandardCharsets.US_ASCII);
+    private static long crc32(MappedByteBuffer map) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(map.duplicate());
+        return crc32.getValue();
     }
 
-    private static byte[] readAt(RandomAccessFile raf, long offset, long size) throws IOException {
-        if (offset <= 0 || size <= 0 || size > MAX_SECTION_BYTES) return null;
-        byte[] buf = new byte[(int) size];
-        raf.seek(offset);
-        raf.readFully(buf);
-        return buf;
+    // -------------------- CACHE --------------------
+
+    private static Map<String, Entry> cache() {
+        if (cache != null) return cache;
+        cache = new HashMap<>();
+        File file = cacheFile();
+        if (file == null || !file.isFile()) return cache;
+        try (Reader reader = new FileReader(file)) {
+            Map<String, Entry> stored = new Gson().fromJson(reader, new TypeToken<Map<String, Entry>>() {}.getType());
+            if (stored != null) {
+                for (Map.Entry<String, Entry> entry : stored.entrySet()) {
+                    if (entry.getValue() != null && entry.getValue().analysis != null) {
+                        cache.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            Log.w(LOG_TAG, "Ignoring unreadable " + file + ": " + e);
+        }
+        return cache;
     }
 
-    private static long readLong(RandomAccessFile raf, long offset) throws IOException {
-        byte[] b = new byte[8];
-        raf.seek(offset);
-        raf.readFully(b);
-        return ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    // Every analysis is written as soon as it is made; there are a few dozen libraries at most.
+    // Entries for files that are gone are dropped on the way.
+    private static void writeCache(Map<String, Entry> entries) {
+        File file = cacheFile();
+        if (file == null) return;
+        entries.keySet().removeIf(path -> !new File(path).exists());
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (Writer writer = new FileWriter(tmp)) {
+                new Gson().toJson(entries, writer);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to write " + file + ": " + e);
+            tmp.delete();
+        }
     }
 
-    private static int readUShort(RandomAccessFile raf, long offset) throws IOException {
-        byte[] b = new byte[2];
-        raf.seek(offset);
-        raf.readFully(b);
-        return ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN).getShort() & 0xFFFF;
+    @Nullable
+    private static File cacheFile() {
+        AppStorage storage = AppStorage.getSingleton();
+        return storage == null ? null : new File(storage.getCachePath(), CACHE_FILE_NAME);
     }
 }
@@ -3,113 +3,268 @@ package com.zomdroid;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
+import android.os.ParcelFileDescriptor;
 import android.provider.DocumentsContract;
 import android.provider.MediaStore;
 import android.provider.OpenableColumns;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.zomdroid.game.GameFileStore;
 
 import org.apache.commons.compress.archivers.ArchiveEntry;
-import org.apache.commons.compress.archivers.ArchiveInputStream;
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
 import org.apache.commons.io.IOUtils;
 import org.jetbrains.annotations.NotNull;
+import org.tukaani.xz.SeekableXZInputStream;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.CRC32;
 
 public class FileUtils {
+    private static final String LOG_TAG = FileUtils.class.getName();
 
     static void extractTarXzToDisk(@NonNull InputStream inStream, @NonNull String destPath,
                                    TaskProgressListener taskProgressListener, long tarXzSize) throws IOException {
         XZCompressorInputStream xzCompressorInStream = new XZCompressorInputStream(inStream);
         extractTarToDisk(xzCompressorInStream, destPath, taskProgressListener, tarXzSize);
-/*        TarArchiveInputStream tarArchiveInStream = new TarArchiveInputStream(xzCompressorInStream);
-        TarArchiveEntry entry;
-        while ((entry = tarArchiveInStream.getNextEntry()) != null) {
-            extractArchiveEntry(tarArchiveInStream, entry, destPath);
-        }*/
+    }
+
+    // Receives the decoded tar of an asset along with its uncompressed size (0 when unknown).
+    interface TarConsumer {
+        void accept(@NonNull InputStream tarInStream, long tarSize) throws IOException;
+    }
+
+    // Decodes a .tar.xz bundled in the APK's assets and hands the tar to consumer. Assets stored
+    // uncompressed (see noCompress in build.gradle.kts) can be opened as a file descriptor, and
+    // then a bundle compressed in blocks decodes on several cores through ParallelXzInputStream,
+    // with the real uncompressed size known up front. A compressed asset can only be streamed,
+    // and decodes as it always has.
+    static void decodeTarXzAsset(@NonNull Context context, @NonNull String assetPath,
+                                 @NonNull TarConsumer consumer) throws IOException {
+        AssetFileDescriptor afd;
+        try {
+            afd = context.getAssets().openFd(assetPath);
+        } catch (FileNotFoundException e) {
+            // openFd() refuses assets that aapt compressed - the only reason it fails for one
+            // that open() can read.
+            Log.w(LOG_TAG, assetPath + " is compressed in the APK, decoding it on one thread");
+            try (InputStream inStream = context.getAssets().open(assetPath)) {
+                consumer.accept(new XZCompressorInputStream(inStream), 0);
+            }
+            return;
+        }
+        try (FileInputStream fileInStream = afd.createInputStream();
+             FileChannel channel = fileInStream.getChannel()) {
+            SeekableXZInputStream xzInStream = ParallelXzInputStream.openSeekable(channel,
+                    afd.getStartOffset(), afd.getLength());
+            long tarSize = xzInStream.length();
+            ParallelXzInputStream parallelInStream = ParallelXzInputStream.wrap(xzInStream, channel,
+                    afd.getStartOffset(), afd.getLength());
+            if (parallelInStream == null) {
+                Log.i(LOG_TAG, assetPath + " has " + xzInStream.getBlockCount()
+                        + " xz block(s) of up to " + xzInStream.getLargestBlockSize() + " bytes, decoding it on one thread");
+            }
+            try (InputStream inStream = parallelInStream != null ? parallelInStream : xzInStream) {
+                consumer.accept(inStream, tarSize);
+            }
+        } finally {
+            afd.close();
+        }
     }
 
     static void extractTarToDisk(@NonNull InputStream inStream, @NonNull String destPath,
                                  TaskProgressListener taskProgressListener, long tarSize) throws IOException {
         TarArchiveInputStream tarArchiveInStream = new TarArchiveInputStream(new BufferedInputStream(inStream, 1024 * 1024));
-        TarArchiveEntry entry;
-        while ((entry = tarArchiveInStream.getNextEntry()) != null) {
-            extractArchiveEntry(tarArchiveInStream, entry, destPath);
-            if (taskProgressListener != null) {
-                int progress = -1;
-                if (tarSize > 0)
-                    progress = (int) ((tarArchiveInStream.getBytesRead() / (float) tarSize) * 100);
-                taskProgressListener.onProgressUpdate(null, progress, 100);
-            }
-        }
+        PipelinedExtractor.extract(tarArchiveInStream, PipelinedExtractor.under(destPath),
+                taskProgressListener, tarSize);
     }
 
     static void extractZipToDisk(@NonNull InputStream inStream, @NonNull String destPath,
                                  TaskProgressListener taskProgressListener, long zipSize) throws IOException {
+        extractZipToDisk(inStream, PipelinedExtractor.under(destPath), taskProgressListener, zipSize);
+    }
+
+    // Streams a zip, writing each entry wherever target says - or nowhere, for a null path.
+    static void extractZipToDisk(@NonNull InputStream inStream, @NonNull PipelinedExtractor.EntryTarget target,
+                                 TaskProgressListener taskProgressListener, long zipSize) throws IOException {
         ZipArchiveInputStream zipArchiveInStream = new ZipArchiveInputStream(new BufferedInputStream(inStream, 1024 * 1024));
-        ZipArchiveEntry entry;
-        while ((entry = zipArchiveInStream.getNextEntry()) != null) {
-            extractArchiveEntry(zipArchiveInStream, entry, destPath);
-            if (taskProgressListener != null) {
-                int progress = -1;
-                if (zipSize > 0)
-                    progress = (int) ((zipArchiveInStream.getBytesRead() / (float) zipSize) * 100);
-                taskProgressListener.onProgressUpdate(null, progress, 100);
-            }
+        PipelinedExtractor.extract(zipArchiveInStream, target, taskProgressListener, zipSize);
+    }
+
+    // Decides where the entries of a zip go, once the names of all of them are known.
+    interface ZipLayout {
+        @NonNull
+        PipelinedExtractor.EntryTarget targetFor(@NonNull List<String> entryNames);
+    }
+
+    // Extracts a zip picked through SAF. Most providers hand out a real file descriptor, and then
+    // the archive is extracted entry-parallel by ParallelZipExtractor; providers that can only
+    // stream (a pipe from a cloud app, for one) fall back to the sequential InputStream path.
+    static void extractZipToDisk(@NonNull ContentResolver contentResolver, @NonNull Uri zipUri,
+                                 @NonNull String destPath, TaskProgressListener taskProgressListener) throws IOException {
+        PipelinedExtractor.EntryTarget target = PipelinedExtractor.under(destPath);
+        extractZipToDisk(contentResolver, zipUri, entryNames -> target, null, taskProgressListener);
+    }
+
+    // Like the above, with every entry placed by layout - which sees the whole list of names
+    // before the first byte is written. With a store, entries it holds are linked rather than
+    // extracted; only the seekable path can do that, since a stream cannot skip an entry's data
+    // without reading it anyway.
+    static void extractZipToDisk(@NonNull ContentResolver contentResolver, @NonNull Uri zipUri,
+                                 @NonNull ZipLayout layout, @Nullable GameFileStore store,
+                                 TaskProgressListener taskProgressListener) throws IOException {
+        if (extractSeekableZip(contentResolver, zipUri, layout, store, taskProgressListener)) return;
+        // A stream only names an entry when it gets there, so the names come from a first pass
+        // that reads the archive and writes nothing. Reading twice is the price of writing once.
+        // The same pass learns every entry's size: an entry that only states it in a data
+        // descriptor has it filled in once the stream has moved past the entry's data.
+        List<ArchiveEntry> listedEntries;
+        try (InputStream inStream = contentResolver.openInputStream(zipUri)) {
+            if (inStream == null) throw new IOException("openInputStream returned null for " + zipUri);
+            listedEntries = listStreamedZip(inStream);
         }
+        List<String> entryNames = new ArrayList<>();
+        for (ArchiveEntry entry : listedEntries) entryNames.add(entry.getName());
+        PipelinedExtractor.EntryTarget target = layout.targetFor(entryNames);
+        requireSpaceFor(listedEntries, target);
+        streamZip(contentResolver, zipUri, target, taskProgressListener);
     }
 
-    static void extractArchiveEntry(ArchiveInputStream<?> archiveInStream, ArchiveEntry archiveEntry, String destPath) throws IOException {
-        if (!archiveInStream.canReadEntryData(archiveEntry)) {
-            throw new RuntimeException("Failed to read archive entry");
+    static void extractZipToDisk(@NonNull File zip, @NonNull String destPath,
+                                 TaskProgressListener taskProgressListener) throws IOException {
+        PipelinedExtractor.EntryTarget target = PipelinedExtractor.under(destPath);
+        try (FileChannel channel = FileChannel.open(zip.toPath(), StandardOpenOption.READ)) {
+            if (extractSeekableZip(channel, entryNames -> target, null, taskProgressListener)) return;
         }
-        File file = new File(destPath + "/" + archiveEntry.getName());
-        if (archiveEntry.isDirectory()) {
-            if (!file.isDirectory() && !file.mkdirs()) {
-                throw new IOException("Failed to create directory " + file);
-            }
-        } else {
-            File parent = file.getParentFile();
-            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
-                throw new IOException("Failed to create directory " + parent);
-            }
-            long written;
-            try (OutputStream fileOutStream = new BufferedOutputStream(new FileOutputStream(file), 1024 * 1024)) {
-                // copyLarge, not copy: copy() returns an int and reports -1 once the count passes
-                // Integer.MAX_VALUE, which would read as a truncation on a multi-GB entry.
-                written = IOUtils.copyLarge(archiveInStream, fileOutStream);
-            }
-            // An extraction cut short - storage filled up, the process killed - used to leave a
-            // shorter file behind and the instance still looked installed. The damage only
-            // surfaces much later and far from its cause: a truncated native library fails the
-            // Android linker's own bounds check at load time ("invalid shdr offset/size"), which
-            // is how one player's game stopped starting on 1.4.8. Fail here instead, where the
-            // cause is still visible. Some streamed archives do not state an entry size, so only
-            // check when the archive gives one.
-            long expectedSize = archiveEntry.getSize();
-            if (expectedSize >= 0 && written != expectedSize) {
-                //noinspection ResultOfMethodCallIgnored
-                file.delete();
-                throw new IOException("Truncated extraction of " + archiveEntry.getName()
-                        + ": wrote " + written + " of " + expectedSize + " bytes");
-            }
+        // Same first pass as for a streamed SAF archive: the compressed size says nothing
+        // about how much the entries take once inflated.
+        try (InputStream inStream = new FileInputStream(zip)) {
+            requireSpaceFor(listStreamedZip(inStream), target);
+        }
+        try (InputStream inStream = new FileInputStream(zip)) {
+            extractZipToDisk(inStream, target, taskProgressListener, zip.length());
+        }
+    }
+
+    // Reads a zip through without writing anything, returning its entries. A stream only sizes
+    // an entry that keeps its size in a data descriptor once it has moved past the entry's data,
+    // so the sizes are complete only after the whole archive was read.
+    private static List<ArchiveEntry> listStreamedZip(@NonNull InputStream inStream) throws IOException {
+        List<ArchiveEntry> listedEntries = new ArrayList<>();
+        ZipArchiveInputStream zipArchiveInStream = new ZipArchiveInputStream(new BufferedInputStream(inStream, 1024 * 1024));
+        ArchiveEntry entry;
+        while ((entry = zipArchiveInStream.getNextEntry()) != null) listedEntries.add(entry);
+        return listedEntries;
+    }
+
+    // Adds up the uncompressed sizes of the entries target writes and checks they fit on the
+    // storage the first of them goes to.
+    private static void requireSpaceFor(@NonNull List<ArchiveEntry> listedEntries,
+                                        @NonNull PipelinedExtractor.EntryTarget target) throws IOException {
+        long neededBytes = 0;
+        String firstPath = null;
+        for (ArchiveEntry entry : listedEntries) {
+            if (entry.isDirectory() || entry.getSize() <= 0) continue;
+            String path = target.pathFor(entry);
+            if (path == null) continue;
+            if (firstPath == null) firstPath = path;
+            neededBytes += entry.getSize();
+        }
+        if (firstPath != null) DiskSpace.require(new File(firstPath).getParentFile(), neededBytes);
+    }
+
+    private static void streamZip(ContentResolver contentResolver, Uri zipUri, PipelinedExtractor.EntryTarget target,
+                                  TaskProgressListener taskProgressListener) throws IOException {
+        try (InputStream inStream = contentResolver.openInputStream(zipUri)) {
+            if (inStream == null) throw new IOException("openInputStream returned null for " + zipUri);
+            extractZipToDisk(inStream, target, taskProgressListener,
+                    queryFileSize(contentResolver, zipUri));
+        }
+    }
+
+    // False when the provider cannot give us a seekable file, or the archive has no readable
+    // central directory; nothing was written then.
+    private static boolean extractSeekableZip(ContentResolver contentResolver, Uri zipUri, ZipLayout layout,
+                                              @Nullable GameFileStore store,
+                                              TaskProgressListener taskProgressListener) throws IOException {
+        ParcelFileDescriptor pfd = contentResolver.openFileDescriptor(zipUri, "r");
+        if (pfd == null) return false;
+        // getStatSize() is -1 for anything fstat() does not call a regular file - exactly the
+        // descriptors we cannot seek in.
+        if (pfd.getStatSize() < 0) {
+            pfd.close();
+            return false;
+        }
+        try (FileInputStream fileInStream = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
+             FileChannel channel = fileInStream.getChannel()) {
+            return extractSeekableZip(channel, layout, store, taskProgressListener);
+        }
+    }
+
+    // False when the archive has no readable central directory; nothing was written then, and
+    // the caller streams the archive instead. Failures past that point are real and propagate.
+    private static boolean extractSeekableZip(FileChannel channel, ZipLayout layout, @Nullable GameFileStore store,
+                                              TaskProgressListener taskProgressListener) throws IOException {
+        ZipFile zipFile;
+        try {
+            zipFile = ParallelZipExtractor.open(channel);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "No usable central directory, extracting as a stream: " + e);
+            return false;
+        }
+        try {
+            List<String> entryNames = new ArrayList<>();
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+            while (entries.hasMoreElements()) entryNames.add(entries.nextElement().getName());
+            ParallelZipExtractor.extract(zipFile, layout.targetFor(entryNames), store, taskProgressListener);
+        } finally {
+            zipFile.close();
+        }
+        return true;
+    }
+
+    static void checkEntryComplete(File file, String entryName, long written, long expectedSize) throws IOException {
+        // An extraction cut short - storage filled up, the process killed - used to leave a
+        // shorter file behind and the instance still looked installed. The damage only
+        // surfaces much later and far from its cause: a truncated native library fails the
+        // Android linker's own bounds check at load time ("invalid shdr offset/size"), which
+        // is how one player's game stopped starting on 1.4.8. Fail here instead, where the
+        // cause is still visible. Some streamed archives do not state an entry size, so only
+        // check when the archive gives one.
+        if (expectedSize >= 0 && written != expectedSize) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            throw new IOException("Truncated extraction of " + entryName
+                    + ": wrote " + written + " of " + expectedSize + " bytes");
         }
     }
 
@@ -179,8 +334,10 @@ public class FileUtils {
 
     public static long generateCRC32ForAsset(@NonNull Context context, @NonNull String assetPath) throws IOException {
         CRC32 crc32 = new CRC32();
-        try (InputStream inputStream = new BufferedInputStream(context.getAssets().open(assetPath))) {
-            byte[] buffer = new byte[8192];
+        // Read straight into one large buffer: the bundles are hundreds of MB, and going through a
+        // BufferedInputStream with an 8 KB array only added a copy and a call per 8 KB.
+        try (InputStream inputStream = context.getAssets().open(assetPath)) {
+            byte[] buffer = new byte[256 * 1024];
             int bytesRead;
             while ((bytesRead = inputStream.read(buffer)) != -1) {
                 crc32.update(buffer, 0, bytesRead);
@@ -189,6 +346,47 @@ public class FileUtils {
         return crc32.getValue();
     }
 
+    // CRC32 of several assets at once, one thread per asset. The bundles differ a lot in size, so
+    // the pass takes as long as the largest one rather than as long as all of them together.
+    public static HashMap<String, Long> generateCRC32ForAssets(@NonNull Context context, @NonNull String... assetPaths) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(assetPaths.length, Runtime.getRuntime().availableProcessors())));
+        try {
+            HashMap<String, Future<Long>> pending = new HashMap<>();
+            for (String assetPath : assetPaths) {
+                pending.put(assetPath, pool.submit(() -> generateCRC32ForAsset(context, assetPath)));
+            }
+            HashMap<String, Long> crcs = new HashMap<>();
+            for (String assetPath : assetPaths) {
+                try {
+                    crcs.put(assetPath, pending.get(assetPath).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("CRC32 of " + assetPath + " interrupted", e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    throw new IOException("CRC32 of " + assetPath + " failed", cause);
+                }
+            }
+            return crcs;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Size of an asset without reading it. Stored assets report it through their descriptor;
+    // for a compressed one, available() on a fresh asset stream is its full uncompressed size.
+    public static long assetLength(@NonNull Context context, @NonNull String assetPath) throws IOException {
+        try (AssetFileDescriptor afd = context.getAssets().openFd(assetPath)) {
+            return afd.getLength();
+        } catch (FileNotFoundException e) {
+            try (InputStream inputStream = context.getAssets().open(assetPath)) {
+                return inputStream.available();
+            }
+        }
+    }
+
     public static boolean isValidFilenameStrict(String filename) {
         if (filename == null || filename.trim().isEmpty()) return false;
 
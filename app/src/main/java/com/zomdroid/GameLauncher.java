@@ -16,37 +16,57 @@ import java.util.ArrayList;
 public class GameLauncher {
     public static void launch(GameInstance gameInstance) throws ErrnoException {
 
-        // B42: make sure ShaderUnit.class carries the combineShaderSources patch (needed by
-        // NG_GL4ES). Normally done at instance creation; doing it here too picks up instances
-        // created by older launcher versions whose md5-table didn't know their game version.
-        // Self-quenching: once the .bak exists this is a single stat call.
-        com.zomdroid.patch.ShaderUnitPatchApplier.applyIfNeeded(gameInstance);
-        // Also covers Build 42.20+ instances installed with an older launcher.
-        com.zomdroid.patch.FmodLoadPatchApplier.applyIfNeeded(gameInstance);
-        // Bink is only provided for x86_64 and cannot be loaded by the ARM64 HotSpot VM. Avoid a
-        // full NoClassDefFoundError stack trace from UI panels on every rendered frame.
-        com.zomdroid.patch.BinkVideoPatchApplier.applyIfNeeded(gameInstance);
+        // Each workaround below is skipped when the files it depends on are exactly as its last
+        // complete run left them (see LaunchPatchState); the log has the time each step took.
+        LaunchPatchState patchState = LaunchPatchState.load(gameInstance);
+
+        // Every class-file patch in one pass: B42's ShaderUnit combineShaderSources (needed by
+        // NG_GL4ES), 42.15+'s ZNetStatistics field names for the stale Android RakNet
+        // (NoSuchFieldError on statistics-enabled servers otherwise), and 42.20+'s redundant
+        // Android FMOD loads and x86_64-only Bink videos. Normally done at instance creation;
+        // doing it here too picks up instances created by older launcher versions, or updated in
+        // place since. Once everything is patched this is a read of four classes.
+        //
+        // With in-process patching on, the same rules run inside the game JVM instead, as its
+        // classes load; the launch only puts back whatever an earlier on-disk run changed, and
+        // after that never writes to the game tree for a class patch again.
+        String patchAgentArgs = null;
+        if (com.zomdroid.patch.ClassPatches.patchesInProcess()) {
+            patchAgentArgs = com.zomdroid.patch.ClassPatches.agentRules(gameInstance);
+            patchState.run("class-restore", () -> com.zomdroid.patch.ClassPatches.inputs(gameInstance),
+                    () -> com.zomdroid.patch.ClassPatches.restoreAll(gameInstance));
+        } else {
+            patchState.run("class-patches", () -> com.zomdroid.patch.ClassPatches.inputs(gameInstance),
+                    () -> com.zomdroid.patch.ClassPatches.applyAll(gameInstance));
+        }
         // Heal instances a previous launcher version stubbed: put the original LightingJNI.class
         // back so the emulated Linux Lighting (which really exports squareSetLightTransmission)
         // gets the native call instead of a leftover Java no-op. Running at launch covers already
         // installed instances without reinstalling the game.
-        com.zomdroid.patch.LightingTransmissionPatchApplier.restoreOriginalIfStubbed(gameInstance);
-        // Restore the two ZNetStatistics field names the stale Android RakNet still looks up
-        // (renamed in 42.15, native never rebuilt -> NoSuchFieldError on statistics-enabled
-        // servers). The installer swaps a pre-patched class into NEW instances; running here too
-        // covers instances created by an older launcher, without reinstalling the game.
-        com.zomdroid.patch.ZNetStatisticsPatchApplier.applyIfNeeded(gameInstance);
+        patchState.run("lighting-restore",
+                () -> com.zomdroid.patch.LightingTransmissionPatchApplier.restoreInputs(gameInstance),
+                () -> com.zomdroid.patch.LightingTransmissionPatchApplier.restoreOriginalIfStubbed(gameInstance));
         // Select safe native implementations after the class-level patches are known to be ready.
-        com.zomdroid.patch.NativeLibraryWorkarounds.disableIncompleteNativeLibraries(gameInstance);
+        patchState.run("native-libraries", () -> com.zomdroid.patch.NativeLibraryWorkarounds.inputs(gameInstance),
+                () -> {
+                    com.zomdroid.patch.NativeLibraryWorkarounds.disableIncompleteNativeLibraries(gameInstance);
+                    return true;
+                });
         // Build 42.12+'s ARM64 PathFind implementation is under test after reports of characters
         // choosing incorrect interaction routes. Use PZ's own Java fallback without affecting
         // Build 41 or the older pre-fat-jar Build 42 releases.
-        com.zomdroid.patch.PathfindingWorkaround.forceJavaPathfinderFor4212Plus(gameInstance);
+        patchState.run("java-pathfinder", () -> com.zomdroid.patch.PathfindingWorkaround.inputs(gameInstance),
+                () -> com.zomdroid.patch.PathfindingWorkaround.forceJavaPathfinderFor4212Plus(gameInstance));
         // Re-apply the 42.13 case workaround against where this instance lives right now. The mod
         // aliases and the doubled path spell out an absolute location, so they go stale when an
         // instance is renamed or copied; this also reaches mods installed before any of it existed,
         // and sweeps the instance-level aliases b39a80a briefly shipped.
-        com.zomdroid.patch.LowercasePathAliases.repair(gameInstance);
+        patchState.run("case-aliases", () -> com.zomdroid.patch.LowercasePathAliases.inputs(gameInstance),
+                () -> {
+                    com.zomdroid.patch.LowercasePathAliases.repair(gameInstance);
+                    return true;
+                });
+        patchState.save();
         // Retire our bundled jassimp (built from Assimp 5.4.3) by taking it off java.library.path.
         // Each game version ships the importer its models were authored against - B41's x86_64 is
         // assimp 5.0.1, 42.12+ adds TIS's own ARM64 5.3.1 - and the linker routes libjassimp64 to
@@ -73,7 +93,7 @@ public class GameLauncher {
         // the stock 5.4.3 that worked on 1.4.7v4, and the game's x86_64 through box64 - and all
         // three failed identically, "bridge done" never printed. The actual culprit was our own
         // per-entry lowercase aliases inflating the mod file table; with those off, the scene plays
-        // on the game's own importer. See LowercasePathAliases.PER_ENTRY_ALIASES_ENABLED.
+        // on the game's own importer. See LowercasePathAliases.LOWERCASE_MIRROR_ENABLED.
         //
         // So 42.12+ keeps TIS's native ARM64 build: it is what shipped in 1.4.8, it is what fixed
         // the KI5 hoods and the hair, and it is faster than the emulated route. Swapping a working
@@ -222,6 +242,11 @@ public class GameLauncher {
             }
         }
 
+        if (patchAgentArgs != null) {
+            jvmArgs.add("-javaagent:" + com.zomdroid.patch.ClassPatches.agentJar().getAbsolutePath()
+                    + "=" + patchAgentArgs);
+        }
+
         jvmArgs.add("-Dorg.lwjgl.opengl.libname=" + LauncherPreferences.requireSingleton().getRenderer().libName);
         jvmArgs.add("-Dzomdroid.renderer=" + LauncherPreferences.requireSingleton().getRenderer().name());
         // Presence of backup.dir is what arms the F10 backup in the agent. Build 42 only: the
@@ -0,0 +1,235 @@
+package com.zomdroid;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.zomdroid.game.GameInstance;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+// What an instance install has already done, so that an install the system killed halfway can
+// pick up where it stopped instead of starting over.
+//
+// Inflating a 5 GB game zip on a 6 GB phone is exactly when lmkd goes looking for a process to
+// kill, and it used to leave an instance with half a game in it that could only be deleted and
+// created again - another ten minutes of extraction that would likely be killed the same way.
+// Now every entry written and every setup step finished is appended to a journal next to the
+// instance. A resumed install skips the entries whose (size, CRC32) recorded here still match
+// the archive and the file on disk, and the steps already recorded as done.
+//
+// The journal also notes whether a native libraries archive was chosen alongside the game, since
+// that grant dies with the process too: a resume has to ask for it again, or its step would run
+// without it and be recorded as done.
+//
+// Lines are appended as the work completes and reach the kernel right away; a killed process
+// loses nothing the kernel already has. The journal is removed once the install finishes, so its
+// presence alone marks an instance whose install can be resumed.
+final class InstallJournal {
+    private static final String LOG_TAG = InstallJournal.class.getName();
+    static final String FILE_NAME = ".zomdroid-install-journal";
+
+    private static final String ARCHIVE = "archive";
+    private static final String ENTRY = "entry";
+    private static final String STAGE = "stage";
+    private static final String NATIVE_LIBS = "native-libs";
+
+    private static final class EntryRecord {
+        final long size;
+        final long crc32;
+
+        EntryRecord(long size, long crc32) {
+            this.size = size;
+            this.crc32 = crc32;
+        }
+    }
+
+    private final File file;
+    private final String basePath;
+    private final HashMap<String, EntryRecord> entries = new HashMap<>();
+    private final Set<String> stages = new HashSet<>();
+    private boolean withNativeLibs;
+    private Writer writer;
+
+    private InstallJournal(File file, String basePath) {
+        this.file = file;
+        this.basePath = basePath;
+    }
+
+    static boolean exists(@NonNull GameInstance gameInstance) {
+        return new File(gameInstance.getHomePath(), FILE_NAME).isFile();
+    }
+
+    // The journal of gameInstance's interrupted install, read only; null when there is none.
+    @Nullable
+    static InstallJournal peek(@NonNull GameInstance gameInstance) {
+        InstallJournal journal = new InstallJournal(new File(gameInstance.getHomePath(), FILE_NAME),
+                gameInstance.getGamePath());
+        return journal.read() != null ? journal : null;
+    }
+
+    // Opens the journal of gameInstance's install from the archive of archiveSize bytes (-1 when
+    // the provider does not say). A journal left by an install from another archive is of no use:
+    // its game files are wiped along with it, since the new archive would only be laid over them.
+    // withNativeLibs is whether a native libraries archive was chosen; only a fresh journal takes
+    // it, a resumed one keeps what the first attempt recorded.
+    @NonNull
+    static InstallJournal open(@NonNull GameInstance gameInstance, long archiveSize, boolean withNativeLibs)
+            throws IOException {
+        InstallJournal journal = new InstallJournal(new File(gameInstance.getHomePath(), FILE_NAME),
+                gameInstance.getGamePath());
+        Long recordedSize = journal.read();
+        if (recordedSize != null && archiveSize >= 0 && recordedSize >= 0 && recordedSize != archiveSize) {
+            Log.w(LOG_TAG, "Journal is for another archive (" + recordedSize + " bytes, now " + archiveSize
+                    + "), installing from scratch");
+            File gameDir = new File(journal.basePath);
+            if (gameDir.exists()) FileUtils.deleteDirectory(gameDir);
+            if (!gameDir.mkdirs()) throw new IOException("Failed to create directory " + gameDir);
+            journal.entries.clear();
+            journal.stages.clear();
+            recordedSize = null;
+        }
+        boolean fresh = recordedSize == null;
+        journal.writer = new FileWriter(journal.file, !fresh);
+        if (fresh) {
+            journal.append(ARCHIVE + "\t" + archiveSize);
+            journal.withNativeLibs = withNativeLibs;
+            if (withNativeLibs) journal.append(NATIVE_LIBS);
+        } else Log.i(LOG_TAG, "Resuming install: " + journal.entries.size() + " entries and "
+                + journal.stages.size() + " steps already done");
+        return journal;
+    }
+
+    // The archive size the journal was started for, or null when there is no usable journal.
+    // Torn last lines (the process died mid-write) are ignored like any other unreadable line.
+    @Nullable
+    private Long read() {
+        if (!file.isFile()) return null;
+        Long archiveSize = null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                try {
+                    if (fields[0].equals(ARCHIVE) && fields.length == 2) {
+                        archiveSize = Long.parseLong(fields[1]);
+                    } else if (fields[0].equals(ENTRY) && fields.length == 4) {
+                        entries.put(fields[3], new EntryRecord(Long.parseLong(fields[1]),
+                                Long.parseLong(fields[2], 16)));
+                    } else if (fields[0].equals(STAGE) && fields.length == 2) {
+                        stages.add(fields[1]);
+                    } else if (fields[0].equals(NATIVE_LIBS) && fields.length == 1) {
+                        withNativeLibs = true;
+                    }
+                } catch (NumberFormatException ignored) {
+                    // A torn line; whatever it recorded is simply done again.
+                }
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Ignoring unreadable " + file + ": " + e);
+            entries.clear();
+            stages.clear();
+            withNativeLibs = false;
+            return null;
+        }
+        return archiveSize;
+    }
+
+    boolean hasStage(@NonNull String stage) {
+        return stages.contains(stage);
+    }
+
+    // True when the install was started with a native libraries archive.
+    boolean withNativeLibs() {
+        return withNativeLibs;
+    }
+
+    synchronized void stageDone(@NonNull String stage) throws IOException {
+        stages.add(stage);
+        append(STAGE + "\t" + stage);
+    }
+
+    // Wraps target so that entries already extracted are skipped and every entry it writes is
+    // recorded. Only entries under the instance's game directory are tracked.
+    @NonNull
+    PipelinedExtractor.EntryTarget track(@NonNull PipelinedExtractor.EntryTarget target) {
+        return new PipelinedExtractor.EntryTarget() {
+            @Nullable
+            @Override
+            public String pathFor(@NonNull ArchiveEntry entry) {
+                String path = target.pathFor(entry);
+                if (path == null || entry.isDirectory()) return path;
+                String relPath = relativize(path);
+                return relPath != null && isDone(relPath, entry, path) ? null : path;
+            }
+
+            @Override
+            public void entryWritten(@NonNull ArchiveEntry entry, @NonNull String path) {
+                String relPath = relativize(path);
+                if (relPath == null) return;
+                try {
+                    recordEntry(relPath, entry.getSize(), crcOf(entry));
+                } catch (IOException e) {
+                    // The entry is written either way; a resume would just write it again.
+                    Log.w(LOG_TAG, "Failed to record " + relPath + ": " + e);
+                }
+            }
+        };
+    }
+
+    private synchronized boolean isDone(String relPath, ArchiveEntry entry, String path) {
+        EntryRecord record = entries.get(relPath);
+        long crc32 = crcOf(entry);
+        // A streamed entry may only learn its size and CRC after its data; it cannot be skipped.
+        if (record == null || entry.getSize() < 0 || crc32 < 0) return false;
+        return record.size == entry.getSize() && record.crc32 == crc32 && new File(path).length() == record.size;
+    }
+
+    private synchronized void recordEntry(String relPath, long size, long crc32) throws IOException {
+        if (size < 0 || crc32 < 0) return;
+        entries.put(relPath, new EntryRecord(size, crc32));
+        append(String.format(Locale.ROOT, "%s\t%d\t%x\t%s", ENTRY, size, crc32, relPath));
+    }
+
+    private static long crcOf(ArchiveEntry entry) {
+        return entry instanceof ZipArchiveEntry ? ((ZipArchiveEntry) entry).getCrc() : -1;
+    }
+
+    @Nullable
+    private String relativize(String path) {
+        return path.startsWith(basePath + "/") ? path.substring(basePath.length() + 1) : null;
+    }
+
+    private void append(String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    // The install is complete: nothing is left to resume.
+    synchronized void finish() {
+        close();
+        if (file.exists() && !file.delete()) Log.w(LOG_TAG, "Failed to delete " + file);
+    }
+
+    synchronized void close() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException ignored) {}
+        writer = null;
+    }
+}
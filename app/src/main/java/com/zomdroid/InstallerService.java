@@ -8,6 +8,7 @@ import android.app.Service;
 import android.content.ContentResolver;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Binder;
@@ -27,34 +28,36 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.zomdroid.game.GameFileStore;
 import com.zomdroid.game.GameInstance;
 import com.zomdroid.game.GameInstanceManager;
 
+import org.apache.commons.io.IOUtils;
+
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 public class InstallerService extends Service implements TaskProgressListener {
     private static final String LOG_TAG = InstallerService.class.getName();
@@ -73,6 +76,8 @@ public class InstallerService extends Service implements TaskProgressListener {
     public static final String EXTRA_MODS_URI = "com.zomdroid.InstallerService.EXTRA_MODS_URI";
     public static final String EXTRA_CONTROLS_URI = "com.zomdroid.InstallerService.EXTRA_CONTROLS_URI";
     public static final String EXTRA_OUTPUT_URI = "com.zomdroid.InstallerService.EXTRA_OUTPUT_URI";
+    // Export only the saves changed since the previous export (see SavesExport)
+    public static final String EXTRA_DELTA_EXPORT = "com.zomdroid.InstallerService.EXTRA_DELTA_EXPORT";
     public static final String EXTRA_DRIVER_URI = "com.zomdroid.InstallerService.EXTRA_DRIVER_URI";
     // Build version of the target instance ("41" or "42"), used by mod fix to choose install strategy
     public static final String EXTRA_BUILD_VERSION = "com.zomdroid.InstallerService.EXTRA_BUILD_VERSION";
@@ -82,18 +87,27 @@ public class InstallerService extends Service implements TaskProgressListener {
     public static final String EXTRA_GPU_VENDOR = "com.zomdroid.InstallerService.EXTRA_GPU_VENDOR";
 
     private final IBinder binder = new LocalBinder();
-    private static final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    // Static like the single-thread executor it replaced: tasks outlive the service instance
+    // that started them, and one started by the next instance must still see them.
+    private static final TaskScheduler scheduler = new TaskScheduler(3);
+    private static final AtomicInteger nextTaskId = new AtomicInteger(1);
+    // The task whose code runs on this thread - set around each task's start in onStartCommand
+    // and around its body on the scheduler's thread. finish(), finishWithError() and
+    // onProgressUpdate() report for this task; the extractors call back on the task's thread.
+    private static final ThreadLocal<TaskRecord> currentRecord = new ThreadLocal<>();
     private NotificationManagerCompat notificationManager;
     private NotificationCompat.Builder notificationBuilder;
     private final Handler handler = new Handler(Looper.getMainLooper());
-    private long lastProgressUpdateMs;
+    // The state of the oldest task not yet reported finished, which is what every fragment's
+    // progress dialog shows; see publish(). Set on the main thread only, so that a finish is
+    // never overwritten by the next task's progress before an observer saw it.
     private final MutableLiveData<TaskState> taskState = new MutableLiveData<>();
-    private Task currentTask;
+    // Every task, running or waiting.
+    private final MutableLiveData<List<TaskState>> taskStates = new MutableLiveData<>(new ArrayList<>());
+    // Tasks in submission order, until their finish has been handed to taskState. Guarded by itself.
+    private final LinkedHashMap<Integer, TaskRecord> records = new LinkedHashMap<>();
     private String currentInstallPresetName;
     private String currentGpuVendor;
-    // True between the start of a user-initiated task and its finish/error state. Guards against
-    // the launch-time dependency re-check taking the service over mid-install; see onStartCommand.
-    private volatile boolean userTaskRunning;
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
@@ -105,29 +119,15 @@ public class InstallerService extends Service implements TaskProgressListener {
 
         Task task = Task.values()[intent.getIntExtra(EXTRA_COMMAND, 0)];
 
-        // The dependency re-check runs on every launcher start, including the moment we navigate
-        // back from instance creation — right while CREATE_GAME_INSTANCE is still working. Letting
-        // it through would reassign currentTask and make the launcher miss the create-instance
-        // finish (that is how the post-install renderer/GPU dialog silently stopped appearing).
-        // The check is cheap and repeats next launch, so skipping this one occasion is free.
-        if (task == Task.INSTALL_DEPENDENCIES && userTaskRunning) {
-            // The skip must still keep the promise startForegroundService() made, or the system
-            // kills the whole process ten seconds later (ForegroundServiceDidNotStartInTime) -
-            // mid-install, taking the running task with it. Shipped broken since 1.4.7v2; the
-            // window is narrow (the fragment has to be recreated - rotation, minimize, a trip to
-            // Settings - while a task runs), which is why it took three weeks to be reported.
-            // The running task's OWN notification is re-posted so nothing visibly changes; the
-            // fallback exists only for the freak case where none was built yet. No stopSelf: the
-            // service is mid-task and must keep living.
-            startForeground(NOTIFICATION_ID, notificationBuilder != null
-                    ? notificationBuilder.build()
-                    : buildNotification(getString(R.string.dialog_title_installing_dependencies)));
-            Log.i(LOG_TAG, "Dependency re-check skipped: " + currentTask + " is still running");
-            return START_NOT_STICKY;
-        }
-
-        currentTask = task;
-        userTaskRunning = task != Task.INSTALL_DEPENDENCIES;
+        // The dependency re-check runs on every launcher start, including right while
+        // CREATE_GAME_INSTANCE is still working. It used to be skipped then, because it would
+        // have taken over the one task state the launcher watches and made it miss the
+        // create-instance finish. Every task now reports its own state and the dialogs follow the
+        // oldest one, so the re-check simply runs alongside: it touches nothing an instance uses.
+        TaskRecord record = new TaskRecord(nextTaskId.getAndIncrement(), task, resourcesFor(task, intent));
+        synchronized (records) {
+            records.put(record.id, record);
+        }
         // Only overwrite when the intent actually carries them. Every task shares this service,
         // and returning to the launcher fires updateDependencies() — an INSTALL_DEPENDENCIES
         // intent without these extras used to null them out mid-install, so by the time
@@ -143,6 +143,17 @@ public class InstallerService extends Service implements TaskProgressListener {
         Intent serviceStartedBroadcast = new Intent(ACTION_STARTED);
         LocalBroadcastManager.getInstance(this).sendBroadcast(serviceStartedBroadcast);
 
+        currentRecord.set(record);
+        try {
+            dispatch(task, intent);
+        } finally {
+            currentRecord.remove();
+        }
+
+        return START_NOT_STICKY;
+    }
+
+    private void dispatch(Task task, Intent intent) {
         switch (task) {
             case CREATE_GAME_INSTANCE:
                 doCreateGameInstance(intent);
@@ -208,8 +219,6 @@ public class InstallerService extends Service implements TaskProgressListener {
                 doInstallNativeLibs(intent);
                 break;
         }
-
-        return START_NOT_STICKY;
     }
 
     // -------------------- CREATE GAME INSTANCE --------------------
@@ -218,7 +227,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         String taskTitle = getString(R.string.dialog_title_creating_instance);
 
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String gameInstanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (gameInstanceName == null) {
@@ -234,90 +243,144 @@ public class InstallerService extends Service implements TaskProgressListener {
         }
 
         Uri gameFilesArchiveUri = intent.getParcelableExtra(EXTRA_ARCHIVE_URI);
-        if (gameFilesArchiveUri == null) {
-            finishWithError(getString(R.string.dialog_title_failed_to_create_instance),
-                    "Game files archive URI intent extra is missing");
-            return;
-        }
+        Uri nativeLibsArchiveUri = intent.getParcelableExtra(EXTRA_NATIVE_LIBS_URI);
 
-        executorService.submit(() -> {
+        schedule(() -> {
+            InstallJournal journal = null;
             try {
-                installGameFromZip(gameInstance, gameFilesArchiveUri);
-                // Users often zip the game inside one or more wrapper folders. Drill down to the
-                // real game root (folder holding ProjectZomboid64/projectzomboid.jar/zombie) and
-                // lift it up to gamePath, so nothing downstream cares about the extra nesting.
-                flattenGameRootIfWrapped(new File(gameInstance.getGamePath()));
+                // A resumed install (see InstallJournal) only needs the archive again when the
+                // extraction itself was cut short.
+                long archiveSize = -1;
+                if (gameFilesArchiveUri != null) {
+                    try {
+                        archiveSize = FileUtils.queryFileSize(getContentResolver(), gameFilesArchiveUri);
+                    } catch (RuntimeException e) {
+                        Log.w(LOG_TAG, "Archive size unknown: " + e);
+                    }
+                }
+                journal = InstallJournal.open(gameInstance, archiveSize, nativeLibsArchiveUri != null);
+                final InstallJournal steps = journal;
+                if (gameFilesArchiveUri == null && !journal.hasStage(STEP_EXTRACT)) {
+                    throw new IllegalStateException("Game files archive URI intent extra is missing");
+                }
+                // Same for the native libraries chosen at creation: without them the step below
+                // would "finish" with nothing installed. Failing leaves it pending for a resume
+                // that brings them (see LauncherFragment).
+                if (nativeLibsArchiveUri == null && journal.withNativeLibs() && !journal.hasStage(STEP_NATIVE_LIBS)) {
+                    throw new IllegalStateException("Native libraries archive URI intent extra is missing");
+                }
+
+                // Users often zip the game inside one or more wrapper folders; the install writes
+                // the real game root straight to gamePath, so nothing downstream cares about the
+                // extra nesting.
+                runStep(journal, STEP_EXTRACT, () -> installGameFromZip(gameInstance, gameFilesArchiveUri, steps));
                 // Build 42.20+ moved all Linux libraries under natives/ and the bundled Android
                 // libraries under natives/android/arm64-v8a/. Normalize that layout back to the
                 // structure Zomdroid uses so the existing Java, box64 and linker paths stay valid.
-                normalizeNativeLayoutFor4220(gameInstance);
-                // 42.13+: extract projectzomboid.jar if present
-                extractProjectZomboidJarSimple(gameInstance);
-                // 42.20+ redundantly loads Android FMOD from the HotSpot VM. Zomdroid has
-                // already loaded and initialized it on ART; keep only fmodintegration64 here.
-                com.zomdroid.patch.FmodLoadPatchApplier.applyIfNeeded(gameInstance);
-                // Bink has no ARM64 library. Make getVideo() return the already-supported
-                // "unavailable" result instead of throwing and logging every UI frame.
-                com.zomdroid.patch.BinkVideoPatchApplier.applyIfNeeded(gameInstance);
+                // Both only set flags on the instance, so it is saved before the step is journaled.
+                runStep(journal, "normalize-native-layout", () -> {
+                    normalizeNativeLayoutFor4220(gameInstance);
+                    GameInstanceManager.requireSingleton().saveInstallProgress(gameInstance);
+                });
+                // 42.13+: run from projectzomboid.jar as it is, patched classes overlaid
+                runStep(journal, "use-game-jar", () -> {
+                    useProjectZomboidJar(gameInstance);
+                    GameInstanceManager.requireSingleton().saveInstallProgress(gameInstance);
+                });
+                // Every class-file patch in one pass over the game classes: B42's ShaderUnit
+                // combineShaderSources (required for NG_GL4ES), 42.15+'s ZNetStatistics field
+                // names for the stale Android RakNet, 42.20+'s redundant Android FMOD loads and
+                // its Bink getVideo(). Also run at launch, for instances made by older launchers.
+                // Left to the game JVM with in-process patching on: the tree stays the game's own.
+                if (!com.zomdroid.patch.ClassPatches.patchesInProcess()) {
+                    runStep(journal, "class-patches",
+                            () -> com.zomdroid.patch.ClassPatches.applyAll(gameInstance));
+                }
                 // The Lighting stub is retired (the ARM64 library turned out stale wholesale —
                 // circle light instead of cones); on a fresh install the class is never stubbed,
                 // this only heals a leftover stub if the instance dir survived from before.
-                com.zomdroid.patch.LightingTransmissionPatchApplier.restoreOriginalIfStubbed(gameInstance);
-
-                // Added in 1.3.2 for native game libs
-                File androidDirFromGame = new File(gameInstance.getGamePath() + "/android");
-                boolean gameHasAndroid = androidDirFromGame.exists();
-
-                String nativeLibsPath = gameInstance.getGamePath() + "/android/arm64-v8a";
-                File nativeLibsDir = new File(nativeLibsPath);
-
-                if (!gameHasAndroid) {
-                    if (nativeLibsDir.exists()) FileUtils.deleteDirectory(nativeLibsDir);
-                    nativeLibsDir.mkdirs();
-                } else {
-                    if (!nativeLibsDir.exists()) nativeLibsDir.mkdirs();
-                }
+                runStep(journal, "lighting-restore",
+                        () -> com.zomdroid.patch.LightingTransmissionPatchApplier.restoreOriginalIfStubbed(gameInstance));
+
+                runStep(journal, STEP_NATIVE_LIBS, () -> {
+                    // Added in 1.3.2 for native game libs
+                    File androidDirFromGame = new File(gameInstance.getGamePath() + "/android");
+                    boolean gameHasAndroid = androidDirFromGame.exists();
+
+                    String nativeLibsPath = gameInstance.getGamePath() + "/android/arm64-v8a";
+                    File nativeLibsDir = new File(nativeLibsPath);
+
+                    if (!gameHasAndroid) {
+                        if (nativeLibsDir.exists()) FileUtils.deleteDirectory(nativeLibsDir);
+                        nativeLibsDir.mkdirs();
+                    } else {
+                        if (!nativeLibsDir.exists()) nativeLibsDir.mkdirs();
+                    }
 
-                Uri nativeLibsArchiveUri = intent.getParcelableExtra(EXTRA_NATIVE_LIBS_URI);
-                if (nativeLibsArchiveUri != null) {
-                    try (InputStream nativeLibsStream = getContentResolver().openInputStream(nativeLibsArchiveUri)) {
-                        announceExtraction();
-                        FileUtils.extractZipToDisk(nativeLibsStream, nativeLibsPath, this,
-                                FileUtils.queryFileSize(getContentResolver(), nativeLibsArchiveUri));
-                    } catch (IOException e) {
-                        System.out.println("Native libraries not installed: " + e.getMessage());
-                        // Still can work without MP
+                    if (nativeLibsArchiveUri != null) {
+                        try {
+                            announceExtraction();
+                            FileUtils.extractZipToDisk(getContentResolver(), nativeLibsArchiveUri, nativeLibsPath, this);
+                        } catch (IOException e) {
+                            System.out.println("Native libraries not installed: " + e.getMessage());
+                            // Still can work without MP
+                        }
+                    } else {
+                        System.out.println("No native libraries provided — skipping multiplayer setup");
                     }
-                } else {
-                    System.out.println("No native libraries provided — skipping multiplayer setup");
-                }
+                });
 
                 // 42.13: rename problematic native libs
-                maybeDisableLibFor42(gameInstance);
+                runStep(journal, "disable-libs-42", () -> maybeDisableLibFor42(gameInstance));
                 // 42.15/42.17: patch printSpecs() crash
-                maybePatchPrintSpecsFor4215(gameInstance);
-                // B42: patch ShaderUnit to enable combineShaderSources (required for NG_GL4ES)
-                maybePatchShaderUnitCombine(gameInstance);
-                // 42.15+: restore the two field names the stale Android RakNet still looks up
-                maybePatchZNetStatisticsFor4215Plus(gameInstance);
+                runStep(journal, "print-specs-patch", () -> maybePatchPrintSpecsFor4215(gameInstance));
 
             } catch (Exception e) {
+                // The journal stays: the instance can resume from here (see LauncherFragment).
+                if (journal != null) journal.close();
                 finishWithError(getString(R.string.dialog_title_failed_to_create_instance), e.toString());
                 return;
             }
 
+            journal.finish();
             GameInstanceManager.requireSingleton().markInstallationFinished(gameInstance);
             finish(getString(R.string.dialog_title_instance_created), null);
         });
     }
 
+    private static final String STEP_EXTRACT = "extract";
+    private static final String STEP_NATIVE_LIBS = "native-libs";
+
+    // True when gameInstance's install was interrupted and CREATE_GAME_INSTANCE can carry it on.
+    public static boolean isInstallResumable(GameInstance gameInstance) {
+        return !gameInstance.isInstallationFinished() && InstallJournal.exists(gameInstance);
+    }
+
+    // True when resuming gameInstance's install needs the native libraries archive picked again:
+    // one was chosen at creation and its step has not run yet.
+    public static boolean resumeNeedsNativeLibs(GameInstance gameInstance) {
+        InstallJournal journal = InstallJournal.peek(gameInstance);
+        return journal != null && journal.withNativeLibs() && !journal.hasStage(STEP_NATIVE_LIBS);
+    }
+
+    private interface InstallStep {
+        void run() throws Exception;
+    }
+
+    // Runs step unless the journal says an earlier, interrupted install already finished it.
+    private static void runStep(InstallJournal journal, String stage, InstallStep step) throws Exception {
+        if (journal.hasStage(stage)) return;
+        step.run();
+        journal.stageDone(stage);
+    }
+
     // -------------------- DELETE GAME INSTANCE --------------------
 
     private void doDeleteGameInstance(Intent intent) {
         String taskTitle = getString(R.string.dialog_title_deleting_game_instance);
 
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String gameInstanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (gameInstanceName == null) {
@@ -333,9 +396,21 @@ public class InstallerService extends Service implements TaskProgressListener {
             return;
         }
 
-        executorService.submit(() -> {
+        // Whatever still waits to work on this instance would only fail once it is gone.
+        for (TaskScheduler.Job job : scheduler.cancelWaiting(instanceResource(gameInstanceName))) {
+            TaskRecord cancelled;
+            synchronized (records) {
+                cancelled = records.get(job.id);
+            }
+            if (cancelled != null) markCancelled(cancelled);
+        }
+
+        schedule(() -> {
             try {
                 FileUtils.deleteDirectory(new File(gameInstance.getHomePath()));
+                // Game files this instance shared with no other are only freed once the store
+                // lets go of them too.
+                GameFileStore.open().prune();
             } catch (Exception e) {
                 finishWithError(getString(R.string.dialog_title_failed_to_delete_instance), e.toString());
                 return;
@@ -348,11 +423,27 @@ public class InstallerService extends Service implements TaskProgressListener {
 
     // -------------------- INSTALL DEPENDENCIES --------------------
 
+    private static final List<String> BUNDLE_ASSETS = Arrays.asList(C.assets.BUNDLES_JRE21,
+            C.assets.BUNDLES_JRE25, C.assets.BUNDLES_LIBS, C.assets.BUNDLES_JARS);
+
+    // Identifies the bundles this APK carries without reading them. lastUpdateTime moves with
+    // every install, including a reinstall of the same versionCode (a debug build, a sideloaded
+    // fix); the sizes are a second guard that costs one lookup per asset.
+    private String bundlesFingerprint() throws IOException, PackageManager.NameNotFoundException {
+        PackageInfo packageInfo = getPackageManager().getPackageInfo(getPackageName(), 0);
+        StringBuilder fingerprint = new StringBuilder()
+                .append(packageInfo.getLongVersionCode()).append(':').append(packageInfo.lastUpdateTime);
+        for (String asset : BUNDLE_ASSETS) {
+            fingerprint.append(':').append(FileUtils.assetLength(this, asset));
+        }
+        return fingerprint.toString();
+    }
+
     // Called on every app launch (see LauncherFragment#updateDependencies), not just the first
     // one, so an APK update whose bundled libs.tar.xz/jre/jars changed can pick that up without
     // a full app reinstall. To keep that cheap and silent on the common case (nothing changed),
-    // we CRC-check all bundles up front and only show the install notification/dialog and touch
-    // disk for the ones that actually differ.
+    // we check all bundles up front (see pass 1) and only show the install notification/dialog
+    // and touch disk for the ones that actually differ.
     private void doInstallDependencies(Intent intent) {
         String taskTitle = getString(R.string.dialog_title_installing_dependencies);
 
@@ -360,7 +451,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         // have changed — Android requires it soon after startForegroundService().
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
 
-        executorService.submit(() -> {
+        schedule(() -> {
             SharedPreferences prefs = getSharedPreferences(C.shprefs.NAME, MODE_PRIVATE);
             Gson gson = new Gson();
 
@@ -370,35 +461,49 @@ public class InstallerService extends Service implements TaskProgressListener {
             HashMap<String, Long> oldBundlesHashesMap = gson.fromJson(bundlesJson, mapType);
             HashMap<String, Long> newBundlesHashesMap = new HashMap<>();
 
-            // --- Pass 1: CRC32 every bundle against its last-installed hash. Quiet and cheap —
-            // reads the (already-compressed) asset bytes straight out of the APK, no extraction.
+            // --- Pass 1: find out which bundles differ from the installed ones. ---
+            //
+            // The bundles can only change when the APK does, so the common launch compares a
+            // fingerprint of the APK (versionCode, lastUpdateTime) and the bundle sizes with the
+            // one stored at the last successful install and is done - no asset byte is read.
+            // Only after an update, a reinstall or a failed install do we CRC32 every bundle, in
+            // parallel, against its last-installed hash: reading hundreds of MB out of the APK on
+            // every start kept the launcher busy for seconds with nothing to show for it.
             boolean jre21Changed, jre25Changed, libsChanged, jarsChanged;
+            String fingerprint;
             try {
-                Long jre21HashNew = FileUtils.generateCRC32ForAsset(this, C.assets.BUNDLES_JRE21);
-                newBundlesHashesMap.put(C.assets.BUNDLES_JRE21, jre21HashNew);
-                jre21Changed = !jre21HashNew.equals(oldBundlesHashesMap.get(C.assets.BUNDLES_JRE21));
-
-                Long jre25HashNew = FileUtils.generateCRC32ForAsset(this, C.assets.BUNDLES_JRE25);
-                newBundlesHashesMap.put(C.assets.BUNDLES_JRE25, jre25HashNew);
-                jre25Changed = !jre25HashNew.equals(oldBundlesHashesMap.get(C.assets.BUNDLES_JRE25));
-
-                Long libsHashNew = FileUtils.generateCRC32ForAsset(this, C.assets.BUNDLES_LIBS);
-                newBundlesHashesMap.put(C.assets.BUNDLES_LIBS, libsHashNew);
-                libsChanged = !libsHashNew.equals(oldBundlesHashesMap.get(C.assets.BUNDLES_LIBS));
-
-                Long jarsHashNew = FileUtils.generateCRC32ForAsset(this, C.assets.BUNDLES_JARS);
-                newBundlesHashesMap.put(C.assets.BUNDLES_JARS, jarsHashNew);
-                jarsChanged = !jarsHashNew.equals(oldBundlesHashesMap.get(C.assets.BUNDLES_JARS));
-            } catch (IOException e) {
-                finishWithError(getString(R.string.dialog_title_failed_to_install_dependencies), e.toString());
-                return;
+                fingerprint = bundlesFingerprint();
+            } catch (IOException | PackageManager.NameNotFoundException e) {
+                // Without a fingerprint we cannot vouch for anything; the CRC pass still can.
+                Log.w(LOG_TAG, "Failed to fingerprint the APK bundles: " + e);
+                fingerprint = null;
+            }
+            if (fingerprint != null
+                    && fingerprint.equals(prefs.getString(C.shprefs.keys.INSTALLED_BUNDLES_FINGERPRINT, null))
+                    && oldBundlesHashesMap.keySet().containsAll(BUNDLE_ASSETS)) {
+                newBundlesHashesMap.putAll(oldBundlesHashesMap);
+                jre21Changed = jre25Changed = libsChanged = jarsChanged = false;
+            } else {
+                try {
+                    long startMs = System.currentTimeMillis();
+                    newBundlesHashesMap.putAll(FileUtils.generateCRC32ForAssets(this,
+                            BUNDLE_ASSETS.toArray(new String[0])));
+                    Log.i(LOG_TAG, "CRC32 of the bundles took " + (System.currentTimeMillis() - startMs) + " ms");
+                } catch (IOException e) {
+                    finishWithError(getString(R.string.dialog_title_failed_to_install_dependencies), e.toString());
+                    return;
+                }
+                jre21Changed = !newBundlesHashesMap.get(C.assets.BUNDLES_JRE21).equals(oldBundlesHashesMap.get(C.assets.BUNDLES_JRE21));
+                jre25Changed = !newBundlesHashesMap.get(C.assets.BUNDLES_JRE25).equals(oldBundlesHashesMap.get(C.assets.BUNDLES_JRE25));
+                libsChanged = !newBundlesHashesMap.get(C.assets.BUNDLES_LIBS).equals(oldBundlesHashesMap.get(C.assets.BUNDLES_LIBS));
+                jarsChanged = !newBundlesHashesMap.get(C.assets.BUNDLES_JARS).equals(oldBundlesHashesMap.get(C.assets.BUNDLES_JARS));
             }
 
             boolean anyChanged = jre21Changed || jre25Changed || libsChanged || jarsChanged;
             if (!anyChanged) {
                 // Nothing to extract — but still record that the dependencies ARE installed:
-                // every bundle just passed a CRC32 check against the APK's own copy, which is a
-                // stronger statement than the flag itself makes.
+                // every bundle just matched the APK's own copy (by fingerprint or CRC32), which is
+                // a stronger statement than the flag itself makes.
                 //
                 // Skipping this write used to strand the launcher permanently. ZomdroidApplication
                 // clears ARE_DEPENDENCIES_INSTALLED on any versionCode change, and before this
@@ -408,25 +513,27 @@ public class InstallerService extends Service implements TaskProgressListener {
                 // to start the game - on this launch and on every launch after it, with no manual
                 // way out. Hit on 2026-08-01 going 1.4.7 -> 1.4.8; it would have hit every user of
                 // any code-only release.
-                prefs.edit().putBoolean(C.shprefs.keys.ARE_DEPENDENCIES_INSTALLED, true).apply();
+                prefs.edit()
+                        .putString(C.shprefs.keys.INSTALLED_BUNDLES_FINGERPRINT, fingerprint)
+                        .putBoolean(C.shprefs.keys.ARE_DEPENDENCIES_INSTALLED, true)
+                        .apply();
                 // Never posted an "in progress" state, so no dialog ever showed.
                 finish(null, null);
                 return;
             }
 
             // --- Pass 2: only now announce the install, and only extract what changed ---
-            this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+            postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
             if (jre21Changed) {
                 try {
-                    String jre21Path = AppStorage.requireSingleton().getHomePath() + "/" + C.deps.JRE_21;
-                    File jre21Dir = new File(jre21Path);
-                    if (jre21Dir.exists()) FileUtils.deleteDirectory(jre21Dir);
+                    File jre21Dir = new File(AppStorage.requireSingleton().getHomePath() + "/" + C.deps.JRE_21);
 
-                    InputStream jreBundleInStream = getAssets().open(C.assets.BUNDLES_JRE21);
                     announceExtraction();
-                    FileUtils.extractTarXzToDisk(jreBundleInStream, jre21Path, this, 0);
-                    jreBundleInStream.close();
+                    long startMs = System.currentTimeMillis();
+                    FileUtils.decodeTarXzAsset(this, C.assets.BUNDLES_JRE21,
+                            (tarInStream, tarSize) -> BundleUpdater.update(tarInStream, tarSize, jre21Dir, this));
+                    Log.i(LOG_TAG, "Installed " + C.assets.BUNDLES_JRE21 + " in " + (System.currentTimeMillis() - startMs) + " ms");
                 } catch (IOException e) {
                     finishWithError(getString(R.string.dialog_title_failed_to_install_dependencies), e.toString());
                     return;
@@ -435,14 +542,13 @@ public class InstallerService extends Service implements TaskProgressListener {
 
             if (jre25Changed) {
                 try {
-                    String jre25Path = AppStorage.requireSingleton().getHomePath() + "/" + C.deps.JRE_25;
-                    File jre25Dir = new File(jre25Path);
-                    if (jre25Dir.exists()) FileUtils.deleteDirectory(jre25Dir);
+                    File jre25Dir = new File(AppStorage.requireSingleton().getHomePath() + "/" + C.deps.JRE_25);
 
-                    InputStream jreBundleInStream = getAssets().open(C.assets.BUNDLES_JRE25);
                     announceExtraction();
-                    FileUtils.extractTarXzToDisk(jreBundleInStream, jre25Path, this, 0);
-                    jreBundleInStream.close();
+                    long startMs = System.currentTimeMillis();
+                    FileUtils.decodeTarXzAsset(this, C.assets.BUNDLES_JRE25,
+                            (tarInStream, tarSize) -> BundleUpdater.update(tarInStream, tarSize, jre25Dir, this));
+                    Log.i(LOG_TAG, "Installed " + C.assets.BUNDLES_JRE25 + " in " + (System.currentTimeMillis() - startMs) + " ms");
                 } catch (IOException e) {
                     finishWithError(getString(R.string.dialog_title_failed_to_install_dependencies), e.toString());
                     return;
@@ -451,13 +557,13 @@ public class InstallerService extends Service implements TaskProgressListener {
 
             if (libsChanged) {
                 try {
-                    String libsPath = AppStorage.requireSingleton().getHomePath() + "/" + C.deps.LIBS;
-                    File libsDir = new File(libsPath);
-                    if (libsDir.exists()) FileUtils.deleteDirectory(libsDir);
+                    File libsDir = new File(AppStorage.requireSingleton().getHomePath() + "/" + C.deps.LIBS);
 
-                    InputStream libsBundleInStream = getAssets().open(C.assets.BUNDLES_LIBS);
                     announceExtraction();
-                    FileUtils.extractTarXzToDisk(libsBundleInStream, libsPath, this, 0);
+                    long startMs = System.currentTimeMillis();
+                    FileUtils.decodeTarXzAsset(this, C.assets.BUNDLES_LIBS,
+                            (tarInStream, tarSize) -> BundleUpdater.update(tarInStream, tarSize, libsDir, this));
+                    Log.i(LOG_TAG, "Installed " + C.assets.BUNDLES_LIBS + " in " + (System.currentTimeMillis() - startMs) + " ms");
                 } catch (IOException e) {
                     finishWithError(getString(R.string.dialog_title_failed_to_install_dependencies), e.toString());
                     return;
@@ -466,13 +572,15 @@ public class InstallerService extends Service implements TaskProgressListener {
 
             if (jarsChanged) {
                 try {
-                    String jarsPath = AppStorage.requireSingleton().getHomePath() + "/" + C.deps.JARS;
-                    File jarsDir = new File(jarsPath);
-                    if (jarsDir.exists()) FileUtils.deleteDirectory(jarsDir);
+                    File jarsDir = new File(AppStorage.requireSingleton().getHomePath() + "/" + C.deps.JARS);
 
-                    InputStream jarsBundleInStream = getAssets().open(C.assets.BUNDLES_JARS);
                     announceExtraction();
-                    FileUtils.extractTarToDisk(jarsBundleInStream, jarsPath, this, 0);
+                    long startMs = System.currentTimeMillis();
+                    try (InputStream jarsBundleInStream = getAssets().open(C.assets.BUNDLES_JARS)) {
+                        BundleUpdater.update(jarsBundleInStream, FileUtils.assetLength(this, C.assets.BUNDLES_JARS),
+                                jarsDir, this);
+                    }
+                    Log.i(LOG_TAG, "Installed " + C.assets.BUNDLES_JARS + " in " + (System.currentTimeMillis() - startMs) + " ms");
                 } catch (IOException e) {
                     finishWithError(getString(R.string.dialog_title_failed_to_install_dependencies), e.toString());
                     return;
@@ -482,6 +590,9 @@ public class InstallerService extends Service implements TaskProgressListener {
             bundlesJson = gson.toJson(newBundlesHashesMap);
             prefs.edit()
                     .putString(C.shprefs.keys.INSTALLED_BUNDLES, bundlesJson)
+                    // Written only here, after every changed bundle extracted: a failed install
+                    // leaves the old fingerprint behind, so the next launch checks again.
+                    .putString(C.shprefs.keys.INSTALLED_BUNDLES_FINGERPRINT, fingerprint)
                     .putBoolean(C.shprefs.keys.ARE_DEPENDENCIES_INSTALLED, true)
                     .apply();
 
@@ -495,7 +606,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         String taskTitle = getString(R.string.dialog_title_installing_mods);
 
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String instanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (instanceName == null) {
@@ -515,7 +626,7 @@ public class InstallerService extends Service implements TaskProgressListener {
             return;
         }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             try {
                 String modsRootPath = gameInstance.getHomePath() + "/Zomboid/mods";
                 File modsRootDir = new File(modsRootPath);
@@ -529,15 +640,8 @@ public class InstallerService extends Service implements TaskProgressListener {
 
                 try {
                     // 1) Extract ZIP to temp dir
-                    try (InputStream modsStream = getContentResolver().openInputStream(modsArchiveUri)) {
-                        announceExtraction();
-                        FileUtils.extractZipToDisk(
-                                modsStream,
-                                tempDir.getAbsolutePath(),
-                                this,
-                                FileUtils.queryFileSize(getContentResolver(), modsArchiveUri)
-                        );
-                    }
+                    announceExtraction();
+                    FileUtils.extractZipToDisk(getContentResolver(), modsArchiveUri, tempDir.getAbsolutePath(), this);
 
                     // 2) Find all mod roots using smart recursive detection (handles any wrapper depth)
                     java.util.List<File> mods = new java.util.ArrayList<>();
@@ -571,7 +675,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         String taskTitle = getString(R.string.dialog_title_installing_saves);
 
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String instanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (instanceName == null) {
@@ -591,22 +695,38 @@ public class InstallerService extends Service implements TaskProgressListener {
             return;
         }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             try {
                 String savesRootPath = gameInstance.getHomePath() + "/Zomboid/Saves";
                 File savesRootDir = new File(savesRootPath);
                 if (!savesRootDir.exists()) savesRootDir.mkdirs();
 
-                try (InputStream savesStream = getContentResolver().openInputStream(savesArchiveUri)) {
-                    announceExtraction();
-                    FileUtils.extractZipToDisk(
-                            savesStream,
-                            savesRootPath,
-                            this,
-                            FileUtils.queryFileSize(getContentResolver(), savesArchiveUri)
-                    );
+                // A delta only holds what changed on top of one particular export; laid over
+                // anything else it would leave a save that mixes two timelines.
+                SavesExport.Marker marker;
+                try (InputStream is = getContentResolver().openInputStream(savesArchiveUri)) {
+                    if (is == null) throw new IllegalStateException("openInputStream returned null");
+                    marker = SavesExport.readMarker(is);
+                }
+                if (marker != null && marker.isDelta()) {
+                    if (!marker.baseId.equals(SavesExport.appliedId(gameInstance))) {
+                        finishWithError(getString(R.string.dialog_title_failed_to_install_saves),
+                                getString(R.string.saves_delta_base_mismatch));
+                        return;
+                    }
+                    // The right base was imported, but the game has played on from it here since.
+                    if (!SavesExport.matchesApplied(gameInstance, savesRootDir)) {
+                        finishWithError(getString(R.string.dialog_title_failed_to_install_saves),
+                                getString(R.string.saves_delta_diverged));
+                        return;
+                    }
                 }
 
+                announceExtraction();
+                FileUtils.extractZipToDisk(getContentResolver(), savesArchiveUri, savesRootPath, this);
+                if (marker != null) SavesExport.applyDeletions(savesRootDir, marker);
+                SavesExport.recordApplied(gameInstance, savesRootDir, marker);
+
                 finish(getString(R.string.dialog_title_saves_installed), null);
             } catch (Exception e) {
                 finishWithError(getString(R.string.dialog_title_failed_to_install_saves), e.toString());
@@ -620,7 +740,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         String taskTitle = getString(R.string.dialog_title_installing_controls);
 
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String instanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (instanceName == null) {
@@ -640,7 +760,7 @@ public class InstallerService extends Service implements TaskProgressListener {
             return;
         }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             try {
                 String controlsDirPath = gameInstance.getGamePath() + "/controls";
                 File controlsDir = new File(controlsDirPath);
@@ -648,53 +768,43 @@ public class InstallerService extends Service implements TaskProgressListener {
 
                 File outFile = new File(controlsDir, "controls.json");
                 File iconsDir = new File(controlsDir, "icons");
-                boolean found = false;
-
-                try (InputStream is = getContentResolver().openInputStream(controlsArchiveUri)) {
-                    if (is == null) throw new IllegalStateException("openInputStream returned null");
-                    try (ZipInputStream zis = new ZipInputStream(is)) {
-                        ZipEntry e;
-                        byte[] buf = new byte[64 * 1024];
-
-                        // Process every entry (do NOT stop at controls.json): we also extract the
-                        // icons/ folder so user-supplied button/radial images travel with the layout.
-                        while ((e = zis.getNextEntry()) != null) {
-                            if (e.isDirectory()) continue;
-
-                            String name = e.getName();
-                            if (name == null) continue;
-                            String lower = name.toLowerCase();
-
-                            // Accept both "controls.json" and "something/controls.json"
-                            if (lower.endsWith("controls.json")) {
-                                try (OutputStream os = new FileOutputStream(outFile, false)) {
-                                    int r;
-                                    while ((r = zis.read(buf)) != -1) {
-                                        os.write(buf, 0, r);
-                                    }
-                                    os.flush();
-                                }
-                                found = true;
-                            } else if (lower.contains("icons/")) {
-                                // Custom button/radial image. Use only the file name (no directory
-                                // components) to guard against zip-slip path traversal.
-                                String norm = name.replace('\\', '/');
-                                String base = norm.substring(norm.lastIndexOf('/') + 1);
-                                if (!base.isEmpty() && !base.contains("..")) {
-                                    if (!iconsDir.exists()) iconsDir.mkdirs();
-                                    File iconOut = new File(iconsDir, base);
-                                    try (OutputStream os = new FileOutputStream(iconOut, false)) {
-                                        int r;
-                                        while ((r = zis.read(buf)) != -1) {
-                                            os.write(buf, 0, r);
-                                        }
-                                        os.flush();
-                                    }
-                                }
+                java.util.concurrent.atomic.AtomicBoolean foundControls =
+                        new java.util.concurrent.atomic.AtomicBoolean();
+
+                // Process every entry (do NOT stop at controls.json): we also extract the
+                // icons/ folder so user-supplied button/radial images travel with the layout.
+                // The layout sees all names first, so the space check and preallocation apply
+                // here too.
+                FileUtils.extractZipToDisk(getContentResolver(), controlsArchiveUri, entryNames -> {
+                    // Accept both "controls.json" and "something/controls.json". With several,
+                    // the last one wins, as it did when they were written one after another.
+                    String controlsName = null;
+                    for (String name : entryNames) {
+                        if (name.toLowerCase().endsWith("controls.json")) controlsName = name;
+                    }
+                    foundControls.set(controlsName != null);
+                    String chosenControls = controlsName;
+                    return entry -> {
+                        if (entry.isDirectory()) return null;
+
+                        String name = entry.getName();
+                        if (name == null) return null;
+
+                        if (name.equals(chosenControls)) {
+                            return outFile.getPath();
+                        } else if (name.toLowerCase().contains("icons/")) {
+                            // Custom button/radial image. Use only the file name (no directory
+                            // components) to guard against zip-slip path traversal.
+                            String norm = name.replace('\\', '/');
+                            String base = norm.substring(norm.lastIndexOf('/') + 1);
+                            if (!base.isEmpty() && !base.contains("..")) {
+                                return new File(iconsDir, base).getPath();
                             }
                         }
-                    }
-                }
+                        return null;
+                    };
+                }, null, this);
+                boolean found = foundControls.get();
 
                 if (!found) {
                     finishWithError(getString(R.string.dialog_title_failed_to_install_controls),
@@ -716,7 +826,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         String taskTitle = getString(R.string.dialog_title_exporting_controls);
 
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String instanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         Uri outUri = intent.getParcelableExtra(EXTRA_OUTPUT_URI);
@@ -727,7 +837,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         GameInstance gameInstance = GameInstanceManager.requireSingleton().getInstanceByName(instanceName);
         if (gameInstance == null) { finishWithError(taskTitle, "Game instance not found: " + instanceName); return; }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             try {
                 File controlsDir = new File(gameInstance.getGamePath(), "controls");
 
@@ -751,11 +861,16 @@ public class InstallerService extends Service implements TaskProgressListener {
 
     // -------------------- EXPORT SAVES FROM INSTANCE --------------------
 
+    // True when gameInstance's saves were exported before, so an export can carry only the changes.
+    public static boolean canExportSavesDelta(GameInstance gameInstance) {
+        return SavesExport.hasManifest(gameInstance);
+    }
+
     private void doExportSavesFromInstance(Intent intent) {
         String taskTitle = getString(R.string.dialog_title_exporting_saves);
 
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String instanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         Uri outUri = intent.getParcelableExtra(EXTRA_OUTPUT_URI);
@@ -765,20 +880,25 @@ public class InstallerService extends Service implements TaskProgressListener {
 
         GameInstance gi = GameInstanceManager.requireSingleton().getInstanceByName(instanceName);
         if (gi == null) { finishWithError(taskTitle, "Game instance not found: " + instanceName); return; }
+        boolean delta = intent.getBooleanExtra(EXTRA_DELTA_EXPORT, false);
 
-        executorService.submit(() -> {
+        schedule(() -> {
             try {
                 File savesDir = new File(gi.getHomePath() + "/Zomboid/Saves");
                 if (!savesDir.exists() || !savesDir.isDirectory()) {
                     throw new IllegalArgumentException("Saves folder not found: " + savesDir);
                 }
 
+                SavesExport.Result result;
                 try (OutputStream os = getContentResolver().openOutputStream(outUri)) {
                     if (os == null) throw new IllegalStateException("openOutputStream returned null");
-                    ZipUtils.zipDirectoryToStream(savesDir, os);
+                    result = SavesExport.write(gi, savesDir, delta, os);
                 }
+                result.commit(gi);
 
-                finish(getString(R.string.dialog_title_saves_exported), null);
+                finish(getString(R.string.dialog_title_saves_exported), result.delta
+                        ? getString(R.string.saves_delta_exported, result.changed, result.deleted)
+                        : null);
             } catch (Exception e) {
                 finishWithError(getString(R.string.dialog_title_failed_to_export_saves), e.toString());
             }
@@ -791,7 +911,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         String taskTitle = getString(R.string.dialog_title_importing_driver);
 
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         Uri driverUri = intent.getParcelableExtra(EXTRA_DRIVER_URI);
         if (driverUri == null) {
@@ -799,7 +919,7 @@ public class InstallerService extends Service implements TaskProgressListener {
             return;
         }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             try {
                 String destPath = AppStorage.requireSingleton().getHomePath()
                         + "/" + C.deps.CUSTOM_DRIVER;
@@ -833,7 +953,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         String taskTitle = getString(R.string.dialog_title_exporting_driver);
 
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         Uri outUri = intent.getParcelableExtra(EXTRA_OUTPUT_URI);
         if (outUri == null) {
@@ -841,7 +961,7 @@ public class InstallerService extends Service implements TaskProgressListener {
             return;
         }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             try {
                 String srcPath = AppStorage.requireSingleton().getHomePath()
                         + "/" + C.deps.CUSTOM_DRIVER;
@@ -875,7 +995,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         String taskTitle = getString(R.string.dialog_title_exporting_log);
 
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String instanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         Uri outUri = intent.getParcelableExtra(EXTRA_OUTPUT_URI);
@@ -886,7 +1006,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         GameInstance gi = GameInstanceManager.requireSingleton().getInstanceByName(instanceName);
         if (gi == null) { finishWithError(taskTitle, "Game instance not found: " + instanceName); return; }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             try {
                 if (!hasAnyLogFiles(gi)) {
                     finishWithError(taskTitle, "No log files found");
@@ -944,75 +1064,84 @@ public class InstallerService extends Service implements TaskProgressListener {
         File debugLog = pzLogsDir == null ? null : newestDebugLog(pzLogsDir);
         File prevDebugLog = pzLogsDir == null ? null : newestDebugLog(newestLogArchiveDir(pzLogsDir));
 
-        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(os, 256 * 1024))) {
+        try (ParallelZipWriter zip = ZipUtils.newWriter()) {
             // report.txt — device / build metadata
+            ByteArrayOutputStream report = new ByteArrayOutputStream();
             LauncherPreferences prefs = LauncherPreferences.requireSingleton();
             LauncherPreferences.VulkanDriver driver = prefs.getVulkanDriver();
             String driverStr = driver.libName != null
                     ? driver.name() + " (" + driver.libName + ")"
                     : "system default";
 
-            zos.putNextEntry(new ZipEntry("report.txt"));
-            writeLogUtf8(zos, "=== Zomdroid Bug Report ===\n");
-            writeLogUtf8(zos, "Device   : " + Build.MANUFACTURER + " " + Build.MODEL + "\n");
-            writeLogUtf8(zos, "Android  : " + Build.VERSION.RELEASE + " (API " + Build.VERSION.SDK_INT + ")\n");
+            writeLogUtf8(report, "=== Zomdroid Bug Report ===\n");
+            writeLogUtf8(report, "Device   : " + Build.MANUFACTURER + " " + Build.MODEL + "\n");
+            writeLogUtf8(report, "Android  : " + Build.VERSION.RELEASE + " (API " + Build.VERSION.SDK_INT + ")\n");
             // The git id is what actually identifies the build: versionName/versionCode repeat
             // across test builds (1.4.7 and 1.4.7v4 both reported as "1.4.7 (147)"), so without it
             // a report cannot say which binary produced it. "+" means the tree had uncommitted work.
-            writeLogUtf8(zos, "Zomdroid : " + BuildConfig.VERSION_NAME + " (" + BuildConfig.VERSION_CODE
+            writeLogUtf8(report, "Zomdroid : " + BuildConfig.VERSION_NAME + " (" + BuildConfig.VERSION_CODE
                     + ", " + BuildConfig.GIT_BUILD_ID + ")\n");
             // Which instance this report is even about, and the flag half our trigger handling
             // keys on. A player exported a Build 41 report for a Build 42 bug and it took two
             // assistants a day to establish from java.library.path what one header line would
             // have said outright: the instance, its build, and build4220Plus.
-            writeLogUtf8(zos, gi == null
+            writeLogUtf8(report, gi == null
                     ? "Instance : (none installed)\n"
                     : "Instance : " + gi.getName()
                         + " (" + gi.getPresetName() + ", build " + gi.getBuildVersion()
-                        + ", 4220plus=" + gi.isBuild4220Plus() + ")\n");
-            writeLogUtf8(zos, "Renderer : " + prefs.getRenderer().name() + "\n");
-            writeLogUtf8(zos, "Driver   : " + driverStr + "\n");
+                        + ", 4220plus=" + gi.isBuild4220Plus() + ", fromJar=" + gi.runsFromGameJar() + ")\n");
+            // "Why does a second instance take no space" and "why did deleting one free so
+            // little" both come down to which game files are shared through the store.
+            if (gi != null) {
+                writeLogUtf8(report, "Disk     : game " + GameFileStore.measure(new File(gi.getGamePath())) + "\n");
+            }
+            writeLogUtf8(report, "Renderer : " + prefs.getRenderer().name() + "\n");
+            writeLogUtf8(report, "Driver   : " + driverStr + "\n");
             // The two questions every NG_GL4ES "it just closes" report starts with: how much RAM
             // does the device have, and did the player ever apply the Build 42 JVM preset. Both
             // used to require digging through lastlog.txt, which is not always in the archive.
-            writeLogUtf8(zos, "RAM      : " + readRamSummary() + "\n");
+            writeLogUtf8(report, "RAM      : " + readRamSummary() + "\n");
             // The rest of the memory treatment, in the same place as the RAM figure: the texture
             // budget toggle and the resolution the renderer actually draws at.
-            writeLogUtf8(zos, "Memory   : saver " + (prefs.isMemorySaver() ? "ON" : "off")
+            writeLogUtf8(report, "Memory   : saver " + (prefs.isMemorySaver() ? "ON" : "off")
                     + ", render scale " + String.format(Locale.US, "%.2f", prefs.getRenderScale()) + "\n");
             String jvmArgs = LauncherPreferences.squashWhitespace(prefs.getJvmArgs());
-            writeLogUtf8(zos, "JVM args : " + (jvmArgs.isEmpty() ? "(none)" : jvmArgs)
+            writeLogUtf8(report, "JVM args : " + (jvmArgs.isEmpty() ? "(none)" : jvmArgs)
                     + "  [" + LauncherPreferences.describeJvmArgsPreset(jvmArgs) + "]\n");
             // Env vars matter as much as the JVM args: knobs like LIBGL_SHRINK, LIBGL_TEXBUDGET and
             // ZINK_DEBUG travel around chats as folklore, and without this line a report gives no
             // way to tell an actual finding from something the player pasted in on someone's advice.
             String envVars = LauncherPreferences.squashWhitespace(prefs.getEnvVars());
-            writeLogUtf8(zos, "Env vars : " + (envVars.isEmpty() ? "(none)" : envVars) + "\n");
+            writeLogUtf8(report, "Env vars : " + (envVars.isEmpty() ? "(none)" : envVars) + "\n");
             // Since 1.4.8 each build loads the game's OWN jassimp/Lighting/PZBullet from
             // android/arm64-v8a instead of ours, so the health of that folder now decides whether
             // the game starts at all - and a copy truncated during install is invisible in every
             // other file we collect. One player's game stopped starting because that jassimp was
             // shorter on disk than the game's zip says it should be; the sizes below make that a
             // glance instead of a two-day investigation.
-            writeLogUtf8(zos, nativeLibInventory(gi));
-            writeLogUtf8(zos, "===========================\n");
-            zos.closeEntry();
-
-            // Original log files, verbatim — each kept whole in its own entry
-            addFileToZip(zos, crashFile, "crash.txt");
-            addFileToZip(zos, nativeLog, "native.log");
-            addFileToZip(zos, failedShaders, "failed_shaders.txt");
-            addFileToZip(zos, glTrace, "gl_trace.txt");
-            addFileToZip(zos, consoleFile, "console.txt");
-            addFileToZip(zos, launcherLog, "log.txt");
-            addFileToZip(zos, lastLauncherLog, "lastlog.txt");
-            addFileToZip(zos, debugLog, "debuglog.txt");
-            addFileToZip(zos, prevDebugLog, "debuglog_prev.txt");
+            writeLogUtf8(report, nativeLibInventory(gi));
+            writeLogUtf8(report, "===========================\n");
+            zip.addBytes("report.txt", report.toByteArray());
+
+            // Original log files, verbatim — each kept whole in its own entry. A long session's
+            // console.txt and logcat capture run to hundreds of MB, so they are deflated side by
+            // side rather than one after another.
+            addFileToZip(zip, crashFile, "crash.txt");
+            addFileToZip(zip, nativeLog, "native.log");
+            addFileToZip(zip, failedShaders, "failed_shaders.txt");
+            addFileToZip(zip, glTrace, "gl_trace.txt");
+            addFileToZip(zip, consoleFile, "console.txt");
+            addFileToZip(zip, launcherLog, "log.txt");
+            addFileToZip(zip, lastLauncherLog, "lastlog.txt");
+            addFileToZip(zip, debugLog, "debuglog.txt");
+            addFileToZip(zip, prevDebugLog, "debuglog_prev.txt");
+            zip.writeTo(os);
         }
     }
 
     /**
-     * One line per file in the instance's {@code game/android/arm64-v8a} folder, plus the state of
+     * One line per file in the instance's {@code game/android/arm64-v8a} folder, with what
+     * {@link ElfSymbols} knows of it, plus the state of
      * our own bundled jassimp. Build 41 has no such folder - TIS ships x86_64 only there - so the
      * "no android/arm64-v8a folder" line is the normal answer for it, not a fault. Sizes are raw
      * bytes: compare a suspicious one against the same entry in the game's own zip.
@@ -1028,7 +1157,9 @@ public class InstallerService extends Service implements TaskProgressListener {
             sb.append(libs.length).append(" file(s) in android/arm64-v8a\n");
             for (File lib : libs) {
                 if (!lib.isFile()) continue;
-                sb.append("           ").append(lib.getName()).append(' ').append(lib.length()).append('\n');
+                sb.append("           ").append(lib.getName()).append(' ').append(lib.length());
+                appendElfSummary(sb, gi, lib);
+                sb.append('\n');
             }
         }
         // ACTIVE means the retire in GameLauncher did not run or failed, and our 5.4.3 is shadowing
@@ -1041,6 +1172,31 @@ public class InstallerService extends Service implements TaskProgressListener {
         return sb.toString();
     }
 
+    // What ElfSymbols' cache knows about one library: machine, JNI exports, DT_NEEDED and whether
+    // it is whole, plus how it compares with its Linux twin - the same diff that decided whether
+    // it runs, so the report shows why a library is disabled rather than just that it is.
+    private static void appendElfSummary(StringBuilder sb, GameInstance gi, File lib) {
+        ElfSymbols.Analysis analysis = ElfSymbols.analyze(lib);
+        if (analysis == null) {
+            sb.append(" - not an ELF64 library");
+            return;
+        }
+        sb.append(" - ").append(analysis.machineName())
+                .append(", ").append(analysis.jniExports.size()).append(" JNI export(s)");
+        if (!analysis.needed.isEmpty()) sb.append(", needs ").append(String.join(" ", analysis.needed));
+        if (analysis.problem != null) {
+            sb.append(", BROKEN: ").append(analysis.problem);
+            return;
+        }
+        String name = lib.getName();
+        if (name.endsWith(".disabled")) name = name.substring(0, name.length() - ".disabled".length());
+        Set<String> missing = com.zomdroid.patch.NativeLibraryWorkarounds.missingExports(gi, name);
+        if (missing == null) sb.append(", no x86_64 twin to compare");
+        else if (missing.isEmpty()) sb.append(", complete vs x86_64");
+        else sb.append(", missing ").append(missing.size()).append(" vs x86_64, first: ")
+                .append(missing.iterator().next());
+    }
+
     // Total/available RAM straight from /proc/meminfo. ActivityManager.MemoryInfo would give the
     // same two numbers plus lowMemory, but writeLogReportZip is static and has no Context, and
     // these two are what separates "killed for memory" from "crashed on its own". Note MemTotal is
@@ -1099,15 +1255,9 @@ public class InstallerService extends Service implements TaskProgressListener {
     }
 
     // Adds a file to the zip under entryName. No-op if the file is missing.
-    private static void addFileToZip(ZipOutputStream zos, File file, String entryName) throws IOException {
+    private static void addFileToZip(ParallelZipWriter zip, File file, String entryName) {
         if (file == null || !file.exists()) return;
-        zos.putNextEntry(new ZipEntry(entryName));
-        try (InputStream is = new FileInputStream(file)) {
-            byte[] buf = new byte[64 * 1024];
-            int r;
-            while ((r = is.read(buf)) != -1) zos.write(buf, 0, r);
-        }
-        zos.closeEntry();
+        zip.addFile(file, entryName);
     }
 
     private static void writeLogUtf8(OutputStream os, String s) throws IOException {
@@ -1129,7 +1279,7 @@ public class InstallerService extends Service implements TaskProgressListener {
     private void doInstallBetterFps(Intent intent) {
         String taskTitle = getString(R.string.optimization_betterfps_installing);
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String gameInstanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (gameInstanceName == null) { finishWithError(taskTitle, "Game instance name is missing"); return; }
@@ -1145,30 +1295,16 @@ public class InstallerService extends Service implements TaskProgressListener {
         if (mode == null) mode = "PotatoePC";
         final String selectedMode = mode;
 
-        executorService.submit(() -> {
+        schedule(() -> {
             File tmpDir = new File(getCacheDir(), "betterfps_tmp_" + System.currentTimeMillis());
             try {
                 tmpDir.mkdirs();
 
                 // Step 1: Extract ZIP to temp (smart — handles double-wrapped archives)
-                try (InputStream is = getContentResolver().openInputStream(archiveUri);
-                     ZipInputStream zis = new ZipInputStream(is)) {
-                    ZipEntry entry;
-                    while ((entry = zis.getNextEntry()) != null) {
-                        File outFile = new File(tmpDir, entry.getName());
-                        if (entry.isDirectory()) {
-                            outFile.mkdirs();
-                        } else {
-                            outFile.getParentFile().mkdirs();
-                            try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                                byte[] buf = new byte[8192];
-                                int len;
-                                while ((len = zis.read(buf)) > 0) fos.write(buf, 0, len);
-                            }
-                        }
-                        zis.closeEntry();
-                    }
-                }
+                // Through FileUtils like every other archive: it checks the cache has room for
+                // the unpacked size first and keeps entries from escaping tmpDir.
+                announceExtraction();
+                FileUtils.extractZipToDisk(getContentResolver(), archiveUri, tmpDir.getAbsolutePath(), this);
 
                 // Step 2: Find IsoChunkMap.class for the selected mode.
                 // Expected path inside mod: media/<mode>/zombie/iso/IsoChunkMap.class
@@ -1235,7 +1371,7 @@ public class InstallerService extends Service implements TaskProgressListener {
     private void doInstallRenderLessZombie(Intent intent) {
         String taskTitle = getString(R.string.optimization_rlz_installing);
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String gameInstanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (gameInstanceName == null) { finishWithError(taskTitle, "Game instance name is missing"); return; }
@@ -1250,29 +1386,15 @@ public class InstallerService extends Service implements TaskProgressListener {
         if (level == null || level.isEmpty()) level = "50";
         final String selectedLevel = level;
 
-        executorService.submit(() -> {
+        schedule(() -> {
             File tmpDir = new File(getCacheDir(), "rlz_tmp_" + System.currentTimeMillis());
             try {
                 tmpDir.mkdirs();
 
-                try (InputStream is = getContentResolver().openInputStream(archiveUri);
-                     ZipInputStream zis = new ZipInputStream(is)) {
-                    ZipEntry entry;
-                    while ((entry = zis.getNextEntry()) != null) {
-                        File outFile = new File(tmpDir, entry.getName());
-                        if (entry.isDirectory()) {
-                            outFile.mkdirs();
-                        } else {
-                            outFile.getParentFile().mkdirs();
-                            try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                                byte[] buf = new byte[8192];
-                                int len;
-                                while ((len = zis.read(buf)) > 0) fos.write(buf, 0, len);
-                            }
-                        }
-                        zis.closeEntry();
-                    }
-                }
+                // Through FileUtils like every other archive: it checks the cache has room for
+                // the unpacked size first and keeps entries from escaping tmpDir.
+                announceExtraction();
+                FileUtils.extractZipToDisk(getContentResolver(), archiveUri, tmpDir.getAbsolutePath(), this);
 
                 File srcDir = findRenderLessZombieLevelDir(tmpDir, selectedLevel);
                 if (srcDir == null) {
@@ -1346,7 +1468,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         String taskTitle = getString(R.string.mod_fix_installing);
 
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        this.taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String gameInstanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (gameInstanceName == null) {
@@ -1374,42 +1496,15 @@ public class InstallerService extends Service implements TaskProgressListener {
         Log.d("ModFix", "buildVersion=" + buildVersion + ", isBuild42=" + isBuild42);
         Log.d("ModFix", "archiveUri=" + archiveUri);
 
-        executorService.submit(() -> {
-            File tmpDir = new File(getCacheDir(), "mod_fix_tmp_" + System.currentTimeMillis());
+        schedule(() -> {
+            File indexDir = new File(getCacheDir(), "mod_fix_index_" + System.currentTimeMillis());
             try {
-                // Step 1: Extract ZIP to temp dir
-                tmpDir.mkdirs();
-                try (InputStream is = getContentResolver().openInputStream(archiveUri);
-                     ZipInputStream zis = new ZipInputStream(is)) {
-                    ZipEntry entry;
-                    while ((entry = zis.getNextEntry()) != null) {
-                        File outFile = new File(tmpDir, entry.getName());
-                        if (entry.isDirectory()) {
-                            outFile.mkdirs();
-                        } else {
-                            outFile.getParentFile().mkdirs();
-                            try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                                byte[] buf = new byte[64 * 1024];
-                                int r;
-                                while ((r = zis.read(buf)) != -1) fos.write(buf, 0, r);
-                            }
-                        }
-                        zis.closeEntry();
-                    }
-                }
-                Log.d("ModFix", "Step 1 done. tmpDir contents:");
-                File[] tmpContents = tmpDir.listFiles();
-                if (tmpContents != null) {
-                    for (File f : tmpContents) {
-                        Log.d("ModFix", "  " + f.getName() + (f.isDirectory() ? "/" : " [file]"));
-                    }
-                } else {
-                    Log.d("ModFix", "  tmpDir is empty or null!");
-                }
+                // Step 1: Index the archive - entry names and mod.info files only
+                announceExtraction();
+                ModArchive archive = ModArchive.index(getContentResolver(), archiveUri, indexDir);
 
                 // Step 2: Find all mod roots using smart detection
-                List<File> modRoots = new ArrayList<>();
-                collectModRoots(tmpDir, modRoots);
+                List<ModArchive.Root> modRoots = archive.roots();
                 if (modRoots.isEmpty()) {
                     finishWithError(taskTitle, getString(R.string.install_mod_smart_no_root));
                     return;
@@ -1418,15 +1513,12 @@ public class InstallerService extends Service implements TaskProgressListener {
 
                 String modsPath = gameInstance.getHomePath() + "/Zomboid/mods";
                 new File(modsPath).mkdirs();
-                String instanceNameLower = gameInstance.getName().toLowerCase();
-                String inceptionRelPath = "data/user/0/com.zomdroid/files/instances/"
-                        + instanceNameLower + "/zomboid/mods";
-                File inceptionDir = new File(modsPath, inceptionRelPath);
 
-                for (File modRoot : modRoots) {
+                LinkedHashMap<String, File> destinations = new LinkedHashMap<>();
+                for (ModArchive.Root modRoot : modRoots) {
                     // Step 3: Determine mod name
-                    String modName = modRoot.getName();
-                    if (modName.equals(tmpDir.getName())) {
+                    String modName = modRoot.folderName();
+                    if (modName == null) {
                         modName = extractZipName(archiveUri);
                         if (modName != null && modName.endsWith(".zip"))
                             modName = modName.substring(0, modName.length() - 4);
@@ -1437,15 +1529,19 @@ public class InstallerService extends Service implements TaskProgressListener {
                     // scripts/ folder left every mod that only overrides fbx/xml/lua broken, and
                     // aliases are free, so there is nothing left to gate on.
 
-                    // Step 5: Merge 42.x version folders if B42
-                    //if (isBuild42) {
-                    //    mergeVersionsForB42(modRoot);
-                    //}
-
-                    // Step 6: Install normal-case copy
                     File normalDest = new File(modsPath, modName);
                     if (normalDest.exists()) FileUtils.deleteDirectory(normalDest);
-                    copyDirectory(modRoot, normalDest);
+                    destinations.put(modRoot.prefix, normalDest);
+                }
+
+                // Step 5: Write every mod straight into its folder under mods/, in one pass
+                archive.extract(getContentResolver(), archiveUri, destinations, this);
+
+                for (File normalDest : destinations.values()) {
+                    // Step 6: Merge 42.x version folders if B42
+                    //if (isBuild42) {
+                    //    mergeVersionsForB42(normalDest);
+                    //}
                     Log.d("ModFix", "  Installed normal: " + normalDest.getAbsolutePath());
 
                     // Step 7: lowercase aliases inside the mod + the doubled-path link. Repeated at
@@ -1457,7 +1553,7 @@ public class InstallerService extends Service implements TaskProgressListener {
             } catch (Exception e) {
                 finishWithError(taskTitle, e.toString());
             } finally {
-                try { FileUtils.deleteDirectory(tmpDir); } catch (Exception ignored) {}
+                try { FileUtils.deleteDirectory(indexDir); } catch (Exception ignored) {}
             }
         });
     }
@@ -1497,28 +1593,26 @@ public class InstallerService extends Service implements TaskProgressListener {
         File target = new File(modDir, latest);
         target.mkdirs();
 
-        // Merge older versions into latest, oldest first (no overwrite — newest wins)
+        // Merge older versions into latest, oldest first (no overwrite — newest wins). Moved,
+        // not copied: every source folder here is deleted afterwards anyway, so a rename per
+        // file does the whole merge without writing a byte.
         for (int i = 0; i < versions.size() - 1; i++) {
             File older = new File(modDir, versions.get(i));
-            copyDirectoryNoOverwrite(older, target);
+            TreeCopy.move(older, target, TreeCopy.Conflict.KEEP_EXISTING, null);
         }
 
         // Inject root media/ → latest/media/ (no overwrite)
         File rootMedia = new File(modDir, "media");
         if (rootMedia.exists() && rootMedia.isDirectory()) {
-            copyDirectoryNoOverwrite(rootMedia, new File(target, "media"));
-            FileUtils.deleteDirectory(rootMedia);
+            TreeCopy.move(rootMedia, new File(target, "media"), TreeCopy.Conflict.KEEP_EXISTING, null);
         }
 
         // Inject common/ → latest/ (no overwrite), then empty common/ but keep folder
         File rootCommon = new File(modDir, "common");
         if (rootCommon.exists() && rootCommon.isDirectory()) {
-            copyDirectoryNoOverwrite(rootCommon, target);
-            File[] commonContents = rootCommon.listFiles();
-            if (commonContents != null) {
-                for (File f : commonContents) FileUtils.deleteDirectory(f);
-            }
+            TreeCopy.move(rootCommon, target, TreeCopy.Conflict.KEEP_EXISTING, null);
             // Keep empty common/ folder — same behaviour as bash script
+            rootCommon.mkdirs();
         }
 
         // Delete old version folders
@@ -1579,49 +1673,10 @@ public class InstallerService extends Service implements TaskProgressListener {
         );
     }
 
-    // Copy directory recursively
-    // Symlinks are skipped rather than followed in every copy below: following one duplicates the
-    // data it points at, and a link aimed at an ancestor never terminates. The lowercase aliases we
-    // place inside a mod are regenerated at the destination, so nothing is lost by dropping them.
-    private void copyDirectory(File src, File dst) throws IOException {
-        dst.mkdirs();
-        File[] files = src.listFiles();
-        if (files == null) return;
-        for (File f : files) {
-            if (Files.isSymbolicLink(f.toPath())) continue;
-            File target = new File(dst, f.getName());
-            if (f.isDirectory()) {
-                copyDirectory(f, target);
-            } else {
-                copyFile(f, target);
-            }
-        }
-    }
-
-    // Copy directory recursively, skip if destination file already exists
-    private void copyDirectoryNoOverwrite(File src, File dst) throws IOException {
-        dst.mkdirs();
-        File[] files = src.listFiles();
-        if (files == null) return;
-        for (File f : files) {
-            if (Files.isSymbolicLink(f.toPath())) continue;
-            File target = new File(dst, f.getName());
-            if (f.isDirectory()) {
-                copyDirectoryNoOverwrite(f, target);
-            } else if (!target.exists()) {
-                copyFile(f, target);
-            }
-        }
-    }
-
-    // Copy single file
+    // Copy single file. dst is replaced rather than written through: a game file may be a link
+    // shared with other instances (GameFileStore), and writing into it would patch them all.
     private void copyFile(File src, File dst) throws IOException {
-        try (InputStream is = new FileInputStream(src);
-             OutputStream os = new FileOutputStream(dst)) {
-            byte[] buf = new byte[64 * 1024];
-            int r;
-            while ((r = is.read(buf)) != -1) os.write(buf, 0, r);
-        }
+        TreeCopy.copyFile(src, dst);
     }
 
     // -------------------- BUILD-SPECIFIC PATCHES --------------------
@@ -1696,90 +1751,10 @@ public class InstallerService extends Service implements TaskProgressListener {
         }
     }
 
-    // 42.13: rename problematic native libs that crash on Android
+    // 42.13: rename native libs that crash on Android, or are missing JNI methods their Linux
+    // build has. Also runs on every launch; see NativeLibraryWorkarounds.
     private void maybeDisableLibFor42(GameInstance gameInstance) {
-        File gameDir = new File(gameInstance.getGamePath());
-        File pzJar = new File(gameDir, "projectzomboid.jar");
-        if (!pzJar.exists()) return; // Not a 42.13+ structure
-
-        File soDir = new File(gameDir, "android/arm64-v8a");
-        // Apply hard runtime findings (including Bullet's complete-looking but broken export).
         com.zomdroid.patch.NativeLibraryWorkarounds.disableIncompleteNativeLibraries(gameInstance);
-        // The rest are judged on content instead, see below.
-        disableIncompleteNativeLibs(gameInstance, gameDir, soDir);
-    }
-
-    // The Android builds TIS ships in android/arm64-v8a/ occasionally omit a JNI method their own
-    // Linux build exports. 42.19's libPZPopMan64.so has no n_saveCell, so
-    // ZombiePopulationManager.writeCellSnapshot died with UnsatisfiedLinkError, worlds were saved
-    // incomplete, and every later load crashed — with nothing in console.txt to show for it.
-    // dlopen() prefers the native lib, so an incomplete one is strictly worse than none: drop it
-    // and let the x86_64 twin run under box64, which has the method.
-    //
-    // Content-based on purpose: no version numbers and no library names, so a build where TIS ships
-    // a complete library keeps its native speed, and the next library with the same defect is
-    // caught without a code change. Runs once per instance, here at install time — the game launch
-    // path is untouched. Only reached for 42.12+ layouts (the projectzomboid.jar gate above), which
-    // keeps it away from the multiplayer libs added by hand to 41.78 instances.
-    private void disableIncompleteNativeLibs(GameInstance gameInstance, File gameDir, File soDir) {
-        File[] nativeLibs = soDir.listFiles((dir, name) -> name.endsWith(".so"));
-        if (nativeLibs == null) return;
-
-        for (File nativeLib : nativeLibs) {
-            File linuxTwin = new File(gameDir, nativeLib.getName());
-            if (!linuxTwin.exists()) continue; // nothing to compare against
-
-            Set<String> expected = ElfSymbols.readExportedJniSymbols(linuxTwin);
-            Set<String> present = ElfSymbols.readExportedJniSymbols(nativeLib);
-            // null means "could not read" — never disable on a parse failure. An empty expected set
-            // means the library registers its natives some other way and cannot be judged this way.
-            if (expected == null || present == null || expected.isEmpty()) continue;
-
-            Set<String> missing = new TreeSet<>(expected);
-            missing.removeAll(present);
-            if (missing.isEmpty()) continue;
-
-            // No special case for libLighting64.so any more: its ARM64 build is a stale snapshot
-            // (circle light instead of torch cones — the missing export is just the marker), so
-            // it takes the same disable path as every other incomplete library. The x86_64 twin's
-            // getVisibleRooms() crash through the box64 bridge was the signature-cache race in
-            // linker.c, fixed there.
-
-            Log.w(LOG_TAG, "Disabling " + nativeLib.getName() + ": the Android build is missing "
-                    + missing.size() + " JNI method(s) exported by the Linux build, first: "
-                    + missing.iterator().next());
-            maybeDisableLib(soDir, nativeLib.getName());
-        }
-    }
-
-    private void maybeDisableLib(File soDir, String libName) {
-        File so = new File(soDir, libName);
-        if (!so.exists()) return;
-
-        File disabled = new File(soDir, libName + ".disabled");
-        if (disabled.exists()) {
-            //noinspection ResultOfMethodCallIgnored
-            so.delete();
-            return;
-        }
-
-        if (!so.renameTo(disabled)) {
-            throw new RuntimeException("Failed to rename " + libName + " for 42.13: " + so.getAbsolutePath());
-        }
-
-        Log.i(LOG_TAG, "42.13 patch: disabled " + libName + " -> " + disabled.getName());
-    }
-
-
-    // B42: patch ShaderUnit to enable combineShaderSources (required for NG_GL4ES;
-    // GLES forbids multi-unit linking, patched class uses PZ's own combineShaderSources mode).
-    // Safe on ZINK — combineShaderSources is valid for any GL.
-    //
-    // The universal ShaderUnitPatcher finds the flag field BY NAME in the constant pool, so it
-    // works on every game version — no md5 table, no pre-made replacement files. Also invoked
-    // at game launch (GameLauncher) to cover instances created by older launcher versions.
-    private void maybePatchShaderUnitCombine(GameInstance gameInstance) {
-        com.zomdroid.patch.ShaderUnitPatchApplier.applyIfNeeded(gameInstance);
     }
 
     private static String md5Hex(File file) throws IOException {
@@ -1804,17 +1779,23 @@ public class InstallerService extends Service implements TaskProgressListener {
         File oshiDir = new File(gameInstance.getGamePath(), "oshi");
         if (!oshiDir.exists() || !oshiDir.isDirectory()) return;
 
-        File target = new File(gameInstance.getGamePath(),
-                "zombie/gameStates/MainScreenState.class");
-        if (!target.exists()) return;
-
-        File disabled = new File(gameInstance.getGamePath(),
-                "zombie/gameStates/MainScreenState.class.disabled");
+        String classRelPath = "zombie/gameStates/MainScreenState.class";
+        File target = new File(gameInstance.getGamePath(), classRelPath);
+        File disabled = new File(gameInstance.getGamePath(), classRelPath + ".disabled");
 
         // Already patched
-        if (disabled.exists()) return;
+        if (disabled.exists() || com.zomdroid.patch.GameClasses.isOverlaid(gameInstance, classRelPath)) return;
+
+        long classSize;
+        try {
+            byte[] original = com.zomdroid.patch.GameClasses.read(gameInstance, classRelPath);
+            if (original == null) return;
+            classSize = original.length;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "printSpecs patch: cannot read MainScreenState.class, skipping", e);
+            return;
+        }
 
-        long classSize = target.length();
         String patchAsset;
         if (classSize >= 33100 && classSize <= 33500) {
             patchAsset = "patches/MainScreenState_42_17.class";
@@ -1825,9 +1806,29 @@ public class InstallerService extends Service implements TaskProgressListener {
             return;
         }
 
+        if (applyClassAsset(gameInstance, classRelPath, target, disabled, patchAsset, "printSpecs")) {
+            Log.i(LOG_TAG, "printSpecs patch applied: " + patchAsset + " (size=" + classSize + ")");
+        }
+    }
+
+    // Puts a pre-patched class from the assets in place of target. An instance running from the
+    // jar gets it as an overlay - the original stays in the jar; an unpacked one keeps the
+    // original as `disabled`. False, with the reason logged, when nothing changed.
+    private boolean applyClassAsset(GameInstance gameInstance, String classRelPath, File target, File disabled,
+                                    String patchAsset, String patchName) {
+        if (gameInstance.runsFromGameJar() && !target.exists()) {
+            try (InputStream src = getAssets().open(patchAsset)) {
+                com.zomdroid.patch.GameClasses.writeOverlay(gameInstance, classRelPath, IOUtils.toByteArray(src));
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to apply " + patchName + " patch, asset=" + patchAsset, e);
+                return false;
+            }
+            return true;
+        }
+
         if (!target.renameTo(disabled)) {
-            Log.e(LOG_TAG, "printSpecs patch: failed to rename original MainScreenState.class");
-            return;
+            Log.e(LOG_TAG, patchName + " patch: failed to rename original " + target.getName());
+            return false;
         }
 
         try (InputStream src = getAssets().open(patchAsset);
@@ -1836,118 +1837,231 @@ public class InstallerService extends Service implements TaskProgressListener {
             int n;
             while ((n = src.read(buf)) != -1) out.write(buf, 0, n);
         } catch (IOException e) {
-            Log.e(LOG_TAG, "Failed to apply printSpecs patch, asset=" + patchAsset, e);
+            Log.e(LOG_TAG, "Failed to apply " + patchName + " patch, asset=" + patchAsset, e);
             disabled.renameTo(target);
-            return;
+            return false;
         }
-
-        Log.i(LOG_TAG, "printSpecs patch applied: " + patchAsset + " (size=" + classSize + ")");
+        return true;
     }
 
-    // 42.15+: multiplayer dies on join with
-    //   NoSuchFieldError: zombie.core.znet.ZNetStatistics.BPSLimitByOutgoingBandwidthLimit J
-    //       at RakNetPeerInterface.GetNetStatistics (Native Method)
-    //
-    // Build 42.15 renamed two fields of ZNetStatistics — BPSLimitByCongestionControl and
-    // BPSLimitByOutgoingBandwidthLimit became bpsLimit... — and rebuilt the *Linux* libRakNet64.so
-    // to match. The Android arm64 one was never rebuilt: it is byte-identical to the 42.12.1 build
-    // in 42.15.1 and 42.20 alike, so its JNI lookup still asks for the old names, fails, and kills
-    // MainThread on the first network-statistics update after entering the world.
-    //
-    // The bundled class re-adds those two names as plain public long fields. The native writes into
-    // them, nothing reads them, and every other statistic keeps working because no other field name
-    // changed. Cost: the two bandwidth-limit numbers read as zero.
-    //
-    // Only bites on servers that actually collect statistics (StatisticManager is gated by the
-    // server's statisticTransmissionEnabled / prometheusEnabled options), which is why private
-    // servers with no monitoring have always worked and public ones crash.
-    private void maybePatchZNetStatisticsFor4215Plus(GameInstance gameInstance) {
-        File target = new File(gameInstance.getGamePath(),
-                "zombie/core/znet/ZNetStatistics.class");
-        if (!target.exists()) return;
+    // 42.13+: run from projectzomboid.jar if present (new fat-jar structure)
+    // The jar used to be unpacked next to itself so the patchers could edit single class files -
+    // every class twice on disk, and minutes added to instance creation. It now stays packed and
+    // goes on the classpath; the patchers read from it and write only their output beside it
+    // (see com.zomdroid.patch.GameClasses).
+    private void useProjectZomboidJar(GameInstance gameInstance) {
+        File jar = new File(gameInstance.getGamePath(), GameInstance.GAME_JAR_NAME);
+        if (!jar.exists()) return;
 
-        File disabled = new File(gameInstance.getGamePath(),
-                "zombie/core/znet/ZNetStatistics.class.disabled");
+        Log.i(LOG_TAG, "42.13+: running from projectzomboid.jar, patched classes overlaid");
+        gameInstance.markRunsFromGameJar();
+    }
 
-        // Already patched
-        if (disabled.exists()) return;
+    // -------------------- TASK SCHEDULING --------------------
 
-        // Detect by content, not size: a build whose class still carries the old field name needs
-        // nothing from us (42.12 and earlier, where the shipped native matches).
-        try {
-            if (classContainsUtf8(target, "BPSLimitByOutgoingBandwidthLimit")) {
-                Log.i(LOG_TAG, "ZNetStatistics already has the legacy field names, no patch needed");
-                return;
-            }
-        } catch (IOException e) {
-            Log.w(LOG_TAG, "ZNetStatistics patch: cannot read class, skipping", e);
-            return;
-        }
+    private static final class TaskRecord {
+        final int id;
+        final Task task;
+        final Set<String> resources;
+        // The rest is guarded by records.
+        TaskState state;
+        // The last state handed to taskState, while this is the oldest task.
+        TaskState delivered;
+        boolean finished;
+        // Waiting for a slot or a resource; only such a task can still be cancelled.
+        boolean queued;
+        long lastProgressUpdateMs;
+        TaskScheduler.Job job;
 
-        if (!target.renameTo(disabled)) {
-            Log.e(LOG_TAG, "ZNetStatistics patch: failed to rename original class");
-            return;
+        TaskRecord(int id, Task task, Set<String> resources) {
+            this.id = id;
+            this.task = task;
+            this.resources = resources;
         }
+    }
 
-        // One asset serves 42.15.1 and 42.20 alike: their ZNetStatistics.class is byte-identical.
-        String patchAsset = "patches/ZNetStatistics_4220_patched.class";
-        try (InputStream src = getAssets().open(patchAsset);
-             FileOutputStream out = new FileOutputStream(target)) {
-            byte[] buf = new byte[4096];
-            int n;
-            while ((n = src.read(buf)) != -1) out.write(buf, 0, n);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Failed to apply ZNetStatistics patch, asset=" + patchAsset, e);
-            disabled.renameTo(target);
-            return;
+    // What a task works on. Tasks sharing any of these wait for each other; see TaskScheduler.
+    private static Set<String> resourcesFor(Task task, Intent intent) {
+        Set<String> resources = new HashSet<>();
+        String instanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
+        if (instanceName != null) resources.add(instanceResource(instanceName));
+        switch (task) {
+            case INSTALL_DEPENDENCIES:
+                resources.add("dependencies");
+                break;
+            case IMPORT_CUSTOM_DRIVER:
+            case EXPORT_CUSTOM_DRIVER:
+                resources.add("drivers");
+                break;
+            default:
+                break;
         }
+        return resources;
+    }
 
-        Log.i(LOG_TAG, "ZNetStatistics patch applied: " + patchAsset);
+    private static String instanceResource(String instanceName) {
+        return "instance:" + instanceName;
     }
 
-    // True when the class file's constant pool contains `text` as a UTF8 entry. Field and method
-    // names live there as plain ASCII, so a byte scan is enough and needs no class parser.
-    private static boolean classContainsUtf8(File classFile, String text) throws IOException {
-        byte[] needle = text.getBytes(StandardCharsets.US_ASCII);
-        byte[] data = new byte[(int) classFile.length()];
-        try (FileInputStream in = new FileInputStream(classFile)) {
-            int off = 0, n;
-            while (off < data.length && (n = in.read(data, off, data.length - off)) != -1) off += n;
-        }
-        outer:
-        for (int i = 0; i <= data.length - needle.length; i++) {
-            for (int j = 0; j < needle.length; j++) {
-                if (data[i + j] != needle[j]) continue outer;
+    // When more tasks are free to start than there are slots, the short ones a player sits and
+    // waits for go before the long installs.
+    private static int priorityOf(Task task) {
+        switch (task) {
+            case CREATE_GAME_INSTANCE:
+            case INSTALL_DEPENDENCIES:
+                return 0;
+            case DELETE_GAME_INSTANCE:
+            case EXPORT_LOG:
+            case EXPORT_SAVES_FROM_INSTANCE:
+            case EXPORT_CONTROLS_FROM_INSTANCE:
+            case EXPORT_CUSTOM_DRIVER:
+            case IMPORT_GAME_SETTINGS:
+            case EXPORT_GAME_SETTINGS:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    // Runs body as the current task once nothing it shares a resource with is running.
+    private void schedule(Runnable body) {
+        TaskRecord record = currentRecord.get();
+        if (record == null) throw new IllegalStateException("schedule() called outside of a task");
+        TaskScheduler.Job job = scheduler.submit(record.id, priorityOf(record.task), record.resources, () -> {
+            currentRecord.set(record);
+            synchronized (records) {
+                if (record.queued) {
+                    record.queued = false;
+                    if (record.state != null) record.state = record.state.forTask(record.id, record.task, false);
+                    publish();
+                }
             }
-            return true;
+            try {
+                body.run();
+            } catch (RuntimeException e) {
+                // The executor this replaced kept an escaped exception in a Future nobody read,
+                // and the task's dialog spun forever.
+                Log.e(LOG_TAG, "Task " + record.task + " failed", e);
+                boolean finished;
+                synchronized (records) {
+                    finished = record.finished;
+                }
+                if (!finished) finishWithError(record.state != null ? record.state.title : null, e.toString());
+            } finally {
+                currentRecord.remove();
+            }
+        }, () -> {
+            synchronized (records) {
+                record.queued = true;
+            }
+            postTaskState(new TaskState(record.state != null ? record.state.title : null,
+                    getString(R.string.task_waiting), -1, 0, false, false));
+        });
+        synchronized (records) {
+            record.job = job;
         }
-        return false;
     }
 
-    // 42.13+: extract projectzomboid.jar if present (new fat-jar structure)
-    private void extractProjectZomboidJarSimple(GameInstance gameInstance) throws IOException {
-        File gameDir = new File(gameInstance.getGamePath());
-        File jar = new File(gameDir, "projectzomboid.jar");
-        if (!jar.exists()) return;
-
-        Log.i(LOG_TAG, "42.13+: extracting projectzomboid.jar");
-        try (InputStream is = new FileInputStream(jar)) {
-            announceExtraction();
-            FileUtils.extractZipToDisk(is, gameDir.getAbsolutePath(), this, jar.length());
+    // Takes back a task that has not started yet. False once it runs: tasks stop only by
+    // finishing.
+    public boolean cancelTask(int taskId) {
+        TaskRecord record;
+        synchronized (records) {
+            record = records.get(taskId);
+            if (record == null || record.job == null) return false;
         }
+        if (!scheduler.cancel(record.job)) return false;
+        markCancelled(record);
+        return true;
+    }
+
+    private void markCancelled(TaskRecord record) {
+        Log.i(LOG_TAG, "Task " + record.id + " (" + record.task + ") cancelled before it started");
+        update(record, new TaskState(record.state != null ? record.state.title : null,
+                getString(R.string.task_cancelled), -1, 0, true, false));
     }
 
     // -------------------- TASK STATE / NOTIFICATION --------------------
 
     private void finish(String title, String message) {
-        userTaskRunning = false;
-        this.taskState.postValue(new TaskState(title, message, -1, 0, true, false));
+        postTaskState(new TaskState(title, message, -1, 0, true, false));
     }
 
     private void finishWithError(String title, String error) {
         Log.e(LOG_TAG, error);
-        userTaskRunning = false;
-        this.taskState.postValue(new TaskState(title, error, -1, 0, false, true));
+        postTaskState(new TaskState(title, error, -1, 0, false, true));
+    }
+
+    private void postTaskState(TaskState state) {
+        TaskRecord record = currentRecord.get();
+        if (record == null) {
+            handler.post(() -> taskState.setValue(state));
+            return;
+        }
+        update(record, state);
+    }
+
+    private void update(TaskRecord record, TaskState state) {
+        synchronized (records) {
+            record.state = state.forTask(record.id, record.task, record.queued && !state.isFinished);
+            if (state.isFinished || state.isFinishedWithError) record.finished = true;
+            publish();
+        }
+    }
+
+    // Hands taskState the state of the oldest task, and every task's finish in submission order:
+    // a finished task leaves only once its finish went out, so a dialog that follows one task at
+    // a time still sees every result. Runs with records held; the LiveData are set on the main
+    // thread, one value after the other, so no finish is coalesced away by the next update.
+    private void publish() {
+        List<TaskState> toDeliver = new ArrayList<>();
+        List<TaskState> all = new ArrayList<>();
+        TaskState head = null;
+        boolean atHead = true;
+        for (Iterator<TaskRecord> it = records.values().iterator(); it.hasNext(); ) {
+            TaskRecord record = it.next();
+            // A task that has shown nothing yet (the dependency check, until it finds something
+            // to install) does not hold the dialog up for the ones behind it.
+            if (record.state == null) continue;
+            if (atHead) {
+                if (record.state != record.delivered) {
+                    toDeliver.add(record.state);
+                    record.delivered = record.state;
+                }
+                if (record.finished) {
+                    it.remove();
+                    continue;
+                }
+                atHead = false;
+                head = record.state;
+            }
+            all.add(record.state);
+        }
+        TaskState notified = head;
+        handler.post(() -> {
+            for (TaskState state : toDeliver) taskState.setValue(state);
+            taskStates.setValue(all);
+            if (notified != null) updateNotification(notified);
+        });
+    }
+
+    private void updateNotification(TaskState state) {
+        if (notificationBuilder == null) return;
+        if (ActivityCompat.checkSelfPermission(this, android.Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        if (state.title != null) {
+            notificationBuilder.setContentTitle(state.title);
+        }
+        if (state.message != null) {
+            notificationBuilder.setContentText(state.message);
+        }
+        if (state.progress < 0)
+            notificationBuilder.setProgress(0, 0, true);
+        else
+            notificationBuilder.setProgress(state.progressMax, state.progress, false);
+        notificationManager.notify(NOTIFICATION_ID, notificationBuilder.build());
     }
 
 
@@ -1960,13 +2074,22 @@ public class InstallerService extends Service implements TaskProgressListener {
         onProgressUpdate(getString(R.string.extracting), -1, 0);
     }
 
-    private void installGameFromZip(GameInstance gameInstance, Uri zipUri) throws IOException {
+    private void installGameFromZip(GameInstance gameInstance, Uri zipUri, InstallJournal journal) throws IOException {
         ContentResolver contentResolver = getApplicationContext().getContentResolver();
-        try (InputStream inputStream = contentResolver.openInputStream(zipUri)) {
-            long fileSize = FileUtils.queryFileSize(contentResolver, zipUri);
-            announceExtraction();
-            FileUtils.extractZipToDisk(inputStream, gameInstance.getGamePath(), this, fileSize);
-        }
+        String gamePath = gameInstance.getGamePath();
+        announceExtraction();
+        FileUtils.extractZipToDisk(contentResolver, zipUri, entryNames -> {
+            String rootPrefix = findGameRootPrefix(entryNames);
+            if (rootPrefix.isEmpty()) return journal.track(PipelinedExtractor.under(gamePath));
+            Log.i(LOG_TAG, "Game root nested at " + rootPrefix + " — extracting it into " + gamePath);
+            // Entries outside the game root are the wrapper folders' own clutter (a readme next
+            // to the game folder); they were always dropped along with the wrappers.
+            return journal.track(entry -> {
+                String name = entry.getName();
+                if (!name.startsWith(rootPrefix) || name.length() == rootPrefix.length()) return null;
+                return gamePath + "/" + name.substring(rootPrefix.length());
+            });
+        }, GameFileStore.open(), this);
     }
 
     // -------------------- GAME ROOT DRILL / UNWRAP --------------------
@@ -1976,53 +2099,40 @@ public class InstallerService extends Service implements TaskProgressListener {
             "ProjectZomboid64.json", "ProjectZomboid64", "projectzomboid.jar", "zombie"
     };
 
-    // True if dir DIRECTLY contains any PZ root marker.
-    private boolean isGameRoot(File dir) {
-        if (dir == null || !dir.isDirectory()) return false;
-        File[] files = dir.listFiles();
-        if (files == null) return false;
-        for (File f : files) {
-            for (String marker : GAME_ROOT_MARKERS) {
-                if (f.getName().equalsIgnoreCase(marker)) return true;
+    // The wrapper folders to strip from the archive's entry names ("Zomboid/game/" for a game
+    // zipped inside two folders), or "" when the game root is the top of the archive or no PZ
+    // root is found at all - the launch check reports that one.
+    //
+    // This used to be decided after extraction, by walking the extracted tree and moving the
+    // nested root up - and when that rename failed, by copying the whole multi-GB game and
+    // deleting the original, which doubled both the I/O and the space an install needs. The
+    // archive's entry names already say where the root is, so entries now go straight to their
+    // final place. The shallowest folder that directly holds a marker wins, as the walk found it.
+    static String findGameRootPrefix(List<String> entryNames) {
+        String best = null;
+        int bestDepth = Integer.MAX_VALUE;
+        for (String name : entryNames) {
+            String[] parts = name.split("/");
+            // Only as deep as the best root so far: anything deeper cannot beat it.
+            for (int i = 0; i < parts.length && i <= bestDepth; i++) {
+                if (!isGameRootMarker(parts[i])) continue;
+                StringBuilder prefix = new StringBuilder();
+                for (int j = 0; j < i; j++) prefix.append(parts[j]).append('/');
+                if (i < bestDepth || prefix.toString().compareTo(best) < 0) {
+                    best = prefix.toString();
+                    bestDepth = i;
+                }
+                break;
             }
         }
-        return false;
-    }
-
-    // Recursively locate the game root (this dir or a descendant). null if none found.
-    private File findGameRoot(File dir) {
-        if (isGameRoot(dir)) return dir;
-        File[] children = dir.listFiles(FileUtils::isWalkableDirectory);
-        if (children == null) return null;
-        for (File child : children) {
-            File found = findGameRoot(child);
-            if (found != null) return found;
-        }
-        return null;
+        return best != null ? best : "";
     }
 
-    // If the extracted game sits inside one or more wrapper folders, lift the real root up so
-    // its contents live directly under gameDir. No-op if already flat or no PZ root is found.
-    private void flattenGameRootIfWrapped(File gameDir) throws IOException {
-        if (isGameRoot(gameDir)) return; // already flat
-        File root = findGameRoot(gameDir);
-        if (root == null || root.equals(gameDir)) return; // nothing PZ-like nested; launch check will report
-
-        Log.i(LOG_TAG, "Game root nested at " + root + " — flattening into " + gameDir);
-
-        File tmp = new File(gameDir.getParentFile(), gameDir.getName() + "__pzroot_tmp");
-        if (tmp.exists()) FileUtils.deleteDirectory(tmp);
-
-        // Move the nested root out of the wrapper tree (rename on same fs, copy as fallback)...
-        if (!root.renameTo(tmp)) {
-            copyDirectory(root, tmp);
-        }
-        // ...drop the leftover wrapper folders, then reinstate the root as gameDir.
-        FileUtils.deleteDirectory(gameDir);
-        if (!tmp.renameTo(gameDir)) {
-            copyDirectory(tmp, gameDir);
-            FileUtils.deleteDirectory(tmp);
+    private static boolean isGameRootMarker(String fileName) {
+        for (String marker : GAME_ROOT_MARKERS) {
+            if (fileName.equalsIgnoreCase(marker)) return true;
         }
+        return false;
     }
 
     @Override
@@ -2053,50 +2163,31 @@ public class InstallerService extends Service implements TaskProgressListener {
     private void doInstallModSmart(Intent intent) {
         String taskTitle = getString(R.string.install_mod_smart_title);
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
-        executorService.execute(() -> {
+        schedule(() -> {
             Uri archiveUri = intent.getParcelableExtra(EXTRA_MODS_URI);
             String instanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
             String buildVersion = intent.getStringExtra(EXTRA_BUILD_VERSION);
             boolean isBuild42 = "42".equals(buildVersion);
 
-            File tmpDir = new File(getCacheDir(), "smart_mod_tmp_" + System.currentTimeMillis());
+            File indexDir = new File(getCacheDir(), "smart_mod_index_" + System.currentTimeMillis());
             try {
-                tmpDir.mkdirs();
-
-                // Step 1: Extract ZIP to temp
+                // Step 1: Index the archive - entry names and mod.info files only
                 onProgressUpdate(getString(R.string.extracting), -1, 0);
-                try (InputStream is = getContentResolver().openInputStream(archiveUri);
-                     ZipInputStream zis = new ZipInputStream(is)) {
-                    ZipEntry entry;
-                    while ((entry = zis.getNextEntry()) != null) {
-                        File outFile = new File(tmpDir, entry.getName());
-                        if (entry.isDirectory()) {
-                            outFile.mkdirs();
-                        } else {
-                            outFile.getParentFile().mkdirs();
-                            try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                                byte[] buf = new byte[8192];
-                                int len;
-                                while ((len = zis.read(buf)) > 0) fos.write(buf, 0, len);
-                            }
-                        }
-                        zis.closeEntry();
-                    }
-                }
+                ModArchive archive = ModArchive.index(getContentResolver(), archiveUri, indexDir);
 
                 // Step 2: Find mod root — folder containing mod.info, media/, or common/
-                File modRoot = findModRoot(tmpDir);
-                if (modRoot == null) {
+                if (archive.roots().isEmpty()) {
                     finishWithError(taskTitle, getString(R.string.install_mod_smart_no_root));
                     return;
                 }
-                Log.d("SmartMod", "Found mod root: " + modRoot.getAbsolutePath());
+                ModArchive.Root modRoot = archive.roots().get(0);
+                Log.d("SmartMod", "Found mod root: /" + modRoot.prefix);
 
                 // Step 3: Determine mod name
-                String modName = modRoot.getName();
-                if (modName.equals(tmpDir.getName())) {
+                String modName = modRoot.folderName();
+                if (modName == null) {
                     modName = extractZipName(archiveUri);
                     if (modName != null && modName.endsWith(".zip"))
                         modName = modName.substring(0, modName.length() - 4);
@@ -2107,10 +2198,10 @@ public class InstallerService extends Service implements TaskProgressListener {
 
                 // Step 5: Merge 42.x version folders if B42
                 //if (isBuild42) {
-                //    mergeVersionsForB42(modRoot);
+                //    mergeVersionsForB42(normalDest);
                 //}
 
-                // Step 6: Install normal-case copy
+                // Step 6: Write the mod straight into its folder under mods/
                 GameInstance gameInstance = GameInstanceManager.requireSingleton().getInstanceByName(instanceName);
                 if (gameInstance == null) {
                     finishWithError(taskTitle, "Game instance not found: " + instanceName);
@@ -2122,7 +2213,8 @@ public class InstallerService extends Service implements TaskProgressListener {
 
                 File normalDest = new File(modsDir, modName);
                 if (normalDest.exists()) FileUtils.deleteDirectory(normalDest);
-                copyDirectory(modRoot, normalDest);
+                archive.extract(getContentResolver(), archiveUri,
+                        Collections.singletonMap(modRoot.prefix, normalDest), this);
                 Log.d("SmartMod", "Installed normal: " + normalDest.getAbsolutePath());
 
                 // Expand common/ into each version folder so assets are accessible
@@ -2135,7 +2227,9 @@ public class InstallerService extends Service implements TaskProgressListener {
                             String name = vd.getName();
                             if (name.equals("42") || name.startsWith("42.") ||
                                 name.equals("41") || name.startsWith("41.")) {
-                                copyDirectoryNoOverwrite(commonDir, vd);
+                                // Links, not copies: the same assets once on disk however many
+                                // version folders there are. Nothing writes mod files in place.
+                                TreeCopy.linkOrCopy(commonDir, vd, TreeCopy.Conflict.KEEP_EXISTING, this);
                                 Log.d("SmartMod", "Expanded common/ into " + vd.getName());
                             }
                         }
@@ -2152,7 +2246,7 @@ public class InstallerService extends Service implements TaskProgressListener {
             } catch (Exception e) {
                 finishWithError(taskTitle, e.toString());
             } finally {
-                try { FileUtils.deleteDirectory(tmpDir); } catch (Exception ignored) {}
+                try { FileUtils.deleteDirectory(indexDir); } catch (Exception ignored) {}
             }
         });
     }
@@ -2195,9 +2289,9 @@ public class InstallerService extends Service implements TaskProgressListener {
     private void doInstallEto(Intent intent) {
         String taskTitle = getString(R.string.optimization_eto_installing);
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
-        executorService.submit(() -> {
+        schedule(() -> {
             Uri archiveUri = intent.getParcelableExtra(EXTRA_ARCHIVE_URI);
             String gameInstanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
             String buildVersion = intent.getStringExtra(EXTRA_BUILD_VERSION);
@@ -2210,51 +2304,33 @@ public class InstallerService extends Service implements TaskProgressListener {
                 return;
             }
 
-            File tmpDir = new File(getCacheDir(), "eto_tmp_" + System.currentTimeMillis());
+            File indexDir = new File(getCacheDir(), "eto_index_" + System.currentTimeMillis());
             try {
-                tmpDir.mkdirs();
-
-                // Step 1: Extract ZIP to temp
-                try (InputStream is = getContentResolver().openInputStream(archiveUri);
-                     ZipInputStream zis = new ZipInputStream(is)) {
-                    ZipEntry entry;
-                    while ((entry = zis.getNextEntry()) != null) {
-                        File outFile = new File(tmpDir, entry.getName());
-                        if (entry.isDirectory()) {
-                            outFile.mkdirs();
-                        } else {
-                            outFile.getParentFile().mkdirs();
-                            try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                                byte[] buf = new byte[8192];
-                                int len;
-                                while ((len = zis.read(buf)) > 0) fos.write(buf, 0, len);
-                            }
-                        }
-                        zis.closeEntry();
-                    }
-                }
+                // Step 1: Index the archive - entry names and mod.info files only. Nothing of the
+                // texture pack is written until the textures folder is known.
+                ModArchive archive = ModArchive.index(getContentResolver(), archiveUri, indexDir);
 
                 // Step 2: Find the right mod root.
                 // If ZIP contains multiple mods, prefer the one with "performance" in the name.
                 // Otherwise take the single mod found.
-                File modRoot = findEtoModRoot(tmpDir);
+                ModArchive.Root modRoot = findEtoModRoot(archive);
                 if (modRoot == null) {
                     finishWithError(taskTitle, getString(R.string.install_mod_smart_no_root));
                     return;
                 }
-                Log.d("ETO", "Using mod root: " + modRoot.getAbsolutePath());
+                Log.d("ETO", "Using mod root: /" + modRoot.prefix);
 
                 // Step 3: Find media/textures inside the chosen mod root.
                 // For B42: look inside the latest 42.x subfolder first.
                 // For B41: look directly at mod root.
-                File texturesSource = findEtoTexturesFolder(modRoot, isBuild42);
+                String texturesSource = findEtoTexturesFolder(archive, modRoot, isBuild42);
 
                 // Step 4: Validate BEFORE touching game files — fail fast if wrong mod/build.
-                if (texturesSource == null || !texturesSource.isDirectory()) {
+                if (texturesSource == null) {
                     finishWithError(taskTitle, getString(R.string.optimization_eto_error_no_textures));
                     return;
                 }
-                Log.d("ETO", "Textures source: " + texturesSource.getAbsolutePath());
+                Log.d("ETO", "Textures source: /" + texturesSource);
 
                 // Step 5: Backup original textures folder if not already backed up.
                 // We copy (not rename) so the original textures remain intact.
@@ -2263,14 +2339,19 @@ public class InstallerService extends Service implements TaskProgressListener {
                 File gameTexturesBak = new File(gameInstance.getGamePath(), "media/textures.bak");
                 if (gameTextures.isDirectory() && !gameTexturesBak.exists()) {
                     Log.d("ETO", "Backing up original textures...");
-                    copyDirectory(gameTextures, gameTexturesBak);
+                    // Game files are replaced, never written in place, so the backup can share
+                    // them with the live folder instead of doubling its size.
+                    TreeCopy.linkOrCopy(gameTextures, gameTexturesBak, TreeCopy.Conflict.REPLACE, this);
                     Log.d("ETO", "Backup done: " + gameTexturesBak.getAbsolutePath());
                 }
 
-                // Step 6: Copy ETO textures on top of existing textures folder.
-                // Original files not present in ETO remain untouched.
+                // Step 6: Write ETO textures straight over the existing textures folder. The
+                // extractors replace each file rather than write into it, so the backup's links
+                // keep the originals. Original files not present in ETO remain untouched.
                 gameTextures.mkdirs();
-                copyDirectory(texturesSource, gameTextures);
+                announceExtraction();
+                archive.extract(getContentResolver(), archiveUri,
+                        Collections.singletonMap(texturesSource, gameTextures), this);
                 Log.d("ETO", "Installed to: " + gameTextures.getAbsolutePath());
 
                 finish(getString(R.string.optimization_eto_installed), null);
@@ -2278,7 +2359,7 @@ public class InstallerService extends Service implements TaskProgressListener {
             } catch (Exception e) {
                 finishWithError(taskTitle, e.toString());
             } finally {
-                try { FileUtils.deleteDirectory(tmpDir); } catch (Exception ignored) {}
+                try { FileUtils.deleteDirectory(indexDir); } catch (Exception ignored) {}
             }
         });
     }
@@ -2291,16 +2372,15 @@ public class InstallerService extends Service implements TaskProgressListener {
     //               > ETO_FPS > anything else (skip ETO_Hotfix)
     //
     // If only one non-hotfix mod found — use it regardless of id.
-    private File findEtoModRoot(File tmpDir) {
-        List<File> roots = new ArrayList<>();
-        collectModRoots(tmpDir, roots);
+    private ModArchive.Root findEtoModRoot(ModArchive archive) {
+        List<ModArchive.Root> roots = archive.roots();
 
         if (roots.isEmpty()) return null;
 
         // Filter out hotfix mods
-        List<File> candidates = new ArrayList<>();
-        for (File root : roots) {
-            String id = readModId(root);
+        List<ModArchive.Root> candidates = new ArrayList<>();
+        for (ModArchive.Root root : roots) {
+            String id = root.modId;
             if (id != null && id.toLowerCase().contains("hotfix")) {
                 Log.d("ETO", "Skipping hotfix mod: " + id);
                 continue;
@@ -2321,38 +2401,19 @@ public class InstallerService extends Service implements TaskProgressListener {
         };
 
         for (String preferred : priority) {
-            for (File root : candidates) {
-                String id = readModId(root);
-                if (preferred.equalsIgnoreCase(id)) {
-                    Log.d("ETO", "Selected by priority id=" + id + ": " + root.getName());
+            for (ModArchive.Root root : candidates) {
+                if (preferred.equalsIgnoreCase(root.modId)) {
+                    Log.d("ETO", "Selected by priority id=" + root.modId + ": /" + root.prefix);
                     return root;
                 }
             }
         }
 
         // No priority match — return first candidate
-        Log.d("ETO", "No priority match, using first: " + candidates.get(0).getName());
+        Log.d("ETO", "No priority match, using first: /" + candidates.get(0).prefix);
         return candidates.get(0);
     }
 
-    // Read the "id" field from mod.info inside a mod root folder.
-    // Returns null if mod.info not found or id field missing.
-    private String readModId(File modRoot) {
-        File modInfo = new File(modRoot, "mod.info");
-        if (!modInfo.isFile()) return null;
-        try (java.io.BufferedReader br = new java.io.BufferedReader(
-                new java.io.FileReader(modInfo))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.startsWith("id=")) {
-                    return line.substring(3).trim();
-                }
-            }
-        } catch (IOException ignored) {}
-        return null;
-    }
-
     // Collect all mod roots (containing mod.info, media/ or common/) into the list.
     private void collectModRoots(File dir, List<File> result) {
         if (isModRoot(dir)) {
@@ -2366,57 +2427,22 @@ public class InstallerService extends Service implements TaskProgressListener {
         }
     }
 
-    // Find the media/textures folder inside the chosen ETO mod root.
+    // Find the media/textures folder inside the chosen ETO mod root, as an archive path.
     // For B42: navigate into the latest 42.x subfolder first.
     // For B41: look directly at mod root level.
-    private File findEtoTexturesFolder(File modRoot, boolean isBuild42) {
+    private String findEtoTexturesFolder(ModArchive archive, ModArchive.Root modRoot, boolean isBuild42) {
         if (isBuild42) {
-            File latestVersionFolder = findLatestB42FolderIn(modRoot);
+            String latestVersionFolder = archive.latestB42Dir(modRoot.prefix);
             if (latestVersionFolder != null) {
-                File textures = new File(latestVersionFolder, "media/textures");
-                if (textures.isDirectory()) return textures;
+                String textures = latestVersionFolder + "media/textures/";
+                if (archive.hasDir(textures)) return textures;
             }
         }
         // B41 or fallback: media/textures directly at mod root
-        File textures = new File(modRoot, "media/textures");
-        if (textures.isDirectory()) return textures;
+        String textures = modRoot.prefix + "media/textures/";
+        if (archive.hasDir(textures)) return textures;
         // Last resort: search anywhere under mod root
-        return findTexturesFolderRecursive(modRoot);
-    }
-
-    // Find the subfolder with the highest 42.x version number directly under dir.
-    private File findLatestB42FolderIn(File dir) {
-        File best = null;
-        double bestVersion = -1;
-        File[] files = dir.listFiles();
-        if (files == null) return null;
-        for (File f : files) {
-            if (!f.isDirectory()) continue;
-            String name = f.getName();
-            if (name.equals("42") || (name.startsWith("42.") && name.length() > 3)) {
-                try {
-                    double v = Double.parseDouble(name);
-                    if (v > bestVersion) {
-                        bestVersion = v;
-                        best = f;
-                    }
-                } catch (NumberFormatException ignored) {}
-            }
-        }
-        return best;
-    }
-
-    private File findTexturesFolderRecursive(File dir) {
-        File[] files = dir.listFiles();
-        if (files == null) return null;
-        for (File f : files) {
-            if (FileUtils.isWalkableDirectory(f)) {
-                if (f.getName().equals("textures")) return f;
-                File found = findTexturesFolderRecursive(f);
-                if (found != null) return found;
-            }
-        }
-        return null;
+        return archive.findDirNamed(modRoot.prefix, "textures");
     }
 
     // -------------------- INSTALL ZOMBIEBUDDY --------------------
@@ -2425,14 +2451,14 @@ public class InstallerService extends Service implements TaskProgressListener {
     private void doInstallZombieBuddy(Intent intent) {
         String taskTitle = getString(R.string.optimization_zombiebuddy_installing);
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String gameInstanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (gameInstanceName == null) { finishWithError(taskTitle, "Game instance name is missing"); return; }
         GameInstance gameInstance = GameInstanceManager.requireSingleton().getInstanceByName(gameInstanceName);
         if (gameInstance == null) { finishWithError(taskTitle, "Game instance not found: " + gameInstanceName); return; }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             Uri archiveUri = intent.getParcelableExtra(EXTRA_ARCHIVE_URI);
             if (archiveUri == null) { finishWithError(taskTitle, "Archive URI is missing"); return; }
 
@@ -2441,22 +2467,10 @@ public class InstallerService extends Service implements TaskProgressListener {
                 tmpDir.mkdirs();
 
                 // Extract ZIP
-                try (InputStream is = getContentResolver().openInputStream(archiveUri);
-                     ZipInputStream zis = new ZipInputStream(is)) {
-                    ZipEntry entry;
-                    while ((entry = zis.getNextEntry()) != null) {
-                        File outFile = new File(tmpDir, entry.getName());
-                        if (entry.isDirectory()) { outFile.mkdirs(); }
-                        else {
-                            outFile.getParentFile().mkdirs();
-                            try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                                byte[] buf = new byte[8192]; int len;
-                                while ((len = zis.read(buf)) > 0) fos.write(buf, 0, len);
-                            }
-                        }
-                        zis.closeEntry();
-                    }
-                }
+                // Through FileUtils like every other archive: it checks the cache has room for
+                // the unpacked size first and keeps entries from escaping tmpDir.
+                announceExtraction();
+                FileUtils.extractZipToDisk(getContentResolver(), archiveUri, tmpDir.getAbsolutePath(), this);
 
                 // Find ZombieBuddy.jar recursively
                 File jarFile = findFileRecursive(tmpDir, "ZombieBuddy.jar");
@@ -2479,7 +2493,7 @@ public class InstallerService extends Service implements TaskProgressListener {
                     new File(modsPath).mkdirs();
                     File modDest = new File(modsPath, modName);
                     if (modDest.exists()) FileUtils.deleteDirectory(modDest);
-                    copyDirectory(modRoot, modDest);
+                    TreeCopy.move(modRoot, modDest, TreeCopy.Conflict.REPLACE, this);
                     Log.d("ZombieBuddy", "Mod installed to: " + modDest.getAbsolutePath());
                 }
 
@@ -2504,14 +2518,14 @@ public class InstallerService extends Service implements TaskProgressListener {
     private void doInstallZbBetterFps(Intent intent) {
         String taskTitle = getString(R.string.optimization_zbbetterfps_installing);
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String gameInstanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (gameInstanceName == null) { finishWithError(taskTitle, "Game instance name is missing"); return; }
         GameInstance gameInstance = GameInstanceManager.requireSingleton().getInstanceByName(gameInstanceName);
         if (gameInstance == null) { finishWithError(taskTitle, "Game instance not found: " + gameInstanceName); return; }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             Uri archiveUri = intent.getParcelableExtra(EXTRA_ARCHIVE_URI);
             if (archiveUri == null) { finishWithError(taskTitle, "Archive URI is missing"); return; }
 
@@ -2520,22 +2534,10 @@ public class InstallerService extends Service implements TaskProgressListener {
                 tmpDir.mkdirs();
 
                 // Extract ZIP
-                try (InputStream is = getContentResolver().openInputStream(archiveUri);
-                     ZipInputStream zis = new ZipInputStream(is)) {
-                    ZipEntry entry;
-                    while ((entry = zis.getNextEntry()) != null) {
-                        File outFile = new File(tmpDir, entry.getName());
-                        if (entry.isDirectory()) { outFile.mkdirs(); }
-                        else {
-                            outFile.getParentFile().mkdirs();
-                            try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                                byte[] buf = new byte[8192]; int len;
-                                while ((len = zis.read(buf)) > 0) fos.write(buf, 0, len);
-                            }
-                        }
-                        zis.closeEntry();
-                    }
-                }
+                // Through FileUtils like every other archive: it checks the cache has room for
+                // the unpacked size first and keeps entries from escaping tmpDir.
+                announceExtraction();
+                FileUtils.extractZipToDisk(getContentResolver(), archiveUri, tmpDir.getAbsolutePath(), this);
 
                 // Find mod root
                 File modRoot = findModRoot(tmpDir);
@@ -2555,7 +2557,7 @@ public class InstallerService extends Service implements TaskProgressListener {
                 new File(modsPath).mkdirs();
                 File modDest = new File(modsPath, modName);
                 if (modDest.exists()) FileUtils.deleteDirectory(modDest);
-                copyDirectory(modRoot, modDest);
+                TreeCopy.move(modRoot, modDest, TreeCopy.Conflict.REPLACE, this);
                 Log.d("ZBBetterFPS", "Mod installed to: " + modDest.getAbsolutePath());
 
                 // Replace ZBBetterFPS.jar with our Java 21 compatible version.
@@ -2661,7 +2663,7 @@ public class InstallerService extends Service implements TaskProgressListener {
     private void doImportGameSettings(Intent intent) {
         String taskTitle = getString(R.string.game_settings_importing);
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String gameInstanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (gameInstanceName == null) { finishWithError(taskTitle, "Game instance name is missing"); return; }
@@ -2671,7 +2673,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         Uri iniUri = intent.getParcelableExtra(EXTRA_ARCHIVE_URI);
         if (iniUri == null) { finishWithError(taskTitle, "File URI is missing"); return; }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             try {
                 // Ensure Zomboid/ folder exists
                 File zomboidDir = new File(gameInstance.getHomePath(), "Zomboid");
@@ -2697,7 +2699,7 @@ public class InstallerService extends Service implements TaskProgressListener {
     private void doExportGameSettings(Intent intent) {
         String taskTitle = getString(R.string.game_settings_exporting);
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String gameInstanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         Uri outUri = intent.getParcelableExtra(EXTRA_OUTPUT_URI);
@@ -2708,7 +2710,7 @@ public class InstallerService extends Service implements TaskProgressListener {
         GameInstance gameInstance = GameInstanceManager.requireSingleton().getInstanceByName(gameInstanceName);
         if (gameInstance == null) { finishWithError(taskTitle, "Game instance not found: " + gameInstanceName); return; }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             try {
                 File iniFile = new File(gameInstance.getHomePath(), "Zomboid/options.ini");
                 if (!iniFile.exists()) {
@@ -2735,7 +2737,7 @@ public class InstallerService extends Service implements TaskProgressListener {
     private void doInstallNativeLibs(Intent intent) {
         String taskTitle = getString(R.string.native_libs_installing);
         startForeground(NOTIFICATION_ID, buildNotification(taskTitle));
-        taskState.postValue(new TaskState(taskTitle, null, -1, 0, false, false));
+        postTaskState(new TaskState(taskTitle, null, -1, 0, false, false));
 
         String gameInstanceName = intent.getStringExtra(EXTRA_GAME_INSTANCE_NAME);
         if (gameInstanceName == null) { finishWithError(taskTitle, "Game instance name is missing"); return; }
@@ -2745,18 +2747,14 @@ public class InstallerService extends Service implements TaskProgressListener {
         Uri archiveUri = intent.getParcelableExtra(EXTRA_NATIVE_LIBS_URI);
         if (archiveUri == null) { finishWithError(taskTitle, "Archive URI is missing"); return; }
 
-        executorService.submit(() -> {
+        schedule(() -> {
             try {
                 String nativeLibsPath = gameInstance.getGamePath() + "/android/arm64-v8a";
                 File nativeLibsDir = new File(nativeLibsPath);
                 nativeLibsDir.mkdirs();
 
-                try (InputStream is = getContentResolver().openInputStream(archiveUri)) {
-                    if (is == null) throw new IllegalStateException("openInputStream returned null");
-                    announceExtraction();
-                    FileUtils.extractZipToDisk(is, nativeLibsPath, this,
-                            FileUtils.queryFileSize(getContentResolver(), archiveUri));
-                }
+                announceExtraction();
+                FileUtils.extractZipToDisk(getContentResolver(), archiveUri, nativeLibsPath, this);
                 Log.i(LOG_TAG, "Native libs installed to: " + nativeLibsPath);
                 finish(getString(R.string.native_libs_installed), null);
             } catch (Exception e) {
@@ -2785,48 +2783,66 @@ public class InstallerService extends Service implements TaskProgressListener {
         return notificationBuilder.build();
     }
 
+    // Tree copies (TreeCopy) report their rate; the line says how much is left and how fast it goes.
+    @Override
+    public void onTransferProgress(long doneBytes, long totalBytes, long bytesPerSecond) {
+        onProgressUpdate(getString(R.string.copying_progress, doneBytes >> 20, totalBytes >> 20, bytesPerSecond >> 20),
+                totalBytes > 0 ? (int) (doneBytes * 100 / totalBytes) : -1, 100);
+    }
+
     @Override
     public void onProgressUpdate(String message, int progress, int progressMax) {
-        // The throttle drops the whole event, not just a redraw, so a call carrying a new message
-        // that lands inside the window would lose that message for good - the next call is a bare
-        // percentage tick and could never bring it back. Only rate-limit the ticks.
-        if (message == null && System.currentTimeMillis() - lastProgressUpdateMs < 500) return;
-        lastProgressUpdateMs = System.currentTimeMillis();
-
-        TaskState currentState = this.taskState.getValue();
-        this.taskState.postValue(new TaskState(
-                currentState == null ? null : currentState.title,
-                // Carried forward exactly like the title above. Extraction reports progress through
-                // FileUtils, which has no text to give and passes null; treating that as "clear the
-                // line" is what wiped the "Extracting..." set moments earlier and left the dialog
-                // with a bare bar. The notification never had the bug - it only calls
-                // setContentText when the message is non-null - so the two disagreed on the same
-                // event.
-                message != null ? message : (currentState == null ? null : currentState.message),
-                progress, progressMax, false, false));
+        TaskRecord record = currentRecord.get();
+        if (record == null) {
+            Log.w(LOG_TAG, "Progress reported outside of a task: " + message);
+            return;
+        }
+        synchronized (records) {
+            // The throttle drops the whole event, not just a redraw, so a call carrying a new
+            // message that lands inside the window would lose that message for good - the next
+            // call is a bare percentage tick and could never bring it back. Only rate-limit the
+            // ticks.
+            if (message == null && System.currentTimeMillis() - record.lastProgressUpdateMs < 500) return;
+            record.lastProgressUpdateMs = System.currentTimeMillis();
 
-        handler.post(() -> {
-            if (ActivityCompat.checkSelfPermission(this, android.Manifest.permission.POST_NOTIFICATIONS)
-                    != PackageManager.PERMISSION_GRANTED) {
-                return;
-            }
-            if (message != null) {
-                notificationBuilder.setContentText(message);
-            }
-            if (progress < 0)
-                notificationBuilder.setProgress(0, 0, true);
-            else
-                notificationBuilder.setProgress(progressMax, progress, false);
-            notificationManager.notify(NOTIFICATION_ID, notificationBuilder.build());
-        });
+            TaskState currentState = record.state;
+            update(record, new TaskState(
+                    currentState == null ? null : currentState.title,
+                    // Carried forward exactly like the title above. Extraction reports progress
+                    // through FileUtils, which has no text to give and passes null; treating that
+                    // as "clear the line" is what wiped the "Extracting..." set moments earlier and
+                    // left the dialog with a bare bar. The notification never had the bug - it only
+                    // calls setContentText when the message is non-null - so the two disagreed on
+                    // the same event.
+                    message != null ? message : (currentState == null ? null : currentState.message),
+                    progress, progressMax, false, false));
+        }
     }
 
     public LiveData<TaskState> getTaskState() {
         return taskState;
     }
 
+    // Every task not yet finished (or finished but not yet shown), in submission order.
+    public LiveData<List<TaskState>> getTaskStates() {
+        return taskStates;
+    }
+
+    // The task the state in getTaskState() is about. Main thread only.
     public Task getCurrentTask() {
-        return currentTask;
+        TaskState state = taskState.getValue();
+        return state != null ? state.task : null;
+    }
+
+    // True while any task runs or waits. A fragment done with its own task stops the service
+    // only when this is false, or it would stop someone else's task along with it.
+    public boolean hasActiveTasks() {
+        synchronized (records) {
+            for (TaskRecord record : records.values()) {
+                if (!record.finished) return true;
+            }
+        }
+        return false;
     }
 
     public String getCurrentInstallPresetName() {
@@ -2870,21 +2886,39 @@ public class InstallerService extends Service implements TaskProgressListener {
     }
 
     public static class TaskState {
+        // Which task this is the state of: -1 and null for a state not tied to one.
+        public final int taskId;
+        public final Task task;
         public final String title;
         public final String message;
         public final int progress;
         public final int progressMax;
         public final boolean isFinished;
         public final boolean isFinishedWithError;
+        // Not started yet: InstallerService.cancelTask can still take it back.
+        public final boolean isQueued;
 
         public TaskState(String title, String message, int progress, int progressMax,
                          boolean isFinished, boolean isFinishedWithError) {
+            this(-1, null, title, message, progress, progressMax, isFinished, isFinishedWithError, false);
+        }
+
+        private TaskState(int taskId, Task task, String title, String message, int progress, int progressMax,
+                          boolean isFinished, boolean isFinishedWithError, boolean isQueued) {
+            this.taskId = taskId;
+            this.task = task;
             this.title = title;
             this.message = message;
             this.progress = progress;
             this.progressMax = progressMax;
             this.isFinished = isFinished;
             this.isFinishedWithError = isFinishedWithError;
+            this.isQueued = isQueued;
+        }
+
+        TaskState forTask(int taskId, Task task, boolean queued) {
+            return new TaskState(taskId, task, title, message, progress, progressMax, isFinished, isFinishedWithError,
+                    queued);
         }
     }
 }
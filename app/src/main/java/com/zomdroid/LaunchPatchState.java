@@ -0,0 +1,181 @@
+package com.zomdroid;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.zomdroid.game.GameInstance;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// What the launch-time workarounds left behind last time, so that a launch of an unchanged
+// instance can skip them and only stat their inputs.
+//
+// Every workaround GameLauncher runs before the JVM is idempotent, and on a healthy instance
+// every one of them ends up changing nothing - yet each still had to find that out: read the
+// patched classes, parse libLighting64.so's symbol table, list every installed mod and rebuild
+// its links. Each step now names the files its outcome depends on. After a step completes, the
+// (inode, size, mtime) of each is recorded here; the next launch that finds the very same files
+// in the very same state knows the step would find nothing to do. Anything else - a file
+// replaced, touched, added or gone, the instance renamed (every recorded path changes with it),
+// or a launcher update that may bring new rules - runs the step again.
+//
+// A step that reports it could not finish is not recorded, so it is retried next launch.
+// Losing this file costs one full launch, never correctness: an unreadable one is just ignored.
+//
+// Lines are "launcher <version>", then per step "step <name>" followed by its
+// "input <inode> <size> <mtime ns> <path>" lines, tab separated.
+final class LaunchPatchState {
+    private static final String LOG_TAG = LaunchPatchState.class.getName();
+    static final String FILE_NAME = ".zomdroid-launch-state";
+
+    private static final String LAUNCHER = "launcher";
+    private static final String STEP = "step";
+    private static final String INPUT = "input";
+
+    // A step's result: true when it completed and what it left on disk may be recorded.
+    interface Step {
+        boolean run();
+    }
+
+    private final File file;
+    private final String launcherVersion;
+    // Step name -> its inputs' fingerprints by path, as recorded after its last complete run.
+    private final Map<String, Map<String, String>> steps = new LinkedHashMap<>();
+    private final StringBuilder summary = new StringBuilder();
+    private boolean changed;
+    private long totalMs;
+
+    private LaunchPatchState(File file, String launcherVersion) {
+        this.file = file;
+        this.launcherVersion = launcherVersion;
+    }
+
+    @NonNull
+    static LaunchPatchState load(@NonNull GameInstance gameInstance) {
+        LaunchPatchState state = new LaunchPatchState(new File(gameInstance.getHomePath(), FILE_NAME),
+                String.valueOf(BuildConfig.VERSION_CODE));
+        state.read();
+        return state;
+    }
+
+    private void read() {
+        if (!file.isFile()) return;
+        String recordedVersion = null;
+        Map<String, String> inputs = null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 5);
+                if (fields[0].equals(LAUNCHER) && fields.length == 2) {
+                    recordedVersion = fields[1];
+                } else if (fields[0].equals(STEP) && fields.length == 2) {
+                    inputs = new HashMap<>();
+                    steps.put(fields[1], inputs);
+                } else if (fields[0].equals(INPUT) && fields.length == 5 && inputs != null) {
+                    inputs.put(fields[4], fields[1] + "\t" + fields[2] + "\t" + fields[3]);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Ignoring unreadable " + file + ": " + e);
+            steps.clear();
+            return;
+        }
+        // Another launcher version may carry rules this state knows nothing about.
+        if (!launcherVersion.equals(recordedVersion)) steps.clear();
+    }
+
+    // Runs step unless every one of its inputs is exactly as the last complete run left it.
+    // inputs is asked twice: before, to compare, and after, to record what the step left behind -
+    // a step can create, rename or replace the very files it is keyed on.
+    void run(@NonNull String name, @NonNull Supplier<List<File>> inputs, @NonNull Step step) {
+        long startMs = System.currentTimeMillis();
+        Map<String, String> recorded = steps.get(name);
+        if (recorded != null && recorded.equals(fingerprints(inputs.get()))) {
+            finish(name, startMs, "skipped (cached, " + recorded.size() + " inputs unchanged)");
+            return;
+        }
+
+        boolean complete = false;
+        try {
+            complete = step.run();
+        } finally {
+            Map<String, String> left = complete ? fingerprints(inputs.get()) : null;
+            if (recorded != null || left != null) changed = true;
+            if (left != null) steps.put(name, left);
+            else steps.remove(name);
+            finish(name, startMs, complete ? "ran" : "ran, incomplete - retried next launch");
+        }
+    }
+
+    private void finish(String name, long startMs, String outcome) {
+        long ms = System.currentTimeMillis() - startMs;
+        totalMs += ms;
+        summary.append(summary.length() == 0 ? "" : ", ").append(name).append(' ').append(ms).append(" ms");
+        Log.i(LOG_TAG, "Launch step " + name + ": " + outcome + " in " + ms + " ms");
+    }
+
+    // Writes the state if any step changed it, and logs where the pre-launch time went.
+    void save() {
+        Log.i(LOG_TAG, "Launch steps took " + totalMs + " ms (" + summary + ")");
+        if (!changed) return;
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (Writer writer = new FileWriter(tmp)) {
+                writer.write(LAUNCHER + "\t" + launcherVersion + "\n");
+                for (Map.Entry<String, Map<String, String>> step : steps.entrySet()) {
+                    writer.write(STEP + "\t" + step.getKey() + "\n");
+                    for (Map.Entry<String, String> input : step.getValue().entrySet()) {
+                        writer.write(INPUT + "\t" + input.getValue() + "\t" + input.getKey() + "\n");
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Next launch simply does the work again.
+            Log.w(LOG_TAG, "Failed to write " + file + ": " + e);
+            tmp.delete();
+        }
+    }
+
+    // Path -> "inode<TAB>size<TAB>mtime ns". lstat: a link is keyed on itself, not its target, so
+    // a dangling link and a rebuilt one are both told apart from the link last recorded. A file
+    // that does not exist is a state too - "-" - since creating it is exactly what some steps do.
+    // Null when an input cannot be pinned down (unstat-able, or a path the file format cannot
+    // hold): such a step is simply never skipped.
+    @Nullable
+    private static Map<String, String> fingerprints(List<File> inputs) {
+        Map<String, String> fingerprints = new HashMap<>();
+        for (File input : inputs) {
+            String path = input.getAbsolutePath();
+            if (path.indexOf('\t') >= 0 || path.indexOf('\n') >= 0) return null;
+            try {
+                StructStat stat = Os.lstat(path);
+                fingerprints.put(path, stat.st_ino + "\t" + stat.st_size + "\t"
+                        + (stat.st_mtim.tv_sec * 1_000_000_000L + stat.st_mtim.tv_nsec));
+            } catch (ErrnoException e) {
+                if (e.errno != OsConstants.ENOENT && e.errno != OsConstants.ENOTDIR) return null;
+                fingerprints.put(path, "-\t-\t-");
+            }
+        }
+        return fingerprints;
+    }
+}
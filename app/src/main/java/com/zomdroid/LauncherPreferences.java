@@ -97,6 +97,10 @@ public class LauncherPreferences {
     // crash. Off by default: the copy is as large as the world (players report 300-600 MB) and the
     // game visibly freezes while it is written, so it is opt-in behind a warning that says so.
     private boolean quickSaveBackup = false;
+    // Game classes patched in the game JVM as they load (the patch agent) instead of on disk
+    // before launch. Off by default until it has been through a release of field testing; the
+    // on-disk route is what every instance has run on so far.
+    private boolean inProcessClassPatches = false;
     private AudioAPI audioAPI = AudioAPI.AAUDIO;
     // Not seeded at instance creation any more — this IS the default, so it applies to everyone
     // from the first launch. Users who already have their own value keep it: their stored JSON
@@ -229,6 +233,15 @@ public class LauncherPreferences {
         saveToPreferences();
     }
 
+    public boolean isInProcessClassPatches() {
+        return inProcessClassPatches;
+    }
+
+    public void setInProcessClassPatches(boolean enabled) {
+        this.inProcessClassPatches = enabled;
+        saveToPreferences();
+    }
+
     public void setDebug(boolean debug) {
         isDebug = debug;
         saveToPreferences();
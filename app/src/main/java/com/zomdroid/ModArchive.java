@@ -0,0 +1,231 @@
+package com.zomdroid;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// A mod archive as its entry listing describes it: where the mods in it are, and which folders
+// they have - known before a single mod file is written.
+//
+// Mod installs used to extract the whole archive into the cache, look for mod roots in the
+// extracted tree, and then copy each mod into Zomboid/mods. Every byte was written twice and the
+// whole archive sat on disk twice while it happened - for a texture pack like ETO, gigabytes. The
+// same detection now runs on the entry names, and a second pass writes each entry straight to the
+// folder it ends up in; entries outside the chosen mods are never written at all.
+//
+// The index pass also pulls out each mod's mod.info, the only file whose content decides
+// anything (ETO picks its variant by mod id). On a seekable archive that pass reads the central
+// directory and those few entries; a streamed one has to be read through once more.
+final class ModArchive {
+    private static final String LOG_TAG = ModArchive.class.getName();
+
+    static final class Root {
+        // "" when the top of the archive is the mod, otherwise the wrapper path with a trailing '/'.
+        final String prefix;
+        @Nullable
+        String modId;
+
+        Root(String prefix) {
+            this.prefix = prefix;
+        }
+
+        // The folder the mod came in, or null when the archive itself is the mod.
+        @Nullable
+        String folderName() {
+            if (prefix.isEmpty()) return null;
+            String path = prefix.substring(0, prefix.length() - 1);
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+    }
+
+    // Directory ("" or "a/b/") -> its children by name, true for the ones that are directories.
+    private final TreeMap<String, TreeMap<String, Boolean>> dirs = new TreeMap<>();
+    private final List<Root> roots = new ArrayList<>();
+
+    private ModArchive(List<String> entryNames) {
+        dirs.put("", new TreeMap<>());
+        for (String rawName : entryNames) {
+            String name = normalize(rawName);
+            if (name.isEmpty()) continue;
+            boolean isDir = name.endsWith("/");
+            String[] parts = (isDir ? name.substring(0, name.length() - 1) : name).split("/");
+            String parent = "";
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i].isEmpty()) continue;
+                boolean childIsDir = i < parts.length - 1 || isDir;
+                dirs.get(parent).merge(parts[i], childIsDir, Boolean::logicalOr);
+                if (!childIsDir) break;
+                parent = parent + parts[i] + "/";
+                dirs.computeIfAbsent(parent, k -> new TreeMap<>());
+            }
+        }
+        collectRoots("");
+    }
+
+    private static String normalize(String entryName) {
+        String name = entryName.replace('\\', '/');
+        while (name.startsWith("/") || name.startsWith("./")) name = name.substring(name.startsWith("/") ? 1 : 2);
+        return name;
+    }
+
+    // Reads the listing of the archive at uri and the mod.info of every mod in it. scratchDir
+    // receives those mod.info files only, and can be deleted once this returns.
+    @NonNull
+    static ModArchive index(@NonNull ContentResolver contentResolver, @NonNull Uri uri,
+                            @NonNull File scratchDir) throws IOException {
+        if (!scratchDir.isDirectory() && !scratchDir.mkdirs()) {
+            throw new IOException("Failed to create directory " + scratchDir);
+        }
+        ModArchive[] indexed = new ModArchive[1];
+        HashMap<String, Root> infoOwners = new HashMap<>();
+        FileUtils.extractZipToDisk(contentResolver, uri, entryNames -> {
+            ModArchive archive = new ModArchive(entryNames);
+            indexed[0] = archive;
+            HashMap<String, String> infoPaths = new HashMap<>();
+            for (int i = 0; i < archive.roots.size(); i++) {
+                Root root = archive.roots.get(i);
+                String path = new File(scratchDir, i + ".info").getPath();
+                infoPaths.put(root.prefix + "mod.info", path);
+                infoOwners.put(path, root);
+            }
+            return entry -> infoPaths.get(normalize(entry.getName()));
+        }, null, null);
+        ModArchive archive = indexed[0];
+        for (Map.Entry<String, Root> e : infoOwners.entrySet()) {
+            e.getValue().modId = readModId(new File(e.getKey()));
+        }
+        Log.i(LOG_TAG, "Archive holds " + archive.roots.size() + " mod(s) in " + (archive.dirs.size() - 1) + " folders");
+        return archive;
+    }
+
+    // Every mod in the archive, outermost first; none lies inside another.
+    @NonNull
+    List<Root> roots() {
+        return Collections.unmodifiableList(roots);
+    }
+
+    // Same rules the extracted-tree check always used: a folder is a mod when it holds mod.info,
+    // or a media/, common/ or 41/42-version folder.
+    private boolean isModRoot(String dir) {
+        TreeMap<String, Boolean> children = dirs.get(dir);
+        if (children == null) return false;
+        for (Map.Entry<String, Boolean> child : children.entrySet()) {
+            String name = child.getKey().toLowerCase(Locale.ROOT);
+            if (child.getValue()) {
+                if (name.equals("media") || name.equals("common")) return true;
+                if (name.equals("41") || name.equals("42") || name.startsWith("42.") || name.startsWith("41.")) {
+                    return true;
+                }
+            } else if (name.equals("mod.info")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void collectRoots(String dir) {
+        if (isModRoot(dir)) {
+            roots.add(new Root(dir));
+            return; // don't recurse into a mod root
+        }
+        for (Map.Entry<String, Boolean> child : dirs.get(dir).entrySet()) {
+            if (child.getValue()) collectRoots(dir + child.getKey() + "/");
+        }
+    }
+
+    boolean hasDir(@NonNull String dir) {
+        return dirs.containsKey(dir);
+    }
+
+    // The 42/42.x folder directly under dir with the highest version, or null.
+    @Nullable
+    String latestB42Dir(@NonNull String dir) {
+        TreeMap<String, Boolean> children = dirs.get(dir);
+        if (children == null) return null;
+        String best = null;
+        double bestVersion = -1;
+        for (Map.Entry<String, Boolean> child : children.entrySet()) {
+            String name = child.getKey();
+            if (!child.getValue() || !(name.equals("42") || (name.startsWith("42.") && name.length() > 3))) continue;
+            try {
+                double v = Double.parseDouble(name);
+                if (v > bestVersion) {
+                    bestVersion = v;
+                    best = dir + name + "/";
+                }
+            } catch (NumberFormatException ignored) {}
+        }
+        return best;
+    }
+
+    // The first folder called name anywhere under dir, or null.
+    @Nullable
+    String findDirNamed(@NonNull String dir, @NonNull String name) {
+        TreeMap<String, Boolean> children = dirs.get(dir);
+        if (children == null) return null;
+        for (Map.Entry<String, Boolean> child : children.entrySet()) {
+            if (!child.getValue()) continue;
+            String path = dir + child.getKey() + "/";
+            if (child.getKey().equals(name)) return path;
+            String found = findDirNamed(path, name);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    // Writes the entries under each archive folder (a key of destinations, "" for everything)
+    // into its destination directory. Entries under none of them are skipped; files already at
+    // a destination are replaced.
+    void extract(@NonNull ContentResolver contentResolver, @NonNull Uri uri, @NonNull Map<String, File> destinations,
+                 TaskProgressListener taskProgressListener) throws IOException {
+        FileUtils.extractZipToDisk(contentResolver, uri, entryNames -> entry -> {
+            String name = normalize(entry.getName());
+            for (Map.Entry<String, File> destination : destinations.entrySet()) {
+                String prefix = destination.getKey();
+                if (!name.startsWith(prefix)) continue;
+                String rel = name.substring(prefix.length());
+                if (rel.isEmpty() || escapes(rel)) return null;
+                return destination.getValue().getPath() + "/" + rel;
+            }
+            return null;
+        }, null, taskProgressListener);
+    }
+
+    private static boolean escapes(String rel) {
+        for (String part : rel.split("/")) {
+            if (part.equals("..")) return true;
+        }
+        return false;
+    }
+
+    // The "id" field of a mod.info, or null when there is none.
+    @Nullable
+    private static String readModId(File modInfo) {
+        if (!modInfo.isFile()) return null;
+        try (BufferedReader br = new BufferedReader(new FileReader(modInfo))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("id=")) {
+                    return line.substring(3).trim();
+                }
+            }
+        } catch (IOException ignored) {}
+        return null;
+    }
+}
@@ -0,0 +1,235 @@
+package com.zomdroid;
+
+import androidx.annotation.Nullable;
+
+import org.tukaani.xz.SeekableInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Decodes a multi-block .xz on several cores and hands the result out as one ordinary stream.
+//
+// xz decoding is the slowest part of installing the dependency bundles, and a single-block file
+// can only ever be decoded front to back. A file compressed in blocks (xz -T0 --block-size=...)
+// carries an index of where every block starts, and each block decodes on its own - so workers
+// decode the next few blocks ahead while the tar reader consumes the current one. Output order is
+// the block order; the reader never sees the parallelism.
+//
+// Memory is bounded by the read-ahead window, which is sized in decoded bytes rather than in
+// blocks: two blocks per worker is fine for 1 MB blocks but would be ~128 MB of 16 MB ones in a
+// 256 MB heap. The window holds at most MAX_WINDOW_BYTES (plus the block being read), and wrap()
+// declines files whose blocks are so large that fewer than two fit - those gain nothing from
+// decoding ahead.
+final class ParallelXzInputStream extends InputStream {
+    // A bundle built with larger blocks is still decoded, just on one thread.
+    static final long MAX_BLOCK_SIZE = 16L * 1024 * 1024;
+    // Decoded bytes the read-ahead window may hold at once.
+    static final long MAX_WINDOW_BYTES = 32L * 1024 * 1024;
+
+    private final SeekableXZInputStream probe;
+    private final int blockCount;
+    private final ExecutorService pool;
+    private final BlockingQueue<SeekableXZInputStream> decoders;
+    private final ArrayDeque<Future<byte[]>> window = new ArrayDeque<>();
+    private final int windowSize;
+    private int nextBlock;
+    private byte[] current;
+    private int currentPos;
+    private boolean closed;
+
+    private ParallelXzInputStream(SeekableXZInputStream probe, FileChannel channel, long offset,
+                                  long length, int workers, int windowSize) throws IOException {
+        this.probe = probe;
+        this.blockCount = probe.getBlockCount();
+        this.decoders = new ArrayBlockingQueue<>(workers);
+        decoders.add(probe);
+        try {
+            // Each worker needs a decoder of its own - a decoder is a cursor into the file - but
+            // they all read the one channel with positional reads.
+            for (int i = 1; i < workers; i++) {
+                decoders.add(new SeekableXZInputStream(new ChannelInput(channel, offset, length)));
+            }
+        } catch (IOException e) {
+            for (SeekableXZInputStream decoder : decoders) closeQuietly(decoder);
+            throw e;
+        }
+        AtomicInteger threadId = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(workers,
+                r -> new Thread(r, "zd-xz-" + threadId.getAndIncrement()));
+        this.windowSize = windowSize;
+        fillWindow();
+    }
+
+    // A decoder over the xz file that occupies [offset, offset + length) of channel - typically an
+    // asset stored uncompressed inside the APK. Reading the index is all this costs, so it doubles
+    // as the probe handed to wrap().
+    static SeekableXZInputStream openSeekable(FileChannel channel, long offset, long length) throws IOException {
+        return new SeekableXZInputStream(new ChannelInput(channel, offset, length));
+    }
+
+    // Wraps probe for parallel decoding, or returns null when the file does not allow it (a
+    // single block, or blocks too large to buffer) and probe should simply be read as it is.
+    @Nullable
+    static ParallelXzInputStream wrap(SeekableXZInputStream probe, FileChannel channel,
+                                      long offset, long length) throws IOException {
+        long largestBlock = probe.getLargestBlockSize();
+        if (largestBlock > MAX_BLOCK_SIZE) return null;
+        int cores = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        // Two blocks per worker, but never more than MAX_WINDOW_BYTES of them; a worker beyond the
+        // window would only sit idle holding a decoder.
+        int windowSize = (int) Math.min(cores * 2L, MAX_WINDOW_BYTES / Math.max(1, largestBlock));
+        int workers = Math.min(probe.getBlockCount(), Math.min(cores, windowSize));
+        if (workers < 2) return null;
+        return new ParallelXzInputStream(probe, channel, offset, length, workers, windowSize);
+    }
+
+    int getBlockCount() {
+        return blockCount;
+    }
+
+    private void fillWindow() {
+        while (window.size() < windowSize && nextBlock < blockCount) {
+            int block = nextBlock++;
+            window.add(pool.submit(() -> decodeBlock(block)));
+        }
+    }
+
+    private byte[] decodeBlock(int block) throws IOException, InterruptedException {
+        SeekableXZInputStream decoder = decoders.take();
+        try {
+            decoder.seekToBlock(block);
+            byte[] data = new byte[(int) decoder.getBlockSize(block)];
+            int filled = 0;
+            while (filled < data.length) {
+                int n = decoder.read(data, filled, data.length - filled);
+                if (n == -1) throw new IOException("xz block " + block + " ended early");
+                filled += n;
+            }
+            return data;
+        } finally {
+            decoders.add(decoder);
+        }
+    }
+
+    // False at the end of the stream.
+    private boolean advance() throws IOException {
+        while (current == null || currentPos == current.length) {
+            Future<byte[]> next = window.poll();
+            if (next == null) return false;
+            try {
+                current = next.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("xz decoding interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException("xz decoding failed", cause);
+            }
+            currentPos = 0;
+            fillWindow();
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!advance()) return -1;
+        return current[currentPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!advance()) return -1;
+        int n = Math.min(len, current.length - currentPos);
+        System.arraycopy(current, currentPos, b, off, n);
+        currentPos += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        for (Future<byte[]> pending : window) pending.cancel(true);
+        window.clear();
+        pool.shutdownNow();
+        current = null;
+        // Decoders still out with a worker come back once it stops; the channel they read is the
+        // caller's to close either way, so nothing leaks if one is missed here.
+        for (SeekableXZInputStream decoder : decoders) closeQuietly(decoder);
+        closeQuietly(probe);
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {}
+    }
+
+    // A window of a FileChannel as the seekable input xz needs. Positional reads only, so any
+    // number of these can share one channel across threads.
+    private static final class ChannelInput extends SeekableInputStream {
+        private final FileChannel channel;
+        private final long offset;
+        private final long length;
+        private long pos;
+
+        ChannelInput(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (pos >= length) return -1;
+            int n = (int) Math.min(len, length - pos);
+            int read = channel.read(ByteBuffer.wrap(b, off, n), offset + pos);
+            if (read <= 0) return -1;
+            pos += read;
+            return read;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public long position() {
+            return pos;
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            if (pos < 0) throw new IOException("Negative seek position " + pos);
+            this.pos = pos;
+        }
+
+        @Override
+        public void close() {
+            // The channel belongs to whoever opened the asset.
+        }
+    }
+}
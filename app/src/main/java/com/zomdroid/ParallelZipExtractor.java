@@ -0,0 +1,230 @@
+package com.zomdroid;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.zomdroid.game.GameFileStore;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// Random-access zip extraction for archives we can seek in.
+//
+// The streaming path (FileUtils.extractZipToDisk on an InputStream) has to inflate entries one
+// after another because a stream only knows where the next entry starts once the previous one is
+// fully read. With a seekable file the central directory already says where every entry lives, so
+// entries are independent and can be inflated side by side. Inflate is what a game install spends
+// its time on - the 5+ GB game zip kept one core busy while the rest idled.
+//
+// commons-compress reads a FileChannel with positional reads, so the workers share the one channel
+// without a lock and without each opening the archive again.
+final class ParallelZipExtractor {
+    private static final String LOG_TAG = ParallelZipExtractor.class.getName();
+    private static final int BUFFER_SIZE = 256 * 1024;
+    // How often the calling thread wakes up to report progress while the workers run.
+    private static final long PROGRESS_POLL_MS = 250;
+
+    private ParallelZipExtractor() {}
+
+    // Opens the central directory of a seekable archive. Throws when there is none to read (a
+    // truncated or not-actually-zip file), which callers treat as "take the streaming path" - that
+    // path extracts whatever is readable and reports the damage the way it always has.
+    @NonNull
+    static ZipFile open(@NonNull FileChannel channel) throws IOException {
+        return ZipFile.builder().setSeekableByteChannel(channel).get();
+    }
+
+    static int defaultWorkerCount() {
+        // Inflate is CPU work, but every worker also writes to flash; beyond eight the storage is
+        // the limit and more threads only add contention.
+        return Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    }
+
+    // With a store, entries it already holds are linked from it instead of being written, and
+    // the rest are shared with it once written - see GameFileStore.
+    static void extract(@NonNull ZipFile zipFile, @NonNull PipelinedExtractor.EntryTarget target,
+                        @Nullable GameFileStore store, TaskProgressListener taskProgressListener) throws IOException {
+        List<ZipArchiveEntry> files = new ArrayList<>();
+        HashMap<ZipArchiveEntry, String> paths = new HashMap<>();
+        TreeSet<String> dirs = new TreeSet<>();
+        long totalBytes = 0;
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+        while (entries.hasMoreElements()) {
+            ZipArchiveEntry entry = entries.nextElement();
+            if (!zipFile.canReadEntryData(entry)) {
+                throw new RuntimeException("Failed to read archive entry");
+            }
+            String path = target.pathFor(entry);
+            if (path == null) continue;
+            if (path.endsWith("/")) path = path.substring(0, path.length() - 1);
+            if (entry.isDirectory()) {
+                dirs.add(path);
+                continue;
+            }
+            int slash = path.lastIndexOf('/');
+            if (slash > 0) dirs.add(path.substring(0, slash));
+            files.add(entry);
+            paths.put(entry, path);
+            if (entry.getSize() > 0) totalBytes += entry.getSize();
+        }
+
+        // Entries the store holds are linked and take no space; everything else has to fit
+        // before the first one is written.
+        if (!files.isEmpty()) {
+            long neededBytes = 0;
+            for (ZipArchiveEntry entry : files) {
+                if (entry.getSize() <= 0) continue;
+                if (store != null && store.holds(entry.getCrc(), entry.getSize())) continue;
+                neededBytes += entry.getSize();
+            }
+            DiskSpace.require(new File(paths.get(files.get(0))).getParentFile(), neededBytes);
+        }
+
+        // Directories are created up front, on this thread: a worker then only ever opens a file,
+        // and two workers never race each other down the same mkdirs() chain. TreeSet order puts
+        // every parent before its children, so each mkdirs() finds its parent already there.
+        for (String dir : dirs) {
+            File file = new File(dir);
+            if (!file.isDirectory() && !file.mkdirs()) {
+                throw new IOException("Failed to create directory " + file);
+            }
+        }
+
+        // Largest first: the few multi-hundred-MB texture packs and jars then start right away
+        // instead of landing last on a single worker while the others have nothing left to do.
+        Collections.sort(files, (a, b) -> Long.compare(b.getSize(), a.getSize()));
+
+        int workers = defaultWorkerCount();
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers,
+                r -> new Thread(r, "zd-unzip-" + threadId.getAndIncrement()));
+        ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+        AtomicLong writtenBytes = new AtomicLong();
+        AtomicInteger linkedFiles = new AtomicInteger();
+        long startMs = System.currentTimeMillis();
+        try {
+            ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(pool);
+            for (ZipArchiveEntry entry : files) {
+                completion.submit(() -> {
+                    File file = new File(paths.get(entry));
+                    if (store != null && store.holds(entry.getCrc(), entry.getSize())) {
+                        boolean linked;
+                        try (InputStream entryInStream = zipFile.getInputStream(entry)) {
+                            linked = store.linkIfSame(entry.getCrc(), entry.getSize(), entryInStream, file,
+                                    buffers.get());
+                        }
+                        if (linked) {
+                            writtenBytes.addAndGet(entry.getSize());
+                            linkedFiles.incrementAndGet();
+                            target.entryWritten(entry, file.getPath());
+                            return null;
+                        }
+                    }
+                    CRC32 crc32 = store != null ? new CRC32() : null;
+                    try (InputStream entryInStream = zipFile.getInputStream(entry)) {
+                        writeEntry(entryInStream, file, entry.getName(), entry.getSize(),
+                                buffers.get(), writtenBytes, crc32);
+                    }
+                    if (store != null) store.adopt(file, entry.getCrc(), crc32.getValue(), entry.getSize());
+                    target.entryWritten(entry, file.getPath());
+                    return null;
+                });
+            }
+
+            int remaining = files.size();
+            int lastProgress = -2;
+            while (remaining > 0) {
+                Future<Void> done;
+                try {
+                    done = completion.poll(PROGRESS_POLL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Extraction interrupted", e);
+                }
+                while (done != null) {
+                    getOrThrow(done);
+                    remaining--;
+                    done = completion.poll();
+                }
+                if (taskProgressListener != null) {
+                    int progress = totalBytes > 0 ? (int) (writtenBytes.get() * 100 / totalBytes) : -1;
+                    if (progress != lastProgress) {
+                        taskProgressListener.onProgressUpdate(null, progress, 100);
+                        lastProgress = progress;
+                    }
+                }
+            }
+        } finally {
+            // On failure the workers still holding entries are interrupted and waited for, so no
+            // file is being written once the caller sees the exception and starts cleaning up.
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Log.i(LOG_TAG, "Extracted " + files.size() + " files (" + (totalBytes / (1024 * 1024))
+                + " MB, " + linkedFiles.get() + " linked from the store) with " + workers + " workers in "
+                + (System.currentTimeMillis() - startMs) + " ms");
+    }
+
+    private static void getOrThrow(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Extraction interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static void writeEntry(InputStream in, File file, String name, long expectedSize,
+                                   byte[] buffer, AtomicLong writtenBytes, @Nullable CRC32 crc32) throws IOException {
+        long written = 0;
+        // Replaced, never written through: the file there may be a link shared with other
+        // instances (GameFileStore).
+        Files.deleteIfExists(file.toPath());
+        try (FileOutputStream fileOutStream = new FileOutputStream(file)) {
+            // The central directory's size is binding (checkEntryComplete below), so the space
+            // claimed is never more than the file ends up with.
+            DiskSpace.preallocate(fileOutStream.getFD(), file, expectedSize);
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                fileOutStream.write(buffer, 0, n);
+                if (crc32 != null) crc32.update(buffer, 0, n);
+                written += n;
+                writtenBytes.addAndGet(n);
+            }
+        }
+        FileUtils.checkEntryComplete(file, name, written, expectedSize);
+    }
+}
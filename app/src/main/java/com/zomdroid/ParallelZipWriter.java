@@ -0,0 +1,153 @@
+package com.zomdroid;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.apache.commons.compress.archivers.zip.DefaultBackingStoreSupplier;
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+// Builds a zip with its entries deflated side by side.
+//
+// Exports used to push every entry through one ZipOutputStream, so a 2 GB Build 42 save folder -
+// tens of thousands of map_*.bin chunks - kept one core deflating for minutes while the others
+// idled. Entries are now compressed on a worker pool, each worker into its own scratch file, and
+// the finished entries are copied into the one archive at the end (commons-compress's
+// ParallelScatterZipCreator). The scratch files live in a directory of their own under the cache,
+// removed on close, so two exports running at once never share one.
+//
+// Files that are compressed already (textures, sounds, FMOD banks, nested archives) are stored as
+// they are: deflating them again costs the same CPU as any other file and saves next to nothing.
+final class ParallelZipWriter implements Closeable {
+    private static final String LOG_TAG = ParallelZipWriter.class.getName();
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final String[] STORED_EXTENSIONS = {
+            ".png", ".jpg", ".jpeg", ".webp", ".ogg", ".mp3", ".bank", ".bik",
+            ".zip", ".jar", ".gz", ".xz", ".7z",
+    };
+
+    private final File scratchDir;
+    private final ExecutorService pool;
+    private final ParallelScatterZipCreator creator;
+    // Directory entries carry no data, so they skip the pool and go straight to the archive.
+    private final List<ZipArchiveEntry> directories = new ArrayList<>();
+    private boolean written;
+
+    ParallelZipWriter(@NonNull File scratchParent) throws IOException {
+        if (!scratchParent.isDirectory() && !scratchParent.mkdirs() && !scratchParent.isDirectory()) {
+            throw new IOException("Failed to create directory " + scratchParent);
+        }
+        this.scratchDir = Files.createTempDirectory(scratchParent.toPath(), "zip-").toFile();
+        AtomicInteger threadId = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(workerCount(),
+                r -> new Thread(r, "zd-zip-" + threadId.getAndIncrement()));
+        this.creator = new ParallelScatterZipCreator(pool,
+                new DefaultBackingStoreSupplier(scratchDir.toPath()), Deflater.DEFAULT_COMPRESSION);
+    }
+
+    private static int workerCount() {
+        return Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    }
+
+    static boolean isStored(@NonNull String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String ext : STORED_EXTENSIONS) {
+            if (lower.endsWith(ext)) return true;
+        }
+        return false;
+    }
+
+    void addDirectory(@NonNull String name, long time) {
+        ZipArchiveEntry entry = new ZipArchiveEntry(name.endsWith("/") ? name : name + "/");
+        entry.setTime(time);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(0);
+        entry.setCrc(0);
+        directories.add(entry);
+    }
+
+    // The file is opened by a worker when its turn comes, not here: queueing a whole save folder
+    // must not hold tens of thousands of descriptors open. The entry returned has its CRC32 and
+    // size filled in once writeTo() is done.
+    @NonNull
+    ZipArchiveEntry addFile(@NonNull File file, @NonNull String name) {
+        ZipArchiveEntry entry = newEntry(name, file.lastModified());
+        creator.addArchiveEntry(entry, () -> {
+            try {
+                return new FileInputStream(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return entry;
+    }
+
+    void addBytes(@NonNull String name, @NonNull byte[] data) {
+        InputStreamSupplier supplier = () -> new ByteArrayInputStream(data);
+        creator.addArchiveEntry(newEntry(name, System.currentTimeMillis()), supplier);
+    }
+
+    private static ZipArchiveEntry newEntry(String name, long time) {
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setTime(time);
+        entry.setMethod(isStored(name) ? ZipEntry.STORED : ZipEntry.DEFLATED);
+        return entry;
+    }
+
+    // Waits for every entry to be compressed and writes the archive to out. out is flushed but
+    // left open for the caller to close. Can be called once.
+    void writeTo(@NonNull OutputStream out) throws IOException {
+        if (written) throw new IllegalStateException("Archive already written");
+        written = true;
+        long startMs = System.currentTimeMillis();
+        try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(
+                new BufferedOutputStream(CloseShieldOutputStream.wrap(out), BUFFER_SIZE))) {
+            for (ZipArchiveEntry directory : directories) {
+                zos.putArchiveEntry(directory);
+                zos.closeArchiveEntry();
+            }
+            creator.writeTo(zos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        }
+        Log.i(LOG_TAG, "Zip written in " + (System.currentTimeMillis() - startMs) + " ms ("
+                + creator.getStatisticsMessage() + ")");
+    }
+
+    @Override
+    public void close() {
+        // writeTo shuts the pool down itself; this covers an archive abandoned before that.
+        pool.shutdownNow();
+        FileUtils.deleteDirectory(scratchDir);
+    }
+}
@@ -0,0 +1,285 @@
+package com.zomdroid;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Streaming extraction for archives we cannot seek in: tar bundles out of the APK, zips from
+// providers that only hand out a pipe.
+//
+// A stream decodes one entry after the other, so the decoding itself stays on one thread - the
+// caller's. What no longer has to wait for it is the writing: the decoder copies each entry into
+// buffers from a small fixed pool and hands them to a couple of writer threads, then goes straight
+// on to the next entry. The pool is the only memory the pipeline ever holds, so a full pool simply
+// makes the decoder wait for a writer to give a buffer back.
+//
+// The old per-entry loop allocated a fresh 1 MB BufferedOutputStream and a File for every entry
+// and asked for mkdirs() on every parent. Across the ~30k entries of a game install that was
+// gigabytes of short-lived garbage and tens of thousands of stat calls for directories created
+// one entry earlier. Buffers are now reused, and a directory is created once and remembered.
+final class PipelinedExtractor {
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int BUFFER_COUNT = 8;
+
+    // Where an entry goes on disk, as a path, or null to skip it.
+    interface EntryTarget {
+        @Nullable
+        String pathFor(@NonNull ArchiveEntry entry);
+
+        // Called once the file for entry is complete on disk - from whichever thread wrote it.
+        default void entryWritten(@NonNull ArchiveEntry entry, @NonNull String path) {}
+    }
+
+    private PipelinedExtractor() {}
+
+    static EntryTarget under(@NonNull String destPath) {
+        return entry -> destPath + "/" + entry.getName();
+    }
+
+    static void extract(@NonNull ArchiveInputStream<?> archiveInStream, @NonNull EntryTarget target,
+                        TaskProgressListener taskProgressListener, long archiveSize) throws IOException {
+        new Run(archiveInStream, target).extract(taskProgressListener, archiveSize);
+    }
+
+    private static final class Chunk {
+        final String path;
+        final ArchiveEntry entry;
+        final byte[] buffer;
+        final int length;
+        final boolean first;
+        final boolean last;
+        // Only meaningful on the last chunk: a streamed zip entry learns its size from the data
+        // descriptor, which is read after the payload.
+        final long expectedSize;
+
+        Chunk(String path, ArchiveEntry entry, byte[] buffer, int length, boolean first, boolean last,
+              long expectedSize) {
+            this.path = path;
+            this.entry = entry;
+            this.buffer = buffer;
+            this.length = length;
+            this.first = first;
+            this.last = last;
+            this.expectedSize = expectedSize;
+        }
+    }
+
+    // Tells a writer there is nothing more to come.
+    private static final Chunk END = new Chunk(null, null, null, 0, false, false, -1);
+
+    private static final class Run {
+        private final ArchiveInputStream<?> archiveInStream;
+        private final EntryTarget target;
+        private final BlockingQueue<byte[]> freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+        private final BlockingQueue<Chunk>[] writerQueues;
+        private final Thread[] writers;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Directories created (or found) so far. Touched by the decoder thread only.
+        private final Set<String> knownDirs = new HashSet<>();
+
+        @SuppressWarnings("unchecked")
+        Run(ArchiveInputStream<?> archiveInStream, EntryTarget target) {
+            this.archiveInStream = archiveInStream;
+            this.target = target;
+            for (int i = 0; i < BUFFER_COUNT; i++) freeBuffers.add(new byte[BUFFER_SIZE]);
+            // Writing is mostly waiting on flash, so two writers already keep the decoder busy;
+            // more would only compete for the same buffers.
+            int writerCount = Runtime.getRuntime().availableProcessors() > 2 ? 2 : 1;
+            writerQueues = new BlockingQueue[writerCount];
+            writers = new Thread[writerCount];
+            for (int i = 0; i < writerCount; i++) {
+                BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+                writerQueues[i] = queue;
+                writers[i] = new Thread(() -> drain(queue), "zd-extract-writer-" + (i + 1));
+            }
+        }
+
+        void extract(TaskProgressListener taskProgressListener, long archiveSize) throws IOException {
+            for (Thread writer : writers) writer.start();
+            boolean decoded = false;
+            try {
+                ArchiveEntry entry;
+                while (failure.get() == null && (entry = archiveInStream.getNextEntry()) != null) {
+                    decodeEntry(entry);
+                    if (taskProgressListener != null) {
+                        int progress = -1;
+                        if (archiveSize > 0)
+                            progress = (int) ((archiveInStream.getBytesRead() / (float) archiveSize) * 100);
+                        taskProgressListener.onProgressUpdate(null, progress, 100);
+                    }
+                }
+                decoded = true;
+            } finally {
+                for (BlockingQueue<Chunk> queue : writerQueues) queue.add(END);
+                for (Thread writer : writers) {
+                    // Not interruptible on purpose: the writers must have closed every file before
+                    // the caller is told how extraction ended.
+                    boolean interrupted = false;
+                    while (writer.isAlive()) {
+                        try {
+                            writer.join();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (interrupted) Thread.currentThread().interrupt();
+                }
+            }
+            Throwable writeFailure = failure.get();
+            if (writeFailure != null && decoded) {
+                if (writeFailure instanceof IOException) throw (IOException) writeFailure;
+                if (writeFailure instanceof RuntimeException) throw (RuntimeException) writeFailure;
+                throw new IOException(writeFailure);
+            }
+        }
+
+        private void decodeEntry(ArchiveEntry entry) throws IOException {
+            if (!archiveInStream.canReadEntryData(entry)) {
+                throw new RuntimeException("Failed to read archive entry");
+            }
+            String path = target.pathFor(entry);
+            if (path == null) return;
+            if (entry.isDirectory()) {
+                ensureDirectory(path);
+                return;
+            }
+            int slash = path.lastIndexOf('/');
+            if (slash > 0) ensureDirectory(path.substring(0, slash));
+
+            // Chunks of one file always go to the same writer, which keeps them in order. Keyed
+            // by path rather than by entry, so two entries that land on the same file (a zip
+            // carrying it twice) are written one after the other, never at the same time.
+            BlockingQueue<Chunk> queue = writerQueues[Math.floorMod(path.hashCode(), writerQueues.length)];
+            boolean first = true;
+            while (true) {
+                byte[] buffer = takeBuffer();
+                int length = fill(archiveInStream, buffer);
+                // A partly filled buffer can only mean the entry ended. A full one needs one more
+                // read to find out; an empty chunk then closes the file.
+                boolean last = length < buffer.length;
+                queue.add(new Chunk(path, entry, buffer, length, first, last,
+                        last ? entry.getSize() : -1));
+                if (last || failure.get() != null) return;
+                first = false;
+            }
+        }
+
+        private void ensureDirectory(String path) throws IOException {
+            if (path.endsWith("/")) path = path.substring(0, path.length() - 1);
+            if (knownDirs.contains(path)) return;
+            File dir = new File(path);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Failed to create directory " + dir);
+            }
+            // mkdirs() created every ancestor as well; remember those too.
+            for (String p = path; p != null && knownDirs.add(p); ) {
+                int slash = p.lastIndexOf('/');
+                p = slash > 0 ? p.substring(0, slash) : null;
+            }
+        }
+
+        private byte[] takeBuffer() throws IOException {
+            try {
+                return freeBuffers.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Extraction interrupted", e);
+            }
+        }
+
+        private static int fill(InputStream in, byte[] buffer) throws IOException {
+            int filled = 0;
+            int n;
+            while (filled < buffer.length && (n = in.read(buffer, filled, buffer.length - filled)) != -1) {
+                filled += n;
+            }
+            return filled;
+        }
+
+        private void drain(BlockingQueue<Chunk> queue) {
+            FileOutputStream out = null;
+            String outPath = null;
+            long written = 0;
+            boolean preallocated = false;
+            while (true) {
+                Chunk chunk;
+                try {
+                    chunk = queue.take();
+                } catch (InterruptedException e) {
+                    // Only the END marker ends a writer: the decoder waits on it, and every buffer
+                    // still queued has to go back to the pool.
+                    continue;
+                }
+                if (chunk == END) break;
+                try {
+                    // After a failure the queue is still drained, so the decoder is never left
+                    // waiting on a buffer that nobody will return.
+                    if (failure.get() == null) {
+                        if (chunk.first) {
+                            // Replaced, never written through: the file there may be a link
+                            // shared with other instances (GameFileStore).
+                            Files.deleteIfExists(Paths.get(chunk.path));
+                            out = new FileOutputStream(chunk.path);
+                            outPath = chunk.path;
+                            written = 0;
+                            // A streamed zip may state no size up front (-1), or one its data
+                            // descriptor later contradicts; the file is cut back to what was
+                            // written before it is closed.
+                            preallocated = chunk.entry.getSize() >= DiskSpace.PREALLOCATE_MIN;
+                            if (preallocated) {
+                                DiskSpace.preallocate(out.getFD(), new File(chunk.path), chunk.entry.getSize());
+                            }
+                        }
+                        out.write(chunk.buffer, 0, chunk.length);
+                        written += chunk.length;
+                        if (chunk.last) {
+                            FileOutputStream finished = out;
+                            out = null;
+                            if (preallocated) finished.getChannel().truncate(written);
+                            finished.close();
+                            FileUtils.checkEntryComplete(new File(chunk.path), chunk.entry.getName(),
+                                    written, chunk.expectedSize);
+                            target.entryWritten(chunk.entry, chunk.path);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    closeQuietly(out);
+                    out = null;
+                } finally {
+                    freeBuffers.add(chunk.buffer);
+                }
+            }
+            // Reached only when extraction stopped early: never leave a half-written file behind
+            // looking like a complete one.
+            if (out != null) {
+                closeQuietly(out);
+                //noinspection ResultOfMethodCallIgnored
+                new File(outPath).delete();
+            }
+        }
+
+        private static void closeQuietly(OutputStream out) {
+            if (out == null) return;
+            try {
+                out.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.zomdroid;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.zomdroid.game.GameInstance;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// Save exports that only carry what changed since the previous one.
+//
+// Players move saves between a phone and a tablet (or a PC) every day, and every export used to
+// zip the whole Zomboid/Saves tree - gigabytes of map chunks of which a day's play touches a few
+// hundred. Each export now leaves a manifest next to the instance: the id of the export and the
+// size, mtime and CRC32 of every file it covered. A delta export lists the files whose size or
+// content differ from that manifest plus the ones that are gone, and names the export it builds
+// on, so the receiving side can refuse a delta that does not fit what it has.
+//
+// Every export - full or delta - starts with a small marker entry holding its id, its base and
+// the deleted paths. Importing records the id of the last export applied, which is what the next
+// delta's base is checked against: a chain is applied in order, one archive after another.
+//
+// The id alone only says what the saves were right after the import. Playing on the receiving
+// device moves them on, and a delta from the other device laid over that would mix two
+// timelines. So the import also records the size and mtime of every file it left behind, and a
+// delta is only applied while the saves still match them exactly.
+final class SavesExport {
+    private static final String LOG_TAG = SavesExport.class.getName();
+
+    static final String MARKER_ENTRY = ".zomdroid-saves-export";
+    private static final String MANIFEST_FILE = ".zomdroid-saves-manifest";
+    private static final String APPLIED_FILE = ".zomdroid-saves-applied";
+
+    private static final String EXPORT = "export";
+    private static final String BASE = "base";
+    private static final String DELETED = "deleted";
+    private static final String FILE = "file";
+
+    private static final class FileRecord {
+        final long size;
+        final long mtime;
+        // -1 while unknown: a file first seen is hashed by the zip workers as they compress it.
+        long crc32;
+
+        FileRecord(long size, long mtime, long crc32) {
+            this.size = size;
+            this.mtime = mtime;
+            this.crc32 = crc32;
+        }
+    }
+
+    // What an archive's marker says about it.
+    static final class Marker {
+        final String id;
+        @Nullable
+        final String baseId;
+        final List<String> deleted;
+
+        private Marker(String id, @Nullable String baseId, List<String> deleted) {
+            this.id = id;
+            this.baseId = baseId;
+            this.deleted = deleted;
+        }
+
+        boolean isDelta() {
+            return baseId != null;
+        }
+    }
+
+    // The outcome of write(): what went into the archive, and the manifest to keep once the
+    // archive is safely written.
+    static final class Result {
+        final boolean delta;
+        final int changed;
+        final int deleted;
+        private final String id;
+        private final TreeMap<String, FileRecord> files;
+
+        private Result(boolean delta, int changed, int deleted, String id, TreeMap<String, FileRecord> files) {
+            this.delta = delta;
+            this.changed = changed;
+            this.deleted = deleted;
+            this.id = id;
+            this.files = files;
+        }
+
+        // Makes this export the base of the next delta. Only call it once the archive reached its
+        // destination: a manifest for an export that was never delivered would make every later
+        // delta unusable.
+        void commit(@NonNull GameInstance gameInstance) throws IOException {
+            File manifest = new File(gameInstance.getHomePath(), MANIFEST_FILE);
+            File tmp = new File(manifest.getPath() + ".tmp");
+            try (Writer writer = new FileWriter(tmp)) {
+                writer.write(EXPORT + "\t" + id + "\n");
+                for (Map.Entry<String, FileRecord> e : files.entrySet()) {
+                    FileRecord record = e.getValue();
+                    writer.write(String.format(Locale.ROOT, "%s\t%d\t%d\t%x\t%s\n",
+                            FILE, record.size, record.mtime, record.crc32, e.getKey()));
+                }
+            }
+            Files.move(tmp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private SavesExport() {}
+
+    static boolean hasManifest(@NonNull GameInstance gameInstance) {
+        return new File(gameInstance.getHomePath(), MANIFEST_FILE).isFile();
+    }
+
+    // Zips savesDir into out - everything, or with delta only what changed since the last
+    // committed export (everything when there is none). out is left open.
+    @NonNull
+    static Result write(@NonNull GameInstance gameInstance, @NonNull File savesDir, boolean delta,
+                        @NonNull OutputStream out) throws IOException {
+        String previousId = null;
+        TreeMap<String, FileRecord> previous = new TreeMap<>();
+        if (delta) previousId = readManifest(new File(gameInstance.getHomePath(), MANIFEST_FILE), previous);
+        boolean isDelta = previousId != null;
+
+        TreeMap<String, FileRecord> current = scan(savesDir);
+        List<String> deleted = new ArrayList<>();
+        if (isDelta) {
+            for (String path : previous.keySet()) {
+                if (!current.containsKey(path)) deleted.add(path);
+            }
+        }
+
+        String id = UUID.randomUUID().toString();
+        StringBuilder marker = new StringBuilder(EXPORT + "\t" + id + "\n");
+        if (isDelta) marker.append(BASE + "\t").append(previousId).append('\n');
+        for (String path : deleted) marker.append(DELETED + "\t").append(path).append('\n');
+
+        HashMap<FileRecord, ZipArchiveEntry> written = new HashMap<>();
+        try (ParallelZipWriter zip = ZipUtils.newWriter()) {
+            // First in the archive, so an import finds it without reading past the data.
+            zip.addBytes(MARKER_ENTRY, marker.toString().getBytes(StandardCharsets.UTF_8));
+            for (Map.Entry<String, FileRecord> e : current.entrySet()) {
+                String path = e.getKey();
+                FileRecord record = e.getValue();
+                if (isDelta && isUnchanged(record, previous.get(path), new File(savesDir, path))) continue;
+                written.put(record, zip.addFile(new File(savesDir, path), path));
+            }
+            zip.writeTo(out);
+        }
+        for (Map.Entry<FileRecord, ZipArchiveEntry> e : written.entrySet()) {
+            e.getKey().crc32 = e.getValue().getCrc();
+        }
+        Log.i(LOG_TAG, (isDelta ? "Delta export on " + previousId : "Full export") + ": "
+                + written.size() + " of " + current.size() + " files, " + deleted.size() + " deleted");
+        return new Result(isDelta, written.size(), deleted.size(), id, current);
+    }
+
+    // Same size and mtime as last time means untouched. The game rewrites chunks it loaded even
+    // when nothing in them changed, so a new mtime alone is settled by the content's CRC32. An
+    // unchanged file carries its known CRC32 forward into the new manifest.
+    private static boolean isUnchanged(FileRecord record, @Nullable FileRecord before, File file) throws IOException {
+        if (before == null || before.size != record.size) return false;
+        if (before.mtime != record.mtime) {
+            if (before.crc32 < 0 || crc32Of(file) != before.crc32) return false;
+        }
+        record.crc32 = before.crc32;
+        return true;
+    }
+
+    private static long crc32Of(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[256 * 1024];
+        try (InputStream is = new FileInputStream(file)) {
+            int n;
+            while ((n = is.read(buf)) > 0) crc.update(buf, 0, n);
+        }
+        return crc.getValue();
+    }
+
+    private static TreeMap<String, FileRecord> scan(File savesDir) {
+        TreeMap<String, FileRecord> files = new TreeMap<>();
+        ArrayDeque<File> dirs = new ArrayDeque<>();
+        ArrayDeque<String> prefixes = new ArrayDeque<>();
+        dirs.push(savesDir);
+        prefixes.push("");
+        while (!dirs.isEmpty()) {
+            File dir = dirs.pop();
+            String prefix = prefixes.pop();
+            File[] kids = dir.listFiles();
+            if (kids == null) continue;
+            for (File f : kids) {
+                String rel = prefix + f.getName();
+                if (f.isDirectory()) {
+                    dirs.push(f);
+                    prefixes.push(rel + "/");
+                } else if (!rel.equals(MARKER_ENTRY)) {
+                    files.put(rel, new FileRecord(f.length(), f.lastModified(), -1));
+                }
+            }
+        }
+        return files;
+    }
+
+    // The export id the manifest is for, or null when there is no usable manifest.
+    @Nullable
+    private static String readManifest(File manifest, Map<String, FileRecord> files) {
+        if (!manifest.isFile()) return null;
+        String id = null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(manifest))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 5);
+                if (fields[0].equals(EXPORT) && fields.length == 2) {
+                    id = fields[1];
+                } else if (fields[0].equals(FILE) && fields.length == 5) {
+                    files.put(fields[4], new FileRecord(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                            Long.parseLong(fields[3], 16)));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // A full export is always possible; it just is not the small one.
+            Log.w(LOG_TAG, "Ignoring unreadable " + manifest + ": " + e);
+            files.clear();
+            return null;
+        }
+        return id;
+    }
+
+    // Reads the marker at the start of a saves archive; null for archives without one (made by
+    // hand, or by a version without delta exports).
+    @Nullable
+    static Marker readMarker(@NonNull InputStream archive) throws IOException {
+        ZipInputStream zis = new ZipInputStream(archive);
+        ZipEntry entry;
+        while ((entry = zis.getNextEntry()) != null) {
+            if (entry.isDirectory()) continue;
+            if (!entry.getName().equals(MARKER_ENTRY)) return null;
+            String id = null, baseId = null;
+            List<String> deleted = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(zis, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 2);
+                if (fields.length != 2) continue;
+                if (fields[0].equals(EXPORT)) id = fields[1];
+                else if (fields[0].equals(BASE)) baseId = fields[1];
+                else if (fields[0].equals(DELETED)) deleted.add(fields[1]);
+            }
+            return id == null ? null : new Marker(id, baseId, deleted);
+        }
+        return null;
+    }
+
+    // The export the instance's saves were last brought to by an import; null when they are not
+    // known to match any export.
+    @Nullable
+    static String appliedId(@NonNull GameInstance gameInstance) {
+        return readApplied(gameInstance, new TreeMap<>());
+    }
+
+    // True while savesDir is exactly as the last import left it: the same files, each with the
+    // same size and mtime. False once the game wrote to it, and when nothing was recorded.
+    static boolean matchesApplied(@NonNull GameInstance gameInstance, @NonNull File savesDir) {
+        TreeMap<String, FileRecord> recorded = new TreeMap<>();
+        if (readApplied(gameInstance, recorded) == null) return false;
+        TreeMap<String, FileRecord> current = scan(savesDir);
+        if (!current.keySet().equals(recorded.keySet())) return false;
+        for (Map.Entry<String, FileRecord> e : current.entrySet()) {
+            FileRecord before = recorded.get(e.getKey());
+            if (before.size != e.getValue().size || before.mtime != e.getValue().mtime) {
+                Log.i(LOG_TAG, "Saves changed since the last import: " + e.getKey());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Records what savesDir matches after an import, and how every file in it stands. An archive
+    // without a marker leaves the saves matching nothing we know of, and no delta can be applied
+    // until a full export is.
+    static void recordApplied(@NonNull GameInstance gameInstance, @NonNull File savesDir, @Nullable Marker marker)
+            throws IOException {
+        File file = new File(gameInstance.getHomePath(), APPLIED_FILE);
+        if (marker == null) {
+            Files.deleteIfExists(file.toPath());
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new FileWriter(tmp)) {
+            writer.write(EXPORT + "\t" + marker.id + "\n");
+            for (Map.Entry<String, FileRecord> e : scan(savesDir).entrySet()) {
+                FileRecord record = e.getValue();
+                writer.write(String.format(Locale.ROOT, "%s\t%d\t%d\t%s\n",
+                        FILE, record.size, record.mtime, e.getKey()));
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // The export id of the last import, filling files with the state it left; null when there is
+    // no usable record.
+    @Nullable
+    private static String readApplied(GameInstance gameInstance, Map<String, FileRecord> files) {
+        File file = new File(gameInstance.getHomePath(), APPLIED_FILE);
+        if (!file.isFile()) return null;
+        String id = null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                if (fields[0].equals(EXPORT) && fields.length == 2) {
+                    id = fields[1];
+                } else if (fields[0].equals(FILE) && fields.length == 4) {
+                    files.put(fields[3], new FileRecord(Long.parseLong(fields[1]), Long.parseLong(fields[2]), -1));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.w(LOG_TAG, "Ignoring unreadable " + file + ": " + e);
+            files.clear();
+            return null;
+        }
+        return id;
+    }
+
+    // Removes what a delta lists as deleted, and the save folders that leaves empty - an empty
+    // folder would still show up in the game's list of saves. Also drops the extracted marker.
+    static void applyDeletions(@NonNull File savesDir, @NonNull Marker marker) {
+        for (String path : marker.deleted) {
+            if (path.startsWith("/") || path.equals("..") || path.startsWith("../") || path.contains("/../")
+                    || path.endsWith("/..")) {
+                Log.w(LOG_TAG, "Ignoring deletion outside the saves folder: " + path);
+                continue;
+            }
+            File file = new File(savesDir, path);
+            if (!file.delete() && file.exists()) {
+                Log.w(LOG_TAG, "Failed to delete " + file);
+                continue;
+            }
+            for (File dir = file.getParentFile(); dir != null && !dir.equals(savesDir); dir = dir.getParentFile()) {
+                String[] left = dir.list();
+                if (left == null || left.length > 0 || !dir.delete()) break;
+            }
+        }
+        File extractedMarker = new File(savesDir, MARKER_ENTRY);
+        if (extractedMarker.exists() && !extractedMarker.delete()) {
+            Log.w(LOG_TAG, "Failed to delete " + extractedMarker);
+        }
+    }
+}
@@ -2,4 +2,10 @@ package com.zomdroid;
 
 public interface TaskProgressListener {
     void onProgressUpdate(String message, int progress, int progressMax);
+
+    // A byte transfer of known size and rate (TreeCopy). Listeners with no use for the rate get a
+    // plain percentage tick.
+    default void onTransferProgress(long doneBytes, long totalBytes, long bytesPerSecond) {
+        onProgressUpdate(null, totalBytes > 0 ? (int) (doneBytes * 100 / totalBytes) : -1, 100);
+    }
 }
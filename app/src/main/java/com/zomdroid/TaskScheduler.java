@@ -0,0 +1,129 @@
+package com.zomdroid;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs InstallerService tasks side by side unless they touch the same thing.
+//
+// Every task used to go through one single-thread executor, so exporting the saves of one
+// instance waited for a mod install into another, and a ten-minute game install held up
+// everything behind it. Each task now names the resources it works on - "instance:<name>" for
+// anything inside an instance, "dependencies" for the JRE/libs bundles and so on - and only
+// tasks sharing a resource wait for each other. A few run at once at most: they all write to
+// the same flash.
+//
+// Tasks on one resource always run in the order they were submitted; a priority only decides
+// which of the tasks free to start gets a slot first. A task still waiting can be cancelled.
+final class TaskScheduler {
+    private static final String LOG_TAG = TaskScheduler.class.getName();
+
+    static final class Job {
+        final int id;
+        final int priority;
+        final Set<String> resources;
+        private final Runnable body;
+        private boolean started;
+
+        private Job(int id, int priority, Set<String> resources, Runnable body) {
+            this.id = id;
+            this.priority = priority;
+            this.resources = resources;
+            this.body = body;
+        }
+    }
+
+    private final int maxRunning;
+    private final ExecutorService pool;
+    // Waiting jobs in submission order. Guarded by this.
+    private final List<Job> waiting = new ArrayList<>();
+    private final Set<String> held = new HashSet<>();
+    private int running;
+
+    TaskScheduler(int maxRunning) {
+        this.maxRunning = maxRunning;
+        AtomicInteger threadId = new AtomicInteger();
+        this.pool = Executors.newCachedThreadPool(r -> new Thread(r, "zd-task-" + threadId.getAndIncrement()));
+    }
+
+    // Queues body under id. onQueued runs (under the scheduler's lock, so keep it short) when the
+    // job cannot start right away, before it possibly could.
+    @NonNull
+    synchronized Job submit(int id, int priority, @NonNull Set<String> resources, @NonNull Runnable body,
+                            @Nullable Runnable onQueued) {
+        Job job = new Job(id, priority, Collections.unmodifiableSet(new HashSet<>(resources)), body);
+        waiting.add(job);
+        dispatch();
+        if (!job.started) {
+            Log.i(LOG_TAG, "Task " + id + " waits for " + job.resources + " (" + running + " running)");
+            if (onQueued != null) onQueued.run();
+        }
+        return job;
+    }
+
+    // False when the job already started (or is unknown): only a waiting job can be taken back.
+    synchronized boolean cancel(@NonNull Job job) {
+        return waiting.remove(job);
+    }
+
+    // The waiting jobs that need resource, in submission order - removed, and so never run.
+    @NonNull
+    synchronized List<Job> cancelWaiting(@NonNull String resource) {
+        List<Job> cancelled = new ArrayList<>();
+        for (Iterator<Job> it = waiting.iterator(); it.hasNext(); ) {
+            Job job = it.next();
+            if (job.resources.contains(resource)) {
+                it.remove();
+                cancelled.add(job);
+            }
+        }
+        return cancelled;
+    }
+
+    private void dispatch() {
+        while (running < maxRunning) {
+            Job next = null;
+            // Resources claimed by jobs ahead in the queue: a later job must not slip past one
+            // that needs the same thing, whatever their priorities.
+            Set<String> claimed = new HashSet<>(held);
+            for (Job job : waiting) {
+                if (Collections.disjoint(job.resources, claimed)
+                        && (next == null || job.priority > next.priority)) {
+                    next = job;
+                }
+                claimed.addAll(job.resources);
+            }
+            if (next == null) return;
+            start(next);
+        }
+    }
+
+    private void start(Job job) {
+        waiting.remove(job);
+        held.addAll(job.resources);
+        running++;
+        job.started = true;
+        pool.execute(() -> {
+            try {
+                job.body.run();
+            } finally {
+                synchronized (TaskScheduler.this) {
+                    held.removeAll(job.resources);
+                    running--;
+                    dispatch();
+                }
+            }
+        });
+    }
+}
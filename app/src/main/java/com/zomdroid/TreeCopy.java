@@ -0,0 +1,314 @@
+package com.zomdroid;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies and moves of whole directory trees - mods, game folders, save worlds - done as cheaply
+ * as the filesystem allows.
+ *
+ * <p>Every such copy used to pump each byte through a 64 KB heap buffer, one file after another.
+ * Now a move tries a rename first (the whole tree at once when the destination is free), a
+ * {@link #linkOrCopy} hard-links, and whatever is left is copied with
+ * {@link FileChannel#transferTo}, which the kernel serves with sendfile without the data ever
+ * reaching the Java heap. Files are copied on a few threads at once.
+ *
+ * <p>Symlinks in the source are skipped, never followed: following one duplicates the data it
+ * points at, and a link aimed at an ancestor never terminates. The lowercase aliases we place
+ * inside a mod are regenerated at the destination, so nothing is lost by dropping them.
+ *
+ * <p>Files at the destination are replaced, never written through: a game file there may be a
+ * link shared with other instances (see GameFileStore), and writing into it would change them all.
+ */
+public final class TreeCopy {
+    private static final String LOG_TAG = TreeCopy.class.getName();
+    private static final long PROGRESS_POLL_MS = 500;
+    // Small trees are copied on the calling thread: starting a pool costs more than it saves.
+    private static final int MIN_FILES_FOR_POOL = 8;
+
+    /** What to do with a file that already exists at the destination. */
+    public enum Conflict {
+        REPLACE,
+        KEEP_EXISTING,
+    }
+
+    private enum Method {
+        COPY,
+        LINK,
+        MOVE,
+    }
+
+    /** What a copy did. */
+    public static final class Stats {
+        public long files;
+        public long bytes;
+        public long linkedOrRenamed;
+        public long elapsedMs;
+    }
+
+    private static final class Item {
+        final File src;
+        final File dst;
+        final long size;
+
+        Item(File src, File dst, long size) {
+            this.src = src;
+            this.dst = dst;
+            this.size = size;
+        }
+    }
+
+    private TreeCopy() {}
+
+    /** Copies src's contents into dst. Every file at dst is a copy of its own. */
+    @NonNull
+    public static Stats copy(@NonNull File src, @NonNull File dst, @NonNull Conflict conflict,
+                             @Nullable TaskProgressListener listener) throws IOException {
+        return transfer(src, dst, conflict, Method.COPY, listener);
+    }
+
+    /**
+     * Like {@link #copy}, but files are hard-linked where the filesystem allows. Only for trees
+     * that are never written in place on either side - game and mod files, whose every writer
+     * replaces a file instead of changing it. Not for saves: the game rewrites those in place.
+     */
+    @NonNull
+    public static Stats linkOrCopy(@NonNull File src, @NonNull File dst, @NonNull Conflict conflict,
+                                   @Nullable TaskProgressListener listener) throws IOException {
+        return transfer(src, dst, conflict, Method.LINK, listener);
+    }
+
+    /**
+     * Moves src's contents into dst and removes src. Renamed where possible - the whole tree in
+     * one step when dst does not exist yet - and copied across filesystems. With
+     * {@link Conflict#KEEP_EXISTING} the files dst already had win and the others are dropped
+     * with src.
+     */
+    @NonNull
+    public static Stats move(@NonNull File src, @NonNull File dst, @NonNull Conflict conflict,
+                             @Nullable TaskProgressListener listener) throws IOException {
+        if (!dst.exists() && !Files.isSymbolicLink(dst.toPath()) && !Files.isSymbolicLink(src.toPath())) {
+            File parent = dst.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Failed to create directory " + parent);
+            }
+            long startMs = System.currentTimeMillis();
+            if (src.renameTo(dst)) {
+                // A rename carries the symlinks along; drop them so a move leaves the same tree a
+                // copy would.
+                Stats stats = new Stats();
+                dropSymlinks(dst, stats);
+                stats.linkedOrRenamed = stats.files;
+                stats.elapsedMs = System.currentTimeMillis() - startMs;
+                return stats;
+            }
+        }
+        Stats stats = transfer(src, dst, conflict, Method.MOVE, listener);
+        FileUtils.deleteDirectory(src);
+        return stats;
+    }
+
+    /** Copies one file, replacing dst. */
+    public static void copyFile(@NonNull File src, @NonNull File dst) throws IOException {
+        Files.deleteIfExists(dst.toPath());
+        try (FileChannel in = new FileInputStream(src).getChannel();
+             FileChannel out = new FileOutputStream(dst).getChannel()) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long n = in.transferTo(position, size - position, out);
+                // A file that shrank under us: what is left is copied, no more.
+                if (n <= 0) break;
+                position += n;
+            }
+        }
+    }
+
+    private static Stats transfer(File src, File dst, Conflict conflict, Method method,
+                                  @Nullable TaskProgressListener listener) throws IOException {
+        long startMs = System.currentTimeMillis();
+        List<Item> files = new ArrayList<>();
+        long totalBytes = 0;
+
+        // Directories are created up front, on this thread, so workers only ever deal with files.
+        ArrayDeque<File[]> dirs = new ArrayDeque<>();
+        dirs.push(new File[]{src, dst});
+        while (!dirs.isEmpty()) {
+            File[] pair = dirs.pop();
+            if (!pair[1].isDirectory() && !pair[1].mkdirs()) {
+                throw new IOException("Failed to create directory " + pair[1]);
+            }
+            File[] kids = pair[0].listFiles();
+            if (kids == null) continue;
+            for (File f : kids) {
+                if (Files.isSymbolicLink(f.toPath())) continue;
+                File target = new File(pair[1], f.getName());
+                if (f.isDirectory()) {
+                    dirs.push(new File[]{f, target});
+                } else if (conflict == Conflict.REPLACE || !target.exists()) {
+                    Item item = new Item(f, target, f.length());
+                    files.add(item);
+                    totalBytes += item.size;
+                }
+            }
+        }
+
+        // Largest first, so a big file never starts last on one worker while the rest idle.
+        Collections.sort(files, (a, b) -> Long.compare(b.size, a.size));
+
+        Stats stats = new Stats();
+        AtomicLong doneBytes = new AtomicLong();
+        AtomicInteger shortcuts = new AtomicInteger();
+        if (files.size() < MIN_FILES_FOR_POOL) {
+            for (Item item : files) {
+                transferOne(item, method, doneBytes, shortcuts);
+            }
+        } else {
+            runPooled(files, method, totalBytes, doneBytes, shortcuts, listener);
+        }
+
+        stats.files = files.size();
+        stats.bytes = doneBytes.get();
+        stats.linkedOrRenamed = shortcuts.get();
+        stats.elapsedMs = System.currentTimeMillis() - startMs;
+        if (stats.files > 0) {
+            Log.i(LOG_TAG, method + " " + src + " -> " + dst + ": " + stats.files + " files ("
+                    + (stats.bytes / (1024 * 1024)) + " MB, " + stats.linkedOrRenamed + " linked or renamed) in "
+                    + stats.elapsedMs + " ms");
+        }
+        return stats;
+    }
+
+    private static void runPooled(List<Item> files, Method method, long totalBytes, AtomicLong doneBytes,
+                                  AtomicInteger shortcuts, @Nullable TaskProgressListener listener) throws IOException {
+        // Copying is storage-bound: past four threads the flash is the limit.
+        int workers = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers,
+                r -> new Thread(r, "zd-copy-" + threadId.getAndIncrement()));
+        long startMs = System.currentTimeMillis();
+        try {
+            ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(pool);
+            for (Item item : files) {
+                completion.submit(() -> {
+                    transferOne(item, method, doneBytes, shortcuts);
+                    return null;
+                });
+            }
+            int remaining = files.size();
+            long lastReportMs = startMs;
+            while (remaining > 0) {
+                Future<Void> done;
+                try {
+                    done = completion.poll(PROGRESS_POLL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Copy interrupted", e);
+                }
+                while (done != null) {
+                    getOrThrow(done);
+                    remaining--;
+                    done = completion.poll();
+                }
+                long nowMs = System.currentTimeMillis();
+                // poll() returns as soon as any file finishes; a tree of small files would
+                // otherwise report hundreds of times a second.
+                if (listener != null && nowMs - lastReportMs >= PROGRESS_POLL_MS) {
+                    lastReportMs = nowMs;
+                    long elapsedMs = Math.max(1, nowMs - startMs);
+                    long copied = doneBytes.get();
+                    listener.onTransferProgress(copied, totalBytes, copied * 1000 / elapsedMs);
+                }
+            }
+        } finally {
+            // Workers still holding files are stopped and waited for, so nothing is being written
+            // once the caller sees the exception and starts cleaning up.
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void transferOne(Item item, Method method, AtomicLong doneBytes,
+                                    AtomicInteger shortcuts) throws IOException {
+        File src = item.src;
+        File dst = item.dst;
+        long size = item.size;
+        if (method == Method.MOVE) {
+            try {
+                Files.move(src.toPath(), dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                shortcuts.incrementAndGet();
+                doneBytes.addAndGet(size);
+                return;
+            } catch (IOException e) {
+                // Another filesystem; copied below, and src goes with the rest of the tree.
+            }
+        } else if (method == Method.LINK) {
+            try {
+                Files.deleteIfExists(dst.toPath());
+                Files.createLink(dst.toPath(), src.toPath());
+                shortcuts.incrementAndGet();
+                doneBytes.addAndGet(size);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // Another filesystem, or one without hard links (FAT on external storage).
+            }
+        }
+        copyFile(src, dst);
+        doneBytes.addAndGet(size);
+    }
+
+    private static void dropSymlinks(File dir, Stats stats) throws IOException {
+        File[] kids = dir.listFiles();
+        if (kids == null) return;
+        for (File f : kids) {
+            if (Files.isSymbolicLink(f.toPath())) {
+                Files.delete(f.toPath());
+            } else if (f.isDirectory()) {
+                dropSymlinks(f, stats);
+            } else {
+                stats.files++;
+                stats.bytes += f.length();
+            }
+        }
+    }
+
+    private static void getOrThrow(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Copy interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+}
@@ -1,70 +1,49 @@
 package com.zomdroid;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.ArrayDeque;
 
 public final class ZipUtils {
     private ZipUtils() {}
 
+    // Zips everything under rootDir, entries named relative to it. Entries are compressed side by
+    // side (see ParallelZipWriter); out is left open, the caller closes it.
     public static void zipDirectoryToStream(File rootDir, OutputStream out) throws IOException {
-        ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(out, 1024 * 1024));
-
-        String basePath = rootDir.getCanonicalPath();
-        try {
-            zipWalk(rootDir, basePath, zos);
-            zos.finish();
-            zos.flush();
-        } finally {
-            // НЕ закрываем out здесь; out закроет вызывающий код (InstallerService)
-            try { zos.close(); } catch (Exception ignored) {}
+        try (ParallelZipWriter writer = newWriter()) {
+            addDirectory(writer, rootDir);
+            writer.writeTo(out);
         }
     }
 
-    private static void zipWalk(File file, String basePath, ZipOutputStream zos) throws IOException {
-        File[] kids = file.listFiles();
-        if (kids == null) return;
-
-        for (File f : kids) {
-            if (f.isDirectory()) {
-                // directory entry (nice-to-have)
-                String dirFull = f.getCanonicalPath();
-                String dirRel = dirFull.substring(basePath.length());
-                if (dirRel.startsWith(File.separator)) dirRel = dirRel.substring(1);
-                dirRel = dirRel.replace('\\', '/') + "/";
-
-                ZipEntry dirEntry = new ZipEntry(dirRel);
-                dirEntry.setTime(f.lastModified());
-                zos.putNextEntry(dirEntry);
-                zos.closeEntry();
-
-                zipWalk(f, basePath, zos);
-                continue;
-            }
-
-            String full = f.getCanonicalPath();
-            String rel = full.substring(basePath.length());
-            if (rel.startsWith(File.separator)) rel = rel.substring(1);
-            rel = rel.replace('\\', '/');
-
-            ZipEntry entry = new ZipEntry(rel);
-            entry.setTime(f.lastModified());
-            zos.putNextEntry(entry);
+    static ParallelZipWriter newWriter() throws IOException {
+        return new ParallelZipWriter(new File(AppStorage.requireSingleton().getCachePath(), "zip_scratch"));
+    }
 
-            try (InputStream is = new BufferedInputStream(new FileInputStream(f), 1024 * 1024)) {
-                byte[] buf = new byte[1024 * 1024];
-                int n;
-                while ((n = is.read(buf)) > 0) {
-                    zos.write(buf, 0, n);
+    // Relative names are built while walking instead of cutting getCanonicalPath() down for every
+    // file: a save folder holds tens of thousands of chunks, and each canonicalization is a round of
+    // lstat calls.
+    private static void addDirectory(ParallelZipWriter writer, File rootDir) {
+        ArrayDeque<File> dirs = new ArrayDeque<>();
+        ArrayDeque<String> prefixes = new ArrayDeque<>();
+        dirs.push(rootDir);
+        prefixes.push("");
+        while (!dirs.isEmpty()) {
+            File dir = dirs.pop();
+            String prefix = prefixes.pop();
+            File[] kids = dir.listFiles();
+            if (kids == null) continue;
+            for (File f : kids) {
+                String rel = prefix + f.getName();
+                if (f.isDirectory()) {
+                    writer.addDirectory(rel + "/", f.lastModified());
+                    dirs.push(f);
+                    prefixes.push(rel + "/");
+                } else {
+                    writer.addFile(f, rel);
                 }
             }
-            zos.closeEntry();
         }
     }
 }
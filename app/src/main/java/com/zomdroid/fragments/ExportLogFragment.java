@@ -45,6 +45,7 @@ public class ExportLogFragment extends Fragment {
     private FragmentExportLogBinding binding;
     private TaskProgressDialogBinding taskProgressDialogBinding;
     private AlertDialog taskProgressDialog;
+    private InstallerService installerService;
     private boolean isInstallerServiceBound = false;
 
     private List<GameInstance> instances;
@@ -53,11 +54,12 @@ public class ExportLogFragment extends Fragment {
         @Override
         public void onServiceConnected(ComponentName className, IBinder service) {
             InstallerService.LocalBinder binder = (InstallerService.LocalBinder) service;
-            InstallerService installerService = binder.getService();
+            installerService = binder.getService();
             isInstallerServiceBound = true;
 
             handleTaskState(installerService.getTaskState().getValue());
             installerService.getTaskState().observe(ExportLogFragment.this, ExportLogFragment.this::handleTaskState);
+            QueuedTaskControls.bind(ExportLogFragment.this, taskProgressDialogBinding, installerService);
         }
 
         @Override
@@ -72,13 +74,17 @@ public class ExportLogFragment extends Fragment {
         if (state == null) return;
         if (state.isFinished) {
             taskProgressDialog.dismiss();
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
             Toast.makeText(requireContext(), state.title, Toast.LENGTH_SHORT).show();
         } else if (state.isFinishedWithError) {
             showTaskFinishedWithErrorDialog(state.title, state.message);
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
         } else {
             showTaskProgressDialog(state.title, state.message, state.progress, state.progressMax);
         }
@@ -44,6 +44,7 @@ public class GameSettingsFragment extends Fragment {
     private FragmentGameSettingsBinding binding;
     private TaskProgressDialogBinding taskProgressDialogBinding;
     private AlertDialog taskProgressDialog;
+    private InstallerService installerService;
     private boolean isInstallerServiceBound = false;
 
     private Uri importIniUri = null;
@@ -53,10 +54,11 @@ public class GameSettingsFragment extends Fragment {
         @Override
         public void onServiceConnected(ComponentName className, IBinder service) {
             InstallerService.LocalBinder binder = (InstallerService.LocalBinder) service;
-            InstallerService installerService = binder.getService();
+            installerService = binder.getService();
             isInstallerServiceBound = true;
             handleTaskState(installerService.getTaskState().getValue());
             installerService.getTaskState().observe(GameSettingsFragment.this, GameSettingsFragment.this::handleTaskState);
+            QueuedTaskControls.bind(GameSettingsFragment.this, taskProgressDialogBinding, installerService);
         }
 
         @Override
@@ -71,13 +73,17 @@ public class GameSettingsFragment extends Fragment {
         if (state == null) return;
         if (state.isFinished) {
             taskProgressDialog.dismiss();
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
             Toast.makeText(requireContext(), state.title, Toast.LENGTH_SHORT).show();
         } else if (state.isFinishedWithError) {
             showTaskFinishedWithErrorDialog(state.title, state.message);
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
         } else {
             showTaskProgressDialog(state.title, state.message, state.progress, state.progressMax);
         }
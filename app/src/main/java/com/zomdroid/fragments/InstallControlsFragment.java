@@ -48,6 +48,7 @@ public class InstallControlsFragment extends Fragment {
     private FragmentInstallControlsBinding binding;
     private TaskProgressDialogBinding taskProgressDialogBinding;
     private AlertDialog taskProgressDialog;
+    private InstallerService installerService;
     private boolean isInstallerServiceBound = false;
 
     private final String ZIP_MIME = "application/zip";
@@ -59,11 +60,12 @@ public class InstallControlsFragment extends Fragment {
         @Override
         public void onServiceConnected(ComponentName className, IBinder service) {
             InstallerService.LocalBinder binder = (InstallerService.LocalBinder) service;
-            InstallerService installerService = binder.getService();
+            installerService = binder.getService();
             isInstallerServiceBound = true;
 
             handleTaskState(installerService.getTaskState().getValue());
             installerService.getTaskState().observe(InstallControlsFragment.this, InstallControlsFragment.this::handleTaskState);
+            QueuedTaskControls.bind(InstallControlsFragment.this, taskProgressDialogBinding, installerService);
         }
 
         @Override
@@ -78,13 +80,17 @@ public class InstallControlsFragment extends Fragment {
         if (state == null) return;
         if (state.isFinished) {
             taskProgressDialog.dismiss();
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
             Toast.makeText(requireContext(), state.title, Toast.LENGTH_SHORT).show();
         } else if (state.isFinishedWithError) {
             showTaskFinishedWithErrorDialog(state.title, state.message);
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
         } else {
             showTaskProgressDialog(state.title, state.message, state.progress, state.progressMax);
         }
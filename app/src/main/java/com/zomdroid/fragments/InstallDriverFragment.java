@@ -43,6 +43,7 @@ public class InstallDriverFragment extends Fragment {
     private FragmentInstallDriverBinding binding;
     private TaskProgressDialogBinding taskProgressDialogBinding;
     private AlertDialog taskProgressDialog;
+    private InstallerService installerService;
     private boolean isInstallerServiceBound = false;
 
     private Uri driverSoUri = null;
@@ -51,11 +52,12 @@ public class InstallDriverFragment extends Fragment {
         @Override
         public void onServiceConnected(ComponentName className, IBinder service) {
             InstallerService.LocalBinder binder = (InstallerService.LocalBinder) service;
-            InstallerService installerService = binder.getService();
+            installerService = binder.getService();
             isInstallerServiceBound = true;
 
             handleTaskState(installerService.getTaskState().getValue());
             installerService.getTaskState().observe(InstallDriverFragment.this, InstallDriverFragment.this::handleTaskState);
+            QueuedTaskControls.bind(InstallDriverFragment.this, taskProgressDialogBinding, installerService);
         }
 
         @Override
@@ -70,14 +72,18 @@ public class InstallDriverFragment extends Fragment {
         if (state == null) return;
         if (state.isFinished) {
             taskProgressDialog.dismiss();
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
             Toast.makeText(requireContext(), state.title, Toast.LENGTH_SHORT).show();
             updateExportButtonState();
         } else if (state.isFinishedWithError) {
             showTaskFinishedWithErrorDialog(state.title, state.message);
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
         } else {
             showTaskProgressDialog(state.title, state.message, state.progress, state.progressMax);
         }
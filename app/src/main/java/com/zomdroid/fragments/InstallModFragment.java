@@ -54,6 +54,7 @@ public class InstallModFragment extends Fragment {
     private FragmentInstallModBinding binding;
     private TaskProgressDialogBinding taskProgressDialogBinding;
     private AlertDialog taskProgressDialog;
+    private InstallerService installerService;
     private boolean isInstallerServiceBound = false;
 
     private final String ZIP_MIME = "application/zip";
@@ -65,11 +66,12 @@ public class InstallModFragment extends Fragment {
         @Override
         public void onServiceConnected(ComponentName className, IBinder service) {
             InstallerService.LocalBinder binder = (InstallerService.LocalBinder) service;
-            InstallerService installerService = binder.getService();
+            installerService = binder.getService();
             isInstallerServiceBound = true;
 
             handleTaskState(installerService.getTaskState().getValue());
             installerService.getTaskState().observe(InstallModFragment.this, InstallModFragment.this::handleTaskState);
+            QueuedTaskControls.bind(InstallModFragment.this, taskProgressDialogBinding, installerService);
         }
 
         @Override
@@ -84,15 +86,19 @@ public class InstallModFragment extends Fragment {
         if (state == null) return;
         if (state.isFinished) {
             taskProgressDialog.dismiss();
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
             Toast.makeText(requireContext(),
                     getString(R.string.dialog_title_mods_installed),
                     Toast.LENGTH_SHORT).show();
         } else if (state.isFinishedWithError) {
             showTaskFinishedWithErrorDialog(state.title, state.message);
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
         } else {
             showTaskProgressDialog(state.title, state.message, state.progress, state.progressMax);
         }
@@ -42,6 +42,7 @@ public class InstallNativeLibsFragment extends Fragment {
     private FragmentInstallNativeLibsBinding binding;
     private TaskProgressDialogBinding taskProgressDialogBinding;
     private AlertDialog taskProgressDialog;
+    private InstallerService installerService;
     private boolean isInstallerServiceBound = false;
 
     private final String ZIP_MIME = "application/zip";
@@ -52,10 +53,11 @@ public class InstallNativeLibsFragment extends Fragment {
         @Override
         public void onServiceConnected(ComponentName className, IBinder service) {
             InstallerService.LocalBinder binder = (InstallerService.LocalBinder) service;
-            InstallerService installerService = binder.getService();
+            installerService = binder.getService();
             isInstallerServiceBound = true;
             handleTaskState(installerService.getTaskState().getValue());
             installerService.getTaskState().observe(InstallNativeLibsFragment.this, InstallNativeLibsFragment.this::handleTaskState);
+            QueuedTaskControls.bind(InstallNativeLibsFragment.this, taskProgressDialogBinding, installerService);
         }
 
         @Override
@@ -70,13 +72,17 @@ public class InstallNativeLibsFragment extends Fragment {
         if (state == null) return;
         if (state.isFinished) {
             taskProgressDialog.dismiss();
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
             Toast.makeText(requireContext(), state.title, Toast.LENGTH_SHORT).show();
         } else if (state.isFinishedWithError) {
             showTaskFinishedWithErrorDialog(state.title, state.message);
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
         } else {
             showTaskProgressDialog(state.title, state.message, state.progress, state.progressMax);
         }
@@ -48,22 +48,26 @@ public class InstallSavesFragment extends Fragment {
     private FragmentInstallSavesBinding binding;
     private TaskProgressDialogBinding taskProgressDialogBinding;
     private AlertDialog taskProgressDialog;
+    private InstallerService installerService;
     private boolean isInstallerServiceBound = false;
 
     private static final String ZIP_MIME = "application/zip";
 
     private Uri savesZipUri = null;
+    // Whether the export being picked a destination for is a changes-only one.
+    private boolean exportDelta = false;
     private List<GameInstance> instances;
 
     private final ServiceConnection installerServiceConnection = new ServiceConnection() {
         @Override
         public void onServiceConnected(ComponentName className, IBinder service) {
             InstallerService.LocalBinder binder = (InstallerService.LocalBinder) service;
-            InstallerService installerService = binder.getService();
+            installerService = binder.getService();
             isInstallerServiceBound = true;
 
             handleTaskState(installerService.getTaskState().getValue());
             installerService.getTaskState().observe(InstallSavesFragment.this, InstallSavesFragment.this::handleTaskState);
+            QueuedTaskControls.bind(InstallSavesFragment.this, taskProgressDialogBinding, installerService);
         }
 
         @Override
@@ -78,13 +82,17 @@ public class InstallSavesFragment extends Fragment {
         if (state == null) return;
         if (state.isFinished) {
             taskProgressDialog.dismiss();
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
             Toast.makeText(requireContext(), state.title, Toast.LENGTH_SHORT).show();
         } else if (state.isFinishedWithError) {
             showTaskFinishedWithErrorDialog(state.title, state.message);
-            unbindInstallerService();
-            requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            if (!installerService.hasActiveTasks()) {
+                unbindInstallerService();
+                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+            }
         } else {
             showTaskProgressDialog(state.title, state.message, state.progress, state.progressMax);
         }
@@ -127,6 +135,7 @@ public class InstallSavesFragment extends Fragment {
                         InstallerService.EXTRA_OUTPUT_URI,
                         outUri
                 );
+                installerIntent.putExtra(InstallerService.EXTRA_DELTA_EXPORT, exportDelta);
 
                 requireContext().startForegroundService(installerIntent);
                 bindInstallerService();
@@ -259,9 +268,20 @@ public class InstallSavesFragment extends Fragment {
 
         // Export button
         binding.installSavesExportBtn.setOnClickListener(v -> {
-            String ts = new SimpleDateFormat("yyyyMMdd_HHmm", Locale.US).format(new Date());
-            String defaultName = "zomdroid_saves_" + ts + ".zip";
-            actionCreateSavesZipLauncher.launch(defaultName);
+            GameInstance selectedInstance = getSelectedInstanceOrNull();
+            if (selectedInstance == null) return;
+            // Nothing to build a delta on before the first export.
+            if (!InstallerService.canExportSavesDelta(selectedInstance)) {
+                launchSavesExport(false);
+                return;
+            }
+            new MaterialAlertDialogBuilder(requireContext())
+                    .setTitle(R.string.dialog_title_export_saves_mode)
+                    .setMessage(R.string.export_saves_mode_message)
+                    .setPositiveButton(R.string.dialog_button_export_delta, (d, w) -> launchSavesExport(true))
+                    .setNeutralButton(R.string.dialog_button_export_full, (d, w) -> launchSavesExport(false))
+                    .setNegativeButton(android.R.string.cancel, null)
+                    .show();
         });
 
         // Help
@@ -347,6 +367,13 @@ public class InstallSavesFragment extends Fragment {
         taskProgressDialog.show();
     }
 
+    private void launchSavesExport(boolean delta) {
+        exportDelta = delta;
+        String ts = new SimpleDateFormat("yyyyMMdd_HHmm", Locale.US).format(new Date());
+        String defaultName = (delta ? "zomdroid_saves_changes_" : "zomdroid_saves_") + ts + ".zip";
+        actionCreateSavesZipLauncher.launch(defaultName);
+    }
+
     private GameInstance getSelectedInstanceOrNull() {
         int position = binding.installSavesInstanceSpinner.getSelectedItemPosition();
         int instanceIndex = instances.size() > 1 ? position - 1 : position;
@@ -33,6 +33,7 @@ import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.core.app.ActivityCompat;
 import androidx.core.view.MenuHost;
@@ -79,6 +80,7 @@ public class LauncherFragment extends Fragment {
 
             handleTaskState(installerService.getTaskState().getValue());
             installerService.getTaskState().observe(LauncherFragment.this, this::handleTaskState);
+            QueuedTaskControls.bind(LauncherFragment.this, taskProgressDialogBinding, installerService);
         }
 
         @Override
@@ -92,13 +94,15 @@ public class LauncherFragment extends Fragment {
             if (state == null)
                 return;
             if (state.isFinished) {
-                InstallerService.Task finishedTask = installerService.getCurrentTask();
+                InstallerService.Task finishedTask = state.task;
                 String presetName = installerService.getCurrentInstallPresetName();
                 String gpuVendor = installerService.getCurrentGpuVendor();
                 adapter.notifyDataSetChanged();
                 taskProgressDialog.dismiss();
-                unbindInstallerService();
-                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+                if (!installerService.hasActiveTasks()) {
+                    unbindInstallerService();
+                    requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+                }
                 if (finishedTask == InstallerService.Task.CREATE_GAME_INSTANCE
                         && !postInstallDialogShown) {
                     postInstallDialogShown = true;
@@ -107,10 +111,12 @@ public class LauncherFragment extends Fragment {
             } else if (state.isFinishedWithError) {
                 adapter.notifyDataSetChanged();
                 showTaskFinishedDialog(state.title, state.message);
-                unbindInstallerService();
-                requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+                if (!installerService.hasActiveTasks()) {
+                    unbindInstallerService();
+                    requireContext().stopService(new Intent(requireContext(), InstallerService.class));
+                }
             } else {
-                if (installerService.getCurrentTask() == InstallerService.Task.CREATE_GAME_INSTANCE) {
+                if (state.task == InstallerService.Task.CREATE_GAME_INSTANCE) {
                     postInstallDialogShown = false;
                 }
                 showTaskProgressDialog(state.title, state.message, state.progress, state.progressMax);
@@ -118,6 +124,71 @@ public class LauncherFragment extends Fragment {
         }
     };
 
+    // The instance whose interrupted install is waiting for its archives to be picked again, and
+    // the game archive once it has been. SAF grants do not outlive the process that was killed, so
+    // the game archive - and the native libraries archive, if one was chosen - has to be
+    // re-selected. Both survive the fragment being recreated while a picker is open.
+    private static final String STATE_RESUME_INSTANCE = "resume_instance";
+    private static final String STATE_RESUME_ARCHIVE_URI = "resume_archive_uri";
+    private String resumeInstanceName;
+    private Uri resumeArchiveUri;
+
+    private final ActivityResultLauncher<String> resumeNativeLibsLauncher =
+            registerForActivityResult(new ActivityResultContracts.GetContent(), uri -> {
+                Uri archiveUri = resumeArchiveUri;
+                GameInstance gameInstance = takeResumeInstance();
+                if (uri == null || archiveUri == null || gameInstance == null) return;
+                resumeInstall(gameInstance, archiveUri, uri);
+            });
+
+    private final ActivityResultLauncher<String> resumeArchiveLauncher =
+            registerForActivityResult(new ActivityResultContracts.GetContent(), uri -> {
+                GameInstance gameInstance = takeResumeInstance();
+                if (uri == null || gameInstance == null) return;
+                if (InstallerService.resumeNeedsNativeLibs(gameInstance)) {
+                    resumeInstanceName = gameInstance.getName();
+                    resumeArchiveUri = uri;
+                    Toast.makeText(requireContext(), R.string.resume_install_native_libs, Toast.LENGTH_LONG).show();
+                    resumeNativeLibsLauncher.launch("application/zip");
+                    return;
+                }
+                resumeInstall(gameInstance, uri, null);
+            });
+
+    @Nullable
+    private GameInstance takeResumeInstance() {
+        String name = resumeInstanceName;
+        resumeInstanceName = null;
+        resumeArchiveUri = null;
+        return name == null ? null : GameInstanceManager.requireSingleton().getInstanceByName(name);
+    }
+
+    private void resumeInstall(GameInstance gameInstance, Uri archiveUri, @Nullable Uri nativeLibsUri) {
+        Intent installerIntent = new Intent(requireContext(), InstallerService.class);
+        installerIntent.putExtra(InstallerService.EXTRA_COMMAND, InstallerService.Task.CREATE_GAME_INSTANCE.ordinal());
+        installerIntent.putExtra(InstallerService.EXTRA_GAME_INSTANCE_NAME, gameInstance.getName());
+        installerIntent.putExtra(InstallerService.EXTRA_ARCHIVE_URI, archiveUri);
+        if (nativeLibsUri != null) installerIntent.putExtra(InstallerService.EXTRA_NATIVE_LIBS_URI, nativeLibsUri);
+        installerIntent.putExtra(InstallerService.EXTRA_INSTALL_PRESET_NAME, gameInstance.getPresetName());
+        requireContext().startForegroundService(installerIntent);
+    }
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if (savedInstanceState != null) {
+            resumeInstanceName = savedInstanceState.getString(STATE_RESUME_INSTANCE);
+            resumeArchiveUri = savedInstanceState.getParcelable(STATE_RESUME_ARCHIVE_URI);
+        }
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_RESUME_INSTANCE, resumeInstanceName);
+        outState.putParcelable(STATE_RESUME_ARCHIVE_URI, resumeArchiveUri);
+    }
+
     private ActivityResultLauncher<String> requestPermissionLauncher =
             registerForActivityResult(new ActivityResultContracts.RequestPermission(), isGranted -> {
                 if (!isGranted) {
@@ -173,6 +244,19 @@ public class LauncherFragment extends Fragment {
 
                 launchIb.setOnClickListener(v -> {
                     if (!gameInstance.isInstallationFinished()) {
+                        if (InstallerService.isInstallResumable(gameInstance)) {
+                            new MaterialAlertDialogBuilder(requireContext())
+                                    .setTitle(R.string.dialog_title_resume_install)
+                                    .setMessage(R.string.resume_install_message)
+                                    .setCancelable(true)
+                                    .setPositiveButton(R.string.dialog_button_resume_install, (dialog, which) -> {
+                                        resumeInstanceName = gameInstance.getName();
+                                        resumeArchiveLauncher.launch("application/zip");
+                                    })
+                                    .setNegativeButton(R.string.dialog_button_cancel, null)
+                                    .show();
+                            return;
+                        }
                         Toast.makeText(getContext(), R.string.installation_not_finished,
                                 Toast.LENGTH_SHORT).show();
                         return;
@@ -596,9 +680,10 @@ public class LauncherFragment extends Fragment {
     }
 
     private void updateDependencies() {
-        // Always run: doInstallDependencies() CRC32-checks each bundle (JRE21/JRE25/libs/jars)
-        // against what's on disk and only re-extracts the ones that changed, silently no-op'ing
-        // (no notification/dialog) when nothing did. That's what lets an APK update carrying a
+        // Always run: doInstallDependencies() checks each bundle (JRE21/JRE25/libs/jars) against
+        // what's on disk - a stored APK fingerprint when nothing was updated, CRC32 otherwise - and
+        // only re-extracts the ones that changed, silently no-op'ing (no notification/dialog) when
+        // nothing did. That's what lets an APK update carrying a
         // changed libs.tar.xz take effect on next launch, without requiring a full app reinstall
         // (a reinstall wipes app data, which is what used to reset ARE_DEPENDENCIES_INSTALLED
         // and force a re-check — now unnecessary).
@@ -0,0 +1,50 @@
+package com.zomdroid.fragments;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.android.material.button.MaterialButton;
+import com.zomdroid.InstallerService;
+import com.zomdroid.R;
+import com.zomdroid.databinding.TaskProgressDialogBinding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The task progress dialog's "cancel queued" button, the same in every fragment that shows it.
+//
+// The dialog follows one task at a time - the oldest - while the tasks submitted after it run
+// beside it or wait for the same instance or a free slot. Those waiting are listed with their ids
+// in InstallerService.getTaskStates(); the button shows how many there are and takes them back.
+// A task that already started is never interrupted.
+final class QueuedTaskControls {
+    private QueuedTaskControls() {}
+
+    static void bind(@NonNull LifecycleOwner owner, @NonNull TaskProgressDialogBinding dialog,
+                     @NonNull InstallerService service) {
+        // Rebinding the service must not stack a second observer on the first.
+        service.getTaskStates().removeObservers(owner);
+        service.getTaskStates().observe(owner, states -> {
+            List<Integer> queued = new ArrayList<>();
+            if (states != null) {
+                for (InstallerService.TaskState state : states) {
+                    if (state.isQueued) queued.add(state.taskId);
+                }
+            }
+            MaterialButton button = dialog.progressDialogCancelQueuedMb;
+            if (queued.isEmpty()) {
+                button.setVisibility(View.GONE);
+                button.setOnClickListener(null);
+                return;
+            }
+            button.setText(button.getContext().getString(R.string.task_cancel_queued, queued.size()));
+            button.setVisibility(View.VISIBLE);
+            // Each one finishes as "Cancelled" through the same task state the dialog follows.
+            button.setOnClickListener(v -> {
+                for (int taskId : queued) service.cancelTask(taskId);
+            });
+        });
+    }
+}
@@ -315,6 +315,16 @@ public class SettingsFragment extends Fragment {
         binding.settingsMemorySaverSwitch.setOnCheckedChangeListener((v, isChecked) ->
                 LauncherPreferences.requireSingleton().setMemorySaver(isChecked));
 
+        binding.settingsInProcessPatchesSwitch.setChecked(LauncherPreferences.requireSingleton().isInProcessClassPatches());
+        binding.settingsInProcessPatchesSwitch.setOnCheckedChangeListener((v, isChecked) ->
+                LauncherPreferences.requireSingleton().setInProcessClassPatches(isChecked));
+        // Without the agent jar the launcher patches on disk whatever the switch says, so say so
+        // here instead of leaving a switch that quietly does nothing. The preference is kept: it
+        // takes effect once a dependency bundle with the agent is installed.
+        boolean agentInstalled = com.zomdroid.patch.ClassPatches.agentJar().isFile();
+        binding.settingsInProcessPatchesSwitch.setEnabled(agentInstalled);
+        binding.settingsInProcessPatchesUnavailableTv.setVisibility(agentInstalled ? View.GONE : View.VISIBLE);
+
         // The F10 backup is opt-in behind a priced warning: the copy is world-sized (players report
         // 300-600 MB) and the game visibly freezes while it is written. Turning it ON requires
         // reading and accepting that; turning it off is one tap.
@@ -45,7 +45,7 @@ public class SteamDownloadFragment extends Fragment implements SteamDownloadStat
     private EditText etUser, etPass, etManifest, etModsIds;
     private Button btnStart, btnModsStart, btnCancel;
     private ProgressBar progress;
-    private TextView tvStatus;
+    private TextView tvStatus, tvSpeed;
     private android.view.View blockLogin, sectionGame, sectionMods;
     private MaterialButtonToggleGroup buildToggle;
     private Context appCtx;
@@ -68,6 +68,7 @@ public class SteamDownloadFragment extends Fragment implements SteamDownloadStat
         btnCancel = v.findViewById(R.id.btn_dl_cancel);
         progress = v.findViewById(R.id.progress_dl);
         tvStatus = v.findViewById(R.id.tv_dl_status);
+        tvSpeed = v.findViewById(R.id.tv_dl_speed);
         blockLogin = v.findViewById(R.id.block_login);
         sectionGame = v.findViewById(R.id.section_game);
         sectionMods = v.findViewById(R.id.section_mods);
@@ -121,6 +122,7 @@ public class SteamDownloadFragment extends Fragment implements SteamDownloadStat
                 progress.setIndeterminate(false);
                 progress.setProgress(st.getPercent());
             }
+            if (st.getConcurrency() > 0) onTransferStats(st.getConcurrency(), st.getBytesPerSecond());
         } else {
             progress.setVisibility(View.GONE);
         }
@@ -228,6 +230,7 @@ public class SteamDownloadFragment extends Fragment implements SteamDownloadStat
         tvStatus.setText("");
         progress.setVisibility(View.VISIBLE);
         progress.setIndeterminate(true);
+        tvSpeed.setVisibility(View.GONE);
         appendLog("Connecting to Steam…");
     }
 
@@ -284,10 +287,19 @@ public class SteamDownloadFragment extends Fragment implements SteamDownloadStat
         if (!indeterminate) progress.setProgress(Math.max(0, Math.min(100, percent)));
     }
 
+    @Override
+    public void onTransferStats(int concurrency, long bytesPerSecond) {
+        if (tvSpeed == null) return;
+        tvSpeed.setVisibility(View.VISIBLE);
+        tvSpeed.setText(getString(R.string.steam_dl_speed,
+                android.text.format.Formatter.formatShortFileSize(appCtx, bytesPerSecond), concurrency));
+    }
+
     @Override
     public void onFinished(String message) {
         setControlsEnabled(true);
         if (progress != null) progress.setVisibility(View.GONE);
+        if (tvSpeed != null) tvSpeed.setVisibility(View.GONE);
         if (btnCancel != null) btnCancel.setVisibility(View.GONE);
         Toast.makeText(appCtx, message, Toast.LENGTH_LONG).show();
     }
@@ -4,12 +4,13 @@ import android.util.Log;
 
 import androidx.annotation.Nullable;
 
+import com.zomdroid.TreeCopy;
+
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.Comparator;
 import java.util.List;
 
@@ -142,12 +143,14 @@ public final class BackupManager {
         deleteTree(fresh.toPath()); // leftovers of an interrupted attempt
         deleteTree(old.toPath());
 
-        long[] copied = copyTree(backup.generation.toPath(), fresh.toPath());
+        // A real copy, never links: the game rewrites save files in place, and a restored world
+        // sharing them with its backup would change the backup as it is played.
+        TreeCopy.Stats copied = TreeCopy.copy(backup.generation, fresh, TreeCopy.Conflict.REPLACE, null);
         // The generation carries our "complete" marker; it has no business inside a live save.
         //noinspection ResultOfMethodCallIgnored
         new File(fresh, "complete").delete();
-        Log.i(LOG_TAG, "Backup copied beside the live world: " + copied[0] + " files, "
-                + (copied[1] >> 20) + " MB");
+        Log.i(LOG_TAG, "Backup copied beside the live world: " + copied.files + " files, "
+                + (copied.bytes >> 20) + " MB");
 
         if (live.exists() && !live.renameTo(old))
             throw new IOException("Could not set aside the live world " + live);
@@ -225,24 +228,6 @@ public final class BackupManager {
         return bytes[0];
     }
 
-    private static long[] copyTree(Path source, Path target) throws IOException {
-        final long[] acc = new long[2];
-        try (var stream = Files.walk(source)) {
-            for (Path p : (Iterable<Path>) stream::iterator) {
-                Path dest = target.resolve(source.relativize(p));
-                if (Files.isDirectory(p)) {
-                    Files.createDirectories(dest);
-                } else {
-                    Files.createDirectories(dest.getParent());
-                    Files.copy(p, dest, StandardCopyOption.REPLACE_EXISTING);
-                    acc[0]++;
-                    acc[1] += Files.size(dest);
-                }
-            }
-        }
-        return acc;
-    }
-
     private static void deleteTree(Path root) throws IOException {
         if (!Files.exists(root)) return;
         try (var stream = Files.walk(root)) {
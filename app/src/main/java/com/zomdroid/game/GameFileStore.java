@@ -0,0 +1,233 @@
+package com.zomdroid.game;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.zomdroid.AppStorage;
+import com.zomdroid.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Game files shared between instances, stored once and hard-linked into each instance's game/.
+ *
+ * <p>Every instance used to carry a full private copy of its game: a player with a B41 and a B42
+ * instance, or two B42 instances for two mod sets, paid 5-10 GB per copy. An object here is named
+ * by what the game archive already says about the entry - its CRC32 and size - so a second install
+ * from an archive whose files are all here finds each entry by its central directory record and
+ * links it, without writing a byte. Entries extracted for the first time are linked in the other
+ * direction, after the bytes written were checked against that CRC.
+ *
+ * <p>A CRC32 is a checksum, not an identity: among the tens of thousands of files of several game
+ * builds, two different ones with the same CRC and size are unlikely but possible, and linking on
+ * the name alone would put the wrong content into an install without a word. So an entry is only
+ * linked after its inflated bytes matched the object byte for byte - the inflate is still paid,
+ * the write is not. A colliding entry simply stays a private file.
+ *
+ * <p>A link is the same file under two names, so a shared file must never be written in place:
+ * whoever changes a game file replaces it (write elsewhere, rename over, or delete first), which
+ * breaks the link for that one instance - copy-on-write by hand. Every patch applier already works
+ * that way because it keeps a backup; objects are made read-only so a write that forgets fails
+ * loudly instead of changing the file under every other instance.
+ *
+ * <p>An object no instance links to any more (its link count is back to 1) is removed by
+ * {@link #prune()}.
+ */
+public final class GameFileStore {
+    private static final String LOG_TAG = GameFileStore.class.getName();
+
+    private final File objectsDir;
+
+    private GameFileStore(File root) {
+        this.objectsDir = new File(root, "objects");
+    }
+
+    @NonNull
+    public static GameFileStore open() {
+        return new GameFileStore(new File(AppStorage.requireSingleton().getGameStorePath()));
+    }
+
+    private File objectFor(long crc32, long size) {
+        String name = String.format(Locale.ROOT, "%08x-%d", crc32, size);
+        return new File(objectsDir, name.substring(0, 2) + "/" + name);
+    }
+
+    /** True when an object for an entry with this CRC32 and size is stored. */
+    public boolean holds(long crc32, long size) {
+        if (crc32 < 0 || size <= 0) return false;
+        File object = objectFor(crc32, size);
+        return object.isFile() && object.length() == size;
+    }
+
+    /**
+     * Links the stored object for an entry with this CRC32 and size to file, replacing whatever
+     * is there - once entryData, the entry's own bytes, matched the object exactly. False when the
+     * store has no such object (or the entry states no CRC), or holds other bytes under its name,
+     * and the caller has to extract the entry itself. buffer is scratch space for the comparison.
+     */
+    public boolean linkIfSame(long crc32, long size, @NonNull InputStream entryData, @NonNull File file,
+                              @NonNull byte[] buffer) {
+        if (!holds(crc32, size)) return false;
+        File object = objectFor(crc32, size);
+        try {
+            if (!sameBytes(entryData, object, buffer)) {
+                Log.w(LOG_TAG, "Not linking " + file + ": " + object.getName()
+                        + " has the same CRC32 and size but different content");
+                return false;
+            }
+            Files.deleteIfExists(file.toPath());
+            Files.createLink(file.toPath(), object.toPath());
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            Log.w(LOG_TAG, "Failed to link " + object.getName() + " to " + file + ": " + e);
+            return false;
+        }
+    }
+
+    // True when in and object hold the same bytes. The entry is read into the first half of
+    // buffer and the object into the second, so the comparison allocates nothing.
+    private static boolean sameBytes(InputStream in, File object, byte[] buffer) throws IOException {
+        int half = buffer.length / 2;
+        try (InputStream stored = new FileInputStream(object)) {
+            while (true) {
+                int n = fill(in, buffer, 0, half);
+                if (fill(stored, buffer, half, half) != n) return false;
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] != buffer[half + i]) return false;
+                }
+                if (n < half) return true;
+            }
+        }
+    }
+
+    // Reads until len bytes are in or the stream ends; the number read.
+    private static int fill(InputStream in, byte[] buffer, int offset, int len) throws IOException {
+        int filled = 0;
+        while (filled < len) {
+            int n = in.read(buffer, offset + filled, len - filled);
+            if (n == -1) break;
+            filled += n;
+        }
+        return filled;
+    }
+
+    /**
+     * Shares a file just extracted for an entry: links it into the store under the entry's CRC32
+     * and size. actualCrc32 is what was computed over the bytes written - an entry whose data
+     * does not match its declared CRC is left private, never stored under a name it does not
+     * deserve. When the same object appeared meanwhile (two instances installing side by side,
+     * or two identical entries in one archive), the file is swapped for a link to it.
+     */
+    public void adopt(@NonNull File file, long declaredCrc32, long actualCrc32, long size) {
+        if (declaredCrc32 < 0 || size <= 0) return;
+        if (declaredCrc32 != actualCrc32) {
+            Log.w(LOG_TAG, "Not sharing " + file + ": CRC32 " + Long.toHexString(actualCrc32)
+                    + " does not match the archive's " + Long.toHexString(declaredCrc32));
+            return;
+        }
+        File object = objectFor(declaredCrc32, size);
+        File parent = object.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            Log.w(LOG_TAG, "Failed to create " + parent);
+            return;
+        }
+        try {
+            try {
+                Files.createLink(object.toPath(), file.toPath());
+                //noinspection ResultOfMethodCallIgnored
+                file.setWritable(false, false);
+            } catch (FileAlreadyExistsException e) {
+                File tmp = new File(file.getPath() + ".zomdroid-link");
+                Files.deleteIfExists(tmp.toPath());
+                Files.createLink(tmp.toPath(), object.toPath());
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            // The file stays private; nothing else depends on it being shared.
+            Log.w(LOG_TAG, "Failed to share " + file + ": " + e);
+        }
+    }
+
+    /** Removes objects no instance links to any more. Returns the bytes freed. */
+    public long prune() {
+        long freed = 0;
+        int removed = 0;
+        File[] buckets = objectsDir.listFiles();
+        if (buckets == null) return 0;
+        for (File bucket : buckets) {
+            File[] objects = bucket.listFiles();
+            if (objects == null) continue;
+            for (File object : objects) {
+                try {
+                    StructStat stat = Os.lstat(object.getPath());
+                    if (stat.st_nlink > 1) continue;
+                    if (object.delete()) {
+                        freed += stat.st_size;
+                        removed++;
+                    }
+                } catch (ErrnoException e) {
+                    Log.w(LOG_TAG, "Failed to stat " + object + ": " + e);
+                }
+            }
+            //noinspection ResultOfMethodCallIgnored
+            bucket.delete(); // only succeeds once empty
+        }
+        if (removed > 0) {
+            Log.i(LOG_TAG, "Pruned " + removed + " unused game files (" + (freed / (1024 * 1024)) + " MB)");
+        }
+        return freed;
+    }
+
+    /** Disk taken by one directory tree, split by whether each file is shared with others. */
+    public static final class Usage {
+        public long sharedBytes;
+        public long uniqueBytes;
+
+        @NonNull
+        @Override
+        public String toString() {
+            return (uniqueBytes / (1024 * 1024)) + " MB unique, " + (sharedBytes / (1024 * 1024)) + " MB shared";
+        }
+    }
+
+    /**
+     * Measures dir. A file with more than one link is shared - with the store at least, and so
+     * with every instance that links the same object; deleting the instance frees only its unique
+     * bytes.
+     */
+    @NonNull
+    public static Usage measure(@NonNull File dir) {
+        Usage usage = new Usage();
+        measure(dir, usage);
+        return usage;
+    }
+
+    private static void measure(File dir, Usage usage) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (FileUtils.isWalkableDirectory(file)) {
+                measure(file, usage);
+                continue;
+            }
+            try {
+                StructStat stat = Os.lstat(file.getPath());
+                if (stat.st_nlink > 1) usage.sharedBytes += stat.st_size;
+                else usage.uniqueBytes += stat.st_size;
+            } catch (ErrnoException ignored) {
+                // Gone since listFiles(); nothing to count.
+            }
+        }
+    }
+}
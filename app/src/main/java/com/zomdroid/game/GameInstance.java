@@ -14,6 +14,8 @@ import java.util.StringJoiner;
 public class GameInstance {
     private static final String INSTANCES_ROOT_DIR_NAME = "instances";
     public static final String GAME_FILES_DIR_NAME = "game";
+    // The 42.12+ fat jar holding every game class.
+    public static final String GAME_JAR_NAME = "projectzomboid.jar";
 
     private String name;
     private String buildVersion;
@@ -34,6 +36,10 @@ public class GameInstance {
     // intentionally separate from the broad "Build 42.12+" preset so build-specific workarounds
     // can be gated at the 42.20 packaging/runtime boundary.
     private boolean build4220Plus = false;
+    // Set during installation when projectzomboid.jar is kept packed and put on the classpath
+    // instead of being unpacked into the game directory (see com.zomdroid.patch.GameClasses).
+    // Instances installed before this existed have the jar unpacked and keep running that way.
+    private boolean runsFromGameJar = false;
 
     public GameInstance(String name, InstallationPreset preset) throws FileSystemException {
         this.name = name;
@@ -148,7 +154,7 @@ public class GameInstance {
         for (String path : this.extraClassPath) {
             jarsJoiner.add(AppStorage.requireSingleton().getHomePath() + "/" + path);
         }
-        jvmArgsList.add("-Djava.class.path=" + String.join(":", this.classPath) + ":" + jarsJoiner);
+        jvmArgsList.add("-Djava.class.path=" + String.join(":", getEffectiveClassPath()) + ":" + jarsJoiner);
 
         jvmArgsList.addAll(Arrays.asList(this.extraJvmArgs));
 
@@ -168,6 +174,17 @@ public class GameInstance {
         return this.classPath;
     }
 
+    // The preset class path, plus the game jar right behind "." for an instance that runs from
+    // it: the game directory stays first, so the patched classes we write there shadow the jar.
+    private ArrayList<String> getEffectiveClassPath() {
+        ArrayList<String> entries = new ArrayList<>(Arrays.asList(this.classPath));
+        if (this.runsFromGameJar && !entries.contains(GAME_JAR_NAME)) {
+            int dot = entries.indexOf(".");
+            entries.add(dot + 1, GAME_JAR_NAME);
+        }
+        return entries;
+    }
+
     public ArrayList<String> getArgsAsList() {
         return new ArrayList<>(Arrays.asList(this.args));
     }
@@ -200,11 +217,14 @@ public class GameInstance {
     public boolean hasGameFiles() {
         // New fat-jar structure (42.12+)
         for (String cp : getClassPathArray()) {
-            if ("projectzomboid.jar".equals(cp)) {
-                File jar = new File(getGamePath(), "projectzomboid.jar");
+            if (GAME_JAR_NAME.equals(cp)) {
+                File jar = new File(getGamePath(), GAME_JAR_NAME);
                 return jar.exists();
             }
         }
+        if (this.runsFromGameJar) {
+            return new File(getGamePath(), GAME_JAR_NAME).exists();
+        }
 
         // Old structure (41 / 42.6 - 42.11)
         File mainClassFile = new File(getGamePath() + "/" + getMainClassName() + ".class");
@@ -227,4 +247,12 @@ public class GameInstance {
     public void markBuild4220Plus() {
         this.build4220Plus = true;
     }
+
+    public boolean runsFromGameJar() {
+        return this.runsFromGameJar;
+    }
+
+    public void markRunsFromGameJar() {
+        this.runsFromGameJar = true;
+    }
 }
@@ -57,21 +57,34 @@ public class GameInstanceManager {
         return null;
     }
 
-    public void registerInstance(@NonNull GameInstance gameInstance) {
+    // Installer tasks now run side by side (InstallerService's TaskScheduler), and two of them
+    // finishing together must not serialize the list while the other changes it.
+    public synchronized void registerInstance(@NonNull GameInstance gameInstance) {
         this.gameInstances.add(gameInstance);
         saveToPreferences();
     }
 
-    public void unregisterInstance(@NonNull GameInstance gameInstance) {
+    public synchronized void unregisterInstance(@NonNull GameInstance gameInstance) {
         this.gameInstances.remove(gameInstance);
         saveToPreferences();
     }
 
-    public void markInstallationFinished(@NonNull GameInstance gameInstance) {
+    public synchronized void markInstallationFinished(@NonNull GameInstance gameInstance) {
         gameInstance.markInstallationFinished();
         saveToPreferences();
     }
 
+    // Writes what an unfinished install has learned about gameInstance (its 42.20 layout, its
+    // jar mode) before the install journal records the step as done. A resumed install skips
+    // that step and cannot find out again - the layout it detects has already been moved - so
+    // the flags must be on disk first, not only once the install finishes. Synchronous for
+    // that reason: apply() may still be queued when the process is killed.
+    public synchronized void saveInstallProgress(@NonNull GameInstance gameInstance) {
+        if (!this.gameInstances.contains(gameInstance)) return;
+        String json = this.gson.toJson(this.gameInstances);
+        this.sharedPreferences.edit().putString(C.shprefs.keys.GAME_INSTANCES, json).commit();
+    }
+
     private void loadFromPreferences() {
         String json = this.sharedPreferences.getString(C.shprefs.keys.GAME_INSTANCES, null);
         boolean migrated = false;
@@ -101,7 +114,7 @@ public class GameInstanceManager {
         }
     }
 
-    private void saveToPreferences() {
+    private synchronized void saveToPreferences() {
         String json = this.gson.toJson(this.gameInstances);
         this.sharedPreferences.edit().putString(C.shprefs.keys.GAME_INSTANCES, json).apply();
     }
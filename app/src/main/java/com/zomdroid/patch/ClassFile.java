@@ -0,0 +1,393 @@
+package com.zomdroid.patch;
+
+import androidx.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class file read just far enough to patch it: the constant pool indexed, every field and
+ * method located, and each method's Code attribute found.
+ *
+ * <p>Every patcher used to carry its own copy of this - the constant-pool walk, skipMember and
+ * the instruction stepper, some 120 lines each - and each applier re-read its class on its own.
+ * Rules ({@link ClassPatch}) now share this one parser and {@link ClassPatches} reads every class
+ * they touch in one pass.
+ *
+ * <p>Edits come in two kinds. {@link #put} overwrites bytes in place: instruction sizes stay the
+ * same, so branch offsets and StackMapTable frames stay valid and the parsed offsets keep
+ * pointing at the right places. {@link #splice} inserts or removes bytes and returns a new class
+ * file; the offsets of this one mean nothing for it, so a rule that splices is done with it.
+ *
+ * <p>Malformed input throws IllegalArgumentException, which the engine reports and survives.
+ */
+final class ClassFile {
+    static final int CONSTANT_UTF8 = 1;
+    static final int CONSTANT_CLASS = 7;
+    static final int CONSTANT_STRING = 8;
+    static final int CONSTANT_FIELDREF = 9;
+    static final int CONSTANT_METHODREF = 10;
+    static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_NATIVE = 0x0100;
+
+    /** A field or method: where its member_info starts and ends, and what it is called. */
+    static final class Member {
+        final int offset;
+        final int end;
+        final int access;
+        final String name;
+        final String descriptor;
+        final int attributesCount;
+        // Offset of the Code attribute's header (attribute_name_index), -1 when there is none.
+        final int codeAttribute;
+
+        Member(int offset, int end, int access, String name, String descriptor, int attributesCount,
+               int codeAttribute) {
+            this.offset = offset;
+            this.end = end;
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.attributesCount = attributesCount;
+            this.codeAttribute = codeAttribute;
+        }
+    }
+
+    /** The bytecode of one method, addressed by pc the way the JVM does. */
+    final class Code {
+        // Offset of code[0] in the class file.
+        final int start;
+        final int length;
+
+        Code(int start, int length) {
+            this.start = start;
+            this.length = length;
+        }
+
+        int opcode(int pc) {
+            return u1(start + pc);
+        }
+
+        int operandU1(int pc) {
+            return u1(start + pc + 1);
+        }
+
+        int operandU2(int pc) {
+            return u2(start + pc + 1);
+        }
+
+        /** Overwrites the instruction bytes at pc; the instruction must keep its length. */
+        void put(int pc, int... values) {
+            ClassFile.this.put(start + pc, values);
+        }
+
+        /**
+         * Length of the instruction at pc, switches and wide included. Walking by instruction
+         * is what keeps an operand that happens to look like an opcode from being patched.
+         */
+        int instructionLength(int pc) {
+            int opcode = opcode(pc);
+            if (opcode == 0xAA) { // tableswitch
+                int padding = 3 - (pc & 3);
+                int base = start + pc + 1 + padding;
+                long low = u4(base + 4);
+                long high = u4(base + 8);
+                return 1 + padding + 12 + (int) (high - low + 1) * 4;
+            }
+            if (opcode == 0xAB) { // lookupswitch
+                int padding = 3 - (pc & 3);
+                int base = start + pc + 1 + padding;
+                return 1 + padding + 8 + checkedU4(base + 4) * 8;
+            }
+            if (opcode == 0xC4) return u1(start + pc + 1) == 0x84 ? 6 : 4; // wide
+            int length = OPCODE_LENGTH[opcode];
+            if (length == 0) {
+                throw new IllegalArgumentException("unknown opcode 0x" + Integer.toHexString(opcode) + " at " + pc);
+            }
+            return length;
+        }
+    }
+
+    private final byte[] b;
+    private final int[] cpOffset;
+    private final int poolEnd;
+    private final int fieldsCountOffset;
+    private final List<Member> fields;
+    private final List<Member> methods;
+
+    private ClassFile(byte[] b) {
+        this.b = b;
+        if (b.length < 10 || u4(0) != 0xCAFEBABEL) throw new IllegalArgumentException("not a class file");
+
+        int cpCount = u2(8);
+        cpOffset = new int[cpCount];
+        int p = 10;
+        for (int i = 1; i < cpCount; i++) {
+            cpOffset[i] = p;
+            int tag = u1(p);
+            switch (tag) {
+                case 7: case 8: case 16: case 19: case 20: p += 3; break;      // Class, String, MethodType, Module, Package
+                case 15: p += 4; break;                                         // MethodHandle
+                case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18: p += 5; break;
+                case 5: case 6: p += 9; i++; break;                             // long and double take two slots
+                case 1: p += 3 + u2(p + 1); break;                              // Utf8
+                default: throw new IllegalArgumentException("bad constant-pool tag " + tag + " at " + p);
+            }
+        }
+        poolEnd = p;
+
+        p += 6;                      // access_flags, this_class, super_class
+        p += 2 + u2(p) * 2;          // interfaces
+        fieldsCountOffset = p;
+        List<Member> parsedFields = new ArrayList<>();
+        p = readMembers(p, parsedFields);
+        List<Member> parsedMethods = new ArrayList<>();
+        readMembers(p, parsedMethods);
+        fields = Collections.unmodifiableList(parsedFields);
+        methods = Collections.unmodifiableList(parsedMethods);
+    }
+
+    /** Parses a copy of classFile; edits never reach the array passed in. */
+    static ClassFile parse(byte[] classFile) {
+        try {
+            return new ClassFile(classFile.clone());
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("truncated class file", e);
+        }
+    }
+
+    private int readMembers(int p, List<Member> into) {
+        int count = u2(p);
+        p += 2;
+        for (int i = 0; i < count; i++) {
+            int offset = p;
+            int attributesCount = u2(p + 6);
+            int codeAttribute = -1;
+            int q = p + 8;
+            for (int a = 0; a < attributesCount; a++) {
+                if (codeAttribute < 0 && "Code".equals(utf8(u2(q)))) codeAttribute = q;
+                q += 6 + checkedU4(q + 2);
+            }
+            into.add(new Member(offset, q, u2(p), utf8(u2(p + 2)), utf8(u2(p + 4)), attributesCount, codeAttribute));
+            p = q;
+        }
+        return p;
+    }
+
+    /** The class file as edited so far. */
+    byte[] bytes() {
+        return b;
+    }
+
+    /** Internal name of the class itself: "zombie/core/opengl/ShaderUnit". */
+    String className() {
+        return utf8(ref1(u2(poolEnd + 2)));
+    }
+
+    List<Member> fields() {
+        return fields;
+    }
+
+    List<Member> methods() {
+        return methods;
+    }
+
+    @Nullable
+    Member method(String name, String descriptor) {
+        for (Member method : methods) {
+            if (method.name.equals(name) && method.descriptor.equals(descriptor)) return method;
+        }
+        return null;
+    }
+
+    /** The method's bytecode, or null for an abstract or native method. */
+    @Nullable
+    Code code(Member method) {
+        if (method.codeAttribute < 0) return null;
+        return new Code(method.codeAttribute + 14, checkedU4(method.codeAttribute + 10));
+    }
+
+    // ---------------------------------------------------------------- constant pool
+
+    int constantPoolCount() {
+        return cpOffset.length;
+    }
+
+    int poolEnd() {
+        return poolEnd;
+    }
+
+    int fieldsCountOffset() {
+        return fieldsCountOffset;
+    }
+
+    /** Tag of the entry at index, 0 for the unusable second slot of a long or double. */
+    int tag(int index) {
+        int off = cpOffset[index];
+        return off == 0 ? 0 : u1(off);
+    }
+
+    String utf8(int index) {
+        if (index <= 0 || index >= cpOffset.length || tag(index) != CONSTANT_UTF8) {
+            throw new IllegalArgumentException("expected Utf8 at constant " + index);
+        }
+        int off = cpOffset[index];
+        return new String(b, off + 3, u2(off + 1), StandardCharsets.UTF_8);
+    }
+
+    /** Index of the Utf8 constant equal to text, or -1. */
+    int findUtf8(String text) {
+        for (int i = 1; i < cpOffset.length; i++) {
+            if (tag(i) == CONSTANT_UTF8 && utf8(i).equals(text)) return i;
+        }
+        return -1;
+    }
+
+    /** First u2 of the entry at index: a Class's or String's Utf8, a ref's class, a NameAndType's name. */
+    int ref1(int index) {
+        return u2(cpOffset[index] + 1);
+    }
+
+    /** Second u2 of the entry at index: a ref's NameAndType, a NameAndType's descriptor. */
+    int ref2(int index) {
+        return u2(cpOffset[index] + 3);
+    }
+
+    /** Marks the String constants whose value is one of values. */
+    boolean[] stringConstants(String... values) {
+        boolean[] marked = new boolean[cpOffset.length];
+        for (int i = 1; i < cpOffset.length; i++) {
+            if (tag(i) != CONSTANT_STRING) continue;
+            String value = utf8(ref1(i));
+            for (String wanted : values) {
+                if (wanted.equals(value)) marked[i] = true;
+            }
+        }
+        return marked;
+    }
+
+    /** Marks the Fieldrefs to a field whose name is the Utf8 at nameIndex, in any class. */
+    boolean[] fieldRefsNamed(int nameIndex) {
+        boolean[] marked = new boolean[cpOffset.length];
+        for (int i = 1; i < cpOffset.length; i++) {
+            if (tag(i) != CONSTANT_FIELDREF) continue;
+            marked[i] = ref1(ref2(i)) == nameIndex;
+        }
+        return marked;
+    }
+
+    /** Marks the Methodrefs to owner.name with this descriptor. */
+    boolean[] methodRefs(String owner, String name, String descriptor) {
+        boolean[] marked = new boolean[cpOffset.length];
+        for (int i = 1; i < cpOffset.length; i++) {
+            if (tag(i) != CONSTANT_METHODREF) continue;
+            int nameAndType = ref2(i);
+            marked[i] = owner.equals(utf8(ref1(ref1(i))))
+                    && name.equals(utf8(ref1(nameAndType)))
+                    && descriptor.equals(utf8(ref2(nameAndType)));
+        }
+        return marked;
+    }
+
+    // ---------------------------------------------------------------- edits
+
+    /** Overwrites bytes at offset, one value per byte. The size of the class stays the same. */
+    void put(int offset, int... values) {
+        for (int i = 0; i < values.length; i++) b[offset + i] = (byte) values[i];
+    }
+
+    void putU2(int offset, int value) {
+        putU2(b, offset, value);
+    }
+
+    /**
+     * A new class file: this one with removed bytes at offset replaced by inserted. Counts and
+     * lengths that cover the spliced range are the caller's to fix, in the returned array.
+     */
+    byte[] splice(int offset, int removed, byte[] inserted) {
+        return splice(b, offset, removed, inserted);
+    }
+
+    static byte[] splice(byte[] b, int offset, int removed, byte[] inserted) {
+        byte[] out = new byte[b.length - removed + inserted.length];
+        System.arraycopy(b, 0, out, 0, offset);
+        System.arraycopy(inserted, 0, out, offset, inserted.length);
+        System.arraycopy(b, offset + removed, out, offset + inserted.length, b.length - offset - removed);
+        return out;
+    }
+
+    /** A complete Code attribute (header included) with no exception table and no attributes. */
+    byte[] codeAttribute(int maxStack, int maxLocals, int... code) {
+        int codeNameIndex = findUtf8("Code");
+        if (codeNameIndex < 0) throw new IllegalArgumentException("Code constant not found");
+        byte[] attribute = new byte[18 + code.length];
+        putU2(attribute, 0, codeNameIndex);
+        putU4(attribute, 2, 12 + code.length);
+        putU2(attribute, 6, maxStack);
+        putU2(attribute, 8, maxLocals);
+        putU4(attribute, 10, code.length);
+        for (int i = 0; i < code.length; i++) attribute[14 + i] = (byte) code[i];
+        // exception_table_length and attributes_count stay 0
+        return attribute;
+    }
+
+    // ---------------------------------------------------------------- plumbing
+
+    int u1(int p) {
+        return b[p] & 0xFF;
+    }
+
+    int u2(int p) {
+        return u2(b, p);
+    }
+
+    long u4(int p) {
+        return ((long) u1(p) << 24) | ((long) u1(p + 1) << 16) | ((long) u1(p + 2) << 8) | u1(p + 3);
+    }
+
+    int checkedU4(int p) {
+        long value = u4(p);
+        if (value > Integer.MAX_VALUE) throw new IllegalArgumentException("oversized class item");
+        return (int) value;
+    }
+
+    static int u2(byte[] b, int p) {
+        return ((b[p] & 0xFF) << 8) | (b[p + 1] & 0xFF);
+    }
+
+    static void putU2(byte[] b, int p, int value) {
+        b[p] = (byte) (value >>> 8);
+        b[p + 1] = (byte) value;
+    }
+
+    static void putU4(byte[] b, int p, int value) {
+        b[p] = (byte) (value >>> 24);
+        b[p + 1] = (byte) (value >>> 16);
+        b[p + 2] = (byte) (value >>> 8);
+        b[p + 3] = (byte) value;
+    }
+
+    private static final int[] OPCODE_LENGTH = new int[256];
+    static {
+        for (int i = 0x00; i <= 0x0F; i++) OPCODE_LENGTH[i] = 1;
+        OPCODE_LENGTH[0x10] = 2; OPCODE_LENGTH[0x11] = 3; OPCODE_LENGTH[0x12] = 2; OPCODE_LENGTH[0x13] = 3; OPCODE_LENGTH[0x14] = 3;
+        for (int i = 0x15; i <= 0x19; i++) OPCODE_LENGTH[i] = 2;
+        for (int i = 0x1A; i <= 0x35; i++) OPCODE_LENGTH[i] = 1;
+        for (int i = 0x36; i <= 0x3A; i++) OPCODE_LENGTH[i] = 2;
+        for (int i = 0x3B; i <= 0x83; i++) OPCODE_LENGTH[i] = 1;
+        OPCODE_LENGTH[0x84] = 3;
+        for (int i = 0x85; i <= 0x98; i++) OPCODE_LENGTH[i] = 1;
+        for (int i = 0x99; i <= 0xA8; i++) OPCODE_LENGTH[i] = 3;
+        OPCODE_LENGTH[0xA9] = 2;
+        for (int i = 0xAC; i <= 0xB1; i++) OPCODE_LENGTH[i] = 1;
+        for (int i = 0xB2; i <= 0xB8; i++) OPCODE_LENGTH[i] = 3;
+        OPCODE_LENGTH[0xB9] = 5; OPCODE_LENGTH[0xBA] = 5; OPCODE_LENGTH[0xBB] = 3; OPCODE_LENGTH[0xBC] = 2; OPCODE_LENGTH[0xBD] = 3;
+        OPCODE_LENGTH[0xBE] = 1; OPCODE_LENGTH[0xBF] = 1; OPCODE_LENGTH[0xC0] = 3; OPCODE_LENGTH[0xC1] = 3;
+        OPCODE_LENGTH[0xC2] = 1; OPCODE_LENGTH[0xC3] = 1;
+        OPCODE_LENGTH[0xC5] = 4; OPCODE_LENGTH[0xC6] = 3; OPCODE_LENGTH[0xC7] = 3; OPCODE_LENGTH[0xC8] = 5; OPCODE_LENGTH[0xC9] = 5;
+    }
+}
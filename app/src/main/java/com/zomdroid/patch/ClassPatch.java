@@ -0,0 +1,46 @@
+package com.zomdroid.patch;
+
+import androidx.annotation.Nullable;
+
+import com.zomdroid.game.GameInstance;
+
+/**
+ * One patch to one game class, applied by {@link ClassPatches}. A rule only says which class it
+ * wants and how to change it; reading the class, keeping the original, writing an overlay for a
+ * jar-run instance and logging are the engine's, the same for every rule.
+ *
+ * <p>Need is always decided from the class itself, never from the backup being there: a game
+ * updated in place over a patched instance leaves our backup next to a fresh, unpatched class.
+ */
+interface ClassPatch {
+    /** What happened to the class, filled in by {@link #apply}. */
+    final class Result {
+        // True when the class already carries this patch; nothing to do and nothing to report.
+        boolean alreadyPatched;
+        // What was changed, for the log, or why nothing was.
+        @Nullable
+        String detail;
+    }
+
+    /** Short name for the log ("ShaderUnit"). */
+    String name();
+
+    /** The class, relative to the game directory: "zombie/core/opengl/ShaderUnit.class". */
+    String classRelPath();
+
+    /** Name the original gets next to the class in an unpacked instance. */
+    String backupName();
+
+    /**
+     * Decided by the launcher only. The patch agent never calls this - it has no GameInstance and
+     * is handed the applicable rules instead - so nothing else here may depend on one.
+     */
+    boolean appliesTo(GameInstance gameInstance);
+
+    /**
+     * The patched class, or null when nothing was changed - say why in result. Edits made with
+     * {@link ClassFile#put} are returned as {@link ClassFile#bytes()}.
+     */
+    @Nullable
+    byte[] apply(ClassFile classFile, Result result);
+}
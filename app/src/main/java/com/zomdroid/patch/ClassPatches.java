@@ -0,0 +1,270 @@
+package com.zomdroid.patch;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.zomdroid.AppStorage;
+import com.zomdroid.C;
+import com.zomdroid.LauncherPreferences;
+import com.zomdroid.game.GameInstance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies every {@link ClassPatch} to a game instance in one pass: each class any rule wants is
+ * read once (the jar opened once for all of them), every rule for it runs on the same bytes, and
+ * the class is written once.
+ *
+ * <p>Called at instance creation (InstallerService) and at every launch (GameLauncher) - the
+ * launch-time call reaches instances created by an older launcher, or updated in place since.
+ * Once every class carries its patches, a launch costs the reads and nothing else.
+ *
+ * <p>A jar-run instance gets patched classes as overlays (see {@link GameClasses}). An unpacked
+ * one keeps the original under the rule's backup name; a stale backup from an earlier install is
+ * replaced, since it must mirror the class actually here now - restoring an older one would
+ * resurrect a different game version. The class is replaced, never written through: it may be a
+ * link shared with other instances.
+ *
+ * <p>With in-process patching on (Settings), none of this touches disk: the same rules run in the
+ * game JVM as a class-file transformer (tools/patch-agent), {@link #agentRules} says which, and
+ * {@link #restoreAll} puts back whatever an earlier on-disk run changed.
+ *
+ * <p>Desktop self-test: java com.zomdroid.patch.ClassPatches in.class [out.class]
+ */
+public final class ClassPatches {
+    private static final String LOG_TAG = ClassPatches.class.getName();
+
+    private ClassPatches() {}
+
+    /**
+     * @return false when a class could not be read or written, i.e. another run may still change
+     *         something; true when every class is as patched as its rules can make it.
+     */
+    public static boolean applyAll(GameInstance gameInstance) {
+        long startMs = System.currentTimeMillis();
+        Map<String, List<ClassPatch>> byClass = new LinkedHashMap<>();
+        for (ClassPatch rule : PatchRules.RULES) {
+            if (!rule.appliesTo(gameInstance)) continue;
+            byClass.computeIfAbsent(rule.classRelPath(), k -> new ArrayList<>()).add(rule);
+        }
+        if (byClass.isEmpty()) return true;
+
+        Map<String, byte[]> classes;
+        try {
+            classes = GameClasses.readAll(gameInstance, byClass.keySet());
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to read game classes, no class patched this time", e);
+            return false;
+        }
+
+        boolean complete = true;
+        int written = 0;
+        for (Map.Entry<String, List<ClassPatch>> entry : byClass.entrySet()) {
+            String classRelPath = entry.getKey();
+            byte[] original = classes.get(classRelPath);
+            if (original == null) continue;
+            File target = new File(gameInstance.getGamePath(), classRelPath);
+
+            byte[] current = original;
+            String backupName = null;
+            List<String> applied = new ArrayList<>();
+            for (ClassPatch rule : entry.getValue()) {
+                ClassPatch.Result result = new ClassPatch.Result();
+                byte[] patched = PatchRules.apply(rule, current, result);
+                if (patched != null) {
+                    current = patched;
+                    if (backupName == null) backupName = rule.backupName();
+                    applied.add(rule.name() + " (" + result.detail + ")");
+                    continue;
+                }
+                if (result.alreadyPatched) continue;
+                // A rule that cannot recognise its own output finds the backup (or, running from
+                // the jar, the overlay) of the first time instead - the steady state. Without one
+                // we never touched this class: the layout moved and the rule needs updating, which
+                // is how a new game version breaks silently, so say it.
+                File backup = new File(target.getParentFile(), rule.backupName());
+                if (backup.isFile() || GameClasses.isOverlaid(gameInstance, classRelPath)) continue;
+                Log.w(LOG_TAG, rule.name() + " patch: " + classRelPath + " left untouched: "
+                        + result.detail + " (md5=" + md5Hex(original) + ")");
+            }
+            if (current == original) continue;
+
+            try {
+                boolean overlay = write(gameInstance, target, classRelPath, current, backupName);
+                written++;
+                Log.i(LOG_TAG, "Patched " + classRelPath + (overlay ? " as overlay: " : " in place: ")
+                        + String.join(", ", applied));
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to write patched " + classRelPath + ", the original stays", e);
+                complete = false;
+            }
+        }
+        Log.i(LOG_TAG, "Class patches: " + classes.size() + " class(es) checked, " + written + " written in "
+                + (System.currentTimeMillis() - startMs) + " ms");
+        return complete;
+    }
+
+    /**
+     * Every file whose state decides what {@link #applyAll} does: each targeted class and its
+     * backups, and the jar the classes come from when the instance runs from it. A launch that
+     * finds all of them as the last complete run left them can skip the pass.
+     */
+    public static List<File> inputs(GameInstance gameInstance) {
+        List<File> inputs = new ArrayList<>();
+        for (ClassPatch rule : PatchRules.RULES) {
+            if (!rule.appliesTo(gameInstance)) continue;
+            File target = new File(gameInstance.getGamePath(), rule.classRelPath());
+            if (!inputs.contains(target)) inputs.add(target);
+            inputs.add(new File(target.getParentFile(), rule.backupName()));
+        }
+        if (!inputs.isEmpty() && gameInstance.runsFromGameJar()) {
+            inputs.add(new File(gameInstance.getGamePath(), GameInstance.GAME_JAR_NAME));
+        }
+        return inputs;
+    }
+
+    /**
+     * True when classes are to be patched in the game JVM: the preference is on and the agent is
+     * installed. A dependency bundle from before the agent existed falls back to disk, loudly.
+     */
+    public static boolean patchesInProcess() {
+        if (!LauncherPreferences.requireSingleton().isInProcessClassPatches()) return false;
+        if (agentJar().isFile()) return true;
+        Log.w(LOG_TAG, "In-process class patching is on but " + agentJar() + " is missing; "
+                + "patching on disk instead");
+        return false;
+    }
+
+    public static File agentJar() {
+        return new File(AppStorage.requireSingleton().getHomePath(), C.deps.JARS_PATCH_AGENT);
+    }
+
+    /**
+     * The agent's argument naming the rules that apply to this instance ("rules=ShaderUnitPatcher,
+     * ..."): the agent runs on the game's JRE without a GameInstance, so the launcher decides.
+     * Null when no rule applies and the agent is not needed at all.
+     */
+    @Nullable
+    public static String agentRules(GameInstance gameInstance) {
+        List<String> ids = new ArrayList<>();
+        for (ClassPatch rule : PatchRules.RULES) {
+            if (rule.appliesTo(gameInstance)) ids.add(PatchRules.id(rule));
+        }
+        return ids.isEmpty() ? null : "rules=" + String.join(",", ids);
+    }
+
+    /**
+     * Undoes {@link #applyAll} for an instance whose classes are patched in memory from now on:
+     * the original comes back from its backup in an unpacked instance, and the overlay is dropped
+     * from a jar-run one. Afterwards the game tree holds the game's own classes only, which the
+     * agent then patches as they load - and which can be shared with any other instance as they
+     * are. A class with neither is left alone, whatever it holds: it was never ours.
+     *
+     * @return false when a class could not be put back; it stays patched, which the agent
+     *         recognises and leaves alone, and the next launch tries again.
+     */
+    public static boolean restoreAll(GameInstance gameInstance) {
+        boolean complete = true;
+        int restored = 0;
+        Map<String, List<ClassPatch>> byClass = new LinkedHashMap<>();
+        for (ClassPatch rule : PatchRules.RULES) {
+            byClass.computeIfAbsent(rule.classRelPath(), k -> new ArrayList<>()).add(rule);
+        }
+        for (Map.Entry<String, List<ClassPatch>> entry : byClass.entrySet()) {
+            String classRelPath = entry.getKey();
+            File target = new File(gameInstance.getGamePath(), classRelPath);
+            try {
+                File backup = null;
+                for (ClassPatch rule : entry.getValue()) {
+                    File candidate = new File(target.getParentFile(), rule.backupName());
+                    if (candidate.isFile()) {
+                        backup = candidate;
+                        break;
+                    }
+                }
+                if (backup != null) {
+                    Files.move(backup.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } else if (GameClasses.isOverlaid(gameInstance, classRelPath)) {
+                    Files.delete(target.toPath());
+                } else {
+                    continue;
+                }
+                restored++;
+                Log.i(LOG_TAG, "Restored the game's own " + classRelPath + " for in-process patching");
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to restore the game's own " + classRelPath, e);
+                complete = false;
+            }
+        }
+        if (restored > 0) Log.i(LOG_TAG, restored + " class(es) restored, the game tree is unpatched");
+        return complete;
+    }
+
+    // True when written as an overlay.
+    private static boolean write(GameInstance gameInstance, File target, String classRelPath, byte[] data,
+                                 String backupName) throws IOException {
+        if (gameInstance.runsFromGameJar() && !target.exists()) {
+            GameClasses.writeOverlay(gameInstance, classRelPath, data);
+            return true;
+        }
+        File backup = new File(target.getParentFile(), backupName);
+        File tmp = new File(target.getPath() + ".tmp");
+        Files.write(tmp.toPath(), data);
+        try {
+            Files.move(target.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp.toPath());
+            throw e;
+        }
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp.toPath());
+            if (!backup.renameTo(target)) Log.e(LOG_TAG, "Failed to restore " + classRelPath + " from " + backupName);
+            throw e;
+        }
+        return false;
+    }
+
+    // Kept purely as "what we saw in the field" telemetry in the log.
+    private static String md5Hex(byte[] data) {
+        try {
+            byte[] digest = java.security.MessageDigest.getInstance("MD5").digest(data);
+            StringBuilder sb = new StringBuilder(32);
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            return "unavailable";
+        }
+    }
+
+    /** Desktop verifier: runs every rule for the class's own name, optionally writing the result. */
+    public static void main(String[] args) throws Exception {
+        byte[] current = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(args[0]));
+        String classRelPath = ClassFile.parse(current).className() + ".class";
+        boolean changed = false;
+        for (ClassPatch rule : PatchRules.RULES) {
+            if (!rule.classRelPath().equals(classRelPath)) continue;
+            ClassPatch.Result result = new ClassPatch.Result();
+            byte[] patched = PatchRules.apply(rule, current, result);
+            System.out.println(rule.name() + ": " + (patched != null ? "patched" : result.alreadyPatched
+                    ? "already patched" : "untouched") + (result.detail != null ? " - " + result.detail : ""));
+            if (patched != null) {
+                current = patched;
+                changed = true;
+            }
+        }
+        if (changed && args.length > 1) {
+            java.nio.file.Files.write(java.nio.file.Paths.get(args[1]), current);
+            System.out.println("written: " + args[1]);
+        }
+    }
+}
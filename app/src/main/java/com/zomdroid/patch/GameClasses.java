@@ -0,0 +1,113 @@
+package com.zomdroid.patch;
+
+import androidx.annotation.Nullable;
+
+import com.zomdroid.game.GameInstance;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Game class files as the game will load them, for instances that run straight from
+ * projectzomboid.jar as well as for those whose jar was unpacked into the game directory.
+ *
+ * A jar-run instance keeps the jar untouched; the game directory comes first on its classpath
+ * ("." in the preset), so a loose class file there shadows the jar's copy of that class. That
+ * makes the game directory the overlay: each patcher reads its input from the jar and writes only
+ * its output next to it. Unpacking the whole 42.13+ jar just so a handful of classes could be
+ * edited kept every class twice on disk and added minutes to instance creation.
+ */
+public final class GameClasses {
+    private GameClasses() {}
+
+    /**
+     * The bytes of the class at {@code classRelPath} ("zombie/iso/IsoChunkMap.class") that the game
+     * will load: the loose file when there is one, otherwise the jar's entry. Null when neither
+     * exists.
+     */
+    @Nullable
+    public static byte[] read(GameInstance gameInstance, String classRelPath) throws IOException {
+        File loose = new File(gameInstance.getGamePath(), classRelPath);
+        if (loose.isFile()) return Files.readAllBytes(loose.toPath());
+        if (!gameInstance.runsFromGameJar()) return null;
+        File jar = new File(gameInstance.getGamePath(), GameInstance.GAME_JAR_NAME);
+        if (!jar.isFile()) return null;
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            ZipEntry entry = zipFile.getEntry(classRelPath);
+            if (entry == null) return null;
+            try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                return IOUtils.toByteArray(inputStream);
+            }
+        }
+    }
+
+    /**
+     * {@link #read} for several classes at once: the jar, when any of them has to come from it,
+     * is opened once rather than once per class - opening projectzomboid.jar means reading a
+     * central directory of some forty thousand entries. Classes that exist nowhere are missing
+     * from the map.
+     */
+    public static Map<String, byte[]> readAll(GameInstance gameInstance, Collection<String> classRelPaths)
+            throws IOException {
+        Map<String, byte[]> classes = new HashMap<>();
+        List<String> fromJar = new ArrayList<>();
+        for (String classRelPath : classRelPaths) {
+            File loose = new File(gameInstance.getGamePath(), classRelPath);
+            if (loose.isFile()) {
+                classes.put(classRelPath, Files.readAllBytes(loose.toPath()));
+            } else {
+                fromJar.add(classRelPath);
+            }
+        }
+        if (fromJar.isEmpty() || !gameInstance.runsFromGameJar()) return classes;
+        File jar = new File(gameInstance.getGamePath(), GameInstance.GAME_JAR_NAME);
+        if (!jar.isFile()) return classes;
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            for (String classRelPath : fromJar) {
+                ZipEntry entry = zipFile.getEntry(classRelPath);
+                if (entry == null) continue;
+                try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                    classes.put(classRelPath, IOUtils.toByteArray(inputStream));
+                }
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * True when the class is a loose file over a jar-run instance - our own output, since nothing
+     * else puts classes there. Patchers that cannot tell their output from an unpatchable class
+     * ask this where an unpacked instance would look for their backup.
+     */
+    public static boolean isOverlaid(GameInstance gameInstance, String classRelPath) {
+        return gameInstance.runsFromGameJar()
+                && new File(gameInstance.getGamePath(), classRelPath).isFile();
+    }
+
+    /**
+     * Writes a patched class into the overlay of a jar-run instance. No backup: the original
+     * stays in the jar, and deleting the loose file restores it.
+     */
+    public static void writeOverlay(GameInstance gameInstance, String classRelPath, byte[] data) throws IOException {
+        File target = new File(gameInstance.getGamePath(), classRelPath);
+        File parent = target.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create " + parent.getAbsolutePath());
+        }
+        File tmp = new File(target.getAbsolutePath() + ".tmp");
+        Files.write(tmp.toPath(), data);
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -9,6 +9,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Heals instances where an earlier launcher version stubbed LightingJNI.
@@ -33,29 +35,41 @@ public final class LightingTransmissionPatchApplier {
 
     private LightingTransmissionPatchApplier() {}
 
-    /** Puts the original LightingJNI.class back if a previous launcher version stubbed it. */
-    public static void restoreOriginalIfStubbed(GameInstance gameInstance) {
-        if (!"42".equals(gameInstance.getBuildVersion())) return;
+    /**
+     * Puts the original LightingJNI.class back if a previous launcher version stubbed it.
+     *
+     * @return false only when a stubbed class is there and could not be restored.
+     */
+    public static boolean restoreOriginalIfStubbed(GameInstance gameInstance) {
+        if (!"42".equals(gameInstance.getBuildVersion())) return true;
 
         File target = target(gameInstance);
         File backup = new File(target.getParentFile(), BACKUP_NAME);
-        if (!backup.isFile()) return; // never stubbed, or already healed
+        if (!backup.isFile()) return true; // never stubbed, or already healed
 
         // Only restore over a class we verifiably stubbed. If the class on disk is NOT ours
         // (e.g. the user reinstalled game files since), the backup may be from an older game
         // version — overwriting a fresh class with it would be worse than leaving both alone.
-        if (!isApplied(gameInstance)) return;
+        if (!isApplied(gameInstance)) return true;
 
         try {
             Files.move(backup.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
             Log.i(LOG_TAG, "Lighting stub removed: original LightingJNI.class restored from "
                     + BACKUP_NAME);
+            return true;
         } catch (IOException e) {
             Log.e(LOG_TAG, "Failed to restore LightingJNI.class from backup; "
                     + "squareSetLightTransmission stays a Java no-op this run", e);
+            return false;
         }
     }
 
+    /** The class and the backup {@link #restoreOriginalIfStubbed} decides from. */
+    public static List<File> restoreInputs(GameInstance gameInstance) {
+        File target = target(gameInstance);
+        return Arrays.asList(target, new File(target.getParentFile(), BACKUP_NAME));
+    }
+
     /**
      * True when this instance ships the stale ARM64 Lighting build. Detected by its missing
      * squareSetLightTransmission export — the same stale snapshot also mis-implements torch
@@ -74,13 +88,12 @@ public final class LightingTransmissionPatchApplier {
                 && !symbols.contains(LightingTransmissionPatcher.MISSING_JNI_SYMBOL);
     }
 
-    // Detects our stub in the class on disk (the patcher reports alreadyPatched).
+    // Detects our stub in the class on disk.
     private static boolean isApplied(GameInstance gameInstance) {
         File target = target(gameInstance);
         if (!target.isFile()) return false;
         try {
-            LightingTransmissionPatcher.patch(Files.readAllBytes(target.toPath()));
-            return LightingTransmissionPatcher.lastResult().alreadyPatched;
+            return LightingTransmissionPatcher.isStubbed(Files.readAllBytes(target.toPath()));
         } catch (IOException e) {
             return false;
         }
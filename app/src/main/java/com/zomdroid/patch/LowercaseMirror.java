@@ -0,0 +1,392 @@
+package com.zomdroid.patch;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Form 1 of the case workaround as ONE fully-lowercase mirror of a mod, kept up to date from a
+ * persisted, case-folded index of the mod's tree (see {@link LowercasePathAliases}).
+ *
+ * <p>Every file whose path inside the mod is not already lowercase gets exactly one more route:
+ * its whole path lowercased. Directories on that route are real directories - the mod's own where
+ * its name is already lowercase, ours otherwise - and only the file at the end is a link, relative,
+ * back to the real file. A link never points at a directory, so nothing on the mirrored route leads
+ * back into the mixed-case tree: two routes per file, where the per-level twins gave 2^k (AnimSets
+ * went from 48 registrations to 8346). The mirror lives inside the mod folder, where the
+ * multiplayer client check looks.
+ *
+ * <p>The index remembers, per real directory of the mod, its mtime and its children, plus every
+ * link and directory the mirror added. Refreshing re-lists only the directories whose mtime moved
+ * and then creates and removes only the difference, so a mod that did not change costs a stat per
+ * directory - or, at launch, a stat of the mod root alone: everything that writes inside a mod
+ * after install goes through the installer, which refreshes it fully.
+ *
+ * <p>The index is a cache. Lost or unreadable, the mod is indexed from scratch: links already in
+ * the right place are adopted rather than rebuilt, and the old per-entry aliases are swept first.
+ */
+final class LowercaseMirror {
+    private static final String LOG_TAG = LowercaseMirror.class.getName();
+
+    private static final String MOD = "mod";
+    private static final String DIR = "dir";
+    private static final String SUBDIR = "d";
+    private static final String FILE = "f";
+    private static final String LINK = "link";
+    private static final String MIRROR_DIR = "mirror";
+    private static final String ON = "on";
+    private static final String OFF = "off";
+
+    private static final class DirRecord {
+        final long mtimeNs;
+        final List<String> dirs = new ArrayList<>();
+        final List<String> files = new ArrayList<>();
+
+        DirRecord(long mtimeNs) {
+            this.mtimeNs = mtimeNs;
+        }
+    }
+
+    private final File modDir;
+    private final File indexFile;
+    // Mod-relative path ("" is the mod itself, "42/media") -> the real directory as last listed.
+    private Map<String, DirRecord> dirs = new HashMap<>();
+    // What the mirror added, by mod-relative path.
+    private final Set<String> links = new TreeSet<>();
+    private final Set<String> mirrorDirs = new TreeSet<>();
+    private long rootIno = -1;
+    private boolean enabled;
+    // Read from an index kept with the mirror switched the other way.
+    private boolean stale;
+    // A name the index format cannot hold: the mod is mirrored, but indexed afresh every time.
+    private boolean unrecordable;
+
+    private LowercaseMirror(File modDir, File indexFile) {
+        this.modDir = modDir;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Brings the mirror of modDir up to date. With trustRoot, an index whose mod root is unchanged
+     * is taken as current without looking any deeper.
+     *
+     * @param enabled false removes every link and directory the mirror added
+     * @return how many links were created (positive) or removed (negative), for the log
+     */
+    static int refresh(File modDir, File indexFile, boolean trustRoot, boolean enabled) {
+        StructStat root = lstat(modDir);
+        if (root == null) return 0;
+
+        LowercaseMirror mirror = new LowercaseMirror(modDir, indexFile);
+        boolean indexed = mirror.read(root.st_ino, enabled);
+        if (trustRoot && indexed && !mirror.stale) {
+            DirRecord recorded = mirror.dirs.get("");
+            if (recorded != null && recorded.mtimeNs == mtimeNs(root)) return 0;
+        }
+        // No index to go by: the per-entry aliases of earlier versions may still be here. Their
+        // shape is a subset of the mirror's, so anything still wanted comes straight back.
+        if (!indexed) LowercasePathAliases.removeLowercaseAliases(modDir);
+
+        mirror.rootIno = root.st_ino;
+        mirror.enabled = enabled;
+        mirror.scan();
+        int changed = mirror.apply();
+        mirror.write();
+        return changed;
+    }
+
+    // -------------------- INDEX --------------------
+
+    // True when there is an index for this very mod directory: same path, same inode. A mod that
+    // was deleted and installed again is a new directory and starts over. An index kept with the
+    // mirror switched the other way is still read, but never trusted as current.
+    private boolean read(long expectedIno, boolean enabled) {
+        if (!indexFile.isFile()) return false;
+        try (BufferedReader reader = new BufferedReader(new FileReader(indexFile))) {
+            String line = reader.readLine();
+            if (line == null) return false;
+            String[] header = line.split("\t", 4);
+            if (header.length != 4 || !header[0].equals(MOD)
+                    || Long.parseLong(header[1]) != expectedIno
+                    || !header[3].equals(modDir.getAbsolutePath())) {
+                return false;
+            }
+            stale = !header[2].equals(enabled ? ON : OFF);
+            DirRecord current = null;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 3);
+                switch (fields[0]) {
+                    case DIR:
+                        current = new DirRecord(Long.parseLong(fields[1]));
+                        dirs.put(fields.length == 3 ? fields[2] : "", current);
+                        break;
+                    case SUBDIR:
+                        if (current != null) current.dirs.add(fields[1]);
+                        break;
+                    case FILE:
+                        if (current != null) current.files.add(fields[1]);
+                        break;
+                    case LINK:
+                        links.add(fields[1]);
+                        break;
+                    case MIRROR_DIR:
+                        mirrorDirs.add(fields[1]);
+                        break;
+                    default:
+                        throw new IOException("unexpected line: " + line);
+                }
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.w(LOG_TAG, "Ignoring unreadable " + indexFile + ": " + e);
+            dirs.clear();
+            links.clear();
+            mirrorDirs.clear();
+            return false;
+        }
+    }
+
+    private void write() {
+        if (unrecordable) {
+            indexFile.delete();
+            return;
+        }
+        File parent = indexFile.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            Log.w(LOG_TAG, "Failed to create " + parent);
+            return;
+        }
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try {
+            try (Writer writer = new FileWriter(tmp)) {
+                writer.write(MOD + "\t" + rootIno + "\t" + (enabled ? ON : OFF) + "\t"
+                        + modDir.getAbsolutePath() + "\n");
+                for (Map.Entry<String, DirRecord> entry : new TreeMap<>(dirs).entrySet()) {
+                    DirRecord record = entry.getValue();
+                    writer.write(DIR + "\t" + record.mtimeNs + "\t" + entry.getKey() + "\n");
+                    for (String name : record.dirs) writer.write(SUBDIR + "\t" + name + "\n");
+                    for (String name : record.files) writer.write(FILE + "\t" + name + "\n");
+                }
+                for (String link : links) writer.write(LINK + "\t" + link + "\n");
+                for (String dir : mirrorDirs) writer.write(MIRROR_DIR + "\t" + dir + "\n");
+            }
+            Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The next refresh simply indexes the mod again.
+            Log.w(LOG_TAG, "Failed to write " + indexFile + ": " + e);
+            tmp.delete();
+        }
+    }
+
+    // -------------------- SCAN --------------------
+
+    // The real tree as it is now. A directory whose mtime still matches keeps its recorded
+    // children; only the others are listed again.
+    private void scan() {
+        Map<String, DirRecord> previous = dirs;
+        dirs = new HashMap<>();
+        scan("", modDir, previous);
+    }
+
+    private void scan(String rel, File dir, Map<String, DirRecord> previous) {
+        StructStat stat = lstat(dir);
+        if (stat == null) return;
+        DirRecord record = previous.get(rel);
+        if (record == null || record.mtimeNs != mtimeNs(stat)) record = list(rel, dir, mtimeNs(stat));
+        dirs.put(rel, record);
+        for (String name : record.dirs) scan(child(rel, name), new File(dir, name), previous);
+    }
+
+    private DirRecord list(String rel, File dir, long mtimeNs) {
+        DirRecord record = new DirRecord(mtimeNs);
+        File[] children = dir.listFiles();
+        Set<String> present = new HashSet<>();
+        if (children != null) {
+            for (File child : children) {
+                String name = child.getName();
+                String childRel = child(rel, name);
+                present.add(name);
+                if (name.indexOf('\t') >= 0 || name.indexOf('\n') >= 0) unrecordable = true;
+                if (links.contains(childRel) || mirrorDirs.contains(childRel)) continue; // ours
+                // The mod's own links are left out: never followed, never mirrored.
+                if (Files.isSymbolicLink(child.toPath())) continue;
+                if (child.isDirectory()) record.dirs.add(name);
+                else record.files.add(name);
+            }
+        }
+        Collections.sort(record.dirs);
+        Collections.sort(record.files);
+        // Something of ours that is gone from here was removed behind our back: forget it, so it
+        // is created again if still wanted.
+        String prefix = rel.isEmpty() ? "" : rel + "/";
+        forgetMissing(links, prefix, present);
+        forgetMissing(mirrorDirs, prefix, present);
+        return record;
+    }
+
+    // Drops the entries directly under prefix whose name is not present, with everything below.
+    private static void forgetMissing(Set<String> ours, String prefix, Set<String> present) {
+        List<String> gone = new ArrayList<>();
+        for (String path : ours) {
+            if (!path.startsWith(prefix)) continue;
+            String rest = path.substring(prefix.length());
+            int slash = rest.indexOf('/');
+            String name = slash < 0 ? rest : rest.substring(0, slash);
+            if (!present.contains(name)) gone.add(path);
+        }
+        ours.removeAll(gone);
+    }
+
+    // -------------------- MIRROR --------------------
+
+    private int apply() {
+        // Lowercased path -> the real file it routes to. Sorted, so that of two files differing
+        // only in case the same one wins every time.
+        Set<String> realFiles = new HashSet<>();
+        for (Map.Entry<String, DirRecord> entry : dirs.entrySet()) {
+            for (String name : entry.getValue().files) realFiles.add(child(entry.getKey(), name));
+        }
+        Map<String, String> wantedLinks = new TreeMap<>();
+        Set<String> wantedDirs = new TreeSet<>();
+        if (enabled) {
+            for (String file : new TreeSet<>(realFiles)) {
+                String lower = file.toLowerCase(Locale.US);
+                if (lower.equals(file) || realFiles.contains(lower) || dirs.containsKey(lower)) continue;
+                if (wantedLinks.containsKey(lower)) continue;
+                boolean blocked = false;
+                List<String> newDirs = new ArrayList<>();
+                for (int slash = lower.indexOf('/'); slash >= 0; slash = lower.indexOf('/', slash + 1)) {
+                    String ancestor = lower.substring(0, slash);
+                    if (realFiles.contains(ancestor)) blocked = true; // a file where a directory goes
+                    else if (!dirs.containsKey(ancestor)) newDirs.add(ancestor);
+                }
+                if (blocked) continue;
+                wantedLinks.put(lower, file);
+                wantedDirs.addAll(newDirs);
+            }
+        }
+
+        Set<String> touchedDirs = new HashSet<>();
+        int removed = 0;
+        for (String link : new ArrayList<>(links)) {
+            if (wantedLinks.containsKey(link)) continue;
+            Path path = new File(modDir, link).toPath();
+            try {
+                if (Files.isSymbolicLink(path)) Files.delete(path);
+                links.remove(link);
+                touchedDirs.add(parent(link));
+                removed++;
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Failed to remove " + path, e);
+            }
+        }
+        // Deepest first, so a directory is empty by the time it is removed.
+        List<String> staleDirs = new ArrayList<>(mirrorDirs);
+        staleDirs.removeAll(wantedDirs);
+        Collections.sort(staleDirs, Collections.reverseOrder());
+        for (String dir : staleDirs) {
+            File file = new File(modDir, dir);
+            if (file.delete() || !file.exists()) {
+                mirrorDirs.remove(dir);
+                touchedDirs.add(parent(dir));
+            }
+        }
+
+        Set<String> unusableDirs = new HashSet<>();
+        for (String dir : wantedDirs) { // parents before children: the set is sorted
+            if (mirrorDirs.contains(dir)) continue;
+            File file = new File(modDir, dir);
+            if (file.isDirectory() && !Files.isSymbolicLink(file.toPath())) {
+                mirrorDirs.add(dir); // left by a mirror whose index was lost
+            } else if (!file.exists() && !Files.isSymbolicLink(file.toPath()) && file.mkdir()) {
+                mirrorDirs.add(dir);
+                touchedDirs.add(parent(dir));
+            } else {
+                unusableDirs.add(dir);
+            }
+        }
+
+        int created = 0;
+        for (Map.Entry<String, String> entry : wantedLinks.entrySet()) {
+            String link = entry.getKey();
+            if (links.contains(link) || unusableDirs.contains(parent(link))) continue;
+            Path path = new File(modDir, link).toPath();
+            String linkParent = parent(link);
+            Path target = linkParent.isEmpty() ? Paths.get(entry.getValue())
+                    : Paths.get(linkParent).relativize(Paths.get(entry.getValue()));
+            try {
+                if (Files.isSymbolicLink(path)) {
+                    // Ours from before the index was lost, or an old per-entry alias: adopt it.
+                    if (!Files.readSymbolicLink(path).equals(target)) continue;
+                } else if (path.toFile().exists()) {
+                    continue;
+                } else {
+                    Files.createSymbolicLink(path, target);
+                    touchedDirs.add(linkParent);
+                    created++;
+                }
+                links.add(link);
+            } catch (IOException | UnsupportedOperationException e) {
+                Log.w(LOG_TAG, "Failed to link " + path + " -> " + target, e);
+            }
+        }
+
+        // What was just added or removed moved the mtime of the real directories it sits in; the
+        // index has to hold the new one or the next refresh would list them all over again.
+        for (String rel : touchedDirs) {
+            DirRecord record = dirs.get(rel);
+            StructStat stat = record == null ? null : lstat(new File(modDir, rel));
+            if (stat == null) continue;
+            DirRecord updated = new DirRecord(mtimeNs(stat));
+            updated.dirs.addAll(record.dirs);
+            updated.files.addAll(record.files);
+            dirs.put(rel, updated);
+        }
+        return created > 0 ? created : -removed;
+    }
+
+    // -------------------- PATHS --------------------
+
+    private static String child(String rel, String name) {
+        return rel.isEmpty() ? name : rel + "/" + name;
+    }
+
+    private static String parent(String rel) {
+        int slash = rel.lastIndexOf('/');
+        return slash < 0 ? "" : rel.substring(0, slash);
+    }
+
+    private static StructStat lstat(File file) {
+        try {
+            return Os.lstat(file.getPath());
+        } catch (ErrnoException e) {
+            return null;
+        }
+    }
+
+    private static long mtimeNs(StructStat stat) {
+        return stat.st_mtim.tv_sec * 1_000_000_000L + stat.st_mtim.tv_nsec;
+    }
+}
@@ -9,10 +9,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * The case-sensitivity workaround for Build 42.13+, applied when a mod is installed and again at
@@ -25,10 +26,10 @@ import java.util.Locale;
  *
  * <ol>
  *   <li>The file is requested in lowercase: "media/scripts/recipes/recipes_ladders.txt" while the
- *       mod ships "recipes_Ladders.txt". Answered by giving every capitalised entry a lowercase
- *       alias beside it. The multiplayer client check compares the same relative path, so the
- *       aliases have to live in the real mod folder - a copy off to the side is why joining a
- *       server still failed.</li>
+ *       mod ships "recipes_Ladders.txt". Answered by a fully-lowercase mirror of the mod's files,
+ *       one link per file (see {@link LowercaseMirror}). The multiplayer client check compares the
+ *       same relative path, so the mirror has to live in the real mod folder - a copy off to the
+ *       side is why joining a server still failed.</li>
  *   <li>The mod's whole absolute path is lowercased and appended to the mods root, yielding
  *       "&lt;mods&gt;/data/user/0/.../zomboid/mods/&lt;mod&gt;/...". No amount of aliasing inside
  *       the mod creates that prefix, so the prefix is materialised and its last component points
@@ -73,30 +74,29 @@ public final class LowercasePathAliases {
     private LowercasePathAliases() {}
 
     /**
-     * Kill switch for form 1 (the per-entry lowercase aliases). When false, existing aliases are
-     * removed from every mod and no new ones are created; form 2 (the doubled path) is untouched.
+     * Kill switch for form 1 (the lowercase mirror). When false, the mirror is removed from every
+     * mod and none is built; form 2 (the doubled path) is untouched.
      *
-     * <p>Why it exists: aliasing every mixed-case entry INCLUDING directories makes a file
-     * reachable by 2^k paths, k being its mixed-case ancestors - `anims_X|anims_x` × `Bob|bob` ×
-     * `Foo.glb|foo.glb` is eight routes to one file. Measured on ZomboRut: 1611 files become 8688
-     * reachable paths, and the game's own log agrees, reporting ~7100 self-collisions where 1.4.7
-     * reported 49. The suspicion is `media/AnimSets`, which goes from 48 registrations to 8346 -
-     * exactly the animation-transition content whose `pickup -> BwdDrag -> BwdDragHead` promote is
-     * the one thing observed broken on 1.4.8, on every importer we tried.
-     *
-     * <p>This is a diagnostic switch, not the fix. If it proves the cause, the real answer is to
-     * stop creating per-level twins and build ONE fully-lowercase mirror instead: two routes per
-     * file rather than 2^k, with the workaround - and the multiplayer path check that needs the
-     * aliases to live inside the mod folder - preserved.
+     * <p>Form 1 used to be a lowercase alias beside every mixed-case entry INCLUDING directories,
+     * which makes a file reachable by 2^k paths, k being its mixed-case ancestors -
+     * `anims_X|anims_x` × `Bob|bob` × `Foo.glb|foo.glb` is eight routes to one file. Measured on
+     * ZomboRut: 1611 files became 8688 reachable paths, and the game's own log agreed, reporting
+     * ~7100 self-collisions where 1.4.7 reported 49. `media/AnimSets` went from 48 registrations
+     * to 8346 - exactly the animation-transition content whose `pickup -> BwdDrag -> BwdDragHead`
+     * promote was the one thing observed broken on 1.4.8, on every importer we tried; with the
+     * aliases off, it played. The mirror keeps the workaround at two routes per file.
      */
-    public static final boolean PER_ENTRY_ALIASES_ENABLED = false;
+    public static final boolean LOWERCASE_MIRROR_ENABLED = true;
+
+    private static final String INDEX_DIR_NAME = ".zomdroid-case-index";
 
     // -------------------- LAUNCH-TIME REPAIR --------------------
 
     /**
      * Bring an instance's mod aliases up to date with where it actually lives right now. Safe to
      * call on every launch: existing links are left alone, and an instance can be created, renamed
-     * or copied between launches without anything else noticing.
+     * or copied between launches without anything else noticing. A mod whose root is as its index
+     * last saw it costs a stat and a look at its doubled-path link.
      */
     public static void repair(GameInstance gameInstance) {
         File instanceDir = new File(gameInstance.getHomePath());
@@ -155,19 +155,64 @@ public final class LowercasePathAliases {
 
         long startedAt = System.currentTimeMillis();
         int repaired = 0;
+        Set<String> indexed = new HashSet<>();
         for (File modDir : entries) {
             if (!modDir.isDirectory()) continue;
             if (Files.isSymbolicLink(modDir.toPath())) continue;
             if (modDir.getName().equals(scaffolding)) continue;
-            applyToMod(modDir, modsDir);
+            applyToMod(modDir, modsDir, true);
+            indexed.add(modDir.getName());
             repaired++;
         }
+        // The index of a mod that was removed since.
+        File[] indexes = indexDir(modsDir).listFiles();
+        if (indexes != null) {
+            for (File index : indexes) {
+                if (!indexed.contains(index.getName())) index.delete();
+            }
+        }
         if (repaired > 0) {
-            Log.i(LOG_TAG, "Case workaround refreshed for " + repaired + " mod(s) in "
+            Log.i(LOG_TAG, "Case workaround checked for " + repaired + " mod(s) in "
                     + (System.currentTimeMillis() - startedAt) + " ms");
         }
     }
 
+    // Per-mod indexes of the mirror, kept in the instance rather than in "mods", which the game
+    // scans, or in the mods themselves, which the multiplayer check compares.
+    private static File indexDir(File modsDir) {
+        return new File(modsDir.getAbsoluteFile().getParentFile().getParentFile(), INDEX_DIR_NAME);
+    }
+
+    /**
+     * What {@link #repair} works from: the instances root and the instance's own "zomboid" (where
+     * the b39a80a aliases lived), the mods folder, and every mod with its doubled-path link. An
+     * added, removed or renamed mod changes the mods folder; a moved instance changes every path.
+     * Nothing deeper is looked at: what is inside a mod is the mirror index's business.
+     */
+    public static List<File> inputs(GameInstance gameInstance) {
+        File instanceDir = new File(gameInstance.getHomePath());
+        File modsDir = new File(instanceDir, "Zomboid/mods");
+        List<File> inputs = new ArrayList<>();
+        if (instanceDir.getParentFile() != null) inputs.add(instanceDir.getParentFile());
+        inputs.add(new File(instanceDir, "zomboid"));
+        inputs.add(modsDir);
+        File[] entries = modsDir.listFiles();
+        if (entries == null) return inputs;
+        String scaffolding = doubledRootName(modsDir);
+        for (File modDir : entries) {
+            if (modDir.getName().equals(scaffolding)) continue;
+            inputs.add(modDir);
+            if (modDir.isDirectory() && !Files.isSymbolicLink(modDir.toPath())) {
+                inputs.add(doubledLink(modDir, modsDir));
+            }
+        }
+        return inputs;
+    }
+
+    private static File doubledLink(File modDir, File modsDir) {
+        return new File(modsDir, stripLeadingSlashes(modDir.getAbsolutePath().toLowerCase(Locale.US)));
+    }
+
     private static String doubledRootName(File modsDir) {
         String path = stripLeadingSlashes(modsDir.getAbsolutePath().toLowerCase(Locale.US));
         int slash = path.indexOf('/');
@@ -176,9 +221,17 @@ public final class LowercasePathAliases {
 
     // -------------------- PER-MOD WORKAROUND --------------------
 
-    /** Apply forms 1 and 2 to one mod. Called at install time and again at every launch. */
+    /**
+     * Apply forms 1 and 2 to one freshly installed or updated mod. The whole tree is checked
+     * against the index, not just its root: the install may have written anywhere in it.
+     */
     public static void applyToMod(File modDir, File modsDir) {
-        int aliases = createLowercaseAliases(modDir);
+        applyToMod(modDir, modsDir, false);
+    }
+
+    private static void applyToMod(File modDir, File modsDir, boolean atLaunch) {
+        int links = LowercaseMirror.refresh(modDir, new File(indexDir(modsDir), modDir.getName()),
+                atLaunch, LOWERCASE_MIRROR_ENABLED);
 
         // The doubled path is derived from the mod's own absolute path rather than assembled from
         // pieces. The game lowercases that whole path and appends it to the mods root, so mirroring
@@ -187,57 +240,37 @@ public final class LowercasePathAliases {
         // build with a different applicationId (a .test build reported paths under
         // com.zomdroie.test, so nothing under the doubled path ever resolved and every modded
         // server join failed). Instance name, data-dir location and package all come along for free.
-        String doubled = stripLeadingSlashes(modDir.getAbsolutePath().toLowerCase(Locale.US));
-        File modLink = new File(modsDir, doubled);
+        File modLink = doubledLink(modDir, modsDir);
         File inceptionDir = modLink.getParentFile();
         if (inceptionDir != null) inceptionDir.mkdirs();
-        // Rebuilt rather than kept: an existing link can point at the mod folder of the instance
-        // this one was copied from, which resolves fine and is still wrong. Clears equally the full
-        // copy left behind by installs made before this existed - deleteDirectory drops a link
-        // without touching what it points at.
+        // Kept only when it points at this very mod folder: an existing link can point at the mod
+        // folder of the instance this one was copied from, which resolves fine and is still wrong.
+        // Anything else is rebuilt, which clears equally the full copy left behind by installs made
+        // before this existed - deleteDirectory drops a link without touching what it points at.
         try {
-            if (modLink.exists() || Files.isSymbolicLink(modLink.toPath()))
-                FileUtils.deleteDirectory(modLink);
-            Files.createSymbolicLink(modLink.toPath(), modDir.toPath());
+            Path linkPath = modLink.toPath();
+            if (!Files.isSymbolicLink(linkPath) || !Files.readSymbolicLink(linkPath).equals(modDir.toPath())) {
+                if (modLink.exists() || Files.isSymbolicLink(linkPath)) FileUtils.deleteDirectory(modLink);
+                Files.createSymbolicLink(linkPath, modDir.toPath());
+            }
         } catch (IOException | UnsupportedOperationException e) {
             Log.w(LOG_TAG, "Failed to link " + modLink + " -> " + modDir, e);
         }
 
-        // Negative means the kill switch is off and that many stale aliases were swept instead.
-        if (aliases > 0) Log.i(LOG_TAG, "Case workaround for " + modDir.getName() + ": " + aliases + " alias(es)");
-        else if (aliases < 0) Log.i(LOG_TAG, "Case workaround DISABLED for " + modDir.getName()
-                + ": removed " + (-aliases) + " per-entry alias(es)");
-    }
-
-    /** Give every entry whose name is not already lowercase a lowercase alias beside it. */
-    private static int createLowercaseAliases(File root) {
-        if (!PER_ENTRY_ALIASES_ENABLED) return -removeLowercaseAliases(root);
-
-        List<File> entries = new ArrayList<>();
-        collectMixedCaseEntries(root, entries);
-        int created = 0;
-        for (File entry : entries) {
-            File alias = new File(entry.getParentFile(), entry.getName().toLowerCase(Locale.US));
-            if (alias.exists() || Files.isSymbolicLink(alias.toPath())) continue;
-            try {
-                // Relative target: the alias keeps working if the tree is moved or renamed.
-                Files.createSymbolicLink(alias.toPath(), Paths.get(entry.getName()));
-                created++;
-            } catch (IOException | UnsupportedOperationException e) {
-                Log.w(LOG_TAG, "Failed to alias " + alias, e);
-            }
-        }
-        return created;
+        if (links > 0) Log.i(LOG_TAG, "Case workaround for " + modDir.getName() + ": "
+                + links + " lowercase link(s) added");
+        else if (links < 0) Log.i(LOG_TAG, "Case workaround for " + modDir.getName() + ": "
+                + (-links) + " lowercase link(s) removed");
     }
 
     /**
-     * Remove the form-1 aliases from a mod, returning how many went. Walks the real tree only:
+     * Remove the per-entry aliases earlier versions made in a mod, returning how many went. Walks the real tree only:
      * a directory alias is deleted without ever being descended into, so the 2^k duplication that
      * created the mess is not re-walked while cleaning it up. Recognised by the same precise shape
      * as {@link #unlinkIfLowercaseAlias} - a symlink whose relative target is its own name in a
      * different case - so a mod's own symlinks, if any, are never touched.
      */
-    private static int removeLowercaseAliases(File dir) {
+    static int removeLowercaseAliases(File dir) {
         File[] files = dir.listFiles();
         if (files == null) return 0;
 
@@ -252,17 +285,6 @@ public final class LowercasePathAliases {
         return removed;
     }
 
-    // The whole tree is collected before a single alias is created, so the walk never meets one.
-    private static void collectMixedCaseEntries(File dir, List<File> out) {
-        File[] files = dir.listFiles();
-        if (files == null) return;
-        for (File f : files) {
-            if (Files.isSymbolicLink(f.toPath())) continue;
-            if (!f.getName().equals(f.getName().toLowerCase(Locale.US))) out.add(f);
-            if (f.isDirectory()) collectMixedCaseEntries(f, out);
-        }
-    }
-
     private static String stripLeadingSlashes(String path) {
         while (path.startsWith("/")) path = path.substring(1);
         return path;
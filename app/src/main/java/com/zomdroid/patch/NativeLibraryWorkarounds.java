@@ -2,21 +2,30 @@ package com.zomdroid.patch;
 
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
+import com.zomdroid.ElfSymbols;
 import com.zomdroid.game.GameInstance;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /** Build-specific native-library fallbacks that must also cover already installed instances. */
 public final class NativeLibraryWorkarounds {
     private static final String LOG_TAG = NativeLibraryWorkarounds.class.getName();
+    private static final String ARM_DIR = "android/arm64-v8a";
+    private static final String DISABLED_SUFFIX = ".disabled";
 
     private NativeLibraryWorkarounds() {}
 
     /**
-     * Selects the safe implementation of game libraries after class patches have been applied.
+     * Selects the safe implementation of every game library after class patches have been applied.
      *
      * PZBullet remains unusable on ARM64 in 42.20 even though its export list looks complete.
      * Lighting is the same story in a nastier form: its ARM64 build is a stale snapshot that
@@ -25,26 +34,132 @@ public final class NativeLibraryWorkarounds {
      * (An earlier launcher version stubbed its one missing export and force-ENABLED it; that
      * traded a loud bridge crash for silently wrong lighting. The bridge crash was the
      * signature-cache race in linker.c, fixed separately.)
+     *
+     * Every other library is judged on content: see {@link #missingExports}. One that now exports
+     * everything its Linux twin does is enabled again, so a build where TIS ships complete ARM64
+     * libraries gets its native speed back without a reinstall or a code change.
      */
     public static void disableIncompleteNativeLibraries(GameInstance gameInstance) {
         if (!"42".equals(gameInstance.getBuildVersion())) return;
+        File gameDir = new File(gameInstance.getGamePath());
+        File armDir = new File(gameDir, ARM_DIR);
+        // Only 42.12+ layouts are diffed, which keeps it away from the multiplayer libs added by
+        // hand to earlier instances.
+        boolean judgeOnContent = new File(gameDir, "projectzomboid.jar").isFile();
+        boolean lightingStale = LightingTransmissionPatchApplier.isArmLightingStale(gameInstance);
 
-        disable(gameInstance, "libPZBullet64.so",
-                "missing Bullet.defineVehicleScript()");
-        // Symbol-gated on purpose, not name-gated: the missing squareSetLightTransmission export
-        // is the marker of the stale snapshot. If TIS ever ships a rebuilt ARM64 Lighting that
-        // has it, the library gets its native speed back automatically, with no code change.
-        if (LightingTransmissionPatchApplier.isArmLightingStale(gameInstance)) {
-            disable(gameInstance, "libLighting64.so",
-                    "stale build: torch/headlight cones ignored, squareSetLightTransmission missing");
+        for (String libraryName : libraryNames(armDir)) {
+            if (libraryName.equals("libPZBullet64.so")) {
+                disable(gameInstance, libraryName, "missing Bullet.defineVehicleScript()");
+                continue;
+            }
+            // Symbol-gated on purpose, not name-gated: the missing squareSetLightTransmission
+            // export is the marker of the stale snapshot. A rebuilt ARM64 Lighting that has it
+            // falls through to the export diff like any other library.
+            if (libraryName.equals("libLighting64.so") && lightingStale) {
+                disable(gameInstance, libraryName,
+                        "stale build: torch/headlight cones ignored, squareSetLightTransmission missing");
+                continue;
+            }
+            if (!judgeOnContent) continue;
+
+            Set<String> missing = missingExports(gameInstance, libraryName);
+            if (missing == null) continue;
+            if (!missing.isEmpty()) {
+                disable(gameInstance, libraryName, "the Android build is missing " + missing.size()
+                        + " JNI method(s) exported by the Linux build, first: " + missing.iterator().next());
+            } else {
+                enable(gameInstance, libraryName);
+            }
         }
     }
 
+    /**
+     * The JNI methods the Linux x86_64 build of libraryName exports and its ARM64 build (active or
+     * disabled) does not. Null when there is nothing to judge by: no twin, a file that cannot be
+     * read, or a twin that registers its natives some other way and exports none by name.
+     *
+     * The Android builds TIS ships in android/arm64-v8a/ occasionally omit a JNI method their own
+     * Linux build exports. 42.19's libPZPopMan64.so has no n_saveCell, so
+     * ZombiePopulationManager.writeCellSnapshot died with UnsatisfiedLinkError, worlds were saved
+     * incomplete, and every later load crashed — with nothing in console.txt to show for it.
+     * dlopen() prefers the native lib, so an incomplete one is strictly worse than none: it is
+     * dropped and the x86_64 twin runs under box64, which has the method. Both sides come from
+     * {@link ElfSymbols}' cache, so this costs a stat per file on every launch but the first.
+     */
+    @Nullable
+    public static Set<String> missingExports(GameInstance gameInstance, String libraryName) {
+        File armDir = new File(gameInstance.getGamePath(), ARM_DIR);
+        File armLibrary = new File(armDir, libraryName);
+        if (!armLibrary.isFile()) armLibrary = new File(armDir, libraryName + DISABLED_SUFFIX);
+        File linuxTwin = new File(gameInstance.getGamePath(), libraryName);
+        if (!armLibrary.isFile() || !linuxTwin.isFile()) return null;
+
+        Set<String> expected = ElfSymbols.readExportedJniSymbols(linuxTwin);
+        Set<String> present = ElfSymbols.readExportedJniSymbols(armLibrary);
+        // Never judge on a parse failure or a truncated file: null is "unknown", not "nothing".
+        if (expected == null || present == null || expected.isEmpty()) return null;
+
+        Set<String> missing = new TreeSet<>(expected);
+        missing.removeAll(present);
+        return missing;
+    }
+
+    /**
+     * Everything {@link #disableIncompleteNativeLibraries} decides from: the ARM64 folder itself
+     * (a library added or renamed changes its mtime), each library under both names, its Linux
+     * twin and the jar that gates the diff. Their size, mtime and inode cover the ELF symbol check
+     * too: it only changes with the file.
+     */
+    public static List<File> inputs(GameInstance gameInstance) {
+        File gameDir = new File(gameInstance.getGamePath());
+        File armDir = new File(gameDir, ARM_DIR);
+        List<File> inputs = new ArrayList<>();
+        inputs.add(armDir);
+        inputs.add(new File(gameDir, "projectzomboid.jar"));
+        for (String libraryName : libraryNames(armDir)) {
+            inputs.add(new File(armDir, libraryName));
+            inputs.add(new File(armDir, libraryName + DISABLED_SUFFIX));
+            inputs.add(new File(gameDir, libraryName));
+        }
+        return inputs;
+    }
+
+    // The libraries in armDir, active or disabled, each once and by its active name.
+    private static Set<String> libraryNames(File armDir) {
+        Set<String> names = new TreeSet<>();
+        String[] files = armDir.list();
+        if (files == null) return names;
+        for (String name : files) {
+            if (name.endsWith(".so")) names.add(name);
+            else if (name.endsWith(".so" + DISABLED_SUFFIX)) {
+                names.add(name.substring(0, name.length() - DISABLED_SUFFIX.length()));
+            }
+        }
+        return names;
+    }
+
+    private static void enable(GameInstance gameInstance, String libraryName) {
+        File active = new File(gameInstance.getGamePath(), ARM_DIR + "/" + libraryName);
+        File disabled = new File(active.getParentFile(), libraryName + DISABLED_SUFFIX);
+        if (active.exists() || !disabled.isFile()) return;
+
+        try {
+            Files.move(disabled.toPath(), active.toPath());
+        } catch (IOException e) {
+            // Not fatal: the x86_64 twin keeps working, just slower.
+            Log.w(LOG_TAG, "Failed to re-enable ARM64 " + libraryName + ": " + e);
+            return;
+        }
+        Log.i(LOG_TAG, "Re-enabled ARM64 " + libraryName + ": it now exports every JNI method "
+                + "of the Linux build");
+    }
+
     private static void disable(GameInstance gameInstance, String libraryName, String reason) {
-        File active = new File(gameInstance.getGamePath(), "android/arm64-v8a/" + libraryName);
+        File active = new File(gameInstance.getGamePath(), ARM_DIR + "/" + libraryName);
         if (!active.isFile()) return;
 
-        File disabled = new File(active.getParentFile(), active.getName() + ".disabled");
+        File disabled = new File(active.getParentFile(), active.getName() + DISABLED_SUFFIX);
         try {
             Files.move(active.toPath(), disabled.toPath(), StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
@@ -55,5 +170,4 @@ public final class NativeLibraryWorkarounds {
         Log.w(LOG_TAG, "Disabled incomplete ARM64 " + libraryName + " (" + reason + "); "
                 + "the Linux x86_64 library will run through box64");
     }
-
 }
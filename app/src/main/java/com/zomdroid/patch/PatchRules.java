@@ -0,0 +1,38 @@
+package com.zomdroid.patch;
+
+import androidx.annotation.Nullable;
+
+/**
+ * The class-file rules and the one way to run them, shared by the two places they run: on disk
+ * before launch ({@link ClassPatches}) and inside the game JVM as classes load (the patch agent
+ * under tools/patch-agent, built from these same class files). Nothing here may use Android
+ * classes - the agent runs on the game's desktop JRE.
+ */
+final class PatchRules {
+    // In the order they run. Rules for the same class see each other's output.
+    static final ClassPatch[] RULES = {
+            new ShaderUnitPatcher(),
+            new FmodLoadPatcher(),
+            new BinkVideoPatcher(),
+            new ZNetStatisticsPatcher(),
+    };
+
+    private PatchRules() {}
+
+    /** How a rule is named on the agent's command line: its class's simple name. */
+    static String id(ClassPatch rule) {
+        return rule.getClass().getSimpleName();
+    }
+
+    // Runs one rule on one class. A class the rule cannot make sense of comes back as null, with
+    // the reason in result: a patch must never break game startup over an unexpected class.
+    @Nullable
+    static byte[] apply(ClassPatch rule, byte[] classFile, ClassPatch.Result result) {
+        try {
+            return rule.apply(ClassFile.parse(classFile), result);
+        } catch (RuntimeException e) {
+            result.detail = "parse error: " + e.getMessage();
+            return null;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -25,14 +26,15 @@ public final class PathfindingWorkaround {
 
     private PathfindingWorkaround() {}
 
-    public static void forceJavaPathfinderFor4212Plus(GameInstance gameInstance) {
+    /** @return false when the option could not be written; true once it is in place or not needed. */
+    public static boolean forceJavaPathfinderFor4212Plus(GameInstance gameInstance) {
         if (!"42".equals(gameInstance.getBuildVersion())
                 || !new File(gameInstance.getGamePath(), "projectzomboid.jar").isFile()) {
-            return;
+            return true;
         }
 
-        File zomboidDir = new File(gameInstance.getHomePath(), "Zomboid");
-        File optionsFile = new File(zomboidDir, "debug-options.ini");
+        File optionsFile = optionsFile(gameInstance);
+        File zomboidDir = optionsFile.getParentFile();
         List<String> lines = new ArrayList<>();
 
         try {
@@ -61,7 +63,7 @@ public final class PathfindingWorkaround {
             }
             if (!changed && optionsFile.isFile()) {
                 Log.i(LOG_TAG, "Build 42.12+ Java pathfinder is already selected");
-                return;
+                return true;
             }
 
             if (!zomboidDir.isDirectory() && !zomboidDir.mkdirs()) {
@@ -80,8 +82,20 @@ public final class PathfindingWorkaround {
             }
 
             Log.i(LOG_TAG, "Build 42.12+ pathfinder switched to the game's Java implementation");
+            return true;
         } catch (IOException | RuntimeException e) {
             Log.e(LOG_TAG, "Failed to select the Build 42.12+ Java pathfinder", e);
+            return false;
         }
     }
+
+    /** The jar that marks 42.12+ and the options file the switch lives in. */
+    public static List<File> inputs(GameInstance gameInstance) {
+        return Arrays.asList(new File(gameInstance.getGamePath(), "projectzomboid.jar"),
+                optionsFile(gameInstance));
+    }
+
+    private static File optionsFile(GameInstance gameInstance) {
+        return new File(new File(gameInstance.getHomePath(), "Zomboid"), "debug-options.ini");
+    }
 }
@@ -0,0 +1,104 @@
+package com.zomdroid.patch;
+
+import com.zomdroid.game.GameInstance;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Restores the two field names the stale Android RakNet still looks up.
+ *
+ * Build 42.15 renamed two fields of {@code zombie.core.znet.ZNetStatistics}
+ * ({@code BPSLimitByCongestionControl} and {@code BPSLimitByOutgoingBandwidthLimit} became
+ * {@code bpsLimit...}) and rebuilt the <i>Linux</i> libRakNet64.so to match. The Android arm64
+ * build was never rebuilt — it is byte-identical from 42.12.1 through 42.20 — so its JNI lookup
+ * still asks for the old names, fails, and kills MainThread with a NoSuchFieldError on the first
+ * network-statistics tick after joining a server. Only servers with a non-zero
+ * {@code MultiplayerStatisticsPeriod} ever take that path, which is why most servers look fine
+ * and a few kill every Android client. Confirmed fixed live 2026-08-11.
+ *
+ * The two old names come back as plain {@code public long} fields by constant-pool surgery on
+ * the class file itself — append two UTF8 entries and two field_info records, bump both counts,
+ * touch nothing else. The native writes into the restored fields, nothing reads them, and every
+ * other statistic keeps working because no other field name changed. Cost: the two
+ * bandwidth-limit numbers read as zero.
+ *
+ * Idempotent by content: a class that already carries the old name (42.12 and earlier, or our
+ * own output) is left alone. The backup keeps the name the installer's old pre-patched asset
+ * used, so instances patched that way are recognised too.
+ */
+final class ZNetStatisticsPatcher implements ClassPatch {
+    private static final String[] RESTORED_FIELDS = {
+            "BPSLimitByCongestionControl",
+            "BPSLimitByOutgoingBandwidthLimit"
+    };
+
+    @Override
+    public String name() {
+        return "ZNetStatistics";
+    }
+
+    @Override
+    public String classRelPath() {
+        return "zombie/core/znet/ZNetStatistics.class";
+    }
+
+    @Override
+    public String backupName() {
+        return "ZNetStatistics.class.disabled";
+    }
+
+    @Override
+    public boolean appliesTo(GameInstance gameInstance) {
+        return "42".equals(gameInstance.getBuildVersion());
+    }
+
+    @Override
+    public byte[] apply(ClassFile classFile, Result result) {
+        if (classFile.findUtf8(RESTORED_FIELDS[1]) >= 0) {
+            // pre-42.15 class, or already patched
+            result.alreadyPatched = true;
+            return null;
+        }
+
+        int nextIndex = classFile.constantPoolCount();
+        int descriptorIndex = classFile.findUtf8("J");
+        ByteArrayOutputStream addedPool = new ByteArrayOutputStream();
+        int[] nameIndexes = new int[RESTORED_FIELDS.length];
+        for (int i = 0; i < RESTORED_FIELDS.length; i++) {
+            writeUtf8Entry(addedPool, RESTORED_FIELDS[i]);
+            nameIndexes[i] = nextIndex++;
+        }
+        if (descriptorIndex < 0) {
+            writeUtf8Entry(addedPool, "J");
+            descriptorIndex = nextIndex++;
+        }
+
+        // Our fields go first, right after fields_count. That offset lies past the constant
+        // pool, so it is spliced before the pool grows and moves it.
+        byte[] addedFields = new byte[nameIndexes.length * 8];
+        for (int i = 0; i < nameIndexes.length; i++) {
+            ClassFile.putU2(addedFields, i * 8, ClassFile.ACC_PUBLIC);
+            ClassFile.putU2(addedFields, i * 8 + 2, nameIndexes[i]);
+            ClassFile.putU2(addedFields, i * 8 + 4, descriptorIndex);
+            // attributes_count stays 0
+        }
+        int fieldsCountOffset = classFile.fieldsCountOffset();
+        classFile.putU2(fieldsCountOffset, classFile.u2(fieldsCountOffset) + RESTORED_FIELDS.length);
+        classFile.putU2(8, nextIndex); // constant_pool_count
+        byte[] withFields = classFile.splice(fieldsCountOffset + 2, 0, addedFields);
+        byte[] patched = ClassFile.splice(withFields, classFile.poolEnd(), 0, addedPool.toByteArray());
+
+        result.detail = "restored legacy RakNet statistics fields ("
+                + classFile.bytes().length + " -> " + patched.length + " bytes)";
+        return patched;
+    }
+
+    private static void writeUtf8Entry(ByteArrayOutputStream out, String text) {
+        byte[] raw = text.getBytes(StandardCharsets.US_ASCII);
+        out.write(ClassFile.CONSTANT_UTF8);
+        out.write(raw.length >> 8);
+        out.write(raw.length);
+        out.write(raw, 0, raw.length);
+    }
+}
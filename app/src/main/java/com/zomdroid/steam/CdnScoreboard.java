@@ -0,0 +1,237 @@
+package com.zomdroid.steam;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.zomdroid.AppStorage;
+
+import in.dragonbra.javasteam.steam.cdn.Server;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How well each Steam CDN host has been serving us, shared by the game and mod downloaders and
+ * kept across sessions.
+ *
+ * <p>Blind round-robin gave a slow or failing edge node its 1/N of every request, and each of its
+ * failures cost a backoff sleep. Here every chunk reports back: an EWMA of throughput on success,
+ * a decaying failure count on error. Throughput is timed over the whole request, so a host slow to
+ * answer already scores lower for it; there is no separate latency figure. {@link #pick} chooses
+ * at random weighted by throughput over failures, so good hosts carry most of the load while the
+ * others still see enough traffic to show when they recover; hosts nobody has measured yet are
+ * tried as if they were as good as the best one. A host that fails is quarantined for a cool-down that doubles with
+ * each consecutive failure, and is only picked again when every host is in quarantine.
+ *
+ * <p>Saved as JSON in the app's cache directory by {@link #save}, so the next download - the next
+ * session, even - starts on the hosts that were good last time. Entries not seen for a week are
+ * dropped: Steam hands out different edge nodes over time.
+ */
+final class CdnScoreboard {
+    private static final String TAG = "Zomdroid/CdnScores";
+    private static final String FILE_NAME = "cdn-scores.json";
+
+    private static final double ALPHA = 0.2;                    // EWMA weight of a new sample
+    private static final long COOL_DOWN_MS = 15_000L;           // first quarantine
+    private static final long MAX_COOL_DOWN_MS = 5 * 60_000L;
+    private static final long FORGET_AFTER_MS = 7L * 24 * 60 * 60_000L;
+
+    // One host's record, as stored.
+    private static final class Score {
+        double bytesPerSecond;      // EWMA, 0 until measured
+        double failures;            // +1 per failure, halved per success
+        int consecutiveFailures;
+        long quarantinedUntilMs;
+        long lastSeenMs;
+    }
+
+    private static CdnScoreboard singleton;
+
+    private final Map<String, Score> scores;
+
+    private CdnScoreboard(Map<String, Score> scores) {
+        this.scores = scores;
+    }
+
+    static synchronized CdnScoreboard get() {
+        if (singleton == null) singleton = new CdnScoreboard(load());
+        return singleton;
+    }
+
+    /** servers, best first and quarantined last: the order to try a one-off request such as a manifest in. */
+    synchronized List<Server> ranked(List<Server> servers) {
+        long now = System.currentTimeMillis();
+        double optimistic = bestThroughput();
+        List<Server> ranked = new ArrayList<>(servers);
+        ranked.sort((a, b) -> {
+            boolean qa = quarantined(a, now), qb = quarantined(b, now);
+            if (qa != qb) return qa ? 1 : -1;
+            return Double.compare(weight(b, optimistic), weight(a, optimistic));
+        });
+        return ranked;
+    }
+
+    /** A server for the next chunk, chosen at random weighted by health among those not quarantined. */
+    synchronized Server pick(List<Server> servers) {
+        long now = System.currentTimeMillis();
+        double optimistic = bestThroughput();
+        double total = 0;
+        double[] weights = new double[servers.size()];
+        for (int i = 0; i < weights.length; i++) {
+            if (quarantined(servers.get(i), now)) continue;
+            weights[i] = weight(servers.get(i), optimistic);
+            total += weights[i];
+        }
+        if (total <= 0) return soonestOutOfQuarantine(servers);
+
+        double r = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (weights[i] > 0 && r < 0) return servers.get(i);
+        }
+        return servers.get(servers.size() - 1);
+    }
+
+    /** True when some server is out of quarantine, i.e. a retry need not wait. */
+    synchronized boolean hasHealthy(List<Server> servers) {
+        long now = System.currentTimeMillis();
+        for (Server s : servers) if (!quarantined(s, now)) return true;
+        return false;
+    }
+
+    /**
+     * A request to s that delivered bytes in elapsedMs. Pass 0 bytes for a request whose size is
+     * not known (a manifest): it counts for health but not throughput.
+     */
+    synchronized void success(Server s, long elapsedMs, long bytes) {
+        Score score = score(s);
+        long elapsed = Math.max(1, elapsedMs);
+        if (bytes > 0) {
+            double bytesPerSecond = bytes * 1000.0 / elapsed;
+            score.bytesPerSecond = score.bytesPerSecond == 0 ? bytesPerSecond
+                    : score.bytesPerSecond + ALPHA * (bytesPerSecond - score.bytesPerSecond);
+        }
+        score.failures /= 2;
+        score.consecutiveFailures = 0;
+        score.quarantinedUntilMs = 0;
+    }
+
+    /**
+     * True when e comes from our own cancel rather than from the host: the wait for the request
+     * was interrupted, or the request itself was cancelled. Such a failure must not be passed to
+     * {@link #failure}, or stopping a download would quarantine whichever hosts were busy.
+     */
+    static boolean isCancellation(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof CancellationException) return true;
+        }
+        return false;
+    }
+
+    /** A request to s that failed: 503, timeout, reset. */
+    synchronized void failure(Server s) {
+        Score score = score(s);
+        score.failures += 1;
+        score.consecutiveFailures++;
+        long coolDown = Math.min(MAX_COOL_DOWN_MS, COOL_DOWN_MS << Math.min(score.consecutiveFailures - 1, 5));
+        score.quarantinedUntilMs = System.currentTimeMillis() + coolDown;
+        Log.i(TAG, host(s) + " quarantined for " + coolDown / 1000 + " s ("
+                + score.consecutiveFailures + " failure(s) in a row)");
+    }
+
+    /** Writes the scores for the next session. Cheap; call when a download ends. */
+    synchronized void save() {
+        File file = file();
+        if (file == null) return;
+        long now = System.currentTimeMillis();
+        scores.values().removeIf(score -> now - score.lastSeenMs > FORGET_AFTER_MS);
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (Writer writer = new FileWriter(tmp)) {
+                new Gson().toJson(scores, writer);
+            }
+            if (!tmp.renameTo(file)) throw new IOException("rename to " + file + " failed");
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save CDN scores: " + e);
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+
+    // Throughput over failures; a host without a measurement counts as the best measured one.
+    private double weight(Server s, double optimistic) {
+        Score score = scores.get(host(s));
+        double bytesPerSecond = score == null || score.bytesPerSecond <= 0 ? optimistic : score.bytesPerSecond;
+        double failures = score == null ? 0 : score.failures;
+        return bytesPerSecond / (1 + 2 * failures);
+    }
+
+    private double bestThroughput() {
+        double best = 0;
+        for (Score score : scores.values()) best = Math.max(best, score.bytesPerSecond);
+        return best > 0 ? best : 1;
+    }
+
+    private boolean quarantined(Server s, long now) {
+        Score score = scores.get(host(s));
+        return score != null && score.quarantinedUntilMs > now;
+    }
+
+    private Server soonestOutOfQuarantine(List<Server> servers) {
+        Server soonest = servers.get(0);
+        long soonestMs = Long.MAX_VALUE;
+        for (Server s : servers) {
+            Score score = scores.get(host(s));
+            long until = score == null ? 0 : score.quarantinedUntilMs;
+            if (until < soonestMs) {
+                soonestMs = until;
+                soonest = s;
+            }
+        }
+        return soonest;
+    }
+
+    private Score score(Server s) {
+        Score score = scores.computeIfAbsent(host(s), k -> new Score());
+        score.lastSeenMs = System.currentTimeMillis();
+        return score;
+    }
+
+    private static String host(Server s) {
+        return s.getHost() != null ? s.getHost() : String.valueOf(s.getVHost());
+    }
+
+    private static Map<String, Score> load() {
+        Map<String, Score> scores = new HashMap<>();
+        File file = file();
+        if (file == null || !file.isFile()) return scores;
+        try (Reader reader = new FileReader(file)) {
+            Map<String, Score> stored = new Gson().fromJson(reader, new TypeToken<Map<String, Score>>() {}.getType());
+            if (stored != null) {
+                for (Map.Entry<String, Score> entry : stored.entrySet()) {
+                    if (entry.getValue() != null) scores.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            Log.w(TAG, "Ignoring unreadable " + file + ": " + e);
+        }
+        return scores;
+    }
+
+    private static File file() {
+        AppStorage storage = AppStorage.getSingleton();
+        return storage == null ? null : new File(storage.getCachePath(), FILE_NAME);
+    }
+}
@@ -0,0 +1,43 @@
+package com.zomdroid.steam;
+
+import in.dragonbra.javasteam.types.ChunkData;
+
+import java.util.ArrayDeque;
+
+/**
+ * Reusable chunk buffers for the Steam downloaders.
+ *
+ * <p>Each chunk used to get a fresh byte[] of up to ~1 MB, so the ~30k files of the game meant
+ * ~5 GB of short-lived arrays passing through a 256 MB heap - the memory spikes during downloads
+ * were the collector falling behind them. The pool hands out at most {@code capacity} buffers, one
+ * per worker, and takes them back after the chunk is written: after warm-up nothing is allocated.
+ * Buffers only grow: one too small for a chunk is replaced by one that fits.
+ */
+final class ChunkBufferPool {
+    private final int capacity;
+    private final ArrayDeque<byte[]> free = new ArrayDeque<>();
+    private int handedOut;
+
+    ChunkBufferPool(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /** The buffer size a chunk needs: its compressed and its uncompressed form both fit. */
+    static int sizeFor(ChunkData chunk) {
+        return Math.max(chunk.getCompressedLength(), chunk.getUncompressedLength());
+    }
+
+    /** A buffer of at least size bytes; blocks while all of them are in use. Pair with {@link #release}. */
+    synchronized byte[] acquire(int size) throws InterruptedException {
+        while (handedOut >= capacity) wait();
+        handedOut++;
+        byte[] buffer = free.poll();
+        return buffer != null && buffer.length >= size ? buffer : new byte[size];
+    }
+
+    synchronized void release(byte[] buffer) {
+        handedOut--;
+        if (free.size() < capacity) free.push(buffer);
+        notifyAll();
+    }
+}
@@ -0,0 +1,130 @@
+package com.zomdroid.steam;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The output files a game download is writing, each opened once and shared by every worker that
+ * writes chunks of it.
+ *
+ * <p>A large file is split into slices that different workers download side by side; they all
+ * write through one {@link FileChannel} with positional writes, which need no seek and no lock, so
+ * the file is opened and sized once instead of once per worker. When its last slice is released it
+ * stays open until the next {@link #sync}, which forces it to disk before {@link ChunkJournal}
+ * records its chunks as done; a file closed earlier could no longer be forced.
+ */
+final class ChunkFiles {
+    // An open file and how many of its slices have not been released yet.
+    private static final class Open {
+        final RandomAccessFile file;
+        int slicesLeft;
+
+        Open(RandomAccessFile file, int slicesLeft) {
+            this.file = file;
+            this.slicesLeft = slicesLeft;
+        }
+    }
+
+    // More released files than this are forced and closed right away rather than held open for
+    // the next sync: a game has tens of thousands of small files, and file descriptors run out.
+    private static final int MAX_RELEASED = 64;
+
+    private final Map<String, Open> open = new HashMap<>();
+    // Files all of whose slices are done, not yet forced.
+    private List<RandomAccessFile> released = new ArrayList<>();
+
+    /**
+     * The channel of file, opened and sized to size on first use. slices is how many times
+     * {@link #release} will be called for it in all; the same on every call.
+     */
+    synchronized FileChannel acquire(File file, long size, int slices) throws IOException {
+        Open entry = open.get(file.getPath());
+        if (entry == null) {
+            File parent = file.getParentFile();
+            //noinspection ResultOfMethodCallIgnored
+            if (parent != null) parent.mkdirs();
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                if (raf.length() != size) raf.setLength(size);
+            } catch (IOException e) {
+                raf.close();
+                throw e;
+            }
+            entry = new Open(raf, slices);
+            open.put(file.getPath(), entry);
+        }
+        return entry.file.getChannel();
+    }
+
+    /** One slice of file is done with it; after the last one it is closed by the next sync. */
+    void release(File file) throws IOException {
+        List<RandomAccessFile> toClose;
+        synchronized (this) {
+            Open entry = open.get(file.getPath());
+            if (entry == null || --entry.slicesLeft > 0) return;
+            open.remove(file.getPath());
+            released.add(entry.file);
+            if (released.size() <= MAX_RELEASED) return;
+            toClose = released;
+            released = new ArrayList<>();
+        }
+        forceAndClose(toClose);
+    }
+
+    /**
+     * Forces every file written so far to disk, and closes those already released. The forcing
+     * runs outside the lock, so workers keep acquiring and releasing files meanwhile.
+     */
+    void sync() throws IOException {
+        List<FileChannel> stillOpen = new ArrayList<>();
+        List<RandomAccessFile> toClose;
+        synchronized (this) {
+            for (Open entry : open.values()) stillOpen.add(entry.file.getChannel());
+            toClose = released;
+            released = new ArrayList<>();
+        }
+        forceAndClose(toClose);
+        for (FileChannel channel : stillOpen) channel.force(false);
+    }
+
+    /** Closes whatever is still open, after a failed or cancelled download. */
+    synchronized void closeAll() {
+        for (Open entry : open.values()) {
+            try { entry.file.close(); } catch (IOException ignored) {}
+        }
+        open.clear();
+        for (RandomAccessFile file : released) {
+            try { file.close(); } catch (IOException ignored) {}
+        }
+        released.clear();
+    }
+
+    // Closes every file even when forcing one fails; the first failure is thrown afterwards.
+    private static void forceAndClose(List<RandomAccessFile> files) throws IOException {
+        IOException failure = null;
+        for (RandomAccessFile file : files) {
+            try {
+                file.getChannel().force(false);
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+            try { file.close(); } catch (IOException ignored) {}
+        }
+        if (failure != null) throw failure;
+    }
+
+    /** Writes length bytes of buffer to channel at position, however many calls that takes. */
+    static void write(FileChannel channel, byte[] buffer, int length, long position) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, length);
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+    }
+}
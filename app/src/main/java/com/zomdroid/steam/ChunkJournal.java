@@ -0,0 +1,162 @@
+package com.zomdroid.steam;
+
+import android.util.Log;
+
+import in.dragonbra.javasteam.types.ChunkData;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Which chunks of one manifest are already written to the download folder, so a restarted game
+ * download resumes mid-file instead of at the start of every file it had not finished - a
+ * multi-hundred-MB texture pack used to start over from zero.
+ *
+ * <p>Binary and append-only: a 12-byte header (magic, manifest gid) and then one 32-byte record
+ * per chunk - its file's index in the manifest, its offset and its SHA-1. A journal for another
+ * manifest is started over; a torn record at the end (the process died mid-write) is cut off.
+ *
+ * <p>The journal stays open for the whole download. Workers add records to a shared buffer under a
+ * short lock; every few seconds, when it fills, and on {@link #close} the buffer is synced. So a
+ * completed chunk costs no file open and no syscall of its own, where the per-file list this
+ * replaces opened, appended and closed a file under a global lock.
+ *
+ * <p>A sync first forces the output files ({@link ChunkFiles#sync}), and only then writes and
+ * fsyncs the records. A record on disk therefore always has its chunk's bytes on disk too, power
+ * loss included; writing records ahead of the data would let the kernel persist a record whose
+ * chunk was still in the page cache, and the resumed file would keep a hole of zeros. At worst a
+ * crash loses the last few seconds of records, and those chunks are fetched again.
+ */
+final class ChunkJournal implements Closeable {
+    private static final String TAG = "Zomdroid/SteamDL";
+    static final String FILE_NAME = ".zomdroid_chunks_done";
+
+    private static final int MAGIC = 0x5A444A31;           // "ZDJ1"
+    private static final int HEADER_SIZE = 12;
+    private static final int RECORD_SIZE = 32;
+    private static final int SHA1_SIZE = 20;
+    private static final int BATCH_BYTES = 64 * 1024;
+    private static final long SYNC_MS = 5000L;
+
+    private final FileChannel channel;
+    private final ChunkFiles files;
+    // Every record on disk or in the batch, as its 32 bytes.
+    private final Set<ByteBuffer> done = new HashSet<>();
+    private final ByteBuffer batch = ByteBuffer.allocate(BATCH_BYTES);
+    private long lastSyncMs = System.currentTimeMillis();
+
+    private ChunkJournal(FileChannel channel, ChunkFiles files) {
+        this.channel = channel;
+        this.files = files;
+    }
+
+    /**
+     * Opens the journal of outDir for manifest gid, loading what an earlier run completed. files
+     * are the output files the recorded chunks are written to, forced before each sync.
+     */
+    static ChunkJournal open(File outDir, long gid, ChunkFiles files) throws IOException {
+        FileChannel channel = FileChannel.open(new File(outDir, FILE_NAME).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ChunkJournal journal = new ChunkJournal(channel, files);
+        try {
+            journal.load(gid);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    private void load(long gid) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (size >= HEADER_SIZE) {
+            channel.read(header, 0);
+            header.flip();
+        }
+        if (size < HEADER_SIZE || header.getInt() != MAGIC || header.getLong() != gid) {
+            if (size > 0) Log.i(TAG, "Chunk journal is for another manifest; starting a new one");
+            header.clear();
+            header.putInt(MAGIC).putLong(gid).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.position(HEADER_SIZE);
+            return;
+        }
+
+        long whole = HEADER_SIZE + (size - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+        if (whole != size) channel.truncate(whole);
+        ByteBuffer records = ByteBuffer.allocate((int) Math.min(whole - HEADER_SIZE, 1 << 20));
+        long position = HEADER_SIZE;
+        while (position < whole) {
+            records.clear();
+            int read = channel.read(records, position);
+            if (read <= 0) break;
+            position += read;
+            records.flip();
+            while (records.remaining() >= RECORD_SIZE) {
+                byte[] record = new byte[RECORD_SIZE];
+                records.get(record);
+                done.add(ByteBuffer.wrap(record));
+            }
+            // A read that ended mid-record: go back for the rest of it next round.
+            position -= records.remaining();
+        }
+        channel.position(whole);
+    }
+
+    /** Number of chunks recorded so far. */
+    synchronized int size() {
+        return done.size();
+    }
+
+    /** True when chunk of the manifest's fileIndex-th file was written by this or an earlier run. */
+    synchronized boolean isDone(int fileIndex, ChunkData chunk) {
+        ByteBuffer record = record(fileIndex, chunk);
+        return record != null && done.contains(record);
+    }
+
+    /** Records chunk as written. Call only after its bytes reached the output file. */
+    synchronized void markDone(int fileIndex, ChunkData chunk) throws IOException {
+        ByteBuffer record = record(fileIndex, chunk);
+        if (record == null || !done.add(record)) return;
+        if (batch.remaining() < RECORD_SIZE) sync();
+        batch.put(record.duplicate());
+        if (System.currentTimeMillis() - lastSyncMs >= SYNC_MS) sync();
+    }
+
+    /** Syncs what is recorded so far. Call before closing the output files. */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Data first, records second: see the class comment.
+    private void sync() throws IOException {
+        lastSyncMs = System.currentTimeMillis();
+        if (batch.position() == 0) return;
+        files.sync();
+        batch.flip();
+        while (batch.hasRemaining()) channel.write(batch);
+        batch.clear();
+        channel.force(false);
+    }
+
+    private static ByteBuffer record(int fileIndex, ChunkData chunk) {
+        byte[] id = chunk.getChunkID();
+        if (id == null || id.length != SHA1_SIZE) return null;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putInt(fileIndex).putLong(chunk.getOffset()).put(id).flip();
+        return record;
+    }
+}
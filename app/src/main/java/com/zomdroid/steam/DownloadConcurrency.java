@@ -0,0 +1,107 @@
+package com.zomdroid.steam;
+
+import android.util.Log;
+
+/**
+ * How many slices the game downloader keeps in flight, adjusted while it runs.
+ *
+ * <p>A fixed count is wrong both ways: two to six workers leave fast Wi-Fi idle between CDN
+ * round-trips, and the same six keep hammering edge nodes that have started answering 503. This
+ * is AIMD, as TCP does it: every {@link #WINDOW_MS} the window's chunks are judged. Any failed
+ * chunk halves the limit (multiplicative decrease - the CDN is telling us to back off, and
+ * retries landing on a busy node only add to it). A clean window whose throughput kept up with the
+ * previous one adds one (additive increase). A clean window that got clearly slower after an
+ * increase gives that one back: the link, not the CDN, is full, and more slices in flight only
+ * split the same bandwidth.
+ *
+ * <p>The worker pool is sized for {@link #MAX} up front, but a worker holds a permit for as long
+ * as it has a slice - a run of chunks of one file - and only then takes a chunk buffer from the
+ * pool, so memory stays at one chunk buffer (~1 MB) per slice in flight, the ceiling the manual
+ * pipeline exists for.
+ */
+final class DownloadConcurrency {
+    private static final String TAG = "Zomdroid/SteamDL";
+
+    static final int MIN = 1;
+    static final int MAX = 16;
+    private static final long WINDOW_MS = 2000L;
+    // "Kept up": within this fraction of the previous window; below the second, "clearly slower".
+    private static final double KEPT_UP = 0.95;
+    private static final double SLOWER = 0.80;
+
+    /** Receives the limit and the measured speed once per window. */
+    interface Stats {
+        void onWindow(int concurrency, long bytesPerSecond);
+    }
+
+    private final Stats stats;
+    private int limit;
+    private int inFlight;
+
+    private long windowStartMs;
+    private long windowBytes;
+    private int windowErrors;
+    private long previousBytesPerSecond = -1;
+    private boolean lastWasIncrease;
+
+    DownloadConcurrency(int initial, Stats stats) {
+        this.limit = Math.max(MIN, Math.min(MAX, initial));
+        this.stats = stats;
+        this.windowStartMs = System.currentTimeMillis();
+    }
+
+    /** Blocks until this worker may take a slice. Pair every call with {@link #release()}. */
+    synchronized void acquire() throws InterruptedException {
+        while (inFlight >= limit) wait();
+        inFlight++;
+    }
+
+    synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /** A chunk that arrived from the CDN. */
+    synchronized void onBytes(long bytes) {
+        windowBytes += bytes;
+        maybeCloseWindow();
+    }
+
+    /** A chunk attempt that failed: a 503, a timeout, a reset. */
+    synchronized void onError() {
+        windowErrors++;
+        maybeCloseWindow();
+    }
+
+    private void maybeCloseWindow() {
+        long now = System.currentTimeMillis();
+        long elapsed = now - windowStartMs;
+        if (elapsed < WINDOW_MS) return;
+
+        long bytesPerSecond = windowBytes * 1000L / elapsed;
+        int before = limit;
+        if (windowErrors > 0) {
+            limit = Math.max(MIN, limit / 2);
+            lastWasIncrease = false;
+        } else if (previousBytesPerSecond < 0 || bytesPerSecond >= previousBytesPerSecond * KEPT_UP) {
+            limit = Math.min(MAX, limit + 1);
+            lastWasIncrease = limit != before;
+        } else if (lastWasIncrease && bytesPerSecond < previousBytesPerSecond * SLOWER) {
+            limit = Math.max(MIN, limit - 1);
+            lastWasIncrease = false;
+        } else {
+            lastWasIncrease = false;
+        }
+        if (limit != before) {
+            Log.i(TAG, "concurrency " + before + " -> " + limit + " (" + bytesPerSecond / 1024 + " KB/s, "
+                    + windowErrors + " failed chunk(s) in the last " + elapsed + " ms)");
+        }
+        if (limit > before) notifyAll();
+
+        previousBytesPerSecond = bytesPerSecond;
+        windowStartMs = now;
+        windowBytes = 0;
+        windowErrors = 0;
+        if (stats != null) stats.onWindow(limit, bytesPerSecond);
+    }
+}
@@ -0,0 +1,194 @@
+package com.zomdroid.steam;
+
+import android.util.Log;
+
+import com.zomdroid.game.GameInstance;
+import com.zomdroid.game.GameInstanceManager;
+
+import in.dragonbra.javasteam.enums.EDepotFileFlag;
+import in.dragonbra.javasteam.types.ChunkData;
+import in.dragonbra.javasteam.types.FileData;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chunks of a new Project Zomboid build that are already on the device, so the game downloader
+ * can copy them instead of fetching them again.
+ *
+ * <p>A SteamPipe chunk's id is the SHA-1 of its uncompressed bytes, and between two builds almost
+ * all of them are the same: 42.19 to 42.20 changed a few hundred MB out of ~5 GB. The base is one
+ * local install of an earlier build, found by {@link #find}: a previous download folder, which
+ * carries the chunk index written by {@link #writeIndex} and so can serve a chunk whatever file it
+ * moved to; or, failing that, an installed instance's game/ folder, which has no index and is only
+ * tried at the same path and offset - what an unchanged file looks like.
+ *
+ * <p>Every chunk is hashed before it is used, so a wrong guess costs a read and never corrupts
+ * the download: class files our launcher patched, renamed .disabled libraries and files edited
+ * by hand simply miss and come from the CDN. Safe to use from all download workers at once.
+ */
+final class LocalChunkSource {
+    private static final String TAG = "Zomdroid/SteamDL";
+    static final String INDEX_NAME = ".zomdroid_chunks";
+
+    // Where a chunk can be read in the base: file relative to it, offset, length.
+    private static final class Location {
+        final String rel;
+        final long offset;
+        final int length;
+
+        Location(String rel, long offset, int length) {
+            this.rel = rel;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File baseDir;
+    // Chunk SHA-1 (hex) -> one place it was written. Empty for a base without an index.
+    private final Map<String, Location> index;
+
+    private LocalChunkSource(File baseDir, Map<String, Location> index) {
+        this.baseDir = baseDir;
+        this.index = index;
+    }
+
+    File baseDir() {
+        return baseDir;
+    }
+
+    boolean hasIndex() {
+        return !index.isEmpty();
+    }
+
+    /**
+     * The best local base for a download into outDir, or null when there is none. Previous
+     * downloads of the same build ("41" / "42") with an index come first, newest first; then the
+     * game folders of instances of that build. A base of the other build shares almost nothing.
+     */
+    static LocalChunkSource find(File downloadsDir, File outDir, String buildLabel) {
+        String prefix = "ProjectZomboid_B" + buildLabel + "_";
+        File[] downloads = downloadsDir.listFiles((dir, name) -> name.startsWith(prefix));
+        if (downloads != null) {
+            Arrays.sort(downloads, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+            for (File candidate : downloads) {
+                if (candidate.equals(outDir)) continue;
+                File indexFile = new File(candidate, INDEX_NAME);
+                if (!indexFile.isFile()) continue;
+                Map<String, Location> index = readIndex(indexFile);
+                if (!index.isEmpty()) return new LocalChunkSource(candidate, index);
+            }
+        }
+
+        GameInstanceManager instances = GameInstanceManager.getSingleton();
+        if (instances == null) return null;
+        for (GameInstance instance : instances.getInstances()) {
+            if (!buildLabel.equals(instance.getBuildVersion())) continue;
+            if (!instance.isInstallationFinished() || !instance.hasGameFiles()) continue;
+            return new LocalChunkSource(new File(instance.getGamePath()), new HashMap<>());
+        }
+        return null;
+    }
+
+    /**
+     * Copies chunk of the file at rel into out, from wherever the base has it, and returns the
+     * number of bytes written; -1 when the base has no such chunk and it must be downloaded.
+     * buffer is the worker's own, at least the chunk's uncompressed length.
+     */
+    int copy(String rel, ChunkData chunk, FileChannel out, byte[] buffer) {
+        byte[] id = chunk.getChunkID();
+        int length = chunk.getUncompressedLength();
+        if (id == null || length <= 0 || buffer.length < length) return -1;
+
+        Location located = index.get(hex(id));
+        if (located != null && located.length == length && read(located.rel, located.offset, length, id, buffer)
+                || read(rel, chunk.getOffset(), length, id, buffer)) {
+            try {
+                ChunkFiles.write(out, buffer, length, chunk.getOffset());
+                return length;
+            } catch (IOException e) {
+                Log.w(TAG, "local chunk copy into " + rel + " failed: " + e);
+            }
+        }
+        return -1;
+    }
+
+    // Reads length bytes of the base's rel at offset into buffer; true only when they hash to id.
+    private boolean read(String rel, long offset, int length, byte[] id, byte[] buffer) {
+        File file = new File(baseDir, rel);
+        if (file.length() < offset + length) return false;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(offset);
+            in.readFully(buffer, 0, length);
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            sha1.update(buffer, 0, length);
+            return MessageDigest.isEqual(sha1.digest(), id);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Records where every chunk of a finished download is, so a later build can use this folder as
+     * its base. One line per chunk: relative path, offset, length, SHA-1. Written only once the
+     * download is complete: an interrupted folder is not a base anyone should trust.
+     */
+    static void writeIndex(File outDir, List<FileData> files) {
+        File indexFile = new File(outDir, INDEX_NAME);
+        File tmp = new File(outDir, INDEX_NAME + ".tmp");
+        try {
+            try (BufferedWriter w = new BufferedWriter(new FileWriter(tmp))) {
+                for (FileData f : files) {
+                    if (f.getFlags().contains(EDepotFileFlag.Directory)) continue;
+                    String rel = SteamGameDownloader.sanitizeRel(f.getFileName());
+                    if (rel == null || rel.indexOf('\t') >= 0 || rel.indexOf('\n') >= 0) continue;
+                    for (ChunkData chunk : f.getChunks()) {
+                        if (chunk.getChunkID() == null) continue;
+                        w.write(rel + '\t' + chunk.getOffset() + '\t' + chunk.getUncompressedLength()
+                                + '\t' + hex(chunk.getChunkID()) + '\n');
+                    }
+                }
+            }
+            if (!tmp.renameTo(indexFile)) throw new IOException("rename to " + indexFile + " failed");
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write the chunk index; this download will not serve later ones: " + e);
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+
+    private static Map<String, Location> readIndex(File indexFile) {
+        Map<String, Location> index = new HashMap<>();
+        try (BufferedReader r = new BufferedReader(new FileReader(indexFile))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length != 4) continue;
+                index.putIfAbsent(parts[3], new Location(parts[0], Long.parseLong(parts[1]),
+                        Integer.parseInt(parts[2])));
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.w(TAG, "Ignoring unreadable chunk index " + indexFile + ": " + e);
+            return new HashMap<>();
+        }
+        return index;
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+}
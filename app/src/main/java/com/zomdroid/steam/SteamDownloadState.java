@@ -29,6 +29,7 @@ public final class SteamDownloadState
         void onLog(CharSequence fullLog);
         void onPercent(int percent, boolean indeterminate);
         void onFinished(String message);
+        void onTransferStats(int concurrency, long bytesPerSecond);
         CompletableFuture<String> requestSteamGuardCode(boolean previousWrong, String email);
     }
 
@@ -38,6 +39,8 @@ public final class SteamDownloadState
     private volatile boolean downloading;
     private volatile int percent = -1;
     private volatile boolean indeterminate = true;
+    private volatile int concurrency = -1;      // -1 until the first measured window
+    private volatile long bytesPerSecond;
     private View view;
     private Context appCtx;
     private volatile Cancellable active;
@@ -62,6 +65,8 @@ public final class SteamDownloadState
     public CharSequence getLog() { return log.toString(); }
     public int getPercent() { return percent; }
     public boolean isIndeterminate() { return indeterminate; }
+    public int getConcurrency() { return concurrency; }
+    public long getBytesPerSecond() { return bytesPerSecond; }
 
     /** Called on the main thread by the fragment when it (re)appears or goes away. */
     public void setView(View v) { this.view = v; }
@@ -74,6 +79,8 @@ public final class SteamDownloadState
         downloading = true;
         indeterminate = true;
         percent = -1;
+        concurrency = -1;
+        bytesPerSecond = 0;
         DownloadKeepAliveService.start(appCtx);
     }
 
@@ -98,6 +105,13 @@ public final class SteamDownloadState
         main.post(() -> { if (view != null) view.onPercent(percent, false); });
     }
 
+    @Override
+    public void onTransferStats(int concurrency, long bytesPerSecond) {
+        this.concurrency = concurrency;
+        this.bytesPerSecond = bytesPerSecond;
+        main.post(() -> { if (view != null) view.onTransferStats(concurrency, bytesPerSecond); });
+    }
+
     @Override
     public void onDone(String message) {
         appendLine((isError(message) ? "✗ " : "✓ ") + message);
@@ -105,6 +119,7 @@ public final class SteamDownloadState
         cancelling = false;
         active = null;
         activeThread = null;
+        concurrency = -1;
         if (appCtx != null) DownloadKeepAliveService.stop(appCtx);
         main.post(() -> {
             if (view != null) { view.onLog(getLog()); view.onFinished(message); }
@@ -38,8 +38,6 @@ import in.dragonbra.javasteam.types.KeyValue;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.RandomAccessFile;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -77,6 +75,8 @@ public class SteamGameDownloader implements Runnable, Cancellable {
         CompletableFuture<String> requestSteamGuardCode(boolean previousWrong, String email);
         void onProgress(String message);
         default void onPercent(int percent) {}
+        /** Files in flight and measured speed, every couple of seconds while chunks arrive. */
+        default void onTransferStats(int concurrency, long bytesPerSecond) {}
         void onDone(String message);
     }
 
@@ -314,6 +314,8 @@ public class SteamGameDownloader implements Runnable, Cancellable {
     }
 
     private void download() {
+        ChunkJournal journal = null;
+        ChunkFiles openFiles = new ChunkFiles();
         try {
             progress("Resolving Linux depot...");
             DepotInfo info = resolveLinuxDepot();
@@ -348,18 +350,21 @@ public class SteamGameDownloader implements Runnable, Cancellable {
                     content.getManifestRequestCode(depot, appId, gid, branch, null, GlobalScope.INSTANCE), 30000);
 
             Map<String, String> tokenCache = new HashMap<>();
+            CdnScoreboard scores = CdnScoreboard.get();
             DepotManifest manifest = null;
             Exception lastErr = null;
-            int serverIdx = 0;
-            for (int i = 0; i < servers.size(); i++) {
-                Server s = servers.get(i);
+            for (Server s : scores.ranked(servers)) {
+                long startMs = System.currentTimeMillis();
                 try {
                     manifest = cdn.downloadManifestFuture(depot, gid, requestCode, s, depotKey, null,
                             cdnTokenFor(content, appId, depot, s, tokenCache)).get(120, TimeUnit.SECONDS);
-                    serverIdx = i;
+                    scores.success(s, System.currentTimeMillis() - startMs, 0);
                     break;
                 } catch (Exception e) {
+                    // Cancelled: not the host's fault, and the catch below reports it.
+                    if (!running || CdnScoreboard.isCancellation(e)) throw e;
                     lastErr = e;
+                    scores.failure(s);
                     Log.w(TAG, "manifest via " + s.getHost() + " failed: " + describe(e));
                 }
             }
@@ -372,26 +377,39 @@ public class SteamGameDownloader implements Runnable, Cancellable {
             }
             progress("Manifest OK: " + files.size() + " files, " + (totalBytes / (1024 * 1024)) + " MB. Downloading...");
 
-            // Resume: skip files already fully downloaded in a previous run of this same build.
-            File doneListFile = new File(outDir, ".zomdroid_complete");
-            java.util.Set<String> doneSet = loadDoneSet(doneListFile);
-            if (!doneSet.isEmpty()) progress("Resuming — " + doneSet.size() + " files already downloaded.");
+            // Resume: skip chunks already written by a previous run of this same manifest, down to
+            // the middle of a file (ChunkJournal). A folder from before the journal still has its
+            // per-file list; files named there count as complete.
+            java.util.Set<String> legacyDoneSet = loadDoneSet(new File(outDir, ".zomdroid_complete"));
+            journal = ChunkJournal.open(outDir, gid, openFiles);
+            if (journal.size() > 0 || !legacyDoneSet.isEmpty()) {
+                progress("Resuming — " + (journal.size() > 0 ? journal.size() + " chunks"
+                        : legacyDoneSet.size() + " files") + " already downloaded.");
+            }
 
-            // Files are downloaded by a small pool rather than one at a time. The single-threaded loop
+            // Slices are downloaded by a small pool rather than one at a time. The single-threaded loop
             // this replaces spent nearly all its wall clock waiting on CDN round-trips, not on disk or
-            // CPU, so a handful of files in flight multiplies throughput without touching the reason
-            // the manual pipeline exists: peak memory stays at one chunk buffer per worker (~1 MB
-            // each) instead of JavaSteam's DepotDownloader buffering the whole depot.
+            // CPU, so a handful of requests in flight multiplies throughput without touching the
+            // reason the manual pipeline exists: peak memory stays at one chunk buffer per slice in
+            // flight (~1 MB each) instead of JavaSteam's DepotDownloader buffering the whole depot.
+            //
+            // The unit of work is a Slice: up to SLICE_CHUNKS consecutive chunks of one file. Most of
+            // the game's ~30k files are a single chunk and so a single slice, but a large one is split
+            // so several workers fetch it side by side instead of one worker taking it chunk after
+            // chunk while the rest run dry at the end of the download. All slices of a file write
+            // through one shared channel (ChunkFiles).
             //
-            // Parallelism is per FILE, not per chunk inside a file: the game is ~30k files and most
-            // are a single chunk, so chunk-level splitting would leave the small ones serial anyway,
-            // and per-file keeps the resume bookkeeping honest - a name reaches .zomdroid_complete
-            // only after that whole file is written.
-            final int workers = Math.max(2, Math.min(6, Runtime.getRuntime().availableProcessors()));
+            // How many slices are in flight is not fixed: DownloadConcurrency starts from the old
+            // CPU-based guess and moves it with the observed throughput and failure rate. The pool
+            // is sized for its maximum; idle workers just wait for a permit.
+            final DownloadConcurrency concurrency = new DownloadConcurrency(
+                    Math.max(2, Math.min(6, Runtime.getRuntime().availableProcessors())),
+                    (inFlight, bytesPerSecond) -> {
+                        if (listener != null) listener.onTransferStats(inFlight, bytesPerSecond);
+                    });
+            final int workers = DownloadConcurrency.MAX;
             final java.util.concurrent.atomic.AtomicLong doneBytes =
                     new java.util.concurrent.atomic.AtomicLong(0);
-            final java.util.concurrent.atomic.AtomicInteger serverCursor =
-                    new java.util.concurrent.atomic.AtomicInteger(serverIdx);
             final java.util.concurrent.atomic.AtomicInteger lastPct =
                     new java.util.concurrent.atomic.AtomicInteger(-1);
             final java.util.concurrent.atomic.AtomicLong lastEmit =
@@ -399,18 +417,45 @@ public class SteamGameDownloader implements Runnable, Cancellable {
             final java.util.concurrent.atomic.AtomicReference<Throwable> firstError =
                     new java.util.concurrent.atomic.AtomicReference<>();
 
-            final List<FileData> pending = new java.util.ArrayList<>();
-            for (FileData f : files) {
+            // Files by their index in the manifest, which is what the journal records them under.
+            final List<Slice> pending = new java.util.ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                FileData f = files.get(i);
                 String rel = sanitizeRel(f.getFileName());
                 if (rel == null) continue;
                 File outFile = new File(outDir, rel);
                 if (f.getFlags().contains(EDepotFileFlag.Directory)) { outFile.mkdirs(); continue; }
-                // Already complete on a previous run -> skip (count toward progress).
-                if (doneSet.contains(rel) && outFile.isFile() && outFile.length() == f.getTotalSize()) {
-                    doneBytes.addAndGet(f.getTotalSize());
-                    continue;
+                // The journal is only trusted for a file that is there at full length: it was
+                // sized before its first chunk was written. Any other file is fetched whole, its
+                // journaled chunks included - they are not on disk any more.
+                boolean trustJournal = outFile.isFile() && outFile.length() == f.getTotalSize();
+                if (trustJournal) {
+                    boolean complete = legacyDoneSet.contains(rel);
+                    long journaled = 0;
+                    if (!complete) {
+                        complete = true;
+                        for (ChunkData chunk : f.getChunks()) {
+                            if (journal.isDone(i, chunk)) journaled += chunk.getUncompressedLength();
+                            else complete = false;
+                        }
+                    }
+                    // Complete on a previous run -> skip; partly done -> count what is there.
+                    doneBytes.addAndGet(complete ? f.getTotalSize() : journaled);
+                    if (complete) continue;
                 }
-                pending.add(f);
+                Slice.addAll(pending, i, f.getChunks().size(), trustJournal);
+            }
+
+            // Delta: chunks this build shares with one already on the device are copied from it
+            // instead of downloaded - see LocalChunkSource. Most of a new build is unchanged, so
+            // an update costs what actually changed rather than the whole game again.
+            final LocalChunkSource local = pending.isEmpty() ? null
+                    : LocalChunkSource.find(getDownloadsDir(), outDir, buildLabel);
+            final java.util.concurrent.atomic.AtomicLong reusedBytes =
+                    new java.util.concurrent.atomic.AtomicLong(0);
+            if (local != null) {
+                progress("Reusing unchanged chunks from " + local.baseDir().getAbsolutePath()
+                        + (local.hasIndex() ? "" : " (same files only)"));
             }
 
             final long fTotalBytes = totalBytes;
@@ -421,9 +466,14 @@ public class SteamGameDownloader implements Runnable, Cancellable {
             final SteamContent fContent = content;
             final Map<String, String> fTokenCache = tokenCache;
             final File fOutDir = outDir;
-            final File fDoneListFile = doneListFile;
-
-            final java.util.concurrent.ConcurrentLinkedQueue<FileData> queue =
+            final ChunkJournal fJournal = journal;
+            final List<FileData> fFiles = files;
+            final ChunkFiles fOpenFiles = openFiles;
+            // One buffer per slice the pool may have in flight: nothing per chunk is allocated after
+            // warm-up.
+            final ChunkBufferPool buffers = new ChunkBufferPool(workers);
+
+            final java.util.concurrent.ConcurrentLinkedQueue<Slice> queue =
                     new java.util.concurrent.ConcurrentLinkedQueue<>(pending);
             final java.util.concurrent.CountDownLatch latch =
                     new java.util.concurrent.CountDownLatch(workers);
@@ -432,15 +482,24 @@ public class SteamGameDownloader implements Runnable, Cancellable {
             for (int w = 0; w < workers; w++) {
                 Thread t = new Thread(() -> {
                     try {
-                        FileData f;
-                        while (running && firstError.get() == null && (f = queue.poll()) != null) {
+                        while (running && firstError.get() == null) {
+                            try {
+                                concurrency.acquire();
+                            } catch (InterruptedException cancelled) {
+                                return;
+                            }
                             try {
-                                downloadOneFile(f, fOutDir, fDoneListFile, fCdn, fContent, fServers,
-                                        fDepot, fDepotKey, fTokenCache, serverCursor,
-                                        doneBytes, fTotalBytes, lastPct, lastEmit);
+                                Slice slice = queue.poll();
+                                if (slice == null) return;
+                                downloadSlice(slice, fFiles.get(slice.fileIndex), fOutDir, fJournal, fOpenFiles,
+                                        buffers, fCdn, fContent, fServers,
+                                        fDepot, fDepotKey, fTokenCache, scores, local, reusedBytes,
+                                        concurrency, doneBytes, fTotalBytes, lastPct, lastEmit);
                             } catch (Throwable e) {
                                 firstError.compareAndSet(null, e);
                                 return;
+                            } finally {
+                                concurrency.release();
                             }
                         }
                     } finally {
@@ -468,7 +527,11 @@ public class SteamGameDownloader implements Runnable, Cancellable {
             Throwable workerError = firstError.get();
             if (workerError != null) throw workerError;
 
-            done("Game downloaded to " + fOutDir.getAbsolutePath());
+            // Only now is the folder a complete build another download may take chunks from.
+            LocalChunkSource.writeIndex(fOutDir, files);
+            long reusedMb = reusedBytes.get() / (1024 * 1024);
+            done("Game downloaded to " + fOutDir.getAbsolutePath()
+                    + (reusedMb > 0 ? " (" + reusedMb + " MB copied from the local copy, not downloaded)" : ""));
         } catch (Throwable t) {
             if (!running) {
                 done("Download cancelled.");
@@ -478,6 +541,12 @@ public class SteamGameDownloader implements Runnable, Cancellable {
             }
         } finally {
             running = false;
+            // The journal first: its last sync forces the output files, which must still be open.
+            if (journal != null) {
+                try { journal.close(); } catch (java.io.IOException e) { Log.w(TAG, "chunk journal close failed: " + e); }
+            }
+            openFiles.closeAll();
+            CdnScoreboard.get().save();
             try { steamUser.logOff(); } catch (Throwable ignored) {}
         }
     }
@@ -497,75 +566,133 @@ public class SteamGameDownloader implements Runnable, Cancellable {
     }
 
     /**
-     * Download one file's chunks and write them at their offsets. Runs on a pool thread; everything
-     * shared with the other workers is passed in as an atomic or guarded internally.
+     * Up to {@link #SLICE_CHUNKS} consecutive chunks of one file: the unit a worker takes. Most game
+     * files are one chunk and so one slice; a texture pack of hundreds of MB becomes many, which
+     * the workers download side by side into the same open file (ChunkFiles).
+     */
+    private static final class Slice {
+        final int fileIndex;
+        final int from;         // first chunk, inclusive
+        final int to;           // last chunk, exclusive
+        final int slices;       // how many slices the file has in all
+        final boolean trustJournal; // the file was found intact: skip the chunks journaled for it
+
+        private Slice(int fileIndex, int from, int to, int slices, boolean trustJournal) {
+            this.fileIndex = fileIndex;
+            this.from = from;
+            this.to = to;
+            this.slices = slices;
+            this.trustJournal = trustJournal;
+        }
+
+        // A file without chunks still gets one slice: it has to be created.
+        static void addAll(List<Slice> out, int fileIndex, int chunkCount, boolean trustJournal) {
+            int slices = Math.max(1, (chunkCount + SLICE_CHUNKS - 1) / SLICE_CHUNKS);
+            for (int i = 0; i < slices; i++) {
+                out.add(new Slice(fileIndex, i * SLICE_CHUNKS, Math.min(chunkCount, (i + 1) * SLICE_CHUNKS), slices,
+                        trustJournal));
+            }
+        }
+    }
+
+    private static final int SLICE_CHUNKS = 8;
+
+    /**
+     * Download one slice of a file's chunks and write them at their offsets, skipping those the
+     * journal says an earlier run wrote when the file was found intact. Runs on a pool thread;
+     * everything shared with the other workers is passed in as an atomic or guarded internally.
      */
-    private void downloadOneFile(FileData f, File outDir, File doneListFile,
-                                 Client cdn, SteamContent content, List<Server> servers,
-                                 int depot, byte[] depotKey, Map<String, String> tokenCache,
-                                 java.util.concurrent.atomic.AtomicInteger serverCursor,
-                                 java.util.concurrent.atomic.AtomicLong doneBytes, long totalBytes,
-                                 java.util.concurrent.atomic.AtomicInteger lastPct,
-                                 java.util.concurrent.atomic.AtomicLong lastEmit) throws Exception {
+    private void downloadSlice(Slice slice, FileData f, File outDir, ChunkJournal journal,
+                               ChunkFiles openFiles, ChunkBufferPool buffers,
+                               Client cdn, SteamContent content, List<Server> servers,
+                               int depot, byte[] depotKey, Map<String, String> tokenCache,
+                               CdnScoreboard scores,
+                               LocalChunkSource local, java.util.concurrent.atomic.AtomicLong reusedBytes,
+                               DownloadConcurrency concurrency,
+                               java.util.concurrent.atomic.AtomicLong doneBytes, long totalBytes,
+                               java.util.concurrent.atomic.AtomicInteger lastPct,
+                               java.util.concurrent.atomic.AtomicLong lastEmit) throws Exception {
         String rel = sanitizeRel(f.getFileName());
         if (rel == null) return;
         File outFile = new File(outDir, rel);
-        File parent = outFile.getParentFile();
-        if (parent != null) parent.mkdirs();
+        int fileIndex = slice.fileIndex;
+        List<ChunkData> chunks = f.getChunks();
 
-        try (RandomAccessFile raf = new RandomAccessFile(outFile, "rw")) {
-            if (f.getTotalSize() > 0) raf.setLength(f.getTotalSize());
-            for (ChunkData chunk : f.getChunks()) {
+        java.nio.channels.FileChannel channel = openFiles.acquire(outFile, f.getTotalSize(), slice.slices);
+        try {
+            for (int c = slice.from; c < slice.to; c++) {
+                ChunkData chunk = chunks.get(c);
                 if (!running) return;
-                byte[] dest = new byte[Math.max(chunk.getCompressedLength(), chunk.getUncompressedLength())];
-                int written = -1;
-                Exception chunkErr = null;
-                // Steam CDN edge nodes routinely 503/timeout under load. Retry patiently with
-                // exponential backoff + server rotation instead of aborting the whole download.
-                final int maxTries = 30;
-                for (int t = 0; t < maxTries && written < 0; t++) {
-                    if (!running) return;
-                    // Round-robin, not sticky: the single-threaded version stayed on one healthy
-                    // server and only moved after a failure, which with several workers would point
-                    // all of them at the same edge node - the very thing that makes those nodes
-                    // start returning 503. Advancing per attempt spreads the load and also lands a
-                    // retry somewhere else by construction.
-                    Server s = servers.get(Math.floorMod(serverCursor.getAndIncrement(), servers.size()));
-                    try {
-                        written = cdn.downloadDepotChunkFuture(depot, chunk, s, dest, depotKey, null,
-                                cdnTokenFor(content, PROJECT_ZOMBOID_APP_ID, depot, s, tokenCache))
-                                .get(120, TimeUnit.SECONDS);
-                    } catch (Exception e) {
-                        chunkErr = e;
-                        Log.w(TAG, "chunk via " + s.getHost() + " failed (try " + (t + 1) + "/" + maxTries + "): " + describe(e));
-                        long now = System.currentTimeMillis();
-                        long prev = lastEmit.get();
-                        if (now - prev > 1500 && lastEmit.compareAndSet(prev, now) && listener != null) {
-                            listener.onProgress("Steam CDN busy — retrying… ("
-                                    + (doneBytes.get() / (1024 * 1024)) + " / " + (totalBytes / (1024 * 1024)) + " MB)");
+                // Counted toward progress already - but only for a file found intact; a missing or
+                // short one is recreated empty by ChunkFiles, so every chunk of it is written again.
+                if (slice.trustJournal && journal.isDone(fileIndex, chunk)) continue;
+                byte[] dest = buffers.acquire(ChunkBufferPool.sizeFor(chunk));
+                try {
+                    // Copied from the local base when it has this chunk (already written to the file).
+                    int written = local != null ? local.copy(rel, chunk, channel, dest) : -1;
+                    boolean reused = written >= 0;
+                    if (reused) reusedBytes.addAndGet(written);
+                    Exception chunkErr = null;
+                    // Steam CDN edge nodes routinely 503/timeout under load. Retry patiently on other
+                    // hosts, backing off exponentially only when all of them are cooling down, instead
+                    // of aborting the whole download.
+                    final int maxTries = 30;
+                    for (int t = 0; t < maxTries && written < 0; t++) {
+                        if (!running) return;
+                        // Weighted, not sticky: staying on one healthy server would point every worker
+                        // at the same edge node - the very thing that makes those nodes start returning
+                        // 503 - so picks are spread by health (CdnScoreboard), and a host that just
+                        // failed is quarantined, which lands the retry somewhere else.
+                        Server s = scores.pick(servers);
+                        long startMs = System.currentTimeMillis();
+                        try {
+                            written = cdn.downloadDepotChunkFuture(depot, chunk, s, dest, depotKey, null,
+                                    cdnTokenFor(content, PROJECT_ZOMBOID_APP_ID, depot, s, tokenCache))
+                                    .get(120, TimeUnit.SECONDS);
+                            scores.success(s, System.currentTimeMillis() - startMs, written);
+                        } catch (Exception e) {
+                            // Cancelled: not the host's fault, so it is not scored, and the slice
+                            // stops here like any other failed one.
+                            if (!running || CdnScoreboard.isCancellation(e)) throw e;
+                            chunkErr = e;
+                            scores.failure(s);
+                            concurrency.onError();
+                            Log.w(TAG, "chunk via " + s.getHost() + " failed (try " + (t + 1) + "/" + maxTries + "): " + describe(e));
+                            long now = System.currentTimeMillis();
+                            long prev = lastEmit.get();
+                            if (now - prev > 1500 && lastEmit.compareAndSet(prev, now) && listener != null) {
+                                listener.onProgress("Steam CDN busy — retrying… ("
+                                        + (doneBytes.get() / (1024 * 1024)) + " / " + (totalBytes / (1024 * 1024)) + " MB)");
+                            }
+                            // Wait only when every host is cooling down; otherwise a healthy one is
+                            // ready right now.
+                            if (scores.hasHealthy(servers)) continue;
+                            long backoff = Math.min(10000L, 500L * (1L << Math.min(t, 4))); // 0.5..10s
+                            try { Thread.sleep(backoff); } catch (InterruptedException ignored) { return; }
                         }
-                        long backoff = Math.min(10000L, 500L * (1L << Math.min(t, 4))); // 0.5..10s
-                        try { Thread.sleep(backoff); } catch (InterruptedException ignored) { return; }
                     }
-                }
-                if (written < 0) throw chunkErr != null ? chunkErr : new java.io.IOException("chunk download failed");
-                raf.seek(chunk.getOffset());
-                raf.write(dest, 0, written);
-                long total = doneBytes.addAndGet(written);
-
-                long now = System.currentTimeMillis();
-                int pct = totalBytes > 0 ? (int) (total * 100 / totalBytes) : 0;
-                long prev = lastEmit.get();
-                if (pct != lastPct.get() && now - prev > 500 && lastEmit.compareAndSet(prev, now)) {
-                    lastPct.set(pct);
-                    progress(pct + "%  (" + (total / (1024 * 1024)) + " / " + (totalBytes / (1024 * 1024)) + " MB)");
-                    if (listener != null) listener.onPercent(pct);
+                    if (written < 0) throw chunkErr != null ? chunkErr : new java.io.IOException("chunk download failed");
+                    if (!reused) ChunkFiles.write(channel, dest, written, chunk.getOffset());
+                    journal.markDone(fileIndex, chunk);
+                    long total = doneBytes.addAndGet(written);
+                    // Network bytes only: a chunk copied from the local base says nothing about the CDN.
+                    if (!reused) concurrency.onBytes(written);
+
+                    long now = System.currentTimeMillis();
+                    int pct = totalBytes > 0 ? (int) (total * 100 / totalBytes) : 0;
+                    long prev = lastEmit.get();
+                    if (pct != lastPct.get() && now - prev > 500 && lastEmit.compareAndSet(prev, now)) {
+                        lastPct.set(pct);
+                        progress(pct + "%  (" + (total / (1024 * 1024)) + " / " + (totalBytes / (1024 * 1024)) + " MB)");
+                        if (listener != null) listener.onPercent(pct);
+                    }
+                } finally {
+                    buffers.release(dest);
                 }
             }
+        } finally {
+            openFiles.release(outFile);
         }
-        // File fully written — record it so a restart of this build can skip it. Only reached when
-        // every chunk landed, so a half-written file is never marked complete.
-        if (running) appendDone(doneListFile, rel);
     }
 
     private String cdnTokenFor(SteamContent content, int appId, int depot, Server s, Map<String, String> cache) {
@@ -596,7 +723,7 @@ public class SteamGameDownloader implements Runnable, Cancellable {
         return (T) d.getCompleted();
     }
 
-    /** Reads the set of already-completed relative file paths from the resume marker. */
+    /** Reads the set of completed relative file paths from a pre-journal resume marker. */
     private static java.util.Set<String> loadDoneSet(File f) {
         java.util.Set<String> s = new java.util.HashSet<>();
         if (f == null || !f.isFile()) return s;
@@ -610,16 +737,7 @@ public class SteamGameDownloader implements Runnable, Cancellable {
         return s;
     }
 
-    /** Appends one completed relative path to the resume marker (flushed immediately). */
-    // synchronized: several download workers finish files at once and all append to this one list.
-    private static synchronized void appendDone(File f, String rel) {
-        try (FileWriter w = new FileWriter(f, true)) {
-            w.write(rel);
-            w.write('\n');
-        } catch (Exception ignored) {}
-    }
-
-    private static String sanitizeRel(String name) {
+    static String sanitizeRel(String name) {
         if (name == null) return null;
         String rel = name.replace('\\', '/');
         while (rel.startsWith("/")) rel = rel.substring(1);
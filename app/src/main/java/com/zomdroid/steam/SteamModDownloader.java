@@ -107,6 +107,8 @@ public class SteamModDownloader implements Runnable, Cancellable {
 
     private final List<Long> workshopIds;
     private final Listener listener;
+    // Mods download one chunk at a time, so one buffer, reused for every chunk of every item.
+    private final ChunkBufferPool buffers = new ChunkBufferPool(1);
 
     private SteamClient steamClient;
     private CallbackManager manager;
@@ -249,6 +251,7 @@ public class SteamModDownloader implements Runnable, Cancellable {
             done("error: " + describe(t));
         } finally {
             running = false;
+            CdnScoreboard.get().save();
             try { steamUser.logOff(); } catch (Throwable ignored) {}
         }
     }
@@ -284,17 +287,22 @@ public class SteamModDownloader implements Runnable, Cancellable {
         DepotManifest manifest = null;
         Exception lastErr = null;
         Map<String, String> tokenCache = new HashMap<>();
-        int firstGood = -1;
-        for (int i = 0; i < servers.size(); i++) {
-            Server s = servers.get(i);
+        // Shared with the game downloader and kept across sessions: start on the hosts that were
+        // good last time, and keep away from the ones that are failing right now.
+        CdnScoreboard scores = CdnScoreboard.get();
+        for (Server s : scores.ranked(servers)) {
+            long startMs = System.currentTimeMillis();
             try {
                 manifest = cdn.downloadManifestFuture(depot, info.hcontentFile, requestCode, s,
                         depotKey, null, cdnTokenFor(content, appId, depot, s, tokenCache))
                         .get(90, TimeUnit.SECONDS);
-                firstGood = i;
+                scores.success(s, System.currentTimeMillis() - startMs, 0);
                 break;
             } catch (Exception e) {
+                // Cancelled: not the host's fault, so it is not scored.
+                if (!running || CdnScoreboard.isCancellation(e)) return false;
                 lastErr = e;
+                scores.failure(s);
                 Log.w(TAG, "manifest via " + s.getHost() + " failed: " + describe(e));
             }
         }
@@ -311,7 +319,6 @@ public class SteamModDownloader implements Runnable, Cancellable {
         progress("manifest OK: " + files.size() + " entries, "
                 + (totalBytes / (1024 * 1024)) + " MB — downloading...");
 
-        int serverIdx = Math.max(firstGood, 0);
         long doneBytes = 0;
         int lastPct = -1;
         for (FileData f : files) {
@@ -330,32 +337,40 @@ public class SteamModDownloader implements Runnable, Cancellable {
 
             try (RandomAccessFile raf = new RandomAccessFile(out, "rw")) {
                 if (f.getTotalSize() > 0) raf.setLength(f.getTotalSize());
+                java.nio.channels.FileChannel channel = raf.getChannel();
                 for (ChunkData chunk : f.getChunks()) {
                     if (!running) return false;
-                    byte[] dest = new byte[Math.max(chunk.getCompressedLength(), chunk.getUncompressedLength())];
-                    int written = -1;
-                    Exception chunkErr = null;
-                    int tries = Math.min(Math.max(servers.size(), 4), 8);
-                    for (int t = 0; t < tries && written < 0; t++) {
-                        Server s = servers.get(serverIdx % servers.size());
-                        try {
-                            written = cdn.downloadDepotChunkFuture(depot, chunk, s, dest, depotKey, null,
-                                    cdnTokenFor(content, appId, depot, s, tokenCache)).get(180, TimeUnit.SECONDS);
-                        } catch (Exception e) {
-                            chunkErr = e;
-                            Log.w(TAG, "chunk via " + s.getHost() + " failed (try " + (t + 1) + "): " + describe(e));
-                            serverIdx++;
-                            Thread.sleep(400);
+                    byte[] dest = buffers.acquire(ChunkBufferPool.sizeFor(chunk));
+                    try {
+                        int written = -1;
+                        Exception chunkErr = null;
+                        int tries = Math.min(Math.max(servers.size(), 4), 8);
+                        for (int t = 0; t < tries && written < 0; t++) {
+                            Server s = scores.pick(servers);
+                            long startMs = System.currentTimeMillis();
+                            try {
+                                written = cdn.downloadDepotChunkFuture(depot, chunk, s, dest, depotKey, null,
+                                        cdnTokenFor(content, appId, depot, s, tokenCache)).get(180, TimeUnit.SECONDS);
+                                scores.success(s, System.currentTimeMillis() - startMs, written);
+                            } catch (Exception e) {
+                                // Cancelled: not the host's fault, so it is not scored.
+                                if (!running || CdnScoreboard.isCancellation(e)) return false;
+                                chunkErr = e;
+                                scores.failure(s);
+                                Log.w(TAG, "chunk via " + s.getHost() + " failed (try " + (t + 1) + "): " + describe(e));
+                                if (!scores.hasHealthy(servers)) Thread.sleep(400);
+                            }
                         }
+                        if (written < 0) {
+                            throw chunkErr != null ? chunkErr : new java.io.IOException("chunk download failed");
+                        }
+                        ChunkFiles.write(channel, dest, written, chunk.getOffset());
+                        doneBytes += written;
+                        int pct = totalBytes > 0 ? (int) (doneBytes * 100 / totalBytes) : 0;
+                        if (pct != lastPct) { percent(pct); lastPct = pct; }
+                    } finally {
+                        buffers.release(dest);
                     }
-                    if (written < 0) {
-                        throw chunkErr != null ? chunkErr : new java.io.IOException("chunk download failed");
-                    }
-                    raf.seek(chunk.getOffset());
-                    raf.write(dest, 0, written);
-                    doneBytes += written;
-                    int pct = totalBytes > 0 ? (int) (doneBytes * 100 / totalBytes) : 0;
-                    if (pct != lastPct) { percent(pct); lastPct = pct; }
                 }
             }
         }
@@ -0,0 +1,61 @@
+#!/usr/bin/env bash
+#
+# Builds zomdroid-patch-agent.jar - the in-process route for the class-file patches
+# (Settings > "Patch game classes in memory") - and adds it to the bundled jars.tar,
+# which installs it as dependencies/jars/zomdroid-patch-agent.jar.
+#
+# The rules are not copied into this directory: the jar carries the very class files
+# javac produced for the app, so the agent and the on-disk route can never disagree.
+# They are plain JVM bytecode until d8 turns them into dex, and use nothing from Android
+# (see PatchRules). Build the app's Java first:
+#
+#   ./gradlew :app:compileReleaseJavaWithJavac
+#   bash tools/patch-agent/build_and_pack.sh
+#
+set -euo pipefail
+
+HERE="$(cd "$(dirname "$0")" && pwd)"
+REPO="$(cd "$HERE/../.." && pwd)"
+CLASSES="$REPO/app/build/intermediates/javac/release/compileReleaseJavaWithJavac/classes"
+TARBALL="$REPO/app/src/main/assets/bundles/jars.tar"
+JAR_NAME="zomdroid-patch-agent.jar"
+
+PATCH_PKG="com/zomdroid/patch"
+# The patch core and every rule in PatchRules.RULES, nested classes included.
+SHARED=(ClassFile ClassPatch PatchRules ShaderUnitPatcher FmodLoadPatcher BinkVideoPatcher
+        ZNetStatisticsPatcher)
+
+if [ ! -f "$CLASSES/$PATCH_PKG/PatchRules.class" ]; then
+    echo "!! $CLASSES has no PatchRules.class - run ./gradlew :app:compileReleaseJavaWithJavac first" >&2
+    exit 1
+fi
+
+WORK="$HERE/_work"
+rm -rf "$WORK"; mkdir -p "$WORK/classes/$PATCH_PKG"
+
+# --- 1) the shared classes, exactly as the app compiled them ---
+for name in "${SHARED[@]}"; do
+    cp "$CLASSES/$PATCH_PKG/$name.class" "$WORK/classes/$PATCH_PKG/"
+    cp "$CLASSES/$PATCH_PKG/$name"\$*.class "$WORK/classes/$PATCH_PKG/" 2>/dev/null || true
+done
+
+# --- 2) the agent itself, against them; Java 11 like the app, so JRE 21 and 25 both load it ---
+echo ">> compiling PatchAgent"
+javac --release 11 -nowarn -cp "$CLASSES" -d "$WORK/classes" \
+    "$HERE/src/$PATCH_PKG/PatchAgent.java"
+
+# --- 3) jar it with the agent manifest ---
+printf 'Premain-Class: com.zomdroid.patch.PatchAgent\n' > "$WORK/MANIFEST.MF"
+jar --create --file "$WORK/$JAR_NAME" --manifest "$WORK/MANIFEST.MF" -C "$WORK/classes" .
+ls -l "$WORK/$JAR_NAME"
+
+# --- 4) replace it in the bundle (backup first); the tar stays uncompressed like the rest ---
+echo ">> repacking (backup -> $TARBALL.bak)"
+cp "$TARBALL" "$TARBALL.bak"
+tar --delete -f "$TARBALL" "$JAR_NAME" 2>/dev/null || true
+tar -rf "$TARBALL" -C "$WORK" "$JAR_NAME"
+
+# --- 5) verify & clean up ---
+echo ">> done. agent entry now in the bundle:"
+tar -tf "$TARBALL" | grep "$JAR_NAME" || echo "!! agent NOT found - check the repack"
+rm -rf "$WORK"
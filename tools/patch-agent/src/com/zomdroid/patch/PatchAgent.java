@@ -0,0 +1,95 @@
+package com.zomdroid.patch;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies Zomdroid's class-file rules inside the game JVM, as the classes load, so the game tree
+ * is never written to for them.
+ *
+ * <p>Runs on the game's desktop JRE, not on Android: this file is compiled by build_and_pack.sh
+ * next to the app's own ClassFile, ClassPatch, PatchRules and rule classes, taken from the app's
+ * javac output, so both routes run exactly the same rules. The launcher decides which rules apply
+ * to the instance and names them in the agent argument:
+ *
+ * <pre>-javaagent:zomdroid-patch-agent.jar=rules=ShaderUnitPatcher,ZNetStatisticsPatcher</pre>
+ *
+ * <p>Every class a rule touches gets a line in the game log with what was done and how long it
+ * took. A class that cannot be patched loads as it is: like the on-disk route, a patch must never
+ * stop the game from starting.
+ */
+public final class PatchAgent implements ClassFileTransformer {
+    private static final String TAG = "[zomdroid-patch] ";
+
+    // Internal class name ("zombie/core/opengl/ShaderUnit") -> its rules, in PatchRules order.
+    private final Map<String, List<ClassPatch>> byClass;
+
+    private PatchAgent(Map<String, List<ClassPatch>> byClass) {
+        this.byClass = byClass;
+    }
+
+    public static void premain(String args, Instrumentation instrumentation) {
+        List<String> wanted = new ArrayList<>();
+        if (args != null) {
+            for (String option : args.split(";")) {
+                if (option.startsWith("rules=")) {
+                    for (String id : option.substring("rules=".length()).split(",")) {
+                        if (!id.isEmpty()) wanted.add(id);
+                    }
+                }
+            }
+        }
+
+        Map<String, List<ClassPatch>> byClass = new HashMap<>();
+        for (ClassPatch rule : PatchRules.RULES) {
+            if (!wanted.remove(PatchRules.id(rule))) continue;
+            String className = rule.classRelPath().substring(0, rule.classRelPath().length() - ".class".length());
+            byClass.computeIfAbsent(className, k -> new ArrayList<>()).add(rule);
+        }
+        // A launcher newer than the agent in the bundle, most likely; the rest still runs.
+        if (!wanted.isEmpty()) System.out.println(TAG + "unknown rules ignored: " + wanted);
+        if (byClass.isEmpty()) return;
+
+        instrumentation.addTransformer(new PatchAgent(byClass));
+        System.out.println(TAG + "watching " + byClass.size() + " class(es): " + byClass.keySet());
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        if (className == null || classBeingRedefined != null) return null;
+        List<ClassPatch> rules = byClass.get(className);
+        if (rules == null) return null;
+
+        long startNs = System.nanoTime();
+        try {
+            byte[] current = classfileBuffer;
+            List<String> outcomes = new ArrayList<>();
+            for (ClassPatch rule : rules) {
+                ClassPatch.Result result = new ClassPatch.Result();
+                byte[] patched = PatchRules.apply(rule, current, result);
+                if (patched != null) {
+                    current = patched;
+                    outcomes.add(rule.name() + " (" + result.detail + ")");
+                } else {
+                    // Already patched on disk (an instance from before this mode), or a layout
+                    // the rule does not know - said either way, this is the only place to see it.
+                    outcomes.add(rule.name() + (result.alreadyPatched ? " already patched"
+                            : " left untouched: " + result.detail));
+                }
+            }
+            System.out.println(TAG + className + ": " + String.join(", ", outcomes) + " in "
+                    + (System.nanoTime() - startNs) / 1000 + " us");
+            return current == classfileBuffer ? null : current;
+        } catch (Throwable t) {
+            // Thrown out of here the JVM would drop the exception and load the original anyway.
+            System.out.println(TAG + className + ": failed, loading it unpatched: " + t);
+            return null;
+        }
+    }
+}